@@ -1,5 +1,7 @@
 package com.example.messagingapp.app.login;
 
+import android.util.Log;
+
 import com.example.messagingapp.eventDeliverySystem.ISubscriber;
 import com.example.messagingapp.eventDeliverySystem.IUser;
 import com.example.messagingapp.eventDeliverySystem.User;
@@ -8,6 +10,8 @@ import com.example.messagingapp.eventDeliverySystem.filesystem.FileSystemExcepti
 import com.example.messagingapp.eventDeliverySystem.filesystem.Profile;
 import com.example.messagingapp.eventDeliverySystem.server.ServerException;
 
+import java.util.List;
+
 /**
  * A wrapper class ensuring that the current {@link User} can only be changed
  * by the {@link LoginActivity} but accessed from every part of the application.
@@ -16,6 +20,8 @@ import com.example.messagingapp.eventDeliverySystem.server.ServerException;
  * @author Dimitris Tsirmpas
  */
 public class LoggedInUser implements IUser {
+    private static final String TAG = "LoggedInUser";
+
     private IUser user;
 
     public LoggedInUser() {
@@ -23,10 +29,18 @@ public class LoggedInUser implements IUser {
     }
 
     /**
-     * Change which user is being used throughout the application.
+     * Change which user is being used throughout the application. The previous user, if any, is
+     * closed so that the Posts it pulled are written to the file system.
      * @param user the user
      */
     void setUser(IUser user){
+        if (this.user != null && this.user != user) {
+            try {
+                this.user.close();
+            } catch (ServerException | FileSystemException e) {
+                Log.e(TAG, "Close previous user", e);
+            }
+        }
         this.user = user;
     }
 
@@ -54,6 +68,12 @@ public class LoggedInUser implements IUser {
         user.post(post, topicName);
     }
 
+    @Override
+    public void postBatch(List<Post> posts, String topicName) {
+        throwOnNull();
+        user.postBatch(posts, topicName);
+    }
+
     @Override
     public boolean createTopic(String topicName) throws ServerException, FileSystemException {
         throwOnNull();
@@ -84,6 +104,12 @@ public class LoggedInUser implements IUser {
         return user.getSubscriber();
     }
 
+    @Override
+    public void close() throws ServerException, FileSystemException {
+        throwOnNull();
+        user.close();
+    }
+
     private void throwOnNull(){
         if(user == null){
             throw new IllegalStateException("No user has been set");
@@ -21,10 +21,14 @@ import com.example.messagingapp.app.R;
 import com.example.messagingapp.app.util.strategies.IErrorMessageStrategy;
 import com.example.messagingapp.eventDeliverySystem.datastructures.Post;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -93,8 +97,9 @@ public class TopicAdapter extends RecyclerView.Adapter<TopicAdapter.TopicViewHol
 
     @Override
     public void onBindViewHolder(@NonNull TopicViewHolder holder, int position) {
+        // Posts are only ever added, and comparing every Post would read them all from disk
         List<Post> freshPosts = presenter.getProfilePosts();
-        if (!currentPosts.equals(freshPosts)) {
+        if (currentPosts.size() != freshPosts.size()) {
             updatePosts(freshPosts);
         }
 
@@ -108,13 +113,17 @@ public class TopicAdapter extends RecyclerView.Adapter<TopicAdapter.TopicViewHol
         switch (getTypeForPosition(position)) {
             case TEXT: {
                 TextTopicViewHolder vh = (TextTopicViewHolder) holder;
-                vh.textView.setText(new String(post.getData()));
+                vh.textView.setText(Charset.defaultCharset().decode(post.getBuffer()));
                 break;
             }
             case IMAGE: {
                 ImageTopicViewHolder vh = (ImageTopicViewHolder) holder;
-                byte[] data = post.getData();
-                vh.imageView.setImageBitmap(BitmapFactory.decodeByteArray(data, 0, data.length));
+                try (InputStream data = Channels.newInputStream(post.openChannel())) {
+                    vh.imageView.setImageBitmap(BitmapFactory.decodeStream(data));
+                } catch (IOException e) {
+                    Log.e(TAG, "Render image", e);
+                    errorMessageStrategy.showError("Unable to display image");
+                }
                 break;
             }
             case VIDEO: {
@@ -123,8 +132,10 @@ public class TopicAdapter extends RecyclerView.Adapter<TopicAdapter.TopicViewHol
                 // set thumbnail
                 File temp = presenter.getNewTempFile(".mp4");
 
-                try (BufferedOutputStream outputStream = new BufferedOutputStream(new FileOutputStream(temp))){
-                    outputStream.write(post.getData());
+                try (FileChannel outputChannel = new FileOutputStream(temp).getChannel()){
+                    ByteBuffer data = post.getBuffer();
+                    while (data.hasRemaining())
+                        outputChannel.write(data);
                     Bitmap thumbnail = ThumbnailUtils.createVideoThumbnail(temp.toString(), MediaStore.Images.Thumbnails.MINI_KIND);
 
                     vh.imageView.setImageBitmap(thumbnail);
@@ -63,7 +63,7 @@ class TopicPresenter {
     /**
      * Returns all the Posts of the current Profile for the Topic this presenter is responsible for.
      *
-     * @return a list with the Posts
+     * @return a list with the Posts, whose stored Posts are read from disk only when accessed
      */
     public List<Post> getProfilePosts() {
         return user.getCurrentProfile().getTopic(topicName).getAllPosts();
@@ -6,6 +6,7 @@ import com.example.messagingapp.eventDeliverySystem.filesystem.FileSystemExcepti
 import com.example.messagingapp.eventDeliverySystem.filesystem.Profile;
 import com.example.messagingapp.eventDeliverySystem.server.ServerException;
 
+import java.util.List;
 import java.util.NoSuchElementException;
 
 public interface IUser {
@@ -47,6 +48,16 @@ public interface IUser {
      */
     void post(Post post, String topicName);
 
+    /**
+     * Posts many Posts to a Topic at once, in the given order, using a single
+     * request to the server.
+     *
+     * @param posts     the Posts to post
+     * @param topicName the name of the Topic to which to post
+     * @see Publisher#pushAll(List, String)
+     */
+    void postBatch(List<Post> posts, String topicName);
+
     /**
      * Attempts to push a new Topic. If this succeeds,
      * {@link #listenForNewTopic(String)} is called.
@@ -63,10 +74,14 @@ public interface IUser {
     /**
      * Pulls all new Posts from a Topic, adds them to the Profile and saves them to
      * the file system. Posts that have already been pulled are not pulled again.
+     * The Posts are in the Profile as soon as this method returns, but they are
+     * written to the file system in the background, at the latest when this User
+     * is closed.
      *
      * @param topicName the name of the Topic from which to pull
      * @throws FileSystemException    if an I/O error occurs while interacting with
-     *                                the file system
+     *                                the file system, including while writing
+     *                                Posts pulled earlier
      * @throws NoSuchElementException if no Topic with the given name exists
      */
     void pull(String topicName) throws FileSystemException;
@@ -103,4 +118,13 @@ public interface IUser {
      * @return the assigned subscriber instance
      */
     ISubscriber getSubscriber();
+
+    /**
+     * Writes every pulled Post to the file system and stops listening for new
+     * Posts. This method waits until the Posts have been written.
+     *
+     * @throws ServerException     if the connection to the server fails
+     * @throws FileSystemException if an I/O error occurs while writing the Posts
+     */
+    void close() throws ServerException, FileSystemException;
 }
@@ -114,6 +114,11 @@ public class User implements Serializable, IUser {
 		publisher.push(post, topicName);
 	}
 
+	@Override
+	public void postBatch(List<Post> posts, String topicName) {
+		publisher.pushAll(posts, topicName);
+	}
+
 	@Override
 	public boolean createTopic(String topicName) throws ServerException, FileSystemException {
 		LG.sout("User#createTopic(%s)", topicName);
@@ -135,9 +140,9 @@ public class User implements Serializable, IUser {
 		LG.sout("newPosts=%s", newPosts);
 		currentProfile.updateTopic(topicName, newPosts);
 
-		for (final Post post : newPosts) {
-			LG.sout("Saving Post '%s'", post);
-			profileFileSystem.savePost(post, topicName);
+		if (!newPosts.isEmpty()) {
+			LG.sout("Saving %d Posts in the background", newPosts.size());
+			profileFileSystem.savePostsInBackground(newPosts, topicName);
 		}
 		LG.out();
 	}
@@ -160,4 +165,13 @@ public class User implements Serializable, IUser {
 		return userSub;
 	}
 
+	@Override
+	public void close() throws ServerException, FileSystemException {
+		try {
+			profileFileSystem.close();
+		} finally {
+			consumer.close();
+		}
+	}
+
 }
@@ -0,0 +1,339 @@
+package com.example.messagingapp.eventDeliverySystem.client;
+
+import static com.example.messagingapp.eventDeliverySystem.datastructures.Message.MessageType.MULTIPLEX;
+import static com.example.messagingapp.eventDeliverySystem.datastructures.Message.MessageType.PACKET_SIZE_LIMITS;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Message;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet.SizeLimits;
+import com.example.messagingapp.eventDeliverySystem.wire.Handshake;
+import com.example.messagingapp.eventDeliverySystem.wire.MultiplexedConnection;
+import com.example.messagingapp.eventDeliverySystem.wire.WireFormat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A connection from a client to a Broker whose {@link WireFormat} has been
+ * negotiated. The binary format is offered first; if a Broker declines it, the
+ * connection is established again using Java serialization and that Broker is
+ * remembered so that the binary format is not offered to it again.
+ * <p>
+ * A client keeps a single {@link MultiplexedConnection} to each Broker, and
+ * each BrokerConnection is a new stream on it, so that no connection has to be
+ * established per request. Brokers that decline to multiplex are remembered,
+ * and a connection of its own is established for each request to them.
+ * <p>
+ * The limits of the size of the Packets that each Broker accepts are requested
+ * once and remembered as well. Brokers that don't respond to the request in
+ * time are assumed to accept the default limits.
+ *
+ * @author Alex Mandelias
+ */
+final class BrokerConnection implements AutoCloseable {
+
+	private static final Map<InetSocketAddress, WireFormat> formatPerBroker = new ConcurrentHashMap<>();
+
+	private static final Map<InetSocketAddress, MultiplexedConnection> multiplexedPerBroker = new ConcurrentHashMap<>();
+
+	private static final Set<InetSocketAddress> singleRequestBrokers = ConcurrentHashMap.newKeySet();
+
+	private static final Map<InetSocketAddress, SizeLimits> packetSizeLimitsPerBroker = new ConcurrentHashMap<>();
+
+	private static final int CLOSE_TIMEOUT_MILLIS       = 5000;
+	private static final int SIZE_LIMITS_TIMEOUT_MILLIS = 5000;
+
+	private final Socket                       socket;
+	private final WireFormat                   format;
+	private final InputStream                  in;
+	private final MultiplexedConnection.Stream stream;
+
+	private ObjectOutputStream oos;
+	private ObjectInputStream  ois;
+
+	/**
+	 * Opens a connection to a Broker, which is a new stream on the multiplexed
+	 * connection to the Broker if it supports multiplexing.
+	 *
+	 * @param ip   the InetAddress of the Broker
+	 * @param port the port of the Broker
+	 *
+	 * @return the connection
+	 *
+	 * @throws IOException if an I/O error occurs while connecting
+	 */
+	public static BrokerConnection open(InetAddress ip, int port) throws IOException {
+		final InetSocketAddress address = new InetSocketAddress(ip, port);
+
+		if (!BrokerConnection.singleRequestBrokers.contains(address)) {
+			final MultiplexedConnection multiplexed = BrokerConnection.multiplexedTo(address);
+			if (multiplexed != null)
+				return new BrokerConnection(multiplexed.openStream());
+		}
+
+		return BrokerConnection.openDedicated(address);
+	}
+
+	/**
+	 * Returns the limits of the size of the Packets that a Broker accepts,
+	 * requesting them from the Broker the first time. Brokers that don't advertise
+	 * any limits, either by closing the connection or by not responding in time,
+	 * accept Packets within the {@link SizeLimits#DEFAULT default} ones.
+	 *
+	 * @param ip   the InetAddress of the Broker
+	 * @param port the port of the Broker
+	 *
+	 * @return the limits
+	 *
+	 * @throws IOException if an I/O error occurs while connecting
+	 */
+	public static SizeLimits getPacketSizeLimits(InetAddress ip, int port) throws IOException {
+		final InetSocketAddress address = new InetSocketAddress(ip, port);
+
+		SizeLimits limits = BrokerConnection.packetSizeLimitsPerBroker.get(address);
+		if (limits != null)
+			return limits;
+
+		final BrokerConnection connection = BrokerConnection.open(ip, port);
+		boolean                timedOut   = false;
+		try {
+			final ObjectOutputStream oos = connection.getOutputStream();
+			oos.writeObject(new Message(PACKET_SIZE_LIMITS, null));
+			oos.flush();
+
+			try {
+				connection.setReadTimeout(BrokerConnection.SIZE_LIMITS_TIMEOUT_MILLIS);
+				final ObjectInputStream ois = connection.getInputStream();
+				limits = new SizeLimits(ois.readInt(), ois.readInt());
+			} catch (final SocketTimeoutException e) {
+				// Brokers that don't know of the limits may neither respond nor close it
+				limits = SizeLimits.DEFAULT;
+				timedOut = true;
+			} catch (final IOException e) {
+				// Brokers that don't know of the limits may close the connection instead
+				limits = SizeLimits.DEFAULT;
+			}
+		} finally {
+			if (timedOut)
+				connection.abort();
+			else
+				connection.close();
+		}
+
+		BrokerConnection.packetSizeLimitsPerBroker.put(address, limits);
+		return limits;
+	}
+
+	// returns null if the Broker declines to multiplex
+	private static MultiplexedConnection multiplexedTo(InetSocketAddress address)
+	        throws IOException {
+		final MultiplexedConnection existing = BrokerConnection.multiplexedPerBroker.get(address);
+		if ((existing != null) && !existing.isClosed())
+			return existing;
+
+		// connect without holding up the requests to other Brokers
+		final MultiplexedConnection multiplexed = BrokerConnection
+		        .multiplex(BrokerConnection.openDedicated(address));
+		if (multiplexed == null) {
+			BrokerConnection.singleRequestBrokers.add(address);
+			BrokerConnection.multiplexedPerBroker.remove(address);
+			return null;
+		}
+
+		// if another Thread connected to the Broker at the same time, its connection is kept
+		final MultiplexedConnection current = BrokerConnection.multiplexedPerBroker.merge(address,
+		        multiplexed, (previous, fresh) -> previous.isClosed() ? fresh : previous);
+		if (current != multiplexed) {
+			multiplexed.close();
+			return current;
+		}
+
+		ClientNode.TASK_EXECUTOR.executeStreaming(multiplexed);
+		return multiplexed;
+	}
+
+	private static MultiplexedConnection multiplex(BrokerConnection connection)
+	        throws IOException {
+		try {
+			final ObjectOutputStream oos = connection.getOutputStream();
+			final ObjectInputStream  ois = connection.getInputStream();
+
+			oos.writeObject(new Message(MULTIPLEX, null));
+			oos.flush();
+
+			if (ois.readBoolean())
+				return MultiplexedConnection.forClient(connection.socket, ois, oos);
+
+		} catch (final IOException e) {
+			// do nothing, Brokers that don't know of multiplexing close the connection
+		}
+
+		connection.close();
+		return null;
+	}
+
+	@SuppressWarnings("resource") // the socket is closed by the returned connection
+	private static BrokerConnection openDedicated(InetSocketAddress address) throws IOException {
+		final InetAddress ip   = address.getAddress();
+		final int         port = address.getPort();
+
+		if (BrokerConnection.formatPerBroker.get(address) != WireFormat.SERIALIZATION) {
+			final Socket      socket = new Socket(ip, port);
+			final InputStream in     = new BufferedInputStream(socket.getInputStream());
+
+			if (Handshake.offer(in, socket.getOutputStream())) {
+				BrokerConnection.formatPerBroker.put(address, WireFormat.BINARY);
+				return new BrokerConnection(socket, in, WireFormat.BINARY);
+			}
+
+			socket.close();
+			BrokerConnection.formatPerBroker.put(address, WireFormat.SERIALIZATION);
+		}
+
+		final Socket socket = new Socket(ip, port);
+		return new BrokerConnection(socket, socket.getInputStream(), WireFormat.SERIALIZATION);
+	}
+
+	private BrokerConnection(Socket socket, InputStream in, WireFormat format) {
+		this.socket = socket;
+		this.in = in;
+		this.format = format;
+		stream = null;
+	}
+
+	private BrokerConnection(MultiplexedConnection.Stream stream) {
+		socket = null;
+		in = null;
+		format = null;
+		this.stream = stream;
+		oos = stream.getOutputStream();
+		ois = stream.getInputStream();
+	}
+
+	/**
+	 * Returns the stream to the Broker, creating it if necessary. What is written
+	 * to it is sent only once it is flushed.
+	 *
+	 * @return the stream to the Broker
+	 *
+	 * @throws IOException if an I/O error occurs while creating the stream
+	 */
+	public ObjectOutputStream getOutputStream() throws IOException {
+		if (oos == null) {
+			oos = format.newOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			oos.flush();
+		}
+
+		return oos;
+	}
+
+	/**
+	 * Returns the stream from the Broker, creating it if necessary. The stream to
+	 * the Broker is created first, since the Broker waits for it before
+	 * responding.
+	 *
+	 * @return the stream from the Broker
+	 *
+	 * @throws IOException if an I/O error occurs while creating the stream
+	 */
+	public ObjectInputStream getInputStream() throws IOException {
+		if (ois == null) {
+			getOutputStream();
+			ois = format.newInputStream(in);
+		}
+
+		return ois;
+	}
+
+	/**
+	 * Sets the maximum time that a read from the stream from the Broker waits for
+	 * data, after which a {@link SocketTimeoutException} is thrown. A timeout of 0
+	 * means that reads wait forever.
+	 *
+	 * @param timeout the timeout, in milliseconds
+	 *
+	 * @throws IOException if the timeout could not be set
+	 */
+	public void setReadTimeout(int timeout) throws IOException {
+		if (stream != null)
+			stream.setReadTimeout(timeout);
+		else
+			socket.setSoTimeout(timeout);
+	}
+
+	/**
+	 * Closes this connection gracefully. Whatever has been written is flushed,
+	 * the Broker is told that nothing more will be sent and the connection is
+	 * closed once the Broker has closed its side as well, or after a timeout.
+	 * Closing the socket while data from the Broker is still unread would reset
+	 * the connection instead, and the Broker would lose whatever it hadn't read
+	 * yet.
+	 *
+	 * @throws IOException if an I/O error occurs while flushing the stream to
+	 *                     the Broker
+	 */
+	@Override
+	public void close() throws IOException {
+		if (stream != null) {
+			try {
+				oos.flush();
+				stream.shutdownOutput();
+				stream.awaitEndOfInput(BrokerConnection.CLOSE_TIMEOUT_MILLIS,
+				        TimeUnit.MILLISECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				stream.close();
+			}
+			return;
+		}
+
+		try {
+			if (oos != null)
+				oos.flush();
+
+			try {
+				socket.shutdownOutput();
+				socket.setSoTimeout(BrokerConnection.CLOSE_TIMEOUT_MILLIS);
+
+				// discard anything the Broker sends until it closes the connection
+				final byte[] buffer = new byte[1024];
+				int          read;
+				do
+					read = in.read(buffer);
+				while (read != -1);
+
+			} catch (final SocketTimeoutException e) {
+				// do nothing, the Broker didn't close the connection in time
+			} catch (final IOException e) {
+				// do nothing, the connection is closed anyway
+			}
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Closes this connection without waiting for the Broker, for connections on
+	 * which the Broker keeps sending data, such as those of Consumers.
+	 *
+	 * @throws IOException if an I/O error occurs while closing the connection
+	 */
+	public void abort() throws IOException {
+		if (stream != null)
+			stream.close();
+		else
+			socket.close();
+	}
+}
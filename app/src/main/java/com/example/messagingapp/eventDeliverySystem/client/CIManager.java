@@ -1,9 +1,11 @@
 package com.example.messagingapp.eventDeliverySystem.client;
 
 import static com.example.messagingapp.eventDeliverySystem.datastructures.Message.MessageType.BROKER_DISCOVERY;
+import static com.example.messagingapp.eventDeliverySystem.datastructures.Message.MessageType.REPLICA_DISCOVERY;
 
 import com.example.messagingapp.eventDeliverySystem.datastructures.ConnectionInfo;
 import com.example.messagingapp.eventDeliverySystem.datastructures.Message;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Message.MessageType;
 import com.example.messagingapp.eventDeliverySystem.server.ServerException;
 
 import java.io.IOException;
@@ -11,16 +13,10 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
-import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 /**
  * Wrapper for a cache that communicates with the default Broker to obtain and
@@ -31,6 +27,7 @@ import java.util.concurrent.TimeoutException;
 class CIManager implements Serializable {
 
 	private final Map<String, ConnectionInfo> cache;
+	private final Map<String, ConnectionInfo> readCache;
 
 	private final InetAddress defaultBrokerIP;
 	private final int         defaultBrokerPort;
@@ -43,6 +40,7 @@ class CIManager implements Serializable {
 	 */
 	public CIManager(InetAddress defaultBrokerIP, int defaultBrokerPort) {
 		cache = new HashMap<>();
+		readCache = new HashMap<>();
 		this.defaultBrokerIP = defaultBrokerIP;
 		this.defaultBrokerPort = defaultBrokerPort;
 	}
@@ -59,11 +57,33 @@ class CIManager implements Serializable {
 	 * @throws ServerException if a connection to the server fails
 	 */
 	public ConnectionInfo getConnectionInfoForTopic(String topicName) throws ServerException {
+		return getConnectionInfo(topicName, BROKER_DISCOVERY, cache);
+	}
+
+	/**
+	 * Communicates with the default Broker to fetch the ConnectionInfo of a
+	 * Broker from which a Topic can be read, either its leader or one of its
+	 * followers, which is then cached separately from the ConnectionInfo of the
+	 * leader. Posts must still be published to the Broker returned by
+	 * {@link #getConnectionInfoForTopic(String)}.
+	 *
+	 * @param topicName the Topic for which to get the ConnectionInfo
+	 *
+	 * @return the ConnectionInfo of a Broker that holds that Topic
+	 *
+	 * @throws ServerException if a connection to the server fails
+	 */
+	public ConnectionInfo getConnectionInfoForReading(String topicName) throws ServerException {
+		return getConnectionInfo(topicName, REPLICA_DISCOVERY, readCache);
+	}
+
+	private ConnectionInfo getConnectionInfo(String topicName, MessageType discoveryType,
+	        Map<String, ConnectionInfo> cache) throws ServerException {
 		ConnectionInfo address = cache.get(topicName);
 		if (address != null)
 			return address;
 
-		address = getCIForTopic(topicName);
+		address = getCIForTopic(topicName, discoveryType);
 
 		/*
 		 * TODO: fix this in a non hackey way
@@ -81,18 +101,19 @@ class CIManager implements Serializable {
 		return address;
 	}
 
-	private ConnectionInfo getCIForTopic(String topicName) throws ServerException {
-		ConnectionInfo info;
+	private ConnectionInfo getCIForTopic(String topicName, MessageType discoveryType)
+	        throws ServerException {
 		// run connection acquisition on different thread so we don't freeze up the main
 		// android thread
 
 		Callable<ConnectionInfo> socketThread = () -> {
-			try (Socket socket = new Socket(defaultBrokerIP, defaultBrokerPort)) {
+			try (BrokerConnection connection = BrokerConnection.open(defaultBrokerIP,
+			        defaultBrokerPort)) {
 
-				final ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
-				oos.writeObject(new Message(BROKER_DISCOVERY, topicName));
+				final ObjectOutputStream oos = connection.getOutputStream();
+				oos.writeObject(new Message(discoveryType, topicName));
 				oos.flush();
-				final ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
+				final ObjectInputStream ois = connection.getInputStream();
 
 				return (ConnectionInfo) ois.readObject();
 
@@ -101,17 +122,6 @@ class CIManager implements Serializable {
 			}
 		};
 
-		try {
-			Future<ConnectionInfo> task = Executors.newSingleThreadExecutor().submit(socketThread);
-			info = task.get(8L, TimeUnit.SECONDS);
-		} catch (ExecutionException e) {
-			throw new ServerException(new IOException(e.getCause())); // dont worry about it
-		} catch (InterruptedException ie){
-			throw new RuntimeException(ie);
-		} catch (TimeoutException e) {
-			throw new ServerException(new IOException("Connection to server timed out"));
-		}
-
-		return info;
+		return ClientNode.TASK_EXECUTOR.call(socketThread);
 	}
 }
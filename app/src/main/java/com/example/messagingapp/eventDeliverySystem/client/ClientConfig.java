@@ -0,0 +1,162 @@
+package com.example.messagingapp.eventDeliverySystem.client;
+
+import java.util.Properties;
+
+/**
+ * An immutable set of options that alter the behaviour of the Client Nodes of
+ * a process. Like those of a Broker, options are read from {@link Properties},
+ * usually the system properties (for example
+ * {@code -Dclient.executor.threads=8}). Options that are not specified take
+ * their default values.
+ *
+ * @author Alex Mandelias
+ *
+ * @see ClientNode
+ */
+public final class ClientConfig {
+
+	/**
+	 * The property that defines the maximum number of Threads on which requests
+	 * to the server are run at the same time
+	 */
+	public static final String EXECUTOR_THREAD_COUNT = "client.executor.threads";
+
+	/**
+	 * The property that defines the maximum number of requests that wait for a
+	 * Thread, after which new requests are rejected
+	 */
+	public static final String EXECUTOR_QUEUE_SIZE = "client.executor.queueSize";
+
+	/**
+	 * The property that defines the time, in milliseconds, that the calling
+	 * Thread waits for a request whose result it needs, such as the creation of a
+	 * Topic
+	 */
+	public static final String REQUEST_TIMEOUT = "client.timeout.request";
+
+	/**
+	 * The property that defines whether Consumers may read a Topic from any of
+	 * the Brokers that hold it instead of only from its leader
+	 */
+	public static final String REPLICA_READS = "client.consumer.replicaReads";
+
+	private final int     executorThreadCount;
+	private final int     executorQueueSize;
+	private final int     requestTimeout;
+	private final boolean replicaReads;
+
+	/**
+	 * Returns a ClientConfig where every option has its default value.
+	 *
+	 * @return the default ClientConfig
+	 */
+	public static ClientConfig defaults() {
+		return ClientConfig.fromProperties(new Properties());
+	}
+
+	/**
+	 * Creates a ClientConfig from some Properties. Options not present in the
+	 * Properties take their default values.
+	 *
+	 * @param properties the Properties from which to read the options
+	 *
+	 * @return the ClientConfig
+	 *
+	 * @throws IllegalArgumentException if the value of an option is invalid
+	 */
+	public static ClientConfig fromProperties(Properties properties) {
+		final int executorThreadCount = ClientConfig.getInt(properties,
+		        ClientConfig.EXECUTOR_THREAD_COUNT, 4, 1);
+
+		final int executorQueueSize = ClientConfig.getInt(properties,
+		        ClientConfig.EXECUTOR_QUEUE_SIZE, 64, 1);
+
+		final int requestTimeout = ClientConfig.getInt(properties, ClientConfig.REQUEST_TIMEOUT,
+		        8000, 1);
+
+		final boolean replicaReads = Boolean.parseBoolean(
+		        properties.getProperty(ClientConfig.REPLICA_READS, "false").trim());
+
+		return new ClientConfig(executorThreadCount, executorQueueSize, requestTimeout,
+		        replicaReads);
+	}
+
+	private ClientConfig(int executorThreadCount, int executorQueueSize, int requestTimeout,
+	        boolean replicaReads) {
+		this.executorThreadCount = executorThreadCount;
+		this.executorQueueSize = executorQueueSize;
+		this.requestTimeout = requestTimeout;
+		this.replicaReads = replicaReads;
+	}
+
+	/**
+	 * Returns the maximum number of Threads on which requests to the server are
+	 * run at the same time. Threads are only created when needed and are
+	 * discarded once they are idle for a while.
+	 *
+	 * @return the number of Threads
+	 */
+	public int getExecutorThreadCount() {
+		return executorThreadCount;
+	}
+
+	/**
+	 * Returns the maximum number of requests that wait for a Thread while all of
+	 * them are busy. Requests made while that many are waiting fail immediately.
+	 *
+	 * @return the number of requests
+	 */
+	public int getExecutorQueueSize() {
+		return executorQueueSize;
+	}
+
+	/**
+	 * Returns the time that the calling Thread waits for a request whose result
+	 * it needs, including the time the request waits for a Thread.
+	 *
+	 * @return the time in milliseconds
+	 */
+	public int getRequestTimeout() {
+		return requestTimeout;
+	}
+
+	/**
+	 * Returns whether Consumers may read a Topic from any of the Brokers that hold
+	 * it, which spreads the Consumers of a Topic across its followers. A follower
+	 * may receive a Post a little after its leader does.
+	 *
+	 * @return {@code true} if Consumers may read from followers, {@code false} if
+	 *         they only read from the leader of a Topic
+	 */
+	public boolean isReplicaReadEnabled() {
+		return replicaReads;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+		        "ClientConfig [executorThreadCount=%d, executorQueueSize=%d, requestTimeout=%d, "
+		                + "replicaReads=%s]",
+		        executorThreadCount, executorQueueSize, requestTimeout, replicaReads);
+	}
+
+	private static int getInt(Properties properties, String key, int defaultValue,
+	        int minValue) {
+		final String value = properties.getProperty(key);
+		if (value == null)
+			return defaultValue;
+
+		final int intValue;
+		try {
+			intValue = Integer.parseInt(value.trim());
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+		}
+
+		if (intValue < minValue)
+			throw new IllegalArgumentException(
+			        key + " must be at least " + minValue + ", found: " + value);
+
+		return intValue;
+	}
+}
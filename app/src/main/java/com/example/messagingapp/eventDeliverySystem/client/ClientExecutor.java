@@ -0,0 +1,155 @@
+package com.example.messagingapp.eventDeliverySystem.client;
+
+import com.example.messagingapp.eventDeliverySystem.server.ServerException;
+import com.example.messagingapp.eventDeliverySystem.thread.TaskExecutors;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The executor on which the Client Nodes of a process run their requests to
+ * the server, so that they don't block the calling Thread, which may be the
+ * main Thread of an Android application.
+ * <p>
+ * Requests run on a limited number of Threads and a limited number of them may
+ * wait for a Thread, as defined by the {@link ClientConfig}; further requests
+ * are rejected instead of piling up. Tasks that stream data for as long as a
+ * connection is open never finish, so they run on Threads of their own and
+ * never hold up requests. Every Thread is a daemon Thread that is discarded
+ * once it has been idle for a while, so an idle process keeps none of them.
+ *
+ * @author Alex Mandelias
+ */
+final class ClientExecutor implements Executor {
+
+	// requests run by other requests, such as the discovery of a Broker, run directly
+	private static final ThreadLocal<Boolean> RUNNING_REQUEST = new ThreadLocal<>();
+
+	private final ExecutorService       requests;
+	private final ExecutorService       streams;
+	private final long                  requestTimeout;
+	private final ClientExecutorMetrics metrics;
+
+	/**
+	 * Constructs a ClientExecutor.
+	 *
+	 * @param config the configuration of the executor
+	 */
+	ClientExecutor(ClientConfig config) {
+		requests = TaskExecutors.newBoundedPlatformThreadExecutor("ClientTask",
+		        config.getExecutorThreadCount(), config.getExecutorQueueSize());
+		streams = TaskExecutors.newPlatformThreadExecutor("ClientStream");
+		requestTimeout = config.getRequestTimeout();
+		metrics = new ClientExecutorMetrics();
+	}
+
+	/**
+	 * Runs a request in the background.
+	 *
+	 * @param request the request
+	 *
+	 * @throws RejectedExecutionException if too many requests are already waiting
+	 *                                    for a Thread
+	 */
+	@Override
+	public void execute(Runnable request) {
+		final long submittedAt = System.nanoTime();
+		metrics.submitted();
+
+		try {
+			requests.execute(() -> {
+				metrics.started(System.nanoTime() - submittedAt);
+				ClientExecutor.RUNNING_REQUEST.set(Boolean.TRUE);
+				try {
+					request.run();
+				} finally {
+					ClientExecutor.RUNNING_REQUEST.remove();
+					metrics.completed();
+				}
+			});
+		} catch (final RejectedExecutionException e) {
+			metrics.rejected();
+			throw e;
+		}
+	}
+
+	/**
+	 * Runs a request in the background and waits for its result, for at most the
+	 * request timeout. A request made by another request is run directly, since
+	 * its Thread would otherwise wait for a Thread of its own.
+	 *
+	 * @param <T>     the type of the result
+	 * @param request the request
+	 *
+	 * @return the result of the request
+	 *
+	 * @throws ServerException if the request fails, is rejected, times out or the
+	 *                         calling Thread is interrupted while waiting
+	 */
+	<T> T call(Callable<T> request) throws ServerException {
+		if (ClientExecutor.RUNNING_REQUEST.get() != null)
+			try {
+				return request.call();
+			} catch (final Exception e) {
+				throw ClientExecutor.asServerException(e);
+			}
+
+		final FutureTask<T> task = new FutureTask<>(request);
+		try {
+			execute(task);
+		} catch (final RejectedExecutionException e) {
+			throw new ServerException(new IOException("Too many requests to the server", e));
+		}
+
+		try {
+			return task.get(requestTimeout, TimeUnit.MILLISECONDS);
+		} catch (final ExecutionException e) {
+			throw ClientExecutor.asServerException(e.getCause());
+		} catch (final InterruptedException e) {
+			task.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new ServerException(new InterruptedIOException("Interrupted while waiting"));
+		} catch (final TimeoutException e) {
+			task.cancel(true);
+			metrics.timedOut();
+			throw new ServerException(new IOException("Connection to server timed out"));
+		}
+	}
+
+	/**
+	 * Runs a task that streams data for as long as a connection is open, on a
+	 * Thread of its own.
+	 *
+	 * @param task the task
+	 */
+	void executeStreaming(Runnable task) {
+		streams.execute(task);
+	}
+
+	/**
+	 * Returns the metrics of the requests run by this executor.
+	 *
+	 * @return the metrics, which are updated as requests are run
+	 */
+	ClientExecutorMetrics getMetrics() {
+		return metrics;
+	}
+
+	private static ServerException asServerException(Throwable cause) {
+		if (cause instanceof ServerException)
+			return (ServerException) cause;
+
+		if (cause instanceof IOException)
+			return new ServerException((IOException) cause);
+
+		return new ServerException(new IOException(cause));
+	}
+}
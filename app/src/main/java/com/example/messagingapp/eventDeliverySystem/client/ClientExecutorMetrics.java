@@ -0,0 +1,155 @@
+package com.example.messagingapp.eventDeliverySystem.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters that describe the requests that the Client Nodes of a process make
+ * to the server: how many were made, how many could not be made, and how long
+ * they waited for a Thread to run on. The counters are updated concurrently by
+ * the executor of the requests and may be read at any time.
+ *
+ * @author Alex Mandelias
+ *
+ * @see ClientNode#getExecutorMetrics()
+ */
+public final class ClientExecutorMetrics {
+
+	private final AtomicLong submittedRequests;
+	private final AtomicLong rejectedRequests;
+	private final AtomicLong startedRequests;
+	private final AtomicLong completedRequests;
+	private final AtomicLong timedOutRequests;
+	private final AtomicLong totalQueueWait;
+	private final AtomicLong maxQueueWait;
+
+	/** Constructs a ClientExecutorMetrics where every counter is 0. */
+	ClientExecutorMetrics() {
+		submittedRequests = new AtomicLong();
+		rejectedRequests = new AtomicLong();
+		startedRequests = new AtomicLong();
+		completedRequests = new AtomicLong();
+		timedOutRequests = new AtomicLong();
+		totalQueueWait = new AtomicLong();
+		maxQueueWait = new AtomicLong();
+	}
+
+	/**
+	 * Returns the number of requests that were submitted, including those that
+	 * were rejected.
+	 *
+	 * @return the number of requests
+	 */
+	public long getSubmittedRequests() {
+		return submittedRequests.get();
+	}
+
+	/**
+	 * Returns the number of requests that were rejected because too many
+	 * requests were already waiting for a Thread.
+	 *
+	 * @return the number of requests
+	 */
+	public long getRejectedRequests() {
+		return rejectedRequests.get();
+	}
+
+	/**
+	 * Returns the number of requests that are waiting for a Thread.
+	 *
+	 * @return the number of requests
+	 */
+	public long getQueuedRequests() {
+		return submittedRequests.get() - rejectedRequests.get() - startedRequests.get();
+	}
+
+	/**
+	 * Returns the number of requests that are running.
+	 *
+	 * @return the number of requests
+	 */
+	public long getRunningRequests() {
+		return startedRequests.get() - completedRequests.get();
+	}
+
+	/**
+	 * Returns the number of requests that have finished running, successfully or
+	 * not.
+	 *
+	 * @return the number of requests
+	 */
+	public long getCompletedRequests() {
+		return completedRequests.get();
+	}
+
+	/**
+	 * Returns the number of requests whose result was not available before the
+	 * request timeout.
+	 *
+	 * @return the number of requests
+	 */
+	public long getTimedOutRequests() {
+		return timedOutRequests.get();
+	}
+
+	/**
+	 * Returns the average time that the requests which have started running
+	 * waited for a Thread.
+	 *
+	 * @param unit the unit of the returned time
+	 *
+	 * @return the average time, or 0 if no request has started running
+	 */
+	public double getAverageQueueWait(TimeUnit unit) {
+		final long started = startedRequests.get();
+		if (started == 0)
+			return 0;
+
+		return (double) totalQueueWait.get() / started / unit.toNanos(1);
+	}
+
+	/**
+	 * Returns the longest time that a request waited for a Thread.
+	 *
+	 * @param unit the unit of the returned time
+	 *
+	 * @return the longest time, rounded down
+	 */
+	public long getMaxQueueWait(TimeUnit unit) {
+		return unit.convert(maxQueueWait.get(), TimeUnit.NANOSECONDS);
+	}
+
+	void submitted() {
+		submittedRequests.incrementAndGet();
+	}
+
+	void rejected() {
+		rejectedRequests.incrementAndGet();
+	}
+
+	void started(long queueWaitNanos) {
+		totalQueueWait.addAndGet(queueWaitNanos);
+		maxQueueWait.accumulateAndGet(queueWaitNanos, Math::max);
+		startedRequests.incrementAndGet();
+	}
+
+	void completed() {
+		completedRequests.incrementAndGet();
+	}
+
+	void timedOut() {
+		timedOutRequests.incrementAndGet();
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+		        "ClientExecutorMetrics [submittedRequests=%d, rejectedRequests=%d, "
+		                + "queuedRequests=%d, runningRequests=%d, completedRequests=%d, "
+		                + "timedOutRequests=%d, averageQueueWaitMillis=%.3f, "
+		                + "maxQueueWaitMillis=%d]",
+		        getSubmittedRequests(), getRejectedRequests(), getQueuedRequests(),
+		        getRunningRequests(), getCompletedRequests(), getTimedOutRequests(),
+		        getAverageQueueWait(TimeUnit.MILLISECONDS), getMaxQueueWait(TimeUnit.MILLISECONDS));
+	}
+}
@@ -17,6 +17,19 @@ import com.example.messagingapp.eventDeliverySystem.server.Broker;
  */
 abstract class ClientNode implements Serializable {
 
+	/**
+	 * The options of all Client Nodes, read from the system properties.
+	 *
+	 * @see ClientConfig
+	 */
+	static final ClientConfig CONFIG = ClientConfig.fromProperties(System.getProperties());
+
+	/**
+	 * The executor on which all Client Nodes run the tasks that connect to and
+	 * exchange data with the server, so that they don't block the calling thread.
+	 */
+	static final ClientExecutor TASK_EXECUTOR = new ClientExecutor(ClientNode.CONFIG);
+
 	/**
 	 * This Client Node's Connection Info Manager that manages the information about
 	 * this Node's connections to brokers.
@@ -62,4 +75,14 @@ abstract class ClientNode implements Serializable {
 	protected ClientNode(InetAddress ip, int port) {
 		topicCIManager = new CIManager(ip, port);
 	}
+
+	/**
+	 * Returns the metrics of the requests that all Client Nodes make to the
+	 * server, such as the time they wait for a Thread to run on.
+	 *
+	 * @return the metrics, which are updated as requests are made
+	 */
+	public static ClientExecutorMetrics getExecutorMetrics() {
+		return ClientNode.TASK_EXECUTOR.getMetrics();
+	}
 }
@@ -20,7 +20,6 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
-import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.List;
@@ -29,11 +28,6 @@ import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 /**
  * A client-side process which is responsible for listening for a set of Topics
@@ -151,14 +145,15 @@ public class Consumer extends ClientNode implements AutoCloseable, Subscriber, S
 	 * @throws IllegalArgumentException if this Consumer already listens to a Topic
 	 *                                  with the same name
 	 */
-	@SuppressWarnings("resource") // 'socket' closes at close()
+	@SuppressWarnings("resource") // 'connection' closes at close()
 	public void listenForTopic(Topic topic) throws ServerException {
 		topic.subscribe(this);
 
-		final Socket[] socket = {null};
 		final String topicName = topic.getName();
 
-		final ConnectionInfo ci = topicCIManager.getConnectionInfoForTopic(topicName);
+		final ConnectionInfo ci = ClientNode.CONFIG.isReplicaReadEnabled()
+		        ? topicCIManager.getConnectionInfoForReading(topicName)
+		        : topicCIManager.getConnectionInfoForTopic(topicName);
 
 		// run connection acquisition on different thread so we don't freeze up the main
 		// android thread
@@ -166,32 +161,24 @@ public class Consumer extends ClientNode implements AutoCloseable, Subscriber, S
 		// create callable so we can receive any exceptions that may arise
 		Callable<Object> socketThread = () -> {
 			try{
-				socket[0] = new Socket(ci.getAddress(), ci.getPort()); // 'socket' closes at close()
-				topicManager.addSocket(topic, socket[0]);
+				final BrokerConnection connection = BrokerConnection.open(ci.getAddress(),
+				        ci.getPort());
+				topicManager.addConnection(topic, connection); // 'connection' closes at close()
 
-				final ObjectOutputStream oos = new ObjectOutputStream(socket[0].getOutputStream());
-				oos.flush();
-				final ObjectInputStream ois = new ObjectInputStream(socket[0].getInputStream());
+				final ObjectOutputStream oos = connection.getOutputStream();
+				final ObjectInputStream  ois = connection.getInputStream();
 
 				oos.writeObject(new Message(INITIALISE_CONSUMER, topic.getToken()));
+				oos.flush();
 
-				new PullThread(ois, topic).start();
+				ClientNode.TASK_EXECUTOR.executeStreaming(new PullThread(ois, topic));
 			} catch (final IOException e) {
-				e.printStackTrace();
+				throw new ServerException(topicName, e);
 			}
 			return new Object(); // return value ignored
 		};
 
-		try {
-			Future<Object> task = Executors.newSingleThreadExecutor().submit(socketThread);
-			task.get(5L, TimeUnit.SECONDS);
-		} catch (ExecutionException e) {
-			throw new ServerException(new IOException(e)); // dont worry about it
-		} catch (InterruptedException ie){
-			throw new RuntimeException(ie);
-		} catch (TimeoutException e) {
-			throw new ServerException(new IOException("Server connection timed out"));
-		}
+		ClientNode.TASK_EXECUTOR.call(socketThread);
 	}
 
 	@Override
@@ -207,19 +194,25 @@ public class Consumer extends ClientNode implements AutoCloseable, Subscriber, S
 			usersub.notify(topicName);
 	}
 
+	@Override
+	public synchronized void notifyAbandoned(long postId, String topicName) {
+		LG.sout("Consumer#notifyAbandoned(%d, %s)", postId, topicName);
+		// do nothing, the Post never reached the user
+	}
+
 	private static class TopicManager implements AutoCloseable, Serializable {
 
 		private static class TopicData implements Serializable {
 			private final Topic topic;
 			private long        pointer;
 
-			// transient socket = resource will be leaked every time it's serialized
-			private transient Socket socket;
+			// transient connection = resource will be leaked every time it's serialized
+			private transient BrokerConnection connection;
 
 			public TopicData(Topic topic) {
 				this.topic = topic;
 				pointer = topic.getLastPostId();
-				socket = null;
+				connection = null;
 			}
 		}
 
@@ -255,18 +248,19 @@ public class Consumer extends ClientNode implements AutoCloseable, Subscriber, S
 		}
 
 		/**
-		 * Adds a Topic to this Manager and registers its socket from where to fetch.
+		 * Adds a Topic to this Manager and registers its connection from where to
+		 * fetch.
 		 *
-		 * @param topic  the Topic
-		 * @param socket the socket from where it will fetch
+		 * @param topic      the Topic
+		 * @param connection the connection from where it will fetch
 		 *
-		 * @throws IllegalArgumentException if this Manager already has a socket for a
-		 *                                  Topic with the same name.
+		 * @throws IllegalArgumentException if this Manager already has a connection
+		 *                                  for a Topic with the same name.
 		 */
-		public void addSocket(Topic topic, Socket socket) {
-			LG.sout("Consumer#addSocket(%s, %s)", topic, socket);
+		public void addConnection(Topic topic, BrokerConnection connection) {
+			LG.sout("Consumer#addConnection(%s)", topic);
 			add(topic);
-			Objects.requireNonNull(tdMap.get(topic.getName())).socket = socket;
+			Objects.requireNonNull(tdMap.get(topic.getName())).connection = connection;
 		}
 
 		private void add(Topic topic) {
@@ -282,7 +276,7 @@ public class Consumer extends ClientNode implements AutoCloseable, Subscriber, S
 		public void close() throws ServerException {
 			try {
 				for (final TopicManager.TopicData td : tdMap.values())
-					td.socket.close();
+					td.connection.abort();
 			} catch (IOException e) {
 				throw new ServerException(e);
 			}
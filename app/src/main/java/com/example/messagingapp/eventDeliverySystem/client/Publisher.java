@@ -6,9 +6,8 @@ import static com.example.messagingapp.eventDeliverySystem.datastructures.Messag
 import com.example.messagingapp.eventDeliverySystem.ISubscriber;
 import com.example.messagingapp.eventDeliverySystem.datastructures.ConnectionInfo;
 import com.example.messagingapp.eventDeliverySystem.datastructures.Message;
-import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet.SizeLimits;
 import com.example.messagingapp.eventDeliverySystem.datastructures.Post;
-import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
 import com.example.messagingapp.eventDeliverySystem.server.Broker;
 import com.example.messagingapp.eventDeliverySystem.server.ServerException;
 import com.example.messagingapp.eventDeliverySystem.thread.PushThread;
@@ -21,16 +20,12 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
-import java.net.Socket;
 import java.net.UnknownHostException;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * A client-side process which is responsible for creating Topics and pushing
@@ -92,16 +87,38 @@ public class Publisher extends ClientNode implements Serializable {
 	}
 
 	/**
-	 * Pushes a Post by creating a new Thread that connects to the actual Broker and
-	 * starts a PushThread.
+	 * Pushes a Post by running a task that connects to the actual Broker and runs a
+	 * PushThread. If too many requests to the server are already pending, the
+	 * Post is not pushed and the failure is reported to the subscriber.
 	 *
 	 * @param post      the Post
 	 * @param topicName the name of the Topic to which to push the Post
 	 */
 	public void push(Post post, String topicName) {
 		LG.sout("Publisher#push(%s, %s)", post, topicName);
-		Thread thread = new PostThread(post, topicName);
-		thread.start();
+		pushAll(Collections.singletonList(post), topicName);
+	}
+
+	/**
+	 * Pushes many Posts at once by running a single task that connects to the
+	 * actual Broker and runs a PushThread that sends all of them, in order, in the
+	 * same request. This saves a request, and a Thread to run it on, for every
+	 * Post but the first. If the request fails, the failure is reported to the
+	 * subscriber once for the whole batch, as if none of the Posts were pushed.
+	 *
+	 * @param posts     the Posts
+	 * @param topicName the name of the Topic to which to push the Posts
+	 */
+	public void pushAll(List<Post> posts, String topicName) {
+		LG.sout("Publisher#pushAll(%d posts, %s)", posts.size(), topicName);
+		if (posts.isEmpty())
+			return;
+
+		try {
+			ClientNode.TASK_EXECUTOR.execute(new PostThread(new ArrayList<>(posts), topicName));
+		} catch (final RejectedExecutionException e) {
+			userSub.failure(topicName);
+		}
 	}
 
 	/**
@@ -127,12 +144,13 @@ public class Publisher extends ClientNode implements Serializable {
 			if (ip.equals(InetAddress.getByName("0.0.0.0")))
 				actualBrokerCI = new ConnectionInfo(InetAddress.getByName("10.0.2.2"), port);
 
-			try (Socket socket = new Socket(actualBrokerCI.getAddress(), actualBrokerCI.getPort())) {
-				final ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
-				oos.flush();
-				final ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
+			try (BrokerConnection connection = BrokerConnection.open(actualBrokerCI.getAddress(),
+			        actualBrokerCI.getPort())) {
+				final ObjectOutputStream oos = connection.getOutputStream();
+				final ObjectInputStream  ois = connection.getInputStream();
 
 				oos.writeObject(new Message(CREATE_TOPIC, topicName));
+				oos.flush();
 
 				return ois.readBoolean(); // true or false, successful creation or not
 
@@ -141,34 +159,23 @@ public class Publisher extends ClientNode implements Serializable {
 			}
 		};
 
-		Future<Boolean> task = Executors.newSingleThreadExecutor().submit(connectionTask);
-		boolean success = false;
-		try {
-			success = task.get();
-		} catch (ExecutionException e) {
-			throw new ServerException(new IOException(e.getCause()));
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-
-		return success;
+		return ClientNode.TASK_EXECUTOR.call(connectionTask);
 	}
 
-	private class PostThread extends Thread {
+	private class PostThread implements Runnable {
 
-		private final Post   post;
-		private final String topicName;
+		private final List<Post> posts;
+		private final String     topicName;
 
 		/**
-		 * Constructs a new PostThread that connects to the actual Broker and starts a
-		 * PushThread to post the Post.
+		 * Constructs a new PostThread that, when run, connects to the actual Broker
+		 * and runs a PushThread to post the Posts.
 		 *
-		 * @param post      the Post
-		 * @param topicName the name of the Topic to which to push the Post
+		 * @param posts     the Posts
+		 * @param topicName the name of the Topic to which to push the Posts
 		 */
-		public PostThread(Post post, String topicName) {
-			super("PostThread");
-			this.post = post;
+		public PostThread(List<Post> posts, String topicName) {
+			this.posts = posts;
 			this.topicName = topicName;
 		}
 
@@ -188,23 +195,26 @@ public class Publisher extends ClientNode implements Serializable {
 				return;
 			}
 
+			final SizeLimits limits;
 			try {
-				//TODO: figure out how to close this one
-				Socket socket = new Socket(actualBrokerCI.getAddress(),
-						actualBrokerCI.getPort());
-
-				final ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
-				oos.writeObject(new Message(DATA_PACKET_SEND, topicName));
+				limits = BrokerConnection.getPacketSizeLimits(actualBrokerCI.getAddress(),
+				        actualBrokerCI.getPort());
+			} catch (final IOException e) {
+				e.printStackTrace();
+				callback.onCompletion(false, topicName);
+				return;
+			}
 
-				final PostInfo            postInfo  = post.getPostInfo();
-				final List<PostInfo>      postInfos = new LinkedList<>();
-				final Map<Long, Packet[]> packets   = new HashMap<>();
+			// closing the connection lets the broker know that no more posts will be sent
+			try (BrokerConnection connection = BrokerConnection.open(actualBrokerCI.getAddress(),
+			        actualBrokerCI.getPort())) {
 
-				postInfos.add(postInfo);
-				packets.put(postInfo.getId(), Packet.fromPost(post));
+				final ObjectOutputStream oos = connection.getOutputStream();
+				oos.writeObject(new Message(DATA_PACKET_SEND, topicName));
 
-				final PushThread pushThread = new PushThread(oos, topicName, postInfos,
-				        packets, Protocol.NORMAL, callback);
+				// each Post is broken into Packets, sized for the Post, while it is being sent
+				final PushThread pushThread = new PushThread(oos, topicName, posts, limits,
+				        Protocol.NORMAL, callback);
 				pushThread.run();
 
 			} catch (final IOException e) {
@@ -2,9 +2,9 @@ package com.example.messagingapp.eventDeliverySystem.datastructures;
 
 import java.io.Serializable;
 import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
@@ -23,6 +23,9 @@ public abstract class AbstractTopic implements Serializable {
 	private final String          name;
 	private final Set<Subscriber> subscribers;
 
+	// the hash of the name, which is computed when it is first needed
+	private transient int hash;
+
 	/**
 	 * Constructs an empty Topic with no subscribers.
 	 *
@@ -47,7 +50,7 @@ public abstract class AbstractTopic implements Serializable {
 	 *
 	 * @param sub the Subscriber to add
 	 */
-	public final void subscribe(Subscriber sub) {
+	public final synchronized void subscribe(Subscriber sub) {
 		subscribers.add(sub);
 	}
 
@@ -59,7 +62,7 @@ public abstract class AbstractTopic implements Serializable {
 	 * @return {@code true} if the Subscriber was subscribed to this Topic,
 	 *         {@code false} otherwise
 	 */
-	public final boolean unsubscribe(Subscriber sub) {
+	public final synchronized boolean unsubscribe(Subscriber sub) {
 		return subscribers.remove(sub);
 	}
 
@@ -69,9 +72,10 @@ public abstract class AbstractTopic implements Serializable {
 	 * @param postInfo the PostInfo
 	 */
 	public final synchronized void post(PostInfo postInfo) {
-		postHook(postInfo);
+		final PostInfo accepted = accept(postInfo);
+		postHook(accepted);
 		for (final Subscriber sub : subscribers)
-			sub.notify(postInfo, name);
+			sub.notify(accepted, name);
 	}
 
 	/**
@@ -85,6 +89,49 @@ public abstract class AbstractTopic implements Serializable {
 			sub.notify(packet, name);
 	}
 
+	/**
+	 * Posts a batch of PostInfos and Packets to this Topic, in order, and notifies
+	 * all subscribers once. Either all or none of them are posted.
+	 *
+	 * @param postInfosAndPackets the PostInfos and Packets
+	 */
+	public final synchronized void postBatch(List<Object> postInfosAndPackets) {
+		if (postInfosAndPackets.isEmpty())
+			return;
+
+		final List<Object> accepted = postBatchHook(postInfosAndPackets);
+		for (final Subscriber sub : subscribers)
+			sub.notify(accepted, name);
+	}
+
+	/**
+	 * Abandons a Post that is being posted to this Topic, whose final Packet will
+	 * never be posted, for example because its Publisher disconnected, and
+	 * notifies all subscribers. Nothing happens if the Post is not being posted.
+	 *
+	 * @param postId the ID of the Post
+	 */
+	public final synchronized void abandon(long postId) {
+		if (abandonHook(postId))
+			for (final Subscriber sub : subscribers)
+				sub.notifyAbandoned(postId, name);
+	}
+
+	/**
+	 * Allows each subclass to replace a PostInfo before it is posted, for example
+	 * to assign it an offset. By default, the PostInfo is posted as it is. This
+	 * method is effectively synchronized.
+	 *
+	 * @param postInfo the PostInfo
+	 *
+	 * @return the PostInfo to post instead
+	 *
+	 * @see AbstractTopic#post(PostInfo)
+	 */
+	protected PostInfo accept(PostInfo postInfo) {
+		return postInfo;
+	}
+
 	/**
 	 * Allows each subclass to specify how the template method is implemented. This
 	 * method is effectively synchronized.
@@ -105,46 +152,72 @@ public abstract class AbstractTopic implements Serializable {
 	 */
 	protected abstract void postHook(Packet packet);
 
+	/**
+	 * Allows each subclass to post a batch at once, for example to store it with a
+	 * single write. By default, each PostInfo and Packet is posted on its own, as
+	 * if by {@link #post(PostInfo)} and {@link #post(Packet)}, so subclasses that
+	 * can't post only part of a batch must override this method. This method is
+	 * effectively synchronized.
+	 *
+	 * @param postInfosAndPackets the PostInfos and Packets
+	 *
+	 * @return the PostInfos and Packets that were posted
+	 *
+	 * @see AbstractTopic#postBatch(List)
+	 */
+	protected List<Object> postBatchHook(List<Object> postInfosAndPackets) {
+		final List<Object> accepted = new ArrayList<>(postInfosAndPackets.size());
+		for (final Object postInfoOrPacket : postInfosAndPackets)
+			if (postInfoOrPacket instanceof PostInfo) {
+				final PostInfo postInfo = accept((PostInfo) postInfoOrPacket);
+				postHook(postInfo);
+				accepted.add(postInfo);
+			} else {
+				postHook((Packet) postInfoOrPacket);
+				accepted.add(postInfoOrPacket);
+			}
+
+		return accepted;
+	}
+
+	/**
+	 * Allows each subclass to specify how the template method is implemented. This
+	 * method is effectively synchronized.
+	 *
+	 * @param postId the ID of the Post
+	 *
+	 * @return {@code true} if the Post was being posted and has been abandoned,
+	 *         {@code false} otherwise
+	 *
+	 * @see AbstractTopic#abandon(long)
+	 */
+	protected abstract boolean abandonHook(long postId);
+
 	/**
 	 * Returns the hash that a Topic with a given name would have. Since a Topic's
 	 * hash is determined solely by its name, this method returns the same result as
 	 * Topic#hashCode(), when given the name of the Topic, and can be used when an
 	 * instance of Topic is not available, but its name is known.
+	 * <p>
+	 * The hash is computed with {@link StandardTopicHash#MURMUR3}.
 	 *
 	 * @param topicName the name of the Topic for which to compute the hash
 	 *
 	 * @return a hash code value for this Topic
 	 */
 	public static int hashForTopic(String topicName) {
-		try {
-			final MessageDigest a = MessageDigest.getInstance("md5");
-			final byte[]        b = a.digest(topicName.getBytes());
-
-			// big brain stuff
-			final int    FOUR = 4;
-			final int    c    = FOUR;
-			final int    d    = b.length / c;
-			final byte[] e    = new byte[c];
-			for (int f = 0; f < e.length; f++)
-				for (int g = 0; g < d; g++)
-					e[f] ^= (b[(d * f) + g]);
-
-			// compress to int
-			int value = 0;
-			for (int i = 0; i < 4; i++) {
-				int shift = (4 - 1 - i) * 8;
-				value += (e[i] & 0x000000FF) << shift;
-			}
-			return value;
-
-		} catch (NoSuchAlgorithmException | ArithmeticException e) {
-			throw new RuntimeException(e);
-		}
+		return StandardTopicHash.MURMUR3.hash(topicName);
 	}
 
 	@Override
 	public int hashCode() {
-		return AbstractTopic.hashForTopic(name);
+		// like String#hashCode, a hash of 0 is computed again every time
+		int h = hash;
+		if (h == 0) {
+			h = AbstractTopic.hashForTopic(name);
+			hash = h;
+		}
+		return h;
 	}
 
 	@Override
@@ -69,5 +69,41 @@ public class Message implements Serializable {
 
 		/** Requests the creation of a Topic. The value is the Topic's name */
 		CREATE_TOPIC,
+
+		/**
+		 * Requests that the connection become a MultiplexedConnection, over which
+		 * any number of requests are made. The value is {@code null}
+		 */
+		MULTIPLEX,
+
+		/**
+		 * Requests the CI of any Broker that holds a Topic, its leader or one of its
+		 * followers, from which to read the Topic. The value is the Topic's name
+		 */
+		REPLICA_DISCOVERY,
+
+		/**
+		 * Sent by the leader of a Topic to start copying its Posts to a follower. The
+		 * value is the Topic's name
+		 */
+		REPLICATE,
+
+		/**
+		 * Sent by a Broker that relays a Topic to its Consumers to a Broker that holds
+		 * the Topic, to receive its Posts. The value is the Topic's name
+		 */
+		RELAY,
+
+		/**
+		 * Sent by a Broker to another to exchange what they know of the members of
+		 * the network. The value is a List of the states of the members
+		 */
+		GOSSIP,
+
+		/**
+		 * Requests the minimum and maximum size of the payload of the Packets that
+		 * the Broker accepts. The value is {@code null}
+		 */
+		PACKET_SIZE_LIMITS,
 	}
 }
@@ -1,6 +1,10 @@
 package com.example.messagingapp.eventDeliverySystem.datastructures;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a fragment of a Post. Each Packet contains enough information so
@@ -13,10 +17,9 @@ public class Packet implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
-	private static final int PACKET_SIZE = (int) (512 * Math.pow(2, 10));
-
 	/**
-	 * Breaks a Post into an array of Packets.
+	 * Breaks a Post into an array of Packets whose size is chosen within the
+	 * {@link SizeLimits#DEFAULT default} limits.
 	 *
 	 * @param post the Post
 	 *
@@ -24,36 +27,71 @@ public class Packet implements Serializable {
 	 *         Every Packet has the same id as the Post and invoking
 	 *         {@link #isFinal()} on the last one returns {@code true}.
 	 *
+	 * @throws UncheckedIOException if the data of a Post backed by a file could
+	 *                              not be read
+	 *
 	 * @see Post#fromPackets(Packet[], PostInfo)
+	 * @see #readerFor(Post)
 	 */
 	public static Packet[] fromPost(Post post) {
-		final byte[] src = post.getData();
-		final long   id  = post.getPostInfo().getId();
-
-		final int      packetCount = (int) Math.ceil(src.length / (double) Packet.PACKET_SIZE);
-		final Packet[] packets     = new Packet[packetCount];
-
-		int srcPointer = 0;
-		for (int i = 0; i < packetCount; i++) {
-			final boolean isFinal = i == (packetCount - 1);
-
-			final int    length  = Math.min(Packet.PACKET_SIZE, src.length - srcPointer);
-			final byte[] payload = new byte[length];
+		final List<Packet> packets = new ArrayList<>();
+		try (PacketReader reader = Packet.readerFor(post)) {
+			Packet packet;
+			while ((packet = reader.next()) != null)
+				packets.add(packet);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Could not read the data of " + post, e);
+		}
 
-			System.arraycopy(src, srcPointer, payload, 0, length);
-			srcPointer += length;
+		return packets.toArray(new Packet[packets.size()]);
+	}
 
-			packets[i] = new Packet(isFinal, payload, id);
-		}
+	/**
+	 * Returns a Reader that breaks a Post into Packets one at a time, reading its
+	 * data only as each Packet is needed. The Packets are the same as those of
+	 * {@link #fromPost(Post)}, which are all created at once.
+	 *
+	 * @param post the Post
+	 *
+	 * @return the Reader, which must be closed
+	 *
+	 * @throws IOException if the data of the Post could not be opened
+	 */
+	public static PacketReader readerFor(Post post) throws IOException {
+		return Packet.readerFor(post, SizeLimits.DEFAULT);
+	}
 
-		return packets;
+	/**
+	 * Returns a Reader that breaks a Post into Packets one at a time, whose size
+	 * is chosen for the Post within some limits.
+	 *
+	 * @param post   the Post
+	 * @param limits the limits of the size of the Packets
+	 *
+	 * @return the Reader, which must be closed
+	 *
+	 * @throws IOException if the data of the Post could not be opened
+	 *
+	 * @see SizeLimits#sizeFor(long)
+	 */
+	public static PacketReader readerFor(Post post, SizeLimits limits) throws IOException {
+		return new PacketReader(post.openChannel(), post.getPostInfo().getId(),
+		        limits.sizeFor(post.getLength()));
 	}
 
 	private final boolean isFinal;
 	private final byte[]  payload;
 	private final long    postId;
 
-	private Packet(boolean isFinal, byte[] payload, long postId) {
+	/**
+	 * Constructs a Packet. Packets should only be constructed directly when they
+	 * are restored after being transmitted; otherwise use {@link #fromPost(Post)}.
+	 *
+	 * @param isFinal {@code true} if this is the last Packet of its Post
+	 * @param payload the payload of this Packet
+	 * @param postId  the id of the Post this Packet is a part of
+	 */
+	public Packet(boolean isFinal, byte[] payload, long postId) {
 		this.isFinal = isFinal;
 		this.payload = payload;
 		this.postId = postId;
@@ -92,4 +130,95 @@ public class Packet implements Serializable {
 		return String.format("Packet [isFinal=%s, payload.length=%s, postId=%s]", isFinal,
 		        payload.length, postId);
 	}
+
+	/**
+	 * The minimum and maximum size of the payload of the Packets of a Post, within
+	 * which the size of the Packets of each Post is chosen according to the size
+	 * of its data. Posts no larger than the minimum, such as text, are sent as a
+	 * single Packet of exactly their size, so that no larger buffer is allocated
+	 * for them. Larger Posts, such as images and videos, are broken into about
+	 * {@value #TARGET_PACKET_COUNT} Packets whose size is a power of two, so that
+	 * there are few Packets per Post without any one of them being too large.
+	 * <p>
+	 * Brokers advertise the limits of the Packets they accept, and clients choose
+	 * the size of the Packets they send within them.
+	 *
+	 * @author Alex Mandelias
+	 */
+	public static final class SizeLimits {
+
+		/** The limits used when a Broker doesn't advertise any, 16 KiB to 512 KiB */
+		public static final SizeLimits DEFAULT = new SizeLimits(16 * 1024, 512 * 1024);
+
+		private static final int TARGET_PACKET_COUNT = 16;
+
+		private final int minSize;
+		private final int maxSize;
+
+		/**
+		 * Constructs the SizeLimits of Packets.
+		 *
+		 * @param minSize the minimum size of the payload of every Packet of a Post
+		 *                except its last one, unless the Post is smaller
+		 * @param maxSize the maximum size of the payload of every Packet
+		 *
+		 * @throws IllegalArgumentException if {@code minSize < 1} or
+		 *                                  {@code maxSize < minSize}
+		 */
+		public SizeLimits(int minSize, int maxSize) {
+			if (minSize < 1)
+				throw new IllegalArgumentException("minSize must be at least 1, found: " + minSize);
+			if (maxSize < minSize)
+				throw new IllegalArgumentException(String.format(
+				        "maxSize must be at least minSize (%d), found: %d", minSize, maxSize));
+
+			this.minSize = minSize;
+			this.maxSize = maxSize;
+		}
+
+		/**
+		 * Returns the minimum size of the payload of every Packet of a Post except
+		 * its last one, unless the Post is smaller.
+		 *
+		 * @return the size in bytes
+		 */
+		public int getMinSize() {
+			return minSize;
+		}
+
+		/**
+		 * Returns the maximum size of the payload of every Packet.
+		 *
+		 * @return the size in bytes
+		 */
+		public int getMaxSize() {
+			return maxSize;
+		}
+
+		/**
+		 * Returns the size of the payload of the Packets of a Post.
+		 *
+		 * @param dataLength the length of the data of the Post
+		 *
+		 * @return the size in bytes, between 1 and the maximum size
+		 */
+		public int sizeFor(long dataLength) {
+			if (dataLength <= minSize)
+				return (int) Math.max(dataLength, 1);
+
+			final long targetSize = (dataLength + SizeLimits.TARGET_PACKET_COUNT - 1)
+			        / SizeLimits.TARGET_PACKET_COUNT;
+
+			long size = Long.highestOneBit(targetSize);
+			if (size < targetSize)
+				size <<= 1;
+
+			return (int) Math.max(minSize, Math.min(size, maxSize));
+		}
+
+		@Override
+		public String toString() {
+			return String.format("SizeLimits [minSize=%d, maxSize=%d]", minSize, maxSize);
+		}
+	}
 }
@@ -0,0 +1,96 @@
+package com.example.messagingapp.eventDeliverySystem.datastructures;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads the data of a Post from a channel and slices it into Packets, one at a
+ * time, so that the data never has to be on the heap all at once.
+ * <p>
+ * To know whether a Packet is the last one of its Post, the Reader reads one
+ * Packet ahead, so at most two payloads exist at any time. A Post without data
+ * is read as a single final Packet with an empty payload.
+ *
+ * @author Alex Mandelias
+ *
+ * @see Packet#fromPost(Post)
+ */
+public final class PacketReader implements Closeable {
+
+	private final ReadableByteChannel channel;
+	private final long                postId;
+	private final int                 packetSize;
+
+	private byte[]  next;
+	private boolean started;
+
+	/**
+	 * Constructs a PacketReader that reads the data of a Post from a channel.
+	 *
+	 * @param channel    the channel, which is closed when the Reader is closed
+	 * @param postId     the id of the Post
+	 * @param packetSize the maximum size of the payload of each Packet
+	 *
+	 * @throws IllegalArgumentException if {@code packetSize < 1}
+	 */
+	public PacketReader(ReadableByteChannel channel, long postId, int packetSize) {
+		if (packetSize < 1)
+			throw new IllegalArgumentException("packetSize must be at least 1, found: " + packetSize);
+
+		this.channel = channel;
+		this.postId = postId;
+		this.packetSize = packetSize;
+		next = null;
+		started = false;
+	}
+
+	/**
+	 * Reads the next Packet of the Post.
+	 *
+	 * @return the Packet, or {@code null} if the final Packet has been read
+	 *
+	 * @throws IOException if an I/O error occurs while reading from the channel
+	 */
+	public Packet next() throws IOException {
+		if (!started) {
+			started = true;
+			next = readPayload();
+
+			if (next == null)
+				return new Packet(true, new byte[0], postId);
+		}
+
+		final byte[] payload = next;
+		if (payload == null)
+			return null;
+
+		next = readPayload();
+		return new Packet(next == null, payload, postId);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// returns null when there is no more data
+	private byte[] readPayload() throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(packetSize);
+		while (buffer.hasRemaining())
+			if (channel.read(buffer) == -1)
+				break;
+
+		if (buffer.position() == 0)
+			return null;
+
+		if (buffer.hasRemaining()) {
+			final byte[] payload = new byte[buffer.position()];
+			System.arraycopy(buffer.array(), 0, payload, 0, payload.length);
+			return payload;
+		}
+
+		return buffer.array();
+	}
+}
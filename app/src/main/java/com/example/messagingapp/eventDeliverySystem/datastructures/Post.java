@@ -1,17 +1,31 @@
 package com.example.messagingapp.eventDeliverySystem.datastructures;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
-import java.util.LinkedList;
-import java.util.List;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Stream;
 
 /**
  * Encapsulates a Post, its data and its associated PostInfo object.
+ * <p>
+ * The data of a Post is either kept in memory, kept in a buffer such as a
+ * memory-mapped region of a file or, for Posts created from a File, read from
+ * the File whenever it is needed, so that large Files are never loaded on the
+ * heap unless {@link #getData()} is called. Its data can be accessed without
+ * being copied through {@link #getBuffer()}.
  *
  * @author Alex Mandelias
  * @author Dimitris Tsirmpas
@@ -62,7 +76,9 @@ public class Post implements Serializable {
 	}
 
 	/**
-	 * Constructs a Post with from a File.
+	 * Constructs a Post with from a File. The contents of the File are not read
+	 * until they are needed, so the File must not be modified or deleted while
+	 * the Post is in use.
 	 *
 	 * @param file       the File whose data will be encapsulated in a Post
 	 * @param posterName the name of the poster of the File
@@ -75,27 +91,14 @@ public class Post implements Serializable {
 	public static Post fromFile(File file, String posterName)
 	        throws FileNotFoundException, IOException {
 
-		byte[] data;
-		try (FileInputStream fis = new FileInputStream(file)) {
-			List<Integer> bytes = new LinkedList<>();
-
-			int nextByte;
-			while ((nextByte = fis.read()) != -1) {
-				bytes.add(nextByte);
-			}
-
-			data = new byte[bytes.size()];
-			int index = 0;
-			for (int b : bytes) {
-				data[index] = (byte) b;
-				index++;
-			}
-		}
+		if (!file.isFile())
+			throw new FileNotFoundException(file.getPath());
 
 		final String fileName      = file.getName();
 		final String fileExtension = fileName.substring(fileName.lastIndexOf('.') + 1);
 
-		return new Post(data, posterName, fileExtension);
+		return new Post(file, file.length(), new PostInfo(posterName, fileExtension,
+		        ThreadLocalRandom.current().nextLong()));
 	}
 
 	/**
@@ -110,8 +113,12 @@ public class Post implements Serializable {
 		return new Post(text.getBytes(), posterName, "~txt");
 	}
 
-	private final byte[]   data;
-	private final PostInfo postInfo;
+	// exactly one of 'data', 'buffer' and 'file' is not null
+	private final byte[]               data;
+	private final transient ByteBuffer buffer;
+	private final transient File       file;
+	private final transient long       fileLength;
+	private final PostInfo             postInfo;
 
 	/**
 	 * Constructs a new Post with the specified info.
@@ -122,6 +129,34 @@ public class Post implements Serializable {
 	public Post(byte[] data, PostInfo postInfo) {
 		this.data = data;
 		this.postInfo = postInfo;
+		buffer = null;
+		file = null;
+		fileLength = 0;
+	}
+
+	/**
+	 * Constructs a new Post whose contents are the remaining bytes of a buffer,
+	 * for example a memory-mapped region of a file. The bytes are not copied, so
+	 * they must not be modified while the Post is in use.
+	 *
+	 * @param data     the buffer with the contents of this post, whose position
+	 *                 and limit are not changed
+	 * @param postInfo the PostInfo object associated with this Post
+	 */
+	public Post(ByteBuffer data, PostInfo postInfo) {
+		this.data = null;
+		this.postInfo = postInfo;
+		buffer = data.slice().asReadOnlyBuffer();
+		file = null;
+		fileLength = 0;
+	}
+
+	private Post(File file, long fileLength, PostInfo postInfo) {
+		data = null;
+		buffer = null;
+		this.file = file;
+		this.fileLength = fileLength;
+		this.postInfo = postInfo;
 	}
 
 	/**
@@ -138,12 +173,101 @@ public class Post implements Serializable {
 	}
 
 	/**
-	 * Returns a clone of this Post's data.
+	 * Returns a clone of this Post's data. The data of a Post created from a File
+	 * is read from the File every time. Use {@link #getBuffer()} to access the
+	 * data without copying it.
 	 *
 	 * @return a clone of the data
+	 *
+	 * @throws UncheckedIOException if the File of the Post could not be read
 	 */
 	public byte[] getData() {
-		return data.clone();
+		if (data != null)
+			return data.clone();
+
+		if (buffer != null) {
+			final byte[] copy = new byte[buffer.capacity()];
+			buffer.duplicate().get(copy);
+			return copy;
+		}
+
+		if (fileLength > Integer.MAX_VALUE)
+			throw new UnsupportedOperationException(file + " is too large to load on the heap");
+
+		final ByteBuffer fileData = ByteBuffer.allocate((int) fileLength);
+		try (ReadableByteChannel channel = openChannel()) {
+			while (fileData.hasRemaining())
+				if (channel.read(fileData) == -1)
+					throw new EOFException(file + " is shorter than when the Post was created");
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Could not read the data of " + this, e);
+		}
+
+		return fileData.array();
+	}
+
+	/**
+	 * Returns a read-only buffer with this Post's data, which is not copied. The
+	 * data of a Post created from a File is memory-mapped from the File, which is
+	 * only read as the buffer is accessed. Each call returns a new buffer whose
+	 * position is 0 and whose limit is the length of the data.
+	 *
+	 * @return the buffer
+	 *
+	 * @throws UncheckedIOException if the File of the Post could not be mapped
+	 */
+	public ByteBuffer getBuffer() {
+		if (data != null)
+			return ByteBuffer.wrap(data).asReadOnlyBuffer();
+
+		if (buffer != null)
+			return buffer.duplicate();
+
+		if (fileLength > Integer.MAX_VALUE)
+			throw new UnsupportedOperationException(file + " is too large to be mapped");
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Could not map the data of " + this, e);
+		}
+	}
+
+	/**
+	 * Returns the size of this Post's data.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getLength() {
+		if (data != null)
+			return data.length;
+
+		return buffer != null ? buffer.capacity() : fileLength;
+	}
+
+	/**
+	 * Opens a channel from which this Post's data can be read, without the data
+	 * being copied first. The data of a Post created from a File is read directly
+	 * from the File.
+	 *
+	 * @return the channel, which must be closed
+	 *
+	 * @throws IOException if the File of the Post could not be opened
+	 */
+	public ReadableByteChannel openChannel() throws IOException {
+		if (data != null)
+			return Channels.newChannel(new ByteArrayInputStream(data));
+
+		if (buffer != null)
+			return new BufferChannel(buffer.duplicate());
+
+		try {
+			return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		} catch (final NoSuchFileException e) {
+			final FileNotFoundException fnfe = new FileNotFoundException(file.getPath());
+			fnfe.initCause(e);
+			throw fnfe;
+		}
 	}
 
 	/**
@@ -157,6 +281,53 @@ public class Post implements Serializable {
 
 	@Override
 	public String toString() {
-		return String.format("Post [data.length=%s, postInfo=%s]", data.length, postInfo);
+		return String.format("Post [data.length=%s, postInfo=%s]", getLength(), postInfo);
+	}
+
+	// neither the buffer nor the File can be serialized, only their data
+	private Object writeReplace() throws ObjectStreamException {
+		return data != null ? this : new Post(getData(), postInfo);
+	}
+
+	/**
+	 * A channel that reads the remaining bytes of a buffer.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private static final class BufferChannel implements ReadableByteChannel {
+
+		private final ByteBuffer buffer;
+		private boolean          open;
+
+		BufferChannel(ByteBuffer buffer) {
+			this.buffer = buffer;
+			open = true;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if (!open)
+				throw new ClosedChannelException();
+
+			if (!buffer.hasRemaining())
+				return -1;
+
+			final int        count = Math.min(dst.remaining(), buffer.remaining());
+			final ByteBuffer bytes = buffer.duplicate();
+			bytes.limit(bytes.position() + count);
+			dst.put(bytes);
+			buffer.position(buffer.position() + count);
+			return count;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
 	}
 }
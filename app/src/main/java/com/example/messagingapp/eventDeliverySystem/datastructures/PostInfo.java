@@ -14,12 +14,17 @@ public class PostInfo implements Serializable {
 
 	private static final long serialVersionUID = 1;
 
+	/** Constant to be used when a Post has not yet been assigned an offset */
+	public static final long NO_OFFSET = -1L;
+
 	private final String posterName;
 	private final String fileExtension;
 	private final long   id;
+	private final long   offset;
 
 	/**
-	 * Constructs a new PostInfo that holds information associated with a Post.
+	 * Constructs a new PostInfo that holds information associated with a Post
+	 * which has not yet been assigned an offset.
 	 *
 	 * @param posterName    the unique name of the Post's poster
 	 * @param fileExtension the extension of the associated Post's file,
@@ -27,9 +32,35 @@ public class PostInfo implements Serializable {
 	 * @param id            the unique id of the Post
 	 */
 	public PostInfo(String posterName, String fileExtension, long id) {
+		this(posterName, fileExtension, id, PostInfo.NO_OFFSET);
+	}
+
+	/**
+	 * Constructs a new PostInfo that holds information associated with a Post.
+	 *
+	 * @param posterName    the unique name of the Post's poster
+	 * @param fileExtension the extension of the associated Post's file,
+	 *                      '{@code ~txt}' for plain-text messages
+	 * @param id            the unique id of the Post
+	 * @param offset        the position of the Post in its Topic, as assigned by
+	 *                      the Broker, or {@link #NO_OFFSET}
+	 */
+	public PostInfo(String posterName, String fileExtension, long id, long offset) {
 		this.posterName = posterName;
 		this.fileExtension = fileExtension;
 		this.id = id;
+		this.offset = offset;
+	}
+
+	/**
+	 * Returns a copy of this PostInfo with a different offset.
+	 *
+	 * @param newOffset the offset of the copy
+	 *
+	 * @return the copy
+	 */
+	public PostInfo withOffset(long newOffset) {
+		return new PostInfo(posterName, fileExtension, id, newOffset);
 	}
 
 	/**
@@ -59,9 +90,21 @@ public class PostInfo implements Serializable {
 		return id;
 	}
 
+	/**
+	 * Returns the offset of the Post associated with this PostInfo. Offsets are
+	 * assigned by the Broker of the Post's Topic, starting from 0 and increasing
+	 * by 1 for every Post, so they define the order of the Posts of a Topic.
+	 *
+	 * @return the Post's offset, or {@link #NO_OFFSET} if it has not been assigned
+	 *         one
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
 	@Override
 	public String toString() {
-		return String.format("PostInfo [posterName=%s, fileExtension=%s, id=%s]", posterName,
-		        fileExtension, id);
+		return String.format("PostInfo [posterName=%s, fileExtension=%s, id=%s, offset=%s]",
+		        posterName, fileExtension, id, offset);
 	}
 }
@@ -0,0 +1,106 @@
+package com.example.messagingapp.eventDeliverySystem.datastructures;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The hash functions for the names of Topics that are available out of the box.
+ *
+ * @author Alex Mandelias
+ */
+public enum StandardTopicHash implements TopicHash {
+
+	/**
+	 * The 32-bit MurmurHash3 of the UTF-8 encoding of the name, with a seed of 0.
+	 * It is fast and spreads names well but isn't cryptographic.
+	 */
+	MURMUR3 {
+		@Override
+		public int hash(String topicName) {
+			return StandardTopicHash.murmur3(topicName.getBytes(StandardCharsets.UTF_8));
+		}
+	},
+
+	/**
+	 * The MD5 digest of the name, folded to 32 bits. This was the only hash
+	 * function of Topics before others were added and is much slower than
+	 * {@link #MURMUR3}.
+	 */
+	MD5 {
+		@Override
+		public int hash(String topicName) {
+			final byte[] b = StandardTopicHash.MD5_DIGEST.get().digest(topicName.getBytes());
+
+			// xor each quarter of the digest into one of the bytes of the hash
+			final int    c = 4;
+			final int    d = b.length / c;
+			final byte[] e = new byte[c];
+			for (int f = 0; f < e.length; f++)
+				for (int g = 0; g < d; g++)
+					e[f] ^= (b[(d * f) + g]);
+
+			// compress to int
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				int shift = (4 - 1 - i) * 8;
+				value += (e[i] & 0x000000FF) << shift;
+			}
+			return value;
+		}
+	};
+
+	// looking up the provider of a MessageDigest is much slower than the digest itself
+	private static final ThreadLocal<MessageDigest> MD5_DIGEST = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("md5");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	});
+
+	private static final int C1 = 0xcc9e2d51;
+	private static final int C2 = 0x1b873593;
+
+	private static int murmur3(byte[] data) {
+		int h = 0;
+
+		final int blockEnd = data.length & ~3;
+		for (int i = 0; i < blockEnd; i += 4) {
+			int k = (data[i] & 0xff) | ((data[i + 1] & 0xff) << 8) | ((data[i + 2] & 0xff) << 16)
+			        | (data[i + 3] << 24);
+
+			k *= StandardTopicHash.C1;
+			k = Integer.rotateLeft(k, 15);
+			k *= StandardTopicHash.C2;
+
+			h ^= k;
+			h = Integer.rotateLeft(h, 13);
+			h = (h * 5) + 0xe6546b64;
+		}
+
+		// the last 1 to 3 bytes
+		final int tailLength = data.length & 3;
+		if (tailLength > 0) {
+			int k = data[blockEnd] & 0xff;
+			if (tailLength > 1)
+				k ^= (data[blockEnd + 1] & 0xff) << 8;
+			if (tailLength > 2)
+				k ^= (data[blockEnd + 2] & 0xff) << 16;
+
+			k *= StandardTopicHash.C1;
+			k = Integer.rotateLeft(k, 15);
+			k *= StandardTopicHash.C2;
+			h ^= k;
+		}
+
+		// mix the bits of the hash so that they all depend on every byte
+		h ^= data.length;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
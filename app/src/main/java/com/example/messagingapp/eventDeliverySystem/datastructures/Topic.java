@@ -1,11 +1,17 @@
 package com.example.messagingapp.eventDeliverySystem.datastructures;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
 
 import com.example.messagingapp.eventDeliverySystem.util.LG;
 
@@ -17,12 +23,10 @@ import com.example.messagingapp.eventDeliverySystem.util.LG;
  */
 public class Topic extends AbstractTopic {
 
-	private static final Post dummyPost;
+	private static final PostInfo dummyPostInfo = new PostInfo(null, null,
+	        AbstractTopic.FETCH_ALL_POSTS);
 
-	static {
-		PostInfo dummyPI = new PostInfo(null, null, AbstractTopic.FETCH_ALL_POSTS);
-		dummyPost = new Post(null, dummyPI);
-	}
+	private static final int PAGE_SIZE = 64;
 
 	/**
 	 * Returns a token that can be used to smartly update the topic by the Broker.
@@ -33,11 +37,16 @@ public class Topic extends AbstractTopic {
 		return new TopicToken(this);
 	}
 
-	// first element is the first post added
+	// the Posts that precede those in the postList, which are read only when needed
+	private PostStore store;
+	private int       storedPostCount;
+	private long      lastStoredPostId;
+
+	// first element is the first post added after the stored ones
 	private final List<Post>         postList;
 	private final Map<Long, Integer> indexPerPostId;
 
-	private Post lastPost; // don't traverse the entire postList
+	private PostInfo lastPostInfo; // don't traverse the entire postList
 
 	/**
 	 * Creates a new, empty, Topic.
@@ -56,14 +65,39 @@ public class Topic extends AbstractTopic {
 	 */
 	public Topic(String name, List<Post> posts) {
 		super(name);
+		store = null;
+		storedPostCount = 0;
+		lastStoredPostId = AbstractTopic.FETCH_ALL_POSTS;
 		postList = new LinkedList<>();
 		indexPerPostId = new HashMap<>();
-		lastPost = null;
-		post(dummyPost);
+		lastPostInfo = Topic.dummyPostInfo;
 
 		post(posts);
 	}
 
+	/**
+	 * Creates a new Topic whose earliest Posts are stored elsewhere, for example
+	 * on disk. The stored Posts are not read when the Topic is created but
+	 * whenever they are needed, a page at a time, and they are not kept in
+	 * memory afterwards. Posts added to the Topic afterwards are kept in memory.
+	 *
+	 * @param name               the Topic's unique name
+	 * @param store              the store from which the Posts are read
+	 * @param storedPostCount    the number of Posts in the store
+	 * @param lastStoredPostInfo the PostInfo of the last Post in the store, or
+	 *                           {@code null} if the store has no Posts
+	 */
+	public Topic(String name, PostStore store, int storedPostCount,
+	        PostInfo lastStoredPostInfo) {
+		super(name);
+		this.store = Objects.requireNonNull(store);
+		this.storedPostCount = storedPostCount;
+		postList = new LinkedList<>();
+		indexPerPostId = new HashMap<>();
+		lastPostInfo = lastStoredPostInfo == null ? Topic.dummyPostInfo : lastStoredPostInfo;
+		lastStoredPostId = lastPostInfo.getId();
+	}
+
 	/**
 	 * Returns the ID of the most recent post in this Topic.
 	 *
@@ -71,7 +105,16 @@ public class Topic extends AbstractTopic {
 	 *         there are no Posts in this Topic
 	 */
 	public long getLastPostId() {
-		return lastPost.getPostInfo().getId();
+		return lastPostInfo.getId();
+	}
+
+	/**
+	 * Returns the number of Posts in this Topic, including the stored ones.
+	 *
+	 * @return the number of Posts
+	 */
+	public int getPostCount() {
+		return storedPostCount + postList.size();
 	}
 
 	private final List<Packet> currPackets = new LinkedList<>();
@@ -99,6 +142,16 @@ public class Topic extends AbstractTopic {
 		}
 	}
 
+	@Override
+	protected boolean abandonHook(long postId) {
+		if ((currPI == null) || (currPI.getId() != postId))
+			return false;
+
+		currPackets.clear();
+		currPI = null;
+		return true;
+	}
+
 	/**
 	 * Adds a list of Posts to this Topic.
 	 *
@@ -112,19 +165,27 @@ public class Topic extends AbstractTopic {
 	private void post(Post post) {
 		postList.add(post);
 		indexPerPostId.put(post.getPostInfo().getId(), postList.size() - 1);
-		lastPost = post;
+		lastPostInfo = post.getPostInfo();
 	}
 
-	/** Clears this Topic by removing all Posts */
+	/** Clears this Topic by removing all Posts, including the stored ones */
 	public void clear() {
+		store = null;
+		storedPostCount = 0;
+		lastStoredPostId = AbstractTopic.FETCH_ALL_POSTS;
 		indexPerPostId.clear();
 		postList.clear();
-		post(dummyPost);
+		lastPostInfo = Topic.dummyPostInfo;
 	}
 
 	/**
 	 * Returns the Posts in this Topic that were posted after the Post with the
 	 * given ID. The Post with the given ID is not returned.
+	 * <p>
+	 * If the Post with the given ID is stored, the stored Posts are searched a
+	 * page at a time from the latest to the earliest, and the returned List is a
+	 * view that reads the stored Posts after it as described in
+	 * {@link #getAllPosts()}.
 	 *
 	 * @param lastPostId the ID of the Post.
 	 *
@@ -132,33 +193,64 @@ public class Topic extends AbstractTopic {
 	 *         given ID, sorted from earliest to latest
 	 *
 	 * @throws NoSuchElementException if no Post in this Topic has the given ID
+	 * @throws UncheckedIOException   if the stored Posts could not be read
 	 */
 	public List<Post> getPostsSince(long lastPostId) throws NoSuchElementException {
 		LG.sout("Topic#getPostsSince(%d)", lastPostId);
 		LG.in();
 
-		final Integer index = indexPerPostId.get(lastPostId);
-
-		if (index == null)
-			throw new NoSuchElementException(
-			        "No post with id " + lastPostId + " found in this Topic");
+		final List<Post> postsAfterGivenPost;
 
-		final List<Post> postsAfterGivenPost = new LinkedList<>(
-		        postList.subList(index + 1, postList.size()));
-		LG.sout("postsAfterGivenPost=%s", postsAfterGivenPost);
+		final Integer index = indexPerPostId.get(lastPostId);
+		if (index != null)
+			postsAfterGivenPost = new LinkedList<>(postList.subList(index + 1, postList.size()));
+		else if (lastPostId == lastStoredPostId)
+			postsAfterGivenPost = new LinkedList<>(postList);
+		else if (lastPostId == AbstractTopic.FETCH_ALL_POSTS)
+			postsAfterGivenPost = new PagedPostList(0);
+		else
+			postsAfterGivenPost = new PagedPostList(indexOfStoredPost(lastPostId) + 1);
+
+		LG.sout("postsAfterGivenPost.size()=%d", postsAfterGivenPost.size());
 		LG.out();
 		return postsAfterGivenPost;
 	}
 
 	/**
-	 * Returns all Posts in this Topic.
+	 * Returns all Posts in this Topic. The stored Posts are not read when this
+	 * method is called; the returned List reads the page of each Post only when
+	 * the Post is accessed, and keeps only the last page it read in memory.
+	 *
+	 * @return a read-only view of the Posts in this Topic, sorted from earliest to
+	 *         latest, which does not reflect Posts added to the Topic afterwards
 	 *
-	 * @return the Posts in this Topic, sorted from earliest to latest
+	 * @throws UncheckedIOException if the stored Posts could not be read
 	 */
 	public List<Post> getAllPosts() {
 		return getPostsSince(AbstractTopic.FETCH_ALL_POSTS);
 	}
 
+	private int indexOfStoredPost(long postId) {
+		for (int end = storedPostCount; end > 0; end -= Topic.PAGE_SIZE) {
+			final int        start = Math.max(0, end - Topic.PAGE_SIZE);
+			final List<Post> page  = Topic.readStoredPosts(store, start, end - start);
+
+			for (int i = page.size() - 1; i >= 0; i--)
+				if (page.get(i).getPostInfo().getId() == postId)
+					return start + i;
+		}
+
+		throw new NoSuchElementException("No post with id " + postId + " found in this Topic");
+	}
+
+	private static List<Post> readStoredPosts(PostStore store, int fromIndex, int count) {
+		try {
+			return store.readPosts(fromIndex, count);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Could not read the stored Posts", e);
+		}
+	}
+
 	@Override
 	public int hashCode() {
 		return super.hashCode();
@@ -173,6 +265,79 @@ public class Topic extends AbstractTopic {
 		return (obj instanceof Topic);
 	}
 
+	/**
+	 * A store from which the earliest Posts of a Topic are read, a page at a time,
+	 * only when they are needed.
+	 *
+	 * @author Alex Mandelias
+	 */
+	public interface PostStore extends Serializable {
+
+		/**
+		 * Reads some consecutive Posts from this store.
+		 *
+		 * @param fromIndex the index of the first Post to read, where the earliest
+		 *                  Post has index 0
+		 * @param count     the number of Posts to read
+		 *
+		 * @return the Posts, sorted from earliest to latest
+		 *
+		 * @throws IOException if an I/O error occurs while reading the Posts
+		 */
+		List<Post> readPosts(int fromIndex, int count) throws IOException;
+	}
+
+	/**
+	 * A read-only view of the Posts of a Topic from an index onwards, as they were
+	 * when the view was created. The stored Posts are read a page at a time and
+	 * only the last page read is kept.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private final class PagedPostList extends AbstractList<Post> implements RandomAccess {
+
+		private final int        fromIndex;
+		private final PostStore  store;
+		private final int        storedPostCount;
+		private final List<Post> newPosts;
+
+		private int        pageStart;
+		private List<Post> page;
+
+		PagedPostList(int fromIndex) {
+			this.fromIndex = fromIndex;
+			store = Topic.this.store;
+			storedPostCount = Topic.this.storedPostCount;
+			newPosts = new ArrayList<>(postList);
+			pageStart = -1;
+			page = null;
+		}
+
+		@Override
+		public Post get(int index) {
+			if ((index < 0) || (index >= size()))
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+
+			final int topicIndex = fromIndex + index;
+			if (topicIndex >= storedPostCount)
+				return newPosts.get(topicIndex - storedPostCount);
+
+			final int start = topicIndex - (topicIndex % Topic.PAGE_SIZE);
+			if (start != pageStart) {
+				final int count = Math.min(Topic.PAGE_SIZE, storedPostCount - start);
+				page = Topic.readStoredPosts(store, start, count);
+				pageStart = start;
+			}
+
+			return page.get(topicIndex - start);
+		}
+
+		@Override
+		public int size() {
+			return (storedPostCount + newPosts.size()) - fromIndex;
+		}
+	}
+
 	/**
 	 * Encapsulates a Token that uniquely identifies a Post in a Topic and is used
 	 * to transfer only the necessary information between the server and the client.
@@ -186,10 +351,26 @@ public class Topic extends AbstractTopic {
 
 		private final String topicName;
 		private final long   lastId;
+		private final long   lastOffset;
 
 		private TopicToken(Topic topic) {
-			topicName = topic.getName();
-			lastId = topic.getLastPostId();
+			this(topic.getName(), topic.getLastPostId(), topic.lastPostInfo.getOffset());
+		}
+
+		/**
+		 * Constructs a TopicToken. TopicTokens should only be constructed directly
+		 * when they are restored after being transmitted; otherwise use
+		 * {@link Topic#getToken()}.
+		 *
+		 * @param topicName  the name of the Topic
+		 * @param lastId     the ID of the most recent Post in the Topic
+		 * @param lastOffset the offset of the most recent Post in the Topic, or
+		 *                   {@link PostInfo#NO_OFFSET} if it is not known
+		 */
+		public TopicToken(String topicName, long lastId, long lastOffset) {
+			this.topicName = topicName;
+			this.lastId = lastId;
+			this.lastOffset = lastOffset;
 		}
 
 		/**
@@ -209,5 +390,14 @@ public class Topic extends AbstractTopic {
 		public long getLastId() {
 			return lastId;
 		}
+
+		/**
+		 * Returns this TopicToken's lastOffset.
+		 *
+		 * @return the lastOffset, or {@link PostInfo#NO_OFFSET} if it is not known
+		 */
+		public long getLastOffset() {
+			return lastOffset;
+		}
 	}
 }
@@ -0,0 +1,23 @@
+package com.example.messagingapp.eventDeliverySystem.datastructures;
+
+/**
+ * A hash function for the names of Topics. Every process that compares the
+ * hashes of Topics, for example to assign them to Brokers, must use the same
+ * function.
+ *
+ * @author Alex Mandelias
+ *
+ * @see StandardTopicHash
+ */
+@FunctionalInterface
+public interface TopicHash {
+
+	/**
+	 * Returns the hash of the name of a Topic.
+	 *
+	 * @param topicName the name of the Topic
+	 *
+	 * @return the hash
+	 */
+	int hash(String topicName);
+}
@@ -0,0 +1,386 @@
+package com.example.messagingapp.eventDeliverySystem.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Post;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Topic;
+
+/**
+ * Manages Topics that are saved in directories in the file system, in the
+ * {@link TopicFileSystem.Format#DIRECTORY DIRECTORY} format.
+ *
+ * @author Alex Mandelias
+ */
+class DirectoryTopicFileSystem implements TopicFileSystem {
+
+	private static final Pattern PATTERN            = Pattern.compile(
+	        "(?<postId>-?\\d+)(@(?<offset>\\d+))?-(?<posterName>\\w+)\\.(?<extension>.*)");
+	private static final String  FORMAT             = "%d-%s.%s";
+	private static final String  FORMAT_WITH_OFFSET = "%d@%d-%s.%s";
+
+	private static final String HEAD                 = "HEAD";
+	private static final String TOPIC_META_EXTENSION = ".meta";
+	private static final String TEMP_EXTENSION       = ".tmp";
+
+	private final File topicsRootDirectory;
+
+	/**
+	 * Constructs a new Topic File System for a given root directory.
+	 *
+	 * @param topicsRootDirectory the root directory of the new file system whose
+	 *                            sub-directories correspond to different Topics
+	 */
+	public DirectoryTopicFileSystem(Path topicsRootDirectory) {
+		this.topicsRootDirectory = topicsRootDirectory.toFile();
+	}
+
+	@Override
+	public Stream<String> getTopicNames() throws FileSystemException {
+		try {
+			return Files.list(getRoot())
+			        .filter(Files::isDirectory)
+			        .map(path -> path.getFileName().toString());
+		} catch (IOException e) {
+			throw new FileSystemException(getRoot(), e);
+		}
+	}
+
+	@Override
+	public void createTopic(String topicName) throws FileSystemException {
+		final Path topicDirectory = resolveRoot(topicName);
+		try {
+			Files.createDirectory(topicDirectory);
+		} catch (IOException e) {
+			throw new FileSystemException(topicDirectory, e);
+		}
+
+		final Path head = getHead(topicName);
+		DirectoryTopicFileSystem.create(head);
+	}
+
+	@Override
+	public void deleteTopic(String topicName) throws FileSystemException {
+		final Path topicDirectory = resolveRoot(topicName);
+
+		Path currentPath = topicDirectory;
+		try (Stream<Path> directoryStream = Files.list(currentPath)) {
+			for (Iterator<Path> iter = directoryStream.iterator(); iter.hasNext();) {
+				currentPath = iter.next();
+				Files.delete(currentPath);
+			}
+		} catch (IOException e) {
+			throw new FileSystemException(currentPath, e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The file of every Post and the file that points to the previous one are
+	 * forced to the disk, and then the {@code HEAD} is replaced atomically with a
+	 * file that points to the last of the Posts.
+	 */
+	@Override
+	public void writePosts(List<Post> posts, String topicName) throws FileSystemException {
+		final Path head = getHead(topicName);
+
+		byte[] pointerToPreviousPost = DirectoryTopicFileSystem.read(head);
+		for (final Post post : posts) {
+			final Path fileForPost = writePost0(post, topicName);
+			writePointerForPost(post, pointerToPreviousPost, topicName);
+			pointerToPreviousPost = fileForPost.getFileName().toString().getBytes();
+		}
+
+		updateHead(pointerToPreviousPost, topicName);
+	}
+
+	@Override
+	public Topic readTopic(String topicName) throws FileSystemException {
+		final List<Post> loadedPosts = new LinkedList<>();
+
+		for (final Path postFile : getPostFiles(topicName))
+			loadedPosts.add(DirectoryTopicFileSystem.readPost(postFile));
+
+		return new Topic(topicName, loadedPosts);
+	}
+
+	/**
+	 * Returns the files of the Posts of a Topic in the order in which the Posts
+	 * were written.
+	 *
+	 * @param topicName the topic's name
+	 *
+	 * @return the files of the Posts
+	 *
+	 * @throws FileSystemException if an I/O error occurs while interacting with the
+	 *                             file system
+	 */
+	List<Path> getPostFiles(String topicName) throws FileSystemException {
+		final LinkedList<Path> postFiles = new LinkedList<>();
+
+		// the HEAD points to the most recent Post and every Post to the one before it
+		final Path firstPost = getFirstPost(topicName);
+		for (Path postFile = firstPost; postFile != null; postFile = getNextFile(postFile,
+		        topicName))
+			postFiles.addFirst(postFile);
+
+		return postFiles;
+	}
+
+	/**
+	 * Reads the Post stored in a file.
+	 *
+	 * @param postFile the file of the Post
+	 *
+	 * @return the Post
+	 *
+	 * @throws FileSystemException if an I/O error occurs while interacting with the
+	 *                             file system
+	 *
+	 * @see #getPostFiles(String)
+	 */
+	static Post readPost(Path postFile) throws FileSystemException {
+		final String   filename = postFile.getFileName().toString();
+		final PostInfo postInfo = DirectoryTopicFileSystem.getPostInfoFromFileName(filename);
+		return DirectoryTopicFileSystem.readPost(postInfo, postFile);
+	}
+
+	/**
+	 * Returns whether a Topic is stored in this file system's format, that is
+	 * whether its directory has a {@code HEAD} file.
+	 *
+	 * @param topicName the topic's name
+	 *
+	 * @return {@code true} if the Topic is stored in this format, {@code false}
+	 *         otherwise
+	 */
+	boolean holds(String topicName) {
+		return Files.exists(getHead(topicName));
+	}
+
+	/**
+	 * Deletes the {@code HEAD} file of a Topic, after which the Topic is no longer
+	 * stored in this file system's format.
+	 *
+	 * @param topicName the topic's name
+	 *
+	 * @throws FileSystemException if an I/O error occurs while interacting with the
+	 *                             file system
+	 */
+	void deleteHead(String topicName) throws FileSystemException {
+		final Path head = getHead(topicName);
+		try {
+			Files.deleteIfExists(head);
+		} catch (IOException e) {
+			throw new FileSystemException(head, e);
+		}
+	}
+
+	/**
+	 * Deletes the files of the Posts of a Topic, and the files that point to them,
+	 * leaving any other files of its directory.
+	 *
+	 * @param topicName the topic's name
+	 *
+	 * @throws FileSystemException if an I/O error occurs while interacting with the
+	 *                             file system
+	 */
+	void deletePostFiles(String topicName) throws FileSystemException {
+		final Path topicDirectory = resolveRoot(topicName);
+
+		Path currentPath = topicDirectory;
+		try (Stream<Path> directoryStream = Files.list(currentPath)) {
+			for (Iterator<Path> iter = directoryStream.iterator(); iter.hasNext();) {
+				currentPath = iter.next();
+
+				final String fileName     = currentPath.getFileName().toString();
+				final String postFileName = fileName.replaceFirst(
+				        Pattern.quote(DirectoryTopicFileSystem.TOPIC_META_EXTENSION) + "$", "");
+
+				if (DirectoryTopicFileSystem.PATTERN.matcher(postFileName).matches())
+					Files.delete(currentPath);
+			}
+		} catch (IOException e) {
+			throw new FileSystemException(currentPath, e);
+		}
+	}
+
+	// ==================== HELPERS FOR PATH ====================
+
+	private Path getRoot() {
+		return topicsRootDirectory.toPath();
+	}
+
+	private Path resolveRoot(String topicName) {
+		return DirectoryTopicFileSystem.resolve(getRoot(), topicName);
+	}
+
+	private static Path resolve(Path directory, String filename) {
+		return directory.resolve(filename);
+	}
+
+	// ==================== HELPERS FOR SAVE POST ====================
+
+	private Path writePost0(Post post, String topicName) throws FileSystemException {
+		final String fileName = DirectoryTopicFileSystem
+		        .getFileNameFromPostInfo(post.getPostInfo());
+
+		final Path topicDirectory = resolveRoot(topicName);
+		final Path pathForPost    = DirectoryTopicFileSystem.resolve(topicDirectory, fileName);
+
+		DirectoryTopicFileSystem.create(pathForPost);
+		DirectoryTopicFileSystem.write(pathForPost, post.getBuffer());
+
+		return pathForPost;
+	}
+
+	private void writePointerForPost(Post post, byte[] pointerToPreviousPost, String topicName)
+	        throws FileSystemException {
+		final String fileName = DirectoryTopicFileSystem
+		        .getFileNameFromPostInfo(post.getPostInfo());
+
+		final Path   topicDirectory    = resolveRoot(topicName);
+		final String metaFileName      = fileName + DirectoryTopicFileSystem.TOPIC_META_EXTENSION;
+		final Path   pointerToNextPost = DirectoryTopicFileSystem.resolve(topicDirectory,
+		        metaFileName);
+		DirectoryTopicFileSystem.create(pointerToNextPost);
+		DirectoryTopicFileSystem.write(pointerToNextPost, ByteBuffer.wrap(pointerToPreviousPost));
+	}
+
+	// the new HEAD is written to a temporary file which then replaces the HEAD atomically
+	private void updateHead(byte[] newHeadContents, String topicName) throws FileSystemException {
+		final Path topicDirectory = resolveRoot(topicName);
+		final Path head           = getHead(topicName);
+		final Path newHead        = DirectoryTopicFileSystem.resolve(topicDirectory,
+		        DirectoryTopicFileSystem.HEAD + DirectoryTopicFileSystem.TEMP_EXTENSION);
+
+		DirectoryTopicFileSystem.write(newHead, ByteBuffer.wrap(newHeadContents));
+		try {
+			Files.move(newHead, head, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new FileSystemException(head, e);
+		}
+	}
+
+	private Path getHead(String topicName) {
+		final Path topicDirectory = resolveRoot(topicName);
+		return DirectoryTopicFileSystem.resolve(topicDirectory, DirectoryTopicFileSystem.HEAD);
+	}
+
+	// ==================== HELPERS FOR LOAD POSTS FOR TOPIC ====================
+
+	// returns null if topic has no posts
+	private Path getFirstPost(String topicName) throws FileSystemException {
+		final Path   head         = getHead(topicName);
+		final byte[] headContents = DirectoryTopicFileSystem.read(head);
+
+		if (headContents.length == 0)
+			return null;
+
+		final Path   topicDirectory = resolveRoot(topicName);
+		final String firstPostFile  = new String(headContents);
+		return DirectoryTopicFileSystem.resolve(topicDirectory, firstPostFile);
+	}
+
+	// returns null if there is no next post
+	private Path getNextFile(Path postFile, String topicName) throws FileSystemException {
+		final Path pointerToNextPost = new File(
+				postFile.toString() + DirectoryTopicFileSystem.TOPIC_META_EXTENSION).toPath();
+
+		final byte[] pointerToNextPostContents = DirectoryTopicFileSystem.read(pointerToNextPost);
+
+		if (pointerToNextPostContents.length == 0)
+			return null;
+
+		final Path   topicDirectory = resolveRoot(topicName);
+		final String fileName       = new String(pointerToNextPostContents);
+		return DirectoryTopicFileSystem.resolve(topicDirectory, fileName);
+	}
+
+	// the data of the Post is mapped from its file and is not loaded on the heap
+	private static Post readPost(PostInfo postInfo, Path postFile) throws FileSystemException {
+		try (FileChannel channel = FileChannel.open(postFile, StandardOpenOption.READ)) {
+			return new Post(channel.map(MapMode.READ_ONLY, 0, channel.size()), postInfo);
+		} catch (IOException e) {
+			throw new FileSystemException(postFile, e);
+		}
+	}
+
+	// ==================== READ/WRITE ====================
+
+	private static void create(Path pathForPost) throws FileSystemException {
+		try {
+		Files.createFile(pathForPost);
+		} catch (IOException e) {
+			throw new FileSystemException(pathForPost, e);
+		}
+	}
+
+	private static byte[] read(Path head) throws FileSystemException {
+		try {
+			return Files.readAllBytes(head);
+		} catch (IOException e) {
+			throw new FileSystemException(head, e);
+		}
+	}
+
+	// the data is forced to the disk before this method returns
+	private static void write(Path path, ByteBuffer data) throws FileSystemException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+		        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (data.hasRemaining())
+				channel.write(data);
+
+			channel.force(true);
+		} catch (IOException e) {
+			throw new FileSystemException(path, e);
+		}
+	}
+
+	// ==================== POST INFO ====================
+
+	private static String getFileNameFromPostInfo(PostInfo postInfo) {
+		final long   postId        = postInfo.getId();
+		final long   offset        = postInfo.getOffset();
+		final String posterId      = postInfo.getPosterName();
+		final String fileExtension = postInfo.getFileExtension();
+
+		if (offset == PostInfo.NO_OFFSET)
+			return String.format(DirectoryTopicFileSystem.FORMAT, postId, posterId, fileExtension);
+
+		return String.format(DirectoryTopicFileSystem.FORMAT_WITH_OFFSET, postId, offset, posterId,
+		        fileExtension);
+	}
+
+	private static PostInfo getPostInfoFromFileName(String fileName) {
+		final Matcher m = DirectoryTopicFileSystem.PATTERN.matcher(fileName);
+
+		if (m.matches()) {
+			final long   postId        = Long.parseLong(m.group("postId"));
+			final String offsetGroup   = m.group("offset");
+			final long   offset        = offsetGroup == null ? PostInfo.NO_OFFSET
+			        : Long.parseLong(offsetGroup);
+			final String posterId      = m.group("posterName");
+			final String fileExtension = m.group("extension");
+
+			return new PostInfo(posterId, fileExtension, postId, offset);
+		}
+
+		throw new IllegalArgumentException("Bad filename: " + fileName);
+	}
+}
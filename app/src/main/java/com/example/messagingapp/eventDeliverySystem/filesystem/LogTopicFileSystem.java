@@ -0,0 +1,742 @@
+package com.example.messagingapp.eventDeliverySystem.filesystem;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Post;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Topic;
+
+/**
+ * Manages Topics that are saved in directories in the file system, in the
+ * {@link TopicFileSystem.Format#LOG LOG} format.
+ * <p>
+ * The Posts of each Topic are appended to a log which is split into segments:
+ * files that are filled one after the other and are named after the index of
+ * their first Post. Every record holds the PostInfo and the data of a Post. The
+ * length of a record is written after the rest of the record, so a record
+ * whose write was interrupted is discarded, and a record length of 0 marks the
+ * end of the records of a segment.
+ * <p>
+ * Once a segment grows past {@value #SEGMENT_SIZE} bytes it is sealed: a footer
+ * with the position of each of its records, their number and a magic number is
+ * appended to it, so that its Posts can be found without scanning it, and a new
+ * segment is started. Only the last segment of a Topic is ever appended to.
+ * <p>
+ * Posts are written in batches with a group commit: the Posts of a batch are
+ * appended to the same segment, starting a new one if they don't fit, and they
+ * are forced to the disk with a single commit, which is writing the length of
+ * the first record of the batch.
+ * <p>
+ * Segments are memory-mapped when their Posts are read, and the data of every
+ * Post read is a read-only slice of the mapping rather than a copy on the heap.
+ * <p>
+ * Topics in the {@link TopicFileSystem.Format#DIRECTORY DIRECTORY} format are
+ * migrated in place when the file system is opened. Their Posts are appended to
+ * a new log in the same directory and their {@code HEAD} file is deleted only
+ * once the log is complete, so a migration that is interrupted starts over the
+ * next time.
+ *
+ * @author Alex Mandelias
+ */
+final class LogTopicFileSystem implements TopicFileSystem {
+
+	private static final int    SEGMENT_SIZE   = 4 * 1024 * 1024;
+	private static final String SEGMENT_FORMAT = "%020d.seg";
+	private static final String SEGMENT_SUFFIX = ".seg";
+
+	private static final long FOOTER_MAGIC        = 0x4D41_4C4F_4746_5452L;
+	private static final int  FOOTER_TRAILER_SIZE = Integer.BYTES + Long.BYTES;
+
+	private final File topicsRootDirectory;
+
+	// the segment to which the next Post of each Topic is appended, found when first needed
+	private transient Map<String, ActiveSegment> activeSegmentPerTopic;
+
+	/**
+	 * Constructs a new Topic File System for a given root directory, migrating
+	 * the Topics stored in the {@link TopicFileSystem.Format#DIRECTORY DIRECTORY}
+	 * format.
+	 *
+	 * @param topicsRootDirectory the root directory of the new file system whose
+	 *                            sub-directories correspond to different Topics
+	 *
+	 * @throws FileSystemException if an I/O error occurs while migrating a Topic
+	 */
+	public LogTopicFileSystem(Path topicsRootDirectory) throws FileSystemException {
+		this.topicsRootDirectory = topicsRootDirectory.toFile();
+		activeSegmentPerTopic = new HashMap<>();
+
+		final DirectoryTopicFileSystem directoryFileSystem = new DirectoryTopicFileSystem(
+		        topicsRootDirectory);
+
+		for (Iterator<String> iter = getTopicNames().iterator(); iter.hasNext();) {
+			final String topicName = iter.next();
+			if (directoryFileSystem.holds(topicName))
+				migrate(directoryFileSystem, topicName);
+		}
+	}
+
+	@Override
+	public Stream<String> getTopicNames() throws FileSystemException {
+		try {
+			return Files.list(getRoot())
+			        .filter(Files::isDirectory)
+			        .map(path -> path.getFileName().toString());
+		} catch (IOException e) {
+			throw new FileSystemException(getRoot(), e);
+		}
+	}
+
+	@Override
+	public synchronized void createTopic(String topicName) throws FileSystemException {
+		final Path topicDirectory = resolveRoot(topicName);
+		try {
+			Files.createDirectory(topicDirectory);
+		} catch (IOException e) {
+			throw new FileSystemException(topicDirectory, e);
+		}
+	}
+
+	@Override
+	public synchronized void deleteTopic(String topicName) throws FileSystemException {
+		getActiveSegments().remove(topicName);
+
+		final Path topicDirectory = resolveRoot(topicName);
+
+		Path currentPath = topicDirectory;
+		try (Stream<Path> directoryStream = Files.list(currentPath)) {
+			for (Iterator<Path> iter = directoryStream.iterator(); iter.hasNext();) {
+				currentPath = iter.next();
+				Files.delete(currentPath);
+			}
+
+			currentPath = topicDirectory;
+			Files.delete(currentPath);
+		} catch (IOException e) {
+			throw new FileSystemException(currentPath, e);
+		}
+	}
+
+	@Override
+	public synchronized void writePosts(List<Post> posts, String topicName)
+	        throws FileSystemException {
+		if (posts.isEmpty())
+			return;
+
+		long dataLength = 0;
+		for (final Post post : posts)
+			dataLength += post.getLength();
+
+		ActiveSegment segment = getActiveSegment(topicName);
+		try {
+			// all the Posts are appended to the same segment so that they are committed together
+			if ((segment.end > 0) && ((segment.end + dataLength) > LogTopicFileSystem.SEGMENT_SIZE))
+				segment = sealActiveSegment(topicName, segment);
+
+			segment.append(posts);
+
+			if (segment.end >= LogTopicFileSystem.SEGMENT_SIZE)
+				sealActiveSegment(topicName, segment);
+		} catch (IOException e) {
+			throw new FileSystemException(segment.path, e);
+		}
+	}
+
+	@Override
+	public synchronized Topic readTopic(String topicName) throws FileSystemException {
+		final List<Post> loadedPosts = new ArrayList<>();
+
+		for (final Path segment : getSegments(topicName)) {
+			try {
+				LogTopicFileSystem.readSegment(segment, loadedPosts);
+			} catch (IOException e) {
+				throw new FileSystemException(segment, e);
+			}
+		}
+
+		return new Topic(topicName, loadedPosts);
+	}
+
+	@Override
+	public synchronized Topic openTopic(String topicName) throws FileSystemException {
+		final long postCount = getActiveSegment(topicName).nextIndex();
+		if (postCount > Integer.MAX_VALUE)
+			throw new FileSystemException(resolveRoot(topicName),
+			        new IOException("Topic has too many Posts to be opened: " + postCount));
+
+		final PostInfo lastPostInfo = postCount == 0 ? null
+		        : readPostInfo(topicName, (int) postCount - 1);
+
+		return new Topic(topicName, new StoredPosts(this, topicName), (int) postCount,
+		        lastPostInfo);
+	}
+
+	/**
+	 * Reads some consecutive Posts of a Topic, starting from the record of the
+	 * first one, which is found through the footer of its segment.
+	 *
+	 * @param topicName the topic's name
+	 * @param fromIndex the index of the first Post to read
+	 * @param count     the number of Posts to read
+	 *
+	 * @return the Posts, sorted from earliest to latest
+	 *
+	 * @throws FileSystemException if an I/O error occurs while interacting with the
+	 *                             file system or if the Topic has fewer Posts
+	 */
+	synchronized List<Post> readPosts(String topicName, int fromIndex, int count)
+	        throws FileSystemException {
+		final List<Post> posts    = new ArrayList<>(count);
+		final List<Path> segments = getSegments(topicName);
+
+		for (int i = segmentIndexFor(segments, fromIndex); (i < segments.size())
+		        && (posts.size() < count); i++) {
+			final Path segment = segments.get(i);
+			final long index   = (long) fromIndex + posts.size();
+
+			try (FileChannel channel = FileChannel.open(segment, READ)) {
+				final ByteBuffer records = LogTopicFileSystem.map(channel);
+				records.position((int) recordPosition(topicName, segment, channel, index));
+
+				while (posts.size() < count) {
+					final Post post = LogTopicFileSystem.readRecord(records);
+					if (post == null)
+						break;
+
+					posts.add(post);
+				}
+			} catch (IOException e) {
+				throw new FileSystemException(segment, e);
+			}
+		}
+
+		if (posts.size() < count)
+			throw new FileSystemException(resolveRoot(topicName), new EOFException(String.format(
+			        "Found %d of the %d Posts from index %d", posts.size(), count, fromIndex)));
+
+		return posts;
+	}
+
+	// ==================== HELPERS FOR PATH ====================
+
+	private Path getRoot() {
+		return topicsRootDirectory.toPath();
+	}
+
+	private Path resolveRoot(String topicName) {
+		return getRoot().resolve(topicName);
+	}
+
+	private Path segmentPath(String topicName, long firstIndex) {
+		return resolveRoot(topicName)
+		        .resolve(String.format(LogTopicFileSystem.SEGMENT_FORMAT, firstIndex));
+	}
+
+	// sorted by the index of their first Post, since their names are padded
+	private List<Path> getSegments(String topicName) throws FileSystemException {
+		final Path topicDirectory = resolveRoot(topicName);
+
+		final List<Path> segments = new ArrayList<>();
+		try (Stream<Path> directoryStream = Files.list(topicDirectory)) {
+			for (Iterator<Path> iter = directoryStream.iterator(); iter.hasNext();) {
+				final Path path = iter.next();
+				if (path.getFileName().toString().endsWith(LogTopicFileSystem.SEGMENT_SUFFIX))
+					segments.add(path);
+			}
+		} catch (IOException e) {
+			throw new FileSystemException(topicDirectory, e);
+		}
+
+		Collections.sort(segments);
+		return segments;
+	}
+
+	private static long firstIndexOf(Path segment) {
+		final String fileName = segment.getFileName().toString();
+		return Long.parseLong(
+		        fileName.substring(0, fileName.length() - LogTopicFileSystem.SEGMENT_SUFFIX.length()));
+	}
+
+	// ==================== HELPERS FOR SAVE POST ====================
+
+	private Map<String, ActiveSegment> getActiveSegments() {
+		// the segments are not serialized along with the file system
+		if (activeSegmentPerTopic == null)
+			activeSegmentPerTopic = new HashMap<>();
+
+		return activeSegmentPerTopic;
+	}
+
+	private ActiveSegment getActiveSegment(String topicName) throws FileSystemException {
+		ActiveSegment segment = getActiveSegments().get(topicName);
+		if (segment != null)
+			return segment;
+
+		final List<Path> segments = getSegments(topicName);
+		if (segments.isEmpty()) {
+			segment = new ActiveSegment(segmentPath(topicName, 0));
+		} else {
+			final Path lastSegment = segments.get(segments.size() - 1);
+			try {
+				final int postCount = LogTopicFileSystem.readFooterPostCount(lastSegment);
+				if (postCount == -1)
+					segment = ActiveSegment.open(lastSegment);
+				else
+					segment = new ActiveSegment(segmentPath(topicName,
+					        LogTopicFileSystem.firstIndexOf(lastSegment) + postCount));
+			} catch (IOException e) {
+				throw new FileSystemException(lastSegment, e);
+			}
+		}
+
+		getActiveSegments().put(topicName, segment);
+		return segment;
+	}
+
+	private ActiveSegment sealActiveSegment(String topicName, ActiveSegment segment)
+	        throws IOException {
+		segment.seal();
+
+		final ActiveSegment nextSegment = new ActiveSegment(
+		        segmentPath(topicName, segment.nextIndex()));
+		getActiveSegments().put(topicName, nextSegment);
+		return nextSegment;
+	}
+
+	// ==================== HELPERS FOR LOAD POSTS FOR TOPIC ====================
+
+	private PostInfo readPostInfo(String topicName, int index) throws FileSystemException {
+		final List<Path> segments = getSegments(topicName);
+		final Path       segment  = segments.get(segmentIndexFor(segments, index));
+
+		try (FileChannel channel = FileChannel.open(segment, READ)) {
+			final ByteBuffer records = LogTopicFileSystem.map(channel);
+			records.position((int) recordPosition(topicName, segment, channel, index));
+
+			final PostInfo postInfo = LogTopicFileSystem.readRecordInfo(records);
+			if (postInfo == null)
+				throw new EOFException("No record for the Post with index " + index);
+
+			return postInfo;
+		} catch (IOException e) {
+			throw new FileSystemException(segment, e);
+		}
+	}
+
+	// the last segment whose first Post doesn't come after the Post with the index
+	private static int segmentIndexFor(List<Path> segments, long index) {
+		int i = segments.size() - 1;
+		while ((i > 0) && (LogTopicFileSystem.firstIndexOf(segments.get(i)) > index))
+			i--;
+
+		return i;
+	}
+
+	// the position of the record of a Post in its segment, without scanning the segment
+	private long recordPosition(String topicName, Path segment, FileChannel channel, long index)
+	        throws IOException {
+		final long indexInSegment = index - LogTopicFileSystem.firstIndexOf(segment);
+		if (indexInSegment == 0)
+			return 0;
+
+		final ActiveSegment activeSegment = getActiveSegment(topicName);
+		if (segment.equals(activeSegment.path))
+			return activeSegment.positions.get((int) indexInSegment);
+
+		final int postCount = LogTopicFileSystem.readFooterPostCount(channel);
+		if ((postCount == -1) || (indexInSegment >= postCount))
+			throw new IOException("No record for the Post with index " + index);
+
+		final long footerPosition = channel.size() - LogTopicFileSystem.FOOTER_TRAILER_SIZE
+		        - ((postCount - indexInSegment) * Long.BYTES);
+
+		final ByteBuffer position = ByteBuffer.allocate(Long.BYTES);
+		LogTopicFileSystem.readFully(channel, position, footerPosition);
+		position.flip();
+		return position.getLong();
+	}
+
+	private static void readSegment(Path segment, List<Post> posts) throws IOException {
+		try (FileChannel channel = FileChannel.open(segment, READ)) {
+			final int        postCount = LogTopicFileSystem.readFooterPostCount(channel);
+			final ByteBuffer records   = LogTopicFileSystem.map(channel);
+
+			for (int i = 0; (postCount == -1) || (i < postCount); i++) {
+				final Post post = LogTopicFileSystem.readRecord(records);
+				if (post == null)
+					break;
+
+				posts.add(post);
+			}
+		}
+	}
+
+	// the whole segment, whose pages are read from the file only when they are accessed
+	private static ByteBuffer map(FileChannel channel) throws IOException {
+		final long size = channel.size();
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Segment is too large to be mapped: " + size);
+
+		return channel.map(MapMode.READ_ONLY, 0, size);
+	}
+
+	// the data of the Post is a slice of the mapped segment and is not copied
+	// returns null if there are no more complete records
+	private static Post readRecord(ByteBuffer records) throws IOException {
+		final PostInfo postInfo = LogTopicFileSystem.readRecordInfo(records);
+		if (postInfo == null)
+			return null;
+
+		final int        dataLength = records.getInt();
+		final ByteBuffer data       = records.duplicate();
+		data.limit(data.position() + dataLength);
+		records.position(data.limit());
+
+		return new Post(data, postInfo);
+	}
+
+	// reads a record up to the length of its data
+	// returns null if there are no more complete records
+	private static PostInfo readRecordInfo(ByteBuffer records) throws IOException {
+		if (records.remaining() < Integer.BYTES)
+			return null;
+
+		final int length = records.getInt();
+		if ((length <= 0) || (length > records.remaining()))
+			return null;
+
+		final long   postId        = records.getLong();
+		final long   offset        = records.getLong();
+		final String posterName    = LogTopicFileSystem.readUTF(records);
+		final String fileExtension = LogTopicFileSystem.readUTF(records);
+
+		return new PostInfo(posterName, fileExtension, postId, offset);
+	}
+
+	private static String readUTF(ByteBuffer records) throws IOException {
+		final int    utfLength = Short.BYTES + (records.getShort(records.position()) & 0xFFFF);
+		final byte[] utf       = new byte[utfLength];
+		records.get(utf);
+
+		return new DataInputStream(new ByteArrayInputStream(utf)).readUTF();
+	}
+
+	// returns -1 if the segment is not sealed
+	private static int readFooterPostCount(Path segment) throws IOException {
+		try (FileChannel channel = FileChannel.open(segment, READ)) {
+			return LogTopicFileSystem.readFooterPostCount(channel);
+		}
+	}
+
+	private static int readFooterPostCount(FileChannel channel) throws IOException {
+		final long size = channel.size();
+		if (size < LogTopicFileSystem.FOOTER_TRAILER_SIZE)
+			return -1;
+
+		final ByteBuffer trailer = ByteBuffer.allocate(LogTopicFileSystem.FOOTER_TRAILER_SIZE);
+		LogTopicFileSystem.readFully(channel, trailer, size - trailer.capacity());
+		trailer.flip();
+
+		final int  postCount = trailer.getInt();
+		final long magic     = trailer.getLong();
+
+		final long footerSize = Integer.BYTES + ((long) postCount * Long.BYTES)
+		        + LogTopicFileSystem.FOOTER_TRAILER_SIZE;
+
+		if ((magic != LogTopicFileSystem.FOOTER_MAGIC) || (postCount < 0) || (footerSize > size))
+			return -1;
+
+		return postCount;
+	}
+
+	// ==================== READ/WRITE ====================
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+	        throws IOException {
+		while (buffer.hasRemaining()) {
+			final int read = channel.read(buffer, position);
+			if (read == -1)
+				throw new EOFException();
+
+			position += read;
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+	        throws IOException {
+		while (buffer.hasRemaining())
+			position += channel.write(buffer, position);
+	}
+
+	// ==================== MIGRATION ====================
+
+	private void migrate(DirectoryTopicFileSystem directoryFileSystem, String topicName)
+	        throws FileSystemException {
+
+		// the segments of a migration that was interrupted are incomplete
+		getActiveSegments().remove(topicName);
+		for (final Path segment : getSegments(topicName)) {
+			try {
+				Files.delete(segment);
+			} catch (IOException e) {
+				throw new FileSystemException(segment, e);
+			}
+		}
+
+		// the Posts are committed a segment at a time
+		final List<Post> posts      = new ArrayList<>();
+		long             dataLength = 0;
+		for (final Path postFile : directoryFileSystem.getPostFiles(topicName)) {
+			final Post post = DirectoryTopicFileSystem.readPost(postFile);
+
+			dataLength += post.getLength();
+			if (!posts.isEmpty() && (dataLength > LogTopicFileSystem.SEGMENT_SIZE)) {
+				writePosts(posts, topicName);
+				posts.clear();
+				dataLength = post.getLength();
+			}
+
+			posts.add(post);
+		}
+
+		writePosts(posts, topicName);
+
+		// the Topic is in the LOG format as soon as its HEAD is deleted
+		directoryFileSystem.deleteHead(topicName);
+		directoryFileSystem.deletePostFiles(topicName);
+	}
+
+	/**
+	 * The Posts of a Topic stored in a log, which are read a page at a time.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private static final class StoredPosts implements Topic.PostStore {
+
+		private static final long serialVersionUID = 1L;
+
+		private final LogTopicFileSystem fileSystem;
+		private final String             topicName;
+
+		StoredPosts(LogTopicFileSystem fileSystem, String topicName) {
+			this.fileSystem = fileSystem;
+			this.topicName = topicName;
+		}
+
+		@Override
+		public List<Post> readPosts(int fromIndex, int count) throws FileSystemException {
+			return fileSystem.readPosts(topicName, fromIndex, count);
+		}
+	}
+
+	/**
+	 * The last segment of the log of a Topic, to which its Posts are appended.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private static final class ActiveSegment {
+
+		private final Path       path;
+		private final long       firstIndex;
+		private final List<Long> positions;
+
+		private long end;
+
+		// a new, empty, segment
+		ActiveSegment(Path path) {
+			this(path, new ArrayList<>(), 0);
+		}
+
+		private ActiveSegment(Path path, List<Long> positions, long end) {
+			this.path = path;
+			firstIndex = LogTopicFileSystem.firstIndexOf(path);
+			this.positions = positions;
+			this.end = end;
+		}
+
+		/**
+		 * Opens an existing segment that is not sealed, discarding any incomplete
+		 * record at its end.
+		 *
+		 * @param path the path of the segment
+		 *
+		 * @return the segment
+		 *
+		 * @throws IOException if an I/O error occurs while scanning the segment
+		 */
+		static ActiveSegment open(Path path) throws IOException {
+			try (FileChannel channel = FileChannel.open(path, READ, WRITE)) {
+				final List<Long> positions = new ArrayList<>();
+				final long       size      = channel.size();
+				final ByteBuffer length    = ByteBuffer.allocate(Integer.BYTES);
+
+				long position = 0;
+				while (position + Integer.BYTES <= size) {
+					length.clear();
+					LogTopicFileSystem.readFully(channel, length, position);
+					length.flip();
+
+					final int recordLength = length.getInt();
+					if ((recordLength <= 0) || (position + Integer.BYTES + recordLength > size))
+						break;
+
+					positions.add(position);
+					position += Integer.BYTES + recordLength;
+				}
+
+				channel.truncate(position);
+				return new ActiveSegment(path, positions, position);
+			}
+		}
+
+		/**
+		 * Returns the index of the Post that follows the last one of this segment.
+		 *
+		 * @return the index
+		 */
+		long nextIndex() {
+			return firstIndex + positions.size();
+		}
+
+		/**
+		 * Appends some Posts to this segment with a group commit. The record of a
+		 * Post is complete only once its length has been written, after the rest of
+		 * it, and no record after an incomplete one is read. All the records are
+		 * written without the length of the first one and forced to the disk, and
+		 * only then is that length written and forced, so that after a crash either
+		 * all or none of the Posts are found in this segment.
+		 *
+		 * @param posts the Posts
+		 *
+		 * @throws IOException if an I/O error occurs while writing the Posts, in
+		 *                     which case none of them are appended
+		 */
+		void append(List<Post> posts) throws IOException {
+			final List<Long> newPositions = new ArrayList<>(posts.size());
+
+			try (FileChannel channel = FileChannel.open(path, CREATE, WRITE)) {
+				try {
+					long position          = end;
+					int  firstRecordLength = 0;
+					for (final Post post : posts) {
+						final int recordLength = ActiveSegment.writeRecord(channel, post, position);
+						if (newPositions.isEmpty())
+							firstRecordLength = recordLength;
+						else
+							ActiveSegment.writeRecordLength(channel, recordLength, position);
+
+						newPositions.add(position);
+						position += Integer.BYTES + recordLength;
+					}
+
+					channel.force(false);
+					ActiveSegment.writeRecordLength(channel, firstRecordLength, end);
+					channel.force(false);
+
+					positions.addAll(newPositions);
+					end = position;
+				} catch (final IOException e) {
+					// the records after the end must not be found by the next append
+					try {
+						channel.truncate(end);
+					} catch (final IOException e1) {
+						e.addSuppressed(e1);
+					}
+
+					throw e;
+				}
+			}
+		}
+
+		// writes all of the record except its length and returns the length
+		private static int writeRecord(FileChannel channel, Post post, long position)
+		        throws IOException {
+			final PostInfo postInfo   = post.getPostInfo();
+			final long     dataLength = post.getLength();
+
+			final ByteArrayOutputStream bytes  = new ByteArrayOutputStream();
+			final DataOutputStream      header = new DataOutputStream(bytes);
+			header.writeInt(0); // the length of the record, written last
+			header.writeLong(postInfo.getId());
+			header.writeLong(postInfo.getOffset());
+			header.writeUTF(postInfo.getPosterName());
+			header.writeUTF(postInfo.getFileExtension());
+
+			final long recordLength = bytes.size() + dataLength;
+			if (recordLength > Integer.MAX_VALUE)
+				throw new IOException("Post is too large to be stored: " + postInfo);
+
+			header.writeInt((int) dataLength);
+
+			try (ReadableByteChannel data = post.openChannel()) {
+				LogTopicFileSystem.writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()),
+				        position);
+				position += bytes.size();
+
+				for (long remaining = dataLength; remaining > 0;) {
+					final long transferred = channel.transferFrom(data, position, remaining);
+					if (transferred == 0)
+						throw new EOFException("The data of the Post ended early: " + postInfo);
+
+					position += transferred;
+					remaining -= transferred;
+				}
+			}
+
+			return (int) recordLength;
+		}
+
+		private static void writeRecordLength(FileChannel channel, int recordLength,
+		        long position) throws IOException {
+			final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+			length.putInt(recordLength).flip();
+			LogTopicFileSystem.writeFully(channel, length, position);
+		}
+
+		/**
+		 * Appends the footer to this segment, after which no more Posts are appended
+		 * to it.
+		 *
+		 * @throws IOException if an I/O error occurs while writing the footer
+		 */
+		void seal() throws IOException {
+			final ByteBuffer footer = ByteBuffer.allocate(Integer.BYTES
+			        + (positions.size() * Long.BYTES) + LogTopicFileSystem.FOOTER_TRAILER_SIZE);
+
+			footer.putInt(0); // the end of the records
+			for (final long position : positions)
+				footer.putLong(position);
+			footer.putInt(positions.size());
+			footer.putLong(LogTopicFileSystem.FOOTER_MAGIC); // written last
+			footer.flip();
+
+			try (FileChannel channel = FileChannel.open(path, WRITE)) {
+				LogTopicFileSystem.writeFully(channel, footer, end);
+				channel.force(true);
+			}
+		}
+	}
+}
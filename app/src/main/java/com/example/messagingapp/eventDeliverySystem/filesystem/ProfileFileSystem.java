@@ -6,27 +6,38 @@ import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.stream.Stream;
 
 import com.example.messagingapp.eventDeliverySystem.datastructures.Post;
-import com.example.messagingapp.eventDeliverySystem.datastructures.Topic;
 
 /**
  * Manages Profiles that are saved in directories in the file system.
+ * <p>
+ * Posts may be saved in the background, in which case they are written by a
+ * dedicated Thread, which is started when first needed. Closing the file system
+ * waits until every Post saved in the background has been written.
  *
  * @author Alex Mandelias
  */
-public class ProfileFileSystem implements Serializable {
+public class ProfileFileSystem implements Serializable, AutoCloseable {
 
-	private final File profilesRootDirectory;
+	private final File                         profilesRootDirectory;
+	private final TopicFileSystem.Format       topicFormat;
 	private final Map<String, TopicFileSystem> topicFileSystemMap;
 
 	private String currentProfileName;
 
+	// the queue of the Posts saved in the background, created when first needed
+	private transient WriteBehindQueue writeBehindQueue;
+
 	/**
-	 * Creates a new Profile File System for the specified root directory.
+	 * Creates a new Profile File System for the specified root directory, whose
+	 * Topics are stored in the {@link TopicFileSystem.Format#LOG LOG} format.
+	 * Topics stored in another format are migrated to it.
 	 *
 	 * @param profilesRootDirectory the root directory of the new file system whose
 	 *                              sub-directories correspond to different Profiles
@@ -35,13 +46,32 @@ public class ProfileFileSystem implements Serializable {
 	 *                             file system
 	 */
 	public ProfileFileSystem(Path profilesRootDirectory) throws FileSystemException {
+		this(profilesRootDirectory, TopicFileSystem.Format.LOG);
+	}
+
+	/**
+	 * Creates a new Profile File System for the specified root directory, whose
+	 * Topics are stored in the specified format.
+	 *
+	 * @param profilesRootDirectory the root directory of the new file system whose
+	 *                              sub-directories correspond to different Profiles
+	 * @param topicFormat           the format in which the Topics of every Profile
+	 *                              are stored
+	 *
+	 * @throws FileSystemException if an I/O error occurs while interacting with the
+	 *                             file system
+	 */
+	public ProfileFileSystem(Path profilesRootDirectory, TopicFileSystem.Format topicFormat)
+	        throws FileSystemException {
 		this.profilesRootDirectory = profilesRootDirectory.toFile();
+		this.topicFormat = topicFormat;
 		topicFileSystemMap = new HashMap<>();
 
-		getProfileNames().forEach(profileName -> {
-			final TopicFileSystem tfs = new TopicFileSystem(getTopicsDirectory(profileName));
+		for (Iterator<String> iter = getProfileNames().iterator(); iter.hasNext();) {
+			final String          profileName = iter.next();
+			final TopicFileSystem tfs         = topicFormat.open(getTopicsDirectory(profileName));
 			topicFileSystemMap.put(profileName, tfs);
-		});
+		}
 	}
 
 	/**
@@ -79,7 +109,7 @@ public class ProfileFileSystem implements Serializable {
 			throw new FileSystemException(topicsDirectory, e);
 		}
 
-		topicFileSystemMap.put(profileName, new TopicFileSystem(topicsDirectory));
+		topicFileSystemMap.put(profileName, topicFormat.open(topicsDirectory));
 
 		changeProfile(profileName);
 
@@ -89,6 +119,9 @@ public class ProfileFileSystem implements Serializable {
 	/**
 	 * Reads a Profile from this File System and returns it as a Profile object.
 	 * After this method returns, this file system will operate on the new Profile.
+	 * <p>
+	 * The Posts saved in the background are written before the Profile is read.
+	 * The Posts of the Profile's Topics are not read until they are accessed.
 	 *
 	 * @param profileName the id of the Profile to read
 	 *
@@ -98,13 +131,14 @@ public class ProfileFileSystem implements Serializable {
 	 *                             file system
 	 */
 	public Profile loadProfile(String profileName) throws FileSystemException {
+		flush();
 		changeProfile(profileName);
 
 		final Profile profile = new Profile(profileName);
 
 		final TopicFileSystem tfs = getTopicFileSystemForCurrentUser();
-		for (final Topic topic : tfs.readAllTopics())
-			profile.addTopic(topic);
+		for (Iterator<String> iter = tfs.getTopicNames().iterator(); iter.hasNext();)
+			profile.addTopic(tfs.openTopic(iter.next()));
 
 		return profile;
 	}
@@ -134,6 +168,71 @@ public class ProfileFileSystem implements Serializable {
 		getTopicFileSystemForCurrentUser().writePost(post, topicName);
 	}
 
+	/**
+	 * Saves some Posts in the file system for the current Profile with a single
+	 * group commit, so that either all or none of them are saved.
+	 *
+	 * @param posts     the Posts to save, sorted from earliest to latest
+	 * @param topicName the name of the Topic in which to save
+	 *
+	 * @throws FileSystemException if an I/O error occurs while interacting with the
+	 *                             file system
+	 *
+	 * @see TopicFileSystem#writePosts(List, String)
+	 */
+	public void savePosts(List<Post> posts, String topicName) throws FileSystemException {
+		getTopicFileSystemForCurrentUser().writePosts(posts, topicName);
+	}
+
+	/**
+	 * Saves some Posts in the file system for the current Profile in the
+	 * background. The Posts are queued and this method returns without waiting
+	 * for them to be written, unless too many Posts are already queued. The Posts
+	 * queued for the same Topic are written with a single group commit.
+	 *
+	 * @param posts     the Posts to save, sorted from earliest to latest
+	 * @param topicName the name of the Topic in which to save
+	 *
+	 * @throws FileSystemException if Posts saved earlier in the background could
+	 *                             not be written, in which case no more Posts are
+	 *                             written
+	 *
+	 * @see #savePosts(List, String)
+	 * @see #flush()
+	 */
+	public void savePostsInBackground(List<Post> posts, String topicName)
+	        throws FileSystemException {
+		getWriteBehindQueue().save(getTopicFileSystemForCurrentUser(), posts, topicName);
+	}
+
+	/**
+	 * Waits until every Post saved in the background so far has been written.
+	 *
+	 * @throws FileSystemException if a Post could not be written
+	 */
+	public synchronized void flush() throws FileSystemException {
+		if (writeBehindQueue != null)
+			writeBehindQueue.flush();
+	}
+
+	/**
+	 * Writes every Post saved in the background and stops the Thread that writes
+	 * them. Posts saved in the background afterwards are written by a new Thread.
+	 *
+	 * @throws FileSystemException if a Post could not be written
+	 */
+	@Override
+	public synchronized void close() throws FileSystemException {
+		if (writeBehindQueue == null)
+			return;
+
+		try {
+			writeBehindQueue.close();
+		} finally {
+			writeBehindQueue = null;
+		}
+	}
+
 	// ==================== PRIVATE METHODS ====================
 
 	private Path getRoot() {
@@ -147,6 +246,13 @@ public class ProfileFileSystem implements Serializable {
 		currentProfileName = profileName;
 	}
 
+	private synchronized WriteBehindQueue getWriteBehindQueue() {
+		if (writeBehindQueue == null)
+			writeBehindQueue = new WriteBehindQueue(getRoot());
+
+		return writeBehindQueue;
+	}
+
 	private TopicFileSystem getTopicFileSystemForCurrentUser() {
 		return topicFileSystemMap.get(currentProfileName);
 	}
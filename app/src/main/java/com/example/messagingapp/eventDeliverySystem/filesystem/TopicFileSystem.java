@@ -1,18 +1,13 @@
 package com.example.messagingapp.eventDeliverySystem.filesystem;
 
-import java.io.File;
-import java.io.IOException;
 import java.io.Serializable;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 import com.example.messagingapp.eventDeliverySystem.datastructures.Post;
@@ -20,29 +15,61 @@ import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
 import com.example.messagingapp.eventDeliverySystem.datastructures.Topic;
 
 /**
- * Manages Topics that are saved in directories in the file system.
+ * Manages Topics that are saved in directories in the file system, one
+ * directory for each Topic. How the Posts of a Topic are stored in its
+ * directory depends on the {@link Format} of the file system.
  *
  * @author Alex Mandelias
  */
-public class TopicFileSystem implements Serializable {
-
-	private static final Pattern PATTERN = Pattern
-	        .compile("(?<postId>-?\\d+)-(?<posterName>\\w+)\\.(?<extension>.*)");
-	private static final String  FORMAT  = "%d-%s.%s";
-
-	private static final String HEAD                 = "HEAD";
-	private static final String TOPIC_META_EXTENSION = ".meta";
-
-	private final File topicsRootDirectory;
+public interface TopicFileSystem extends Serializable {
 
 	/**
-	 * Constructs a new Topic File System for a given root directory.
+	 * Defines the different ways the Posts of a Topic can be stored in its
+	 * directory.
 	 *
-	 * @param topicsRootDirectory the root directory of the new file system whose
-	 *                            sub-directories correspond to different Topics
+	 * @author Alex Mandelias
 	 */
-	public TopicFileSystem(Path topicsRootDirectory) {
-		this.topicsRootDirectory = topicsRootDirectory.toFile();
+	enum Format {
+
+		/**
+		 * Every Post is stored in a file of its own along with a file that points to
+		 * the previous Post, and a {@code HEAD} file points to the most recent one.
+		 * Every Post takes several file operations to write, and reading a Topic
+		 * reads every one of its files.
+		 */
+		DIRECTORY {
+			@Override
+			public TopicFileSystem open(Path topicsRootDirectory) {
+				return new DirectoryTopicFileSystem(topicsRootDirectory);
+			}
+		},
+
+		/**
+		 * The Posts of a Topic are appended to a log of a few large segment files,
+		 * so that writing a Post is a single append and reading a Topic is a
+		 * sequential scan. Topics stored in the {@code DIRECTORY} format are migrated
+		 * to this format when the file system is opened.
+		 */
+		LOG {
+			@Override
+			public TopicFileSystem open(Path topicsRootDirectory) throws FileSystemException {
+				return new LogTopicFileSystem(topicsRootDirectory);
+			}
+		};
+
+		/**
+		 * Opens a Topic File System of this format for a root directory.
+		 *
+		 * @param topicsRootDirectory the root directory of the file system whose
+		 *                            sub-directories correspond to different Topics
+		 *
+		 * @return the Topic File System
+		 *
+		 * @throws FileSystemException if an I/O error occurs while preparing the
+		 *                             existing Topics
+		 */
+		public abstract TopicFileSystem open(Path topicsRootDirectory)
+		        throws FileSystemException;
 	}
 
 	/**
@@ -53,15 +80,7 @@ public class TopicFileSystem implements Serializable {
 	 * @throws FileSystemException if an I/O error occurs while interacting with the
 	 *                             file system
 	 */
-	public Stream<String> getTopicNames() throws FileSystemException {
-		try {
-			return Files.list(getRoot())
-			        .filter(Files::isDirectory)
-			        .map(path -> path.getFileName().toString());
-		} catch (IOException e) {
-			throw new FileSystemException(getRoot(), e);
-		}
-	}
+	Stream<String> getTopicNames() throws FileSystemException;
 
 	/**
 	 * Creates a new empty Topic in the file system.
@@ -71,17 +90,7 @@ public class TopicFileSystem implements Serializable {
 	 * @throws FileSystemException if a topic with that name already exists in this
 	 *                             file system
 	 */
-	public void createTopic(String topicName) throws FileSystemException {
-		final Path topicDirectory = resolveRoot(topicName);
-		try {
-			Files.createDirectory(topicDirectory);
-		} catch (IOException e) {
-			throw new FileSystemException(topicDirectory, e);
-		}
-
-		final Path head = getHead(topicName);
-		TopicFileSystem.create(head);
-	}
+	void createTopic(String topicName) throws FileSystemException;
 
 	/**
 	 * Deletes a {@link Topic} from the local File System. This operation is not
@@ -93,19 +102,7 @@ public class TopicFileSystem implements Serializable {
 	 * @throws FileSystemException if an I/O error occurs while interacting with the
 	 *                             file system
 	 */
-	public void deleteTopic(String topicName) throws FileSystemException {
-		final Path topicDirectory = resolveRoot(topicName);
-
-		Path currentPath = topicDirectory;
-		try (Stream<Path> directoryStream = Files.list(currentPath)) {
-			for (Iterator<Path> iter = directoryStream.iterator(); iter.hasNext();) {
-				currentPath = iter.next();
-				Files.delete(currentPath);
-			}
-		} catch (IOException e) {
-			throw new FileSystemException(currentPath, e);
-		}
-	}
+	void deleteTopic(String topicName) throws FileSystemException;
 
 	/**
 	 * Adds a new {@link Post} to an existing {@link Topic}.
@@ -115,15 +112,30 @@ public class TopicFileSystem implements Serializable {
 	 *
 	 * @throws FileSystemException if an I/O error occurs while interacting with the
 	 *                             file system
+	 *
+	 * @see #writePosts(List, String)
 	 */
-	public void writePost(Post post, String topicName) throws FileSystemException {
-		final Path fileForPost = writePost0(post, topicName);
-		writePointerForPost(post, topicName);
-		updateHeadForPost(fileForPost, topicName);
+	default void writePost(Post post, String topicName) throws FileSystemException {
+		writePosts(Collections.singletonList(post), topicName);
 	}
 
 	/**
-	 * Reads a {@link Topic} from the File System and returns it.
+	 * Adds some new {@link Post Posts} to an existing {@link Topic} with a group
+	 * commit. The Posts are forced to the disk together, and they become part of
+	 * the Topic only once all of them have been, so that after a crash either
+	 * all or none of them are found.
+	 *
+	 * @param posts     the new Posts, sorted from earliest to latest
+	 * @param topicName the topic's name
+	 *
+	 * @throws FileSystemException if an I/O error occurs while interacting with the
+	 *                             file system
+	 */
+	void writePosts(List<Post> posts, String topicName) throws FileSystemException;
+
+	/**
+	 * Reads a {@link Topic} from the File System and returns it. The Posts of the
+	 * Topic are in the order in which they were written.
 	 *
 	 * @param topicName the topic's name
 	 *
@@ -132,19 +144,26 @@ public class TopicFileSystem implements Serializable {
 	 * @throws FileSystemException if an I/O error occurs while interacting with the
 	 *                             file system
 	 */
-	public Topic readTopic(String topicName) throws FileSystemException {
-		final List<Post> loadedPosts = new LinkedList<>();
+	Topic readTopic(String topicName) throws FileSystemException;
 
-		final Path firstPost = getFirstPost(topicName);
-		for (Path postFile = firstPost; postFile != null; postFile = getNextFile(postFile,
-		        topicName)) {
-			final String   filename   = postFile.getFileName().toString();
-			final PostInfo postInfo   = TopicFileSystem.getPostInfoFromFileName(filename);
-			final Post     loadedPost = TopicFileSystem.readPost(postInfo, postFile);
-			loadedPosts.add(loadedPost);
-		}
-
-		return new Topic(topicName, loadedPosts);
+	/**
+	 * Opens a {@link Topic} from the File System without reading its Posts. Only
+	 * what is needed to list the Topic and to update it is read, and its Posts are
+	 * read from the File System a page at a time whenever they are accessed. By
+	 * default, the whole Topic is read, for formats that can't read a page of Posts
+	 * without reading the ones before it.
+	 *
+	 * @param topicName the topic's name
+	 *
+	 * @return a Topic object whose Posts are read from the File System
+	 *
+	 * @throws FileSystemException if an I/O error occurs while interacting with the
+	 *                             file system
+	 *
+	 * @see Topic#Topic(String, Topic.PostStore, int, PostInfo)
+	 */
+	default Topic openTopic(String topicName) throws FileSystemException {
+		return readTopic(topicName);
 	}
 
 	/**
@@ -155,7 +174,7 @@ public class TopicFileSystem implements Serializable {
 	 * @throws FileSystemException if an I/O error occurs while interacting with the
 	 *                             file system
 	 */
-	public Collection<Topic> readAllTopics() throws FileSystemException {
+	default Collection<Topic> readAllTopics() throws FileSystemException {
 		final Set<Topic> topics = new HashSet<>();
 
 		for (Iterator<String> iter = getTopicNames().iterator(); iter.hasNext();)
@@ -163,144 +182,4 @@ public class TopicFileSystem implements Serializable {
 
 		return topics;
 	}
-
-	// ==================== HELPERS FOR PATH ====================
-
-	private Path getRoot() {
-		return topicsRootDirectory.toPath();
-	}
-
-	private Path resolveRoot(String topicName) {
-		return TopicFileSystem.resolve(getRoot(), topicName);
-	}
-
-	private static Path resolve(Path directory, String filename) {
-		return directory.resolve(filename);
-	}
-
-	// ==================== HELPERS FOR SAVE POST ====================
-
-	private Path writePost0(Post post, String topicName) throws FileSystemException {
-		final String fileName = TopicFileSystem.getFileNameFromPostInfo(post.getPostInfo());
-
-		final Path topicDirectory = resolveRoot(topicName);
-		final Path pathForPost    = TopicFileSystem.resolve(topicDirectory, fileName);
-
-		TopicFileSystem.create(pathForPost);
-
-		final byte[] data = post.getData();
-		TopicFileSystem.write(pathForPost, data);
-
-		return pathForPost;
-	}
-
-	private void writePointerForPost(Post post, String topicName) throws FileSystemException {
-		final String fileName = TopicFileSystem.getFileNameFromPostInfo(post.getPostInfo());
-
-		final Path   topicDirectory    = resolveRoot(topicName);
-		final String metaFileName      = fileName + TopicFileSystem.TOPIC_META_EXTENSION;
-		final Path   pointerToNextPost = TopicFileSystem.resolve(topicDirectory,
-		        metaFileName);
-		TopicFileSystem.create(pointerToNextPost);
-
-		final Path   head         = getHead(topicName);
-		final byte[] headContents = TopicFileSystem.read(head);
-		TopicFileSystem.write(pointerToNextPost, headContents);
-	}
-
-	private void updateHeadForPost(Path fileForPost, String topicName) throws FileSystemException {
-		final Path   head            = getHead(topicName);
-		final byte[] newHeadContents = fileForPost.getFileName().toString().getBytes();
-		TopicFileSystem.write(head, newHeadContents);
-	}
-
-	private Path getHead(String topicName) {
-		final Path topicDirectory = resolveRoot(topicName);
-		return TopicFileSystem.resolve(topicDirectory, TopicFileSystem.HEAD);
-	}
-
-	// ==================== HELPERS FOR LOAD POSTS FOR TOPIC ====================
-
-	// returns null if topic has no posts
-	private Path getFirstPost(String topicName) throws FileSystemException {
-		final Path   head         = getHead(topicName);
-		final byte[] headContents = TopicFileSystem.read(head);
-
-		if (headContents.length == 0)
-			return null;
-
-		final Path   topicDirectory = resolveRoot(topicName);
-		final String firstPostFile  = new String(headContents);
-		return TopicFileSystem.resolve(topicDirectory, firstPostFile);
-	}
-
-	// returns null if there is no next post
-	private Path getNextFile(Path postFile, String topicName) throws FileSystemException {
-		final Path pointerToNextPost = new File(
-				postFile.toString() + TopicFileSystem.TOPIC_META_EXTENSION).toPath();
-
-		final byte[] pointerToNextPostContents = TopicFileSystem.read(pointerToNextPost);
-
-		if (pointerToNextPostContents.length == 0)
-			return null;
-
-		final Path   topicDirectory = resolveRoot(topicName);
-		final String fileName       = new String(pointerToNextPostContents);
-		return TopicFileSystem.resolve(topicDirectory, fileName);
-	}
-
-	private static Post readPost(PostInfo postInfo, Path postFile) throws FileSystemException {
-		final byte[] data = TopicFileSystem.read(postFile);
-		return new Post(data, postInfo);
-	}
-
-	// ==================== READ/WRITE ====================
-
-	private static void create(Path pathForPost) throws FileSystemException {
-		try {
-		Files.createFile(pathForPost);
-		} catch (IOException e) {
-			throw new FileSystemException(pathForPost, e);
-		}
-	}
-
-	private static byte[] read(Path head) throws FileSystemException {
-		try {
-			return Files.readAllBytes(head);
-		} catch (IOException e) {
-			throw new FileSystemException(head, e);
-		}
-	}
-
-	private static void write(Path pointerToNextPost, byte[] data) throws FileSystemException {
-		try {
-			Files.write(pointerToNextPost, data);
-		} catch (IOException e) {
-			throw new FileSystemException(pointerToNextPost, e);
-		}
-	}
-
-	// ==================== POST INFO ====================
-
-	private static String getFileNameFromPostInfo(PostInfo postInfo) {
-		final long   postId        = postInfo.getId();
-		final String posterId      = postInfo.getPosterName();
-		final String fileExtension = postInfo.getFileExtension();
-
-		return String.format(TopicFileSystem.FORMAT, postId, posterId, fileExtension);
-	}
-
-	private static PostInfo getPostInfoFromFileName(String fileName) {
-		final Matcher m = TopicFileSystem.PATTERN.matcher(fileName);
-
-		if (m.matches()) {
-			final long   postId        = Long.parseLong(m.group("postId"));
-			final String posterId      = m.group("posterName");
-			final String fileExtension = m.group("extension");
-
-			return new PostInfo(posterId, fileExtension, postId);
-		}
-
-		throw new IllegalArgumentException("Bad filename: " + fileName);
-	}
 }
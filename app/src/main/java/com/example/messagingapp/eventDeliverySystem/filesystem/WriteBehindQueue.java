@@ -0,0 +1,209 @@
+package com.example.messagingapp.eventDeliverySystem.filesystem;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Post;
+
+/**
+ * Writes Posts to Topic File Systems on a dedicated Thread, so that the Thread
+ * that saves them doesn't wait for the disk. Posts are queued in batches, and
+ * the batches that are waiting for the same Topic when the Thread is ready are
+ * written together with a single group commit.
+ * <p>
+ * At most {@value #CAPACITY} batches may wait to be written; saving another
+ * one blocks until there is room for it. If a batch can't be written, the
+ * batches after it are discarded, since they would leave a gap in their Topic,
+ * and the exception is thrown by every later call.
+ *
+ * @author Alex Mandelias
+ */
+final class WriteBehindQueue implements AutoCloseable {
+
+	private static final int CAPACITY = 64;
+
+	private static final Batch STOP = new Batch(null, null, null);
+
+	private final Path                 root;
+	private final BlockingQueue<Batch> batches;
+	private final Thread               writer;
+
+	// the number of batches that have been queued but not written
+	private int         pendingCount;
+	private IOException failure;
+
+	/**
+	 * Constructs a WriteBehindQueue and starts the Thread that writes its Posts.
+	 *
+	 * @param root the path with which the exceptions of this queue are associated
+	 */
+	WriteBehindQueue(Path root) {
+		this.root = root;
+		batches = new ArrayBlockingQueue<>(WriteBehindQueue.CAPACITY);
+		pendingCount = 0;
+		failure = null;
+
+		writer = new Thread(this::writeBatches, "PostWriter");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Queues some Posts to be written to a Topic, waiting while the queue is full.
+	 *
+	 * @param fileSystem the file system of the Topic
+	 * @param posts      the Posts, sorted from earliest to latest
+	 * @param topicName  the name of the Topic
+	 *
+	 * @throws FileSystemException if an earlier batch could not be written or if
+	 *                             the Thread is interrupted while waiting
+	 */
+	void save(TopicFileSystem fileSystem, List<Post> posts, String topicName)
+	        throws FileSystemException {
+		synchronized (this) {
+			throwIfFailed();
+			pendingCount++;
+		}
+
+		try {
+			batches.put(new Batch(fileSystem, posts, topicName));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			batchCancelled();
+			throw new FileSystemException(root, new InterruptedIOException(
+			        "Interrupted while queueing Posts for " + topicName));
+		}
+	}
+
+	/**
+	 * Waits until every batch queued so far has been written.
+	 *
+	 * @throws FileSystemException if a batch could not be written or if the Thread
+	 *                             is interrupted while waiting
+	 */
+	synchronized void flush() throws FileSystemException {
+		try {
+			while ((pendingCount > 0) && (failure == null))
+				wait();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FileSystemException(root,
+			        new InterruptedIOException("Interrupted while flushing Posts"));
+		}
+
+		throwIfFailed();
+	}
+
+	/**
+	 * Writes every batch queued so far and stops the Thread that writes them.
+	 *
+	 * @throws FileSystemException if a batch could not be written or if the Thread
+	 *                             is interrupted while waiting
+	 */
+	@Override
+	public void close() throws FileSystemException {
+		try {
+			batches.put(WriteBehindQueue.STOP);
+			writer.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FileSystemException(root,
+			        new InterruptedIOException("Interrupted while closing"));
+		}
+
+		flush();
+	}
+
+	private void writeBatches() {
+		final List<Batch> drained = new ArrayList<>();
+		try {
+			for (;;) {
+				drained.add(batches.take());
+				batches.drainTo(drained);
+
+				for (int i = 0; i < drained.size();) {
+					final Batch first = drained.get(i);
+					if (first == WriteBehindQueue.STOP)
+						return;
+
+					// consecutive batches for the same Topic are committed together
+					final List<Post> posts = new ArrayList<>(first.posts);
+					int              next  = i + 1;
+					for (; next < drained.size(); next++) {
+						final Batch batch = drained.get(next);
+						if ((batch == WriteBehindQueue.STOP) || !first.isForSameTopic(batch))
+							break;
+
+						posts.addAll(batch.posts);
+					}
+
+					write(first, posts, next - i);
+					i = next;
+				}
+
+				drained.clear();
+			}
+		} catch (final InterruptedException e) {
+			// stop writing
+		}
+	}
+
+	private void write(Batch batch, List<Post> posts, int batchCount) {
+		final boolean failed;
+		synchronized (this) {
+			failed = failure != null;
+		}
+
+		IOException exception = null;
+		if (!failed) {
+			try {
+				batch.fileSystem.writePosts(posts, batch.topicName);
+			} catch (final IOException e) {
+				exception = e;
+			} catch (final UncheckedIOException e) {
+				exception = e.getCause();
+			}
+		}
+
+		synchronized (this) {
+			if (exception != null)
+				failure = exception;
+
+			pendingCount -= batchCount;
+			notifyAll();
+		}
+	}
+
+	private synchronized void batchCancelled() {
+		pendingCount--;
+		notifyAll();
+	}
+
+	private void throwIfFailed() throws FileSystemException {
+		if (failure != null)
+			throw new FileSystemException(root, failure);
+	}
+
+	private static final class Batch {
+
+		private final TopicFileSystem fileSystem;
+		private final List<Post>      posts;
+		private final String          topicName;
+
+		Batch(TopicFileSystem fileSystem, List<Post> posts, String topicName) {
+			this.fileSystem = fileSystem;
+			this.posts = posts;
+			this.topicName = topicName;
+		}
+
+		boolean isForSameTopic(Batch other) {
+			return (fileSystem == other.fileSystem) && topicName.equals(other.topicName);
+		}
+	}
+}
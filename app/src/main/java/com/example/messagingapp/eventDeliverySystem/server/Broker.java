@@ -1,35 +1,55 @@
 package com.example.messagingapp.eventDeliverySystem.server;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 
-import com.example.messagingapp.eventDeliverySystem.datastructures.AbstractTopic;
 import com.example.messagingapp.eventDeliverySystem.datastructures.ConnectionInfo;
 import com.example.messagingapp.eventDeliverySystem.datastructures.Message;
-import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
-import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Message.MessageType;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet.SizeLimits;
 import com.example.messagingapp.eventDeliverySystem.datastructures.Topic.TopicToken;
 import com.example.messagingapp.eventDeliverySystem.thread.PullThread;
-import com.example.messagingapp.eventDeliverySystem.thread.PushThread;
-import com.example.messagingapp.eventDeliverySystem.thread.PushThread.Protocol;
+import com.example.messagingapp.eventDeliverySystem.thread.TaskExecutors;
 import com.example.messagingapp.eventDeliverySystem.util.LG;
 import com.example.messagingapp.eventDeliverySystem.util.PortManager;
+import com.example.messagingapp.eventDeliverySystem.wire.Handshake;
+import com.example.messagingapp.eventDeliverySystem.wire.MultiplexedConnection;
+import com.example.messagingapp.eventDeliverySystem.wire.WireFormat;
 
 /**
  * A remote component that forms the backbone of the EventDeliverySystem.
  * Brokers act as part of a distributed server that services Publishers and
  * Consumers.
+ * <p>
+ * Every blocking connection is serviced by a task that is run on the executor
+ * of the Broker, on either platform or virtual Threads according to its
+ * configuration.
  *
  * @author Alex Mandelias
  * @author Dimitris Tsirmpas
@@ -41,78 +61,153 @@ public class Broker implements Runnable, AutoCloseable {
 	private final Map<String, Set<ObjectOutputStream>> consumerOOSPerTopic;
 	private final Map<String, BrokerTopic>             topicsByName;
 
-	// no need to synchronise because these practically immutable after startup
-	// since no new broker can be constructed after startup
-	private final List<Socket>         brokerConnections;
-	private final List<ConnectionInfo> brokerCI;
+	// the Brokers, including this one, to which Topics are assigned, as gossiped by the members
+	private final HashRing<Member> brokerRing;
+	private final Membership       membership;
+	private volatile String        selfName;
 
-	private final ServerSocket clientRequestSocket;
-	private final ServerSocket brokerRequestSocket;
+	private final ServerSocketChannel clientRequestChannel;
+	private final ServerSocket        clientRequestSocket;
+	private final ServerSocket        brokerRequestSocket;
+
+	private final BrokerConfig     config;
+	private final SendQueueMetrics sendQueueMetrics;
+	private final ExecutorService    executor;
+	private final ReplicationManager replication;
+	private SelectorRequestHandler   selectorRequestHandler;
+
+	// guarded by 'this', set once the broker is closed
+	private boolean closed;
+
+	/**
+	 * Create a new leader broker with the default configuration. This is
+	 * necessarily the first step to initialize the server network.
+	 */
+	public Broker() {
+		this(BrokerConfig.defaults());
+	}
 
 	/**
 	 * Create a new leader broker. This is necessarily the first step to initialize
 	 * the server network.
+	 *
+	 * @param config the configuration of the broker
 	 */
-	public Broker() {
+	public Broker(BrokerConfig config) {
+		this.config = config;
+		sendQueueMetrics = new SendQueueMetrics();
+		executor = Broker.newExecutor(config);
+		replication = new ReplicationManager(this, config, executor);
 		consumerOOSPerTopic = new HashMap<>();
-		brokerConnections = new LinkedList<>();
-		brokerCI = new LinkedList<>();
+		membership = new Membership(this, config, executor);
+		brokerRing = new HashRing<>(config.getVirtualNodeCount(), config.getRingHash());
 		topicsByName = new HashMap<>();
+		closed = false;
 
 		try {
-			clientRequestSocket = new ServerSocket(PortManager.getNewAvailablePort(),
+			clientRequestChannel = ServerSocketChannel.open();
+			clientRequestChannel.bind(new InetSocketAddress(PortManager.getNewAvailablePort()),
 			        Broker.MAX_CONNECTIONS);
+			clientRequestSocket = clientRequestChannel.socket();
 			brokerRequestSocket = new ServerSocket(PortManager.getNewAvailablePort(),
 			        Broker.MAX_CONNECTIONS);
 		} catch (final IOException e) {
 			throw new UncheckedIOException("Could not open server socket: ", e);
 		}
 
+		final ConnectionInfo ci = ConnectionInfo.forServerSocket(clientRequestSocket);
+		selfName = Broker.nodeNameOf(ci.getAddress(), ci.getPort());
+		membership.join(new Member(selfName, ci,
+		        new InetSocketAddress(ci.getAddress(), brokerRequestSocket.getLocalPort())),
+		        Collections.emptyList(), null);
+
+		if (config.getLogDirectory() != null)
+			recoverTopics();
+
 		LG.sout("Broker connected at:");
+		LG.sout("%s", config);
 		LG.socket("Client", clientRequestSocket);
 		LG.socket("Broker", brokerRequestSocket);
 	}
 
 	/**
-	 * Create a non-leader broker and connect it to the server network.
+	 * Create a non-leader broker with the default configuration and connect it to
+	 * the server network.
 	 *
-	 * @param leaderIP   the IP of the leader broker
-	 * @param leaderPort the port of the leader broker
+	 * @param leaderIP   the IP of the leader broker, or of any other broker of the
+	 *                   network
+	 * @param leaderPort the broker port of that broker
 	 *
-	 * @throws UncheckedIOException if the connection to the leader broker fails
+	 * @throws UncheckedIOException if the connection to that broker fails
 	 */
-	@SuppressWarnings("resource")
 	public Broker(String leaderIP, int leaderPort) {
-		this();
-		try {
-			final Socket leaderConnection = new Socket(leaderIP, leaderPort);
+		this(leaderIP, leaderPort, BrokerConfig.defaults());
+	}
 
+	/**
+	 * Create a non-leader broker and connect it to the server network. The
+	 * network may be joined through any of its brokers, since every broker knows
+	 * all of its members.
+	 *
+	 * @param leaderIP   the IP of the leader broker, or of any other broker of the
+	 *                   network
+	 * @param leaderPort the broker port of that broker
+	 * @param config     the configuration of the broker
+	 *
+	 * @throws UncheckedIOException if the connection to that broker fails
+	 */
+	public Broker(String leaderIP, int leaderPort, BrokerConfig config) {
+		this(config);
+		try (Socket seedConnection = new Socket(leaderIP, leaderPort)) {
 			final ObjectOutputStream oos = new ObjectOutputStream(
-			        leaderConnection.getOutputStream());
+			        seedConnection.getOutputStream());
+
+			final ConnectionInfo ci = ConnectionInfo.forServerSocket(clientRequestSocket);
+			oos.writeObject(ci);
+			oos.writeInt(brokerRequestSocket.getLocalPort());
+			oos.flush();
+
+			// the broker names this broker by the address from which it connected
+			final ObjectInputStream ois = new ObjectInputStream(seedConnection.getInputStream());
+			final String name = (String) ois.readObject();
+
+			@SuppressWarnings("unchecked")
+			final List<Membership.MemberState> states = (List<Membership.MemberState>) ois
+			        .readObject();
+
+			selfName = name;
+			membership.join(new Member(name, ci,
+			        new InetSocketAddress(ci.getAddress(), brokerRequestSocket.getLocalPort())),
+			        states, seedConnection.getInetAddress());
 
-			oos.writeObject(ConnectionInfo.forServerSocket(clientRequestSocket));
-			brokerConnections.add(leaderConnection);
 		} catch (final IOException ioe) {
 			throw new UncheckedIOException("Couldn't connect to leader broker ", ioe);
+		} catch (final ClassNotFoundException e) {
+			throw new IllegalStateException("Unexpected response from leader broker ", e);
 		}
 	}
 
 	/**
 	 * Begins listening for and new requests by clients and connection requests from
-	 * other brokers.
+	 * other brokers, and waits until this broker is closed. The requests are
+	 * serviced by other Threads, which keep running only while this method does
+	 * not return.
 	 */
 	@Override
 	public void run() {
 
 		final Runnable clientRequestThread = () -> {
 			LG.sout("Start: ClientRequestThread");
-			while (true)
+			while (!clientRequestSocket.isClosed())
 				try {
 					@SuppressWarnings("resource")
 					final Socket socket = clientRequestSocket.accept();
-					new ClientRequestHandler(socket).start();
+					executor.execute(new ClientRequestHandler(socket));
 
 				} catch (final IOException e) {
+					if (clientRequestSocket.isClosed())
+						break; // the broker is closing
+
 					e.printStackTrace();
 					System.exit(-1); // serious error when waiting, close broker
 				}
@@ -120,55 +215,486 @@ public class Broker implements Runnable, AutoCloseable {
 
 		final Runnable brokerRequestThread = () -> {
 			LG.sout("Start: BrokerRequestThread");
-			while (true)
+			while (!brokerRequestSocket.isClosed())
 				try {
 					@SuppressWarnings("resource") // closes at Broker#close
 					final Socket socket = brokerRequestSocket.accept();
-					new BrokerRequestHandler(socket).start();
+					executor.execute(new BrokerRequestHandler(socket));
 
 				} catch (final IOException e) {
+					if (brokerRequestSocket.isClosed())
+						break; // the broker is closing
+
 					e.printStackTrace();
 					System.exit(-1); // serious error when waiting, close broker
 				}
 		};
 
-		new Thread(clientRequestThread, "ClientRequestThread").start();
-		new Thread(brokerRequestThread, "BrokerRequestThread").start();
+		synchronized (this) {
+			if (closed)
+				return;
+
+			if (config.getIOMode() == BrokerConfig.IOMode.SELECTOR) {
+				try {
+					selectorRequestHandler = new SelectorRequestHandler(this,
+					        clientRequestChannel, config);
+					selectorRequestHandler.start();
+				} catch (final IOException e) {
+					e.printStackTrace();
+					System.exit(-1); // serious error when waiting, close broker
+				}
+			} else
+				new Thread(clientRequestThread, "ClientRequestThread").start();
+
+			new Thread(brokerRequestThread, "BrokerRequestThread").start();
+
+			new Thread(membership, "MembershipThread").start();
+
+			try {
+				while (!closed)
+					wait();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 
 		LG.sout("Broker#run end");
 	}
 
-	/** Closes all connections to this broker */
+	/**
+	 * Closes all connections to this broker, stops accepting new ones and lets
+	 * {@link #run()} return. Closing a broker that is already closed has no
+	 * effect.
+	 */
 	@Override
 	public synchronized void close() {
+		if (closed)
+			return;
+
+		closed = true;
+		notifyAll();
+
 		try {
-			for (final Set<ObjectOutputStream> consumerOOSSet : consumerOOSPerTopic.values())
-				for (final ObjectOutputStream consumerOOS : consumerOOSSet)
-					consumerOOS.close();
+			clientRequestSocket.close();
+			brokerRequestSocket.close();
+		} catch (final IOException ioe) {
+			ioe.printStackTrace();
+		}
 
-			for (final Socket brokerSocket : brokerConnections)
-				brokerSocket.close();
+		try {
+			synchronized (consumerOOSPerTopic) {
+				for (final Set<ObjectOutputStream> consumerOOSSet : consumerOOSPerTopic.values())
+					for (final ObjectOutputStream consumerOOS : consumerOOSSet)
+						consumerOOS.close();
+			}
+
+			synchronized (topicsByName) {
+				for (final BrokerTopic topic : topicsByName.values())
+					topic.close();
+			}
 
 		} catch (final IOException ioe) {
 			ioe.printStackTrace();
 		}
+
+		membership.close();
+		replication.close();
+
+		if (selectorRequestHandler != null)
+			selectorRequestHandler.close();
+
+		executor.shutdown();
+	}
+
+	private static ExecutorService newExecutor(BrokerConfig config) {
+		if (config.getThreadType() == BrokerConfig.ThreadType.VIRTUAL) {
+			if (TaskExecutors.isVirtualThreadSupported())
+				return TaskExecutors.newVirtualThreadExecutor("BrokerTask");
+
+			System.err.printf("Virtual threads require Java 21 or later, using platform threads%n");
+		}
+
+		return TaskExecutors.newPlatformThreadExecutor("BrokerTask");
+	}
+
+	/**
+	 * Returns the metrics of the queues of the objects waiting to be sent to the
+	 * Consumers of this Broker.
+	 *
+	 * @return the metrics, which are updated as the queues change
+	 */
+	public SendQueueMetrics getSendQueueMetrics() {
+		return sendQueueMetrics;
+	}
+
+	// ========== REQUESTS ==========
+
+	/**
+	 * Returns whether a Topic with the given name exists in this Broker.
+	 *
+	 * @param topicName the name of the Topic
+	 *
+	 * @return {@code true} if the Topic exists, {@code false} otherwise
+	 */
+	boolean topicExists(String topicName) {
+		synchronized (topicsByName) {
+			return topicsByName.containsKey(topicName);
+		}
 	}
 
-	// ========== THREADS ==========
+	/**
+	 * Returns the Topic with the given name.
+	 *
+	 * @param topicName the name of the Topic
+	 *
+	 * @return the Topic
+	 *
+	 * @throws NoSuchElementException if no Topic with the given name exists
+	 */
+	BrokerTopic getTopic(String topicName) {
+		final BrokerTopic topic;
+		synchronized (topicsByName) {
+			topic = topicsByName.get(topicName);
+		}
+
+		if (topic == null)
+			throw new NoSuchElementException("There is no Topic with name " + topicName);
+
+		return topic;
+	}
 
 	/**
-	 * A thread which continuously reads new client requests and assigns worker
-	 * threads to fulfil them when necessary.
+	 * Returns the Topic with the given name from which a Consumer reads. A Broker
+	 * that holds a copy of a Topic but hasn't received it yet adds it, so that the
+	 * Consumer receives the Posts of the Topic once the leader has copied them.
+	 *
+	 * @param topicName the name of the Topic
+	 *
+	 * @return the Topic
+	 *
+	 * @throws NoSuchElementException if no Topic with the given name exists and
+	 *                                this Broker neither holds a copy of it nor
+	 *                                relays it
+	 */
+	BrokerTopic getTopicToRead(String topicName) {
+		if (!topicExists(topicName)) {
+			if (replication.isReplicaOf(topicName))
+				return getReplica(topicName);
+
+			if (config.isFanoutRelayEnabled())
+				return getRelayed(topicName);
+		}
+
+		return getTopic(topicName);
+	}
+
+	/**
+	 * Returns the Topic with the given name, adding a new, empty, copy of the
+	 * Topic to this Broker if it doesn't exist, which receives the Posts of the
+	 * Topic from one of the Brokers that hold it so that this Broker can relay
+	 * them to its own Consumers.
+	 *
+	 * @param topicName the name of the Topic
+	 *
+	 * @return the Topic
+	 */
+	BrokerTopic getRelayed(String topicName) {
+		synchronized (topicsByName) {
+			if (!topicsByName.containsKey(topicName))
+				replication.relay(createTopic(topicName));
+
+			return topicsByName.get(topicName);
+		}
+	}
+
+	/**
+	 * Returns the Topic with the given name, adding a new, empty, copy of the
+	 * Topic to this Broker if it doesn't exist, to which the Posts of the Topic
+	 * are copied by its leader, or by the Brokers that hand them off to this
+	 * Broker if it leads the Topic.
+	 *
+	 * @param topicName the name of the Topic
+	 *
+	 * @return the Topic
+	 */
+	BrokerTopic getReplica(String topicName) {
+		synchronized (topicsByName) {
+			if (!topicsByName.containsKey(topicName))
+				replication.add(createTopic(topicName));
+
+			return topicsByName.get(topicName);
+		}
+	}
+
+	/**
+	 * Adds a new, empty, Topic to this Broker. Its Posts start being copied to its
+	 * followers, if this Broker leads it, or to its leader otherwise.
+	 *
+	 * @param topicName the name of the Topic
+	 */
+	void addTopic(String topicName) {
+		replication.add(createTopic(topicName));
+	}
+
+	private BrokerTopic createTopic(String topicName) {
+		final BrokerTopic topic;
+		if (config.getLogDirectory() == null)
+			topic = new BrokerTopic(topicName);
+		else
+			try {
+				topic = BrokerTopic.backedBy(topicName, openLog(topicName));
+			} catch (final IOException e) {
+				throw new UncheckedIOException("Could not create log for Topic " + topicName, e);
+			}
+
+		putTopic(topic);
+		return topic;
+	}
+
+	private void putTopic(BrokerTopic topic) {
+		synchronized (topicsByName) {
+			topicsByName.put(topic.getName(), topic);
+		}
+
+		synchronized (consumerOOSPerTopic) {
+			consumerOOSPerTopic.put(topic.getName(), new HashSet<>());
+		}
+	}
+
+	// ========== PERSISTENCE ==========
+
+	private void recoverTopics() {
+		final Path logDirectory = config.getLogDirectory();
+
+		try {
+			Files.createDirectories(logDirectory);
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(logDirectory,
+			        Files::isDirectory)) {
+				for (final Path topicDirectory : stream) {
+					final String topicName = URLDecoder.decode(
+					        topicDirectory.getFileName().toString(), "UTF-8");
+
+					putTopic(BrokerTopic.backedBy(topicName, openLog(topicName)));
+					LG.sout("Recovered Topic '%s'", topicName);
+				}
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Could not recover Topics from " + logDirectory, e);
+		}
+	}
+
+	private CommitLog openLog(String topicName) throws IOException {
+		// encode every character that is not allowed in, or has a special meaning for, a file name
+		final String directoryName = URLEncoder.encode(topicName, "UTF-8")
+		        .replace(".", "%2E")
+		        .replace("*", "%2A");
+
+		return new CommitLog(config.getLogDirectory().resolve(directoryName),
+		        config.getLogSegmentSize(), config.getLogIndexInterval());
+	}
+
+	/**
+	 * Registers the stream of a Consumer so that it is closed when this Broker
+	 * closes.
+	 *
+	 * @param topicName the name of the Topic the Consumer listens for
+	 * @param oos       the stream to the Consumer
+	 */
+	void registerConsumer(String topicName, ObjectOutputStream oos) {
+		synchronized (consumerOOSPerTopic) {
+			consumerOOSPerTopic.get(topicName).add(oos);
+		}
+	}
+
+	/**
+	 * Unregisters the stream of a Consumer whose connection has been closed.
+	 *
+	 * @param topicName the name of the Topic the Consumer listens for
+	 * @param oos       the stream to the Consumer
+	 */
+	void unregisterConsumer(String topicName, ObjectOutputStream oos) {
+		synchronized (consumerOOSPerTopic) {
+			consumerOOSPerTopic.get(topicName).remove(oos);
+		}
+	}
+
+	/**
+	 * Returns the number of Consumers connected to this Broker.
+	 *
+	 * @return the number of Consumers
+	 */
+	int getConsumerCount() {
+		int consumerCount = 0;
+		synchronized (consumerOOSPerTopic) {
+			for (final Set<ObjectOutputStream> consumerOOSSet : consumerOOSPerTopic.values())
+				consumerCount += consumerOOSSet.size();
+		}
+		return consumerCount;
+	}
+
+	/**
+	 * Creates the queue of the objects waiting to be sent to a new Consumer of a
+	 * Topic, according to the configuration of this Broker.
+	 *
+	 * @param topic    the Topic the Consumer listens for
+	 * @param canBlock whether the Publishers of the Topic may be blocked while
+	 *                 the queue is full
+	 *
+	 * @return the queue
+	 */
+	SendQueue newSendQueue(BrokerTopic topic, boolean canBlock) {
+		return new SendQueue(config, canBlock, topic::congestionChanged, sendQueueMetrics);
+	}
+
+	/**
+	 * Creates the queue of the objects waiting to be sent to a follower of a
+	 * Topic. The queue never drops objects, whatever the configuration of this
+	 * Broker, so that the follower doesn't miss any Post.
+	 *
+	 * @param topic the Topic the follower follows
+	 *
+	 * @return the queue
+	 */
+	SendQueue newReplicaSendQueue(BrokerTopic topic) {
+		return new SendQueue(config, BrokerConfig.OverflowPolicy.BLOCK,
+		        config.getIOMode() == BrokerConfig.IOMode.THREAD, topic::congestionChanged,
+		        sendQueueMetrics);
+	}
+
+	/**
+	 * Runs a task once the Posts that a Publisher has just posted to a Topic are
+	 * considered posted, according to the {@link BrokerConfig.AckLevel AckLevel}
+	 * of this Broker, for example to end the request of the Publisher. The Posts
+	 * are handed off to the leader of the Topic if this Broker doesn't lead it.
+	 *
+	 * @param topic the Topic
+	 * @param task  the task
+	 */
+	void whenReplicated(BrokerTopic topic, Runnable task) {
+		replication.posted(topic);
+		replication.whenFollowersAcknowledge(topic, task);
+	}
+
+	/**
+	 * Returns the ConnectionInfo of the Broker that is responsible for a Topic:
+	 * the leader of the Topic, to which its Publishers must send Posts. Topics are
+	 * assigned to Brokers with a consistent-hash ring, so that when a Broker joins
+	 * only the Topics it takes over are assigned to another Broker.
+	 *
+	 * @param topicName the name of the Topic
+	 *
+	 * @return the ConnectionInfo of the Broker for the Topic
+	 *
+	 * @see HashRing
+	 * @see ReplicationManager#leaderOf(String)
+	 */
+	ConnectionInfo getAssignedBroker(String topicName) {
+		// every broker holds the whole ring, itself included, so any broker may answer
+		return replication.leaderOf(topicName).getClientInfo();
+	}
+
+	/**
+	 * Returns the ConnectionInfo of a Broker from which a Consumer may read a
+	 * Topic. When relays are enabled, this is the Broker with the fewest
+	 * Consumers, which relays the Topic if it doesn't hold it. Otherwise it is any
+	 * of the Brokers that hold the Topic, its leader or one of its followers,
+	 * chosen at random so that the Consumers of the Topic are spread across them.
+	 *
+	 * @param topicName the name of the Topic
+	 *
+	 * @return the ConnectionInfo of a Broker from which to read the Topic
+	 */
+	ConnectionInfo getBrokerToRead(String topicName) {
+		if (config.isFanoutRelayEnabled())
+			return membership.assignConsumer().getClientInfo();
+
+		final List<Member> replicas = getReplicasOf(topicName);
+		return replicas.get(ThreadLocalRandom.current().nextInt(replicas.size())).getClientInfo();
+	}
+
+	/**
+	 * Returns the Brokers that hold a Topic, as many as the replication factor
+	 * allows, starting with the Broker to which the Topic is assigned.
+	 *
+	 * @param topicName the name of the Topic
+	 *
+	 * @return the Brokers, which are never empty since this Broker is on the ring
+	 */
+	List<Member> getReplicasOf(String topicName) {
+		return brokerRing.get(topicName, config.getReplicationFactor());
+	}
+
+	/**
+	 * Returns whether a Member of the network is this Broker.
+	 *
+	 * @param member the Member
+	 *
+	 * @return {@code true} if the Member is this Broker, {@code false} otherwise
+	 */
+	boolean isSelf(Member member) {
+		return member.getName().equals(selfName);
+	}
+
+	// ========== MEMBERSHIP ==========
+
+	/**
+	 * Places the Brokers that are members of the network, according to the
+	 * {@link Membership} of this Broker, on the ring that assigns Topics to
+	 * Brokers, and removes those that no longer are.
+	 *
+	 * @param members the members, including this Broker
+	 */
+	void setMembers(List<Member> members) {
+		final Set<String> names = new HashSet<>();
+		final Map<String, Member> nodes = brokerRing.getNodes();
+		for (final Member member : members) {
+			names.add(member.getName());
+
+			final Member node = nodes.get(member.getName());
+			if ((node == null)
+			        || !node.getBrokerAddress().equals(member.getBrokerAddress()))
+				brokerRing.add(member.getName(), member);
+		}
+
+		for (final String name : new ArrayList<>(brokerRing.getNodes().keySet()))
+			if (!names.contains(name))
+				brokerRing.remove(name);
+
+		LG.sout("Members: %s", names);
+		reconcileTopics();
+	}
+
+	private void reconcileTopics() {
+		final List<BrokerTopic> topics;
+		synchronized (topicsByName) {
+			topics = new ArrayList<>(topicsByName.values());
+		}
+
+		for (final BrokerTopic topic : topics)
+			replication.reconcile(topic);
+	}
+
+	// Brokers listen on all addresses, so their ConnectionInfo alone may not be unique
+	private static String nodeNameOf(InetAddress address, int port) {
+		return address.getHostAddress() + ":" + port;
+	}
+
+	// ========== TASKS ==========
+
+	/**
+	 * A task which reads a client request and fulfils it. Requests that stream
+	 * data continue to be serviced by the same task until the connection closes.
+	 * A connection that is multiplexed is read by this task until it closes,
+	 * while each of its requests is serviced by a {@link StreamRequestHandler}.
 	 *
 	 * @author Alex Mandelias
 	 * @author Dimitris Tsirmpas
 	 */
-	private class ClientRequestHandler extends Thread {
+	private class ClientRequestHandler implements Runnable {
 
 		private final Socket socket;
 
 		public ClientRequestHandler(Socket socket) {
-			super("ClientRequestHandler-" + socket.getInetAddress() + "-" + socket.getLocalPort());
 			this.socket = socket;
 		}
 
@@ -178,144 +704,238 @@ public class Broker implements Runnable, AutoCloseable {
 			LG.ssocket("Starting ClientRequestHandler for Socket", socket);
 
 			try {
-				final ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
+				final InputStream in     = new BufferedInputStream(socket.getInputStream());
+				final WireFormat  format = Handshake.accept(in, socket.getOutputStream(),
+				        config.isBinaryWireFormatAllowed());
+
+				if (format == null) {
+					socket.close();
+					return;
+				}
+
+				final ObjectOutputStream oos = format
+				        .newOutputStream(new BufferedOutputStream(socket.getOutputStream()));
 				oos.flush();
-				final ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
+				final ObjectInputStream ois = format.newInputStream(in);
 
 				final Message message = (Message) ois.readObject();
-				LG.sout("Creating thread for message type: %s", message.getType());
 
-				LG.in();
-				switch (message.getType()) {
-				case DATA_PACKET_SEND: {
-					String topicName = (String) message.getValue();
-					LG.sout("DATA_PACKET_SEND '%s'", topicName);
-					LG.in();
+				if (message.getType() == MessageType.MULTIPLEX) {
+					LG.sout("MULTIPLEX");
+					oos.writeBoolean(true);
+					oos.flush();
 
-					BrokerTopic topic = getTopic(topicName);
-					new PullThread(ois, topic).run();
+					// keep reading on this task until the client disconnects
+					MultiplexedConnection.forServer(socket, ois, oos,
+					        stream -> executor.execute(new StreamRequestHandler(stream))).run();
 
-					oos.flush();
-					socket.close();
-					LG.out();
-					break;
+					LG.ssocket("Multiplexed connection closed", socket);
+					return;
 				}
 
-				case INITIALISE_CONSUMER: {
-					final TopicToken topicToken = (TopicToken) message.getValue();
-					final String     topicName  = topicToken.getName();
-					LG.sout("INITIALISE_CONSUMER '%s'", topicName);
-					LG.in();
+				serve(message, ois, oos, socket);
 
-					// previous code was cringe :D
+			} catch (final IOException ioe) {
+				// do nothing, ignore this client
+			} catch (final ClassNotFoundException e) {
+				e.printStackTrace();
+			}
+		}
+	}
 
-					registerConsumer(topicName, oos);
+	/**
+	 * A task which reads a client request from a stream of a multiplexed
+	 * connection and fulfils it, the same way a {@link ClientRequestHandler}
+	 * fulfils a request made over a connection of its own.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private class StreamRequestHandler implements Runnable {
 
-					// send existing topics that the consumer does not have
-					final long idOfLast = topicToken.getLastId();
-					LG.sout("idOfLast=%d", idOfLast);
+		private final MultiplexedConnection.Stream stream;
 
-					final List<PostInfo> piList = new LinkedList<>();
-					final Map<Long, Packet[]> packetMap = new HashMap<>();
-					getTopic(topicName).getPostsSince(idOfLast, piList, packetMap);
+		public StreamRequestHandler(MultiplexedConnection.Stream stream) {
+			this.stream = stream;
+		}
 
-					LG.sout("piList=%s", piList);
-					LG.sout("packetMap=%s", packetMap);
-					new PushThread(oos, piList, packetMap, Protocol.KEEP_ALIVE).run();
+		@Override
+		public void run() {
+			try {
+				final ObjectInputStream ois = stream.getInputStream();
 
-					BrokerTopic topic = getTopic(topicName);
-					new BrokerPushThread(topic, oos).start();
+				serve((Message) ois.readObject(), ois, stream.getOutputStream(), stream);
 
-					LG.out();
-					break;
+			} catch (final IOException ioe) {
+				// do nothing, ignore this request
+			} catch (final ClassNotFoundException e) {
+				e.printStackTrace();
+			} finally {
+				try {
+					stream.close();
+				} catch (final IOException e) {
+					// do nothing
 				}
+			}
+		}
+	}
 
-				case BROKER_DISCOVERY: {
-					String topicName = (String) message.getValue();
-					LG.sout("BROKER_DISCOVERY '%s'", topicName);
-					LG.in();
-					new BrokerDiscoveryThread(oos, topicName).run();
+	/**
+	 * Fulfils a client request. Requests that stream data are serviced until the
+	 * connection closes, after which the connection is closed.
+	 *
+	 * @param message    the request
+	 * @param ois        the stream from the client
+	 * @param oos        the stream to the client
+	 * @param connection the connection of the streams, for example their socket
+	 *
+	 * @throws IOException            if an I/O error occurs
+	 * @throws ClassNotFoundException if an object of an unknown class arrives
+	 */
+	private void serve(Message message, ObjectInputStream ois, ObjectOutputStream oos,
+	        Closeable connection) throws IOException, ClassNotFoundException {
+		LG.sout("Creating thread for message type: %s", message.getType());
+
+		LG.in();
+		switch (message.getType()) {
+		case DATA_PACKET_SEND: {
+			String topicName = (String) message.getValue();
+			LG.sout("DATA_PACKET_SEND '%s'", topicName);
+			LG.in();
 
-					oos.flush();
-					socket.close();
-					LG.out();
-					break;
-				}
+			BrokerTopic topic = getTopic(topicName);
+			new PullThread(ois, topic).run();
+			replication.posted(topic);
 
-				case CREATE_TOPIC: {
-					String topicName = (String) message.getValue();
-					LG.sout("CREATE_TOPIC '%s'", topicName);
-					LG.in();
+			try {
+				replication.awaitFollowers(topic);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
 
-					final boolean topicExists = topicExists(topicName);
+			oos.flush();
+			connection.close();
+			LG.out();
+			break;
+		}
 
-					LG.sout("topicExists=%s", topicExists);
-					if (!topicExists)
-						addTopic(topicName);
+		case INITIALISE_CONSUMER: {
+			final TopicToken topicToken = (TopicToken) message.getValue();
+			final String     topicName  = topicToken.getName();
+			LG.sout("INITIALISE_CONSUMER '%s'", topicName);
+			LG.in();
 
-					oos.writeBoolean(!topicExists);
+			// previous code was cringe :D
 
-					oos.flush();
-					socket.close();
-					LG.out();
-					break;
-				}
+			BrokerTopic topic = getTopicToRead(topicName);
+			registerConsumer(topicName, oos);
 
-				default:
-					throw new IllegalArgumentException(
-					        "You forgot to put a case for the new Message enum");
+			// send existing topics that the consumer does not have
+			LG.sout("idOfLast=%d, offsetOfLast=%d", topicToken.getLastId(),
+			        topicToken.getLastOffset());
+
+			final SendQueue        queue      = newSendQueue(topic, true);
+			final BrokerPushThread pushThread = new BrokerPushThread(topic, oos, connection,
+			        queue);
+
+			// same as a PushThread with Protocol.KEEP_ALIVE, without collecting the Posts first
+			try {
+				oos.writeInt(Integer.MAX_VALUE);
+				for (final Object postInfoOrPacket : pushThread.subscribe(topicToken)) {
+					oos.writeObject(postInfoOrPacket);
+					oos.reset();
 				}
-				LG.out();
-				LG.sout("Thread for message type: %s done", message.getType());
+				oos.flush();
 
-			} catch (final IOException ioe) {
-				// do nothing, ignore this client
-			} catch (final ClassNotFoundException e) {
-				e.printStackTrace();
+			} catch (final IOException | UncheckedIOException e) {
+				// the push thread stops, and unsubscribes, as soon as it runs
+				queue.close();
 			}
+
+			// keep streaming on this task until the Consumer disconnects
+			pushThread.run();
+			unregisterConsumer(topicName, oos);
+
+			LG.out();
+			break;
 		}
 
-		private boolean topicExists(String topicName) {
-			synchronized (topicsByName) {
-				return topicsByName.containsKey(topicName);
-			}
+		case BROKER_DISCOVERY: {
+			String topicName = (String) message.getValue();
+			LG.sout("BROKER_DISCOVERY '%s'", topicName);
+			LG.in();
+			new BrokerDiscoveryThread(oos, topicName).run();
+
+			oos.flush();
+			connection.close();
+			LG.out();
+			break;
 		}
 
-		private BrokerTopic getTopic(String topicName) {
-			final BrokerTopic topic;
-			synchronized (topicsByName) {
-				topic = topicsByName.get(topicName);
-			}
+		case REPLICA_DISCOVERY: {
+			String topicName = (String) message.getValue();
+			LG.sout("REPLICA_DISCOVERY '%s'", topicName);
+			LG.in();
+			oos.writeObject(getBrokerToRead(topicName));
 
-			if (topic == null)
-				throw new NoSuchElementException("There is no Topic with name " + topicName);
+			oos.flush();
+			connection.close();
+			LG.out();
+			break;
+		}
+
+		case CREATE_TOPIC: {
+			String topicName = (String) message.getValue();
+			LG.sout("CREATE_TOPIC '%s'", topicName);
+			LG.in();
+
+			final boolean topicExists = topicExists(topicName);
 
-			return topic;
+			LG.sout("topicExists=%s", topicExists);
+			if (!topicExists)
+				addTopic(topicName);
+
+			oos.writeBoolean(!topicExists);
+
+			oos.flush();
+			connection.close();
+			LG.out();
+			break;
 		}
 
-		private void addTopic(String topicName) {
-			synchronized (topicsByName) {
-				topicsByName.put(topicName, new BrokerTopic(topicName));
-			}
+		case PACKET_SIZE_LIMITS: {
+			LG.sout("PACKET_SIZE_LIMITS");
+			LG.in();
 
-			synchronized (consumerOOSPerTopic) {
-				consumerOOSPerTopic.put(topicName, new HashSet<>());
-			}
+			final SizeLimits limits = config.getPacketSizeLimits();
+			oos.writeInt(limits.getMinSize());
+			oos.writeInt(limits.getMaxSize());
+
+			oos.flush();
+			connection.close();
+			LG.out();
+			break;
 		}
 
-		private void registerConsumer(String topicName, ObjectOutputStream oos) {
-			synchronized (consumerOOSPerTopic) {
-				consumerOOSPerTopic.get(topicName).add(oos);
-			}
+		case MULTIPLEX:
+			throw new IllegalArgumentException("A multiplexed connection can't be multiplexed");
+
+		case REPLICATE:
+		case RELAY:
+			throw new IllegalArgumentException("Posts are only replicated between Brokers");
+
+		default:
+			throw new IllegalArgumentException(
+			        "You forgot to put a case for the new Message enum");
 		}
+		LG.out();
+		LG.sout("Thread for message type: %s done", message.getType());
 	}
 
-	private class BrokerRequestHandler extends Thread {
+	private class BrokerRequestHandler implements Runnable {
 
 		private final Socket socket;
 
 		public BrokerRequestHandler(Socket socket) {
-			super("BrokerRequestHandler-" + socket.getInetAddress() + "-" + socket.getLocalPort());
 			this.socket = socket;
 		}
 
@@ -324,49 +944,98 @@ public class Broker implements Runnable, AutoCloseable {
 
 			LG.ssocket("Starting BrokerRequestHandler for Socket", socket);
 
-			ConnectionInfo brokerCIForClient;
 			try {
-				final ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
-				brokerCIForClient = (ConnectionInfo) ois.readObject();
+				final ObjectInputStream ois = new ObjectInputStream(
+				        new BufferedInputStream(socket.getInputStream()));
+				final Object request = ois.readObject();
 
-			} catch (ClassNotFoundException | IOException e) {
-				// do nothing, ignore this broker
-				e.printStackTrace();
-				try {
+				if (!(request instanceof Message)) {
+					join((ConnectionInfo) request, ois.readInt());
 					socket.close();
-				} catch (IOException e1) {
-					e1.printStackTrace();
+					return;
 				}
-				return;
+
+				final Message message = (Message) request;
+
+				final ObjectOutputStream oos = new ObjectOutputStream(
+				        new BufferedOutputStream(socket.getOutputStream()));
+				oos.flush(); // the other broker waits for the header of the stream
+
+				switch (message.getType()) {
+				case GOSSIP: {
+					@SuppressWarnings("unchecked")
+					final List<Membership.MemberState> states = (List<Membership.MemberState>) message
+					        .getValue();
+					membership.merge(states, socket.getInetAddress());
+
+					oos.writeObject(membership.getStates());
+					oos.flush();
+					break;
+				}
+
+				case REPLICATE:
+					// the leader of a Topic copies its Posts to this broker until either closes
+					replication.follow((String) message.getValue(), ois, oos);
+					break;
+
+				case RELAY:
+					// this broker sends the Posts of a Topic to a relay until either closes
+					replication.serveRelay((String) message.getValue(), socket, ois, oos);
+					break;
+
+				default:
+					throw new IllegalArgumentException(
+					        "Unexpected message from broker: " + message.getType());
+				}
+
+			} catch (ClassNotFoundException | IOException | NoSuchElementException e) {
+				// do nothing, ignore this broker
+				LG.sout("BrokerRequestHandler stopped: %s", e);
 			}
 
-			// only add socket and CI if no exception was thrown
-			brokerConnections.add(socket);
+			try {
+				socket.close();
+			} catch (IOException e1) {
+				e1.printStackTrace();
+			}
+		}
 
+		private void join(ConnectionInfo brokerCIForClient, int brokerPort) throws IOException {
 			LG.sout("brokerCIForCilent=%s", brokerCIForClient);
-			brokerCI.add(brokerCIForClient);
+
+			final String name = Broker.nodeNameOf(socket.getInetAddress(),
+			        brokerCIForClient.getPort());
+			final Member member = new Member(name, brokerCIForClient,
+			        new InetSocketAddress(socket.getInetAddress(), brokerPort));
+
+			// the new broker learns of the rest of the network, and they of it, by gossip
+			membership.add(member);
+
+			final ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
+			oos.writeObject(name);
+			oos.writeObject(membership.getStates());
+			oos.flush();
 		}
 	}
 
 	/**
-	 * A Thread for discovering the actual Broker for a Topic.
+	 * A task for discovering the actual Broker for a Topic.
 	 *
 	 * @author Alex Mandelias
 	 */
-	private class BrokerDiscoveryThread extends Thread {
+	private class BrokerDiscoveryThread implements Runnable {
 
 		private final ObjectOutputStream oos;
 		private final String             topicName;
 
 		/**
-		 * Constructs the Thread that, when run, will write the ConnectionInfo of the
+		 * Constructs the task that, when run, will write the ConnectionInfo of the
 		 * Broker responsible for the requested Topic to the given output stream.
 		 *
 		 * @param stream    the output stream to which to write the ConnectionInfo
 		 * @param topicName the name of the Topic
 		 */
 		public BrokerDiscoveryThread(ObjectOutputStream stream, String topicName) {
-			super("BrokerDiscoveryThread-" + topicName);
 			oos = stream;
 			this.topicName = topicName;
 		}
@@ -378,7 +1047,7 @@ public class Broker implements Runnable, AutoCloseable {
 			LG.in();
 
 			LG.sout("topicName=%s", topicName);
-			final ConnectionInfo brokerInfo = getAssignedBroker();
+			final ConnectionInfo brokerInfo = getAssignedBroker(topicName);
 			LG.sout("brokerInfo=%s", brokerInfo);
 
 			try {
@@ -388,20 +1057,5 @@ public class Broker implements Runnable, AutoCloseable {
 			}
 			LG.out();
 		}
-
-		private ConnectionInfo getAssignedBroker() {
-			final int brokerCount = brokerConnections.size();
-
-			final int hash        = AbstractTopic.hashForTopic(topicName);
-			final int brokerIndex = Math.abs(hash % (brokerCount + 1));
-
-			// last index (out of range normally) => this broker is responsible for the topic
-			// this works because the default broker is the only broker that processes such requests.
-			if (brokerIndex == brokerCount)
-				return ConnectionInfo.forServerSocket(clientRequestSocket);
-
-			// else send the broker from the other connections
-			return brokerCI.get(brokerIndex);
-		}
 	}
 }
@@ -0,0 +1,619 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet.SizeLimits;
+import com.example.messagingapp.eventDeliverySystem.datastructures.StandardTopicHash;
+import com.example.messagingapp.eventDeliverySystem.datastructures.TopicHash;
+
+/**
+ * An immutable set of options that alter the behaviour of a {@link Broker}.
+ * Options are read from {@link Properties}, so that they can be provided as
+ * system properties on the command line (for example
+ * {@code -Dbroker.io.mode=selector}). Options that are not specified take their
+ * default values.
+ *
+ * @author Alex Mandelias
+ */
+public final class BrokerConfig {
+
+	/** The property that defines the {@link IOMode}, either 'thread' or 'selector' */
+	public static final String IO_MODE = "broker.io.mode";
+
+	/** The property that defines the number of event loops in 'selector' mode */
+	public static final String EVENT_LOOP_COUNT = "broker.io.eventLoops";
+
+	/** The property that defines the {@link ThreadType}, either 'platform' or 'virtual' */
+	public static final String THREAD_TYPE = "broker.io.threads";
+
+	/** The property that defines whether clients may use the binary wire format */
+	public static final String BINARY_WIRE_FORMAT = "broker.wire.binary";
+
+	/**
+	 * The property that defines the size, in bytes, of the encoded Packets kept
+	 * for relaying to binary Consumers in 'selector' mode, or 0 to disable relaying
+	 */
+	public static final String RELAY_CACHE_SIZE = "broker.relay.cacheSize";
+
+	/**
+	 * The property that defines the directory where Topics are persisted. If it is
+	 * not specified, Topics are kept only in memory.
+	 */
+	public static final String LOG_DIRECTORY = "broker.log.dir";
+
+	/** The property that defines the size, in bytes, of the segments of a Topic's log */
+	public static final String LOG_SEGMENT_SIZE = "broker.log.segmentSize";
+
+	/**
+	 * The property that defines the minimum number of bytes between two records
+	 * of a log segment that are indexed
+	 */
+	public static final String LOG_INDEX_INTERVAL = "broker.log.indexInterval";
+
+	/**
+	 * The property that defines the maximum number of PostInfo and Packet objects
+	 * queued for each Consumer
+	 */
+	public static final String CONSUMER_QUEUE_COUNT = "broker.consumer.queuePackets";
+
+	/**
+	 * The property that defines the maximum size, in bytes, of the payloads
+	 * queued for each Consumer
+	 */
+	public static final String CONSUMER_QUEUE_SIZE = "broker.consumer.queueBytes";
+
+	/**
+	 * The property that defines the {@link OverflowPolicy}, either 'block',
+	 * 'drop_oldest' or 'disconnect'
+	 */
+	public static final String CONSUMER_OVERFLOW_POLICY = "broker.consumer.overflow";
+
+	/**
+	 * The property that defines the number of virtual nodes of every Broker on
+	 * the ring that assigns Topics to Brokers
+	 */
+	public static final String VIRTUAL_NODE_COUNT = "broker.ring.virtualNodes";
+
+	/**
+	 * The property that defines the {@link StandardTopicHash} of the ring that
+	 * assigns Topics to Brokers, either 'murmur3' or 'md5'
+	 */
+	public static final String RING_HASH = "broker.ring.hash";
+
+	/**
+	 * The property that defines the number of Brokers that hold every Topic: its
+	 * leader and its followers
+	 */
+	public static final String REPLICATION_FACTOR = "broker.replication.factor";
+
+	/** The property that defines the {@link AckLevel}, either 'leader' or 'all' */
+	public static final String REPLICATION_ACKS = "broker.replication.acks";
+
+	/**
+	 * The property that defines the time, in milliseconds, that a leader waits for
+	 * its followers to acknowledge the Posts of a Publisher
+	 */
+	public static final String REPLICATION_ACK_TIMEOUT = "broker.replication.ackTimeout";
+
+	/**
+	 * The property that defines whether Brokers that don't hold a Topic relay it
+	 * to their own Consumers
+	 */
+	public static final String FANOUT_RELAYS = "broker.fanout.relays";
+
+	/**
+	 * The property that defines the time, in milliseconds, between two rounds of
+	 * gossip about the members of the network
+	 */
+	public static final String GOSSIP_INTERVAL = "broker.gossip.interval";
+
+	/**
+	 * The property that defines the time, in milliseconds, after which a member of
+	 * the network that hasn't been heard of is considered failed
+	 */
+	public static final String GOSSIP_FAILURE_TIMEOUT = "broker.gossip.failureTimeout";
+
+	/**
+	 * The property that defines the minimum size, in bytes, of the payload of the
+	 * Packets of a Post that clients send, unless the Post is smaller
+	 */
+	public static final String PACKET_MIN_SIZE = "broker.packet.minSize";
+
+	/**
+	 * The property that defines the maximum size, in bytes, of the payload of the
+	 * Packets that clients send
+	 */
+	public static final String PACKET_MAX_SIZE = "broker.packet.maxSize";
+
+	/**
+	 * Defines the different ways a Broker can service the connections of its
+	 * clients.
+	 *
+	 * @author Alex Mandelias
+	 */
+	public enum IOMode {
+
+		/** Every client connection is serviced by its own dedicated Threads */
+		THREAD,
+
+		/**
+		 * All client connections are multiplexed over a fixed number of event loops
+		 * using non-blocking channels.
+		 */
+		SELECTOR
+	}
+
+	/**
+	 * Defines the kind of Threads on which a Broker runs the tasks that service
+	 * blocking connections.
+	 *
+	 * @author Alex Mandelias
+	 */
+	public enum ThreadType {
+
+		/** Every task runs on an operating system Thread, which are pooled */
+		PLATFORM,
+
+		/**
+		 * Every task runs on its own virtual Thread, so that many thousands of
+		 * connections can be serviced. Virtual Threads require Java 21 or later; on
+		 * older platforms platform Threads are used instead.
+		 */
+		VIRTUAL
+	}
+
+	/**
+	 * Defines what happens when a Consumer doesn't keep up with the Posts of its
+	 * Topic and the queue of objects waiting to be sent to it is full.
+	 *
+	 * @author Alex Mandelias
+	 */
+	public enum OverflowPolicy {
+
+		/**
+		 * The Publishers of the Topic wait until there is room in the queue, so no
+		 * Post is lost but a single slow Consumer slows down the whole Topic.
+		 */
+		BLOCK,
+
+		/**
+		 * The oldest Posts in the queue that haven't started being sent are dropped,
+		 * so the Consumer misses some Posts but stays connected.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * The Consumer is disconnected. It may connect again later and resume from
+		 * the last Post it received.
+		 */
+		DISCONNECT
+	}
+
+	/**
+	 * Defines when the leader of a Topic considers the Posts of a Publisher
+	 * posted, and therefore when it ends the Publisher's request.
+	 *
+	 * @author Alex Mandelias
+	 */
+	public enum AckLevel {
+
+		/**
+		 * The Posts are posted once the leader has them. The followers receive them
+		 * later, so they are lost if the leader is lost before that.
+		 */
+		LEADER,
+
+		/**
+		 * The Posts are posted once every follower that is connected to the leader
+		 * has acknowledged them as well, or once the acknowledgement timeout
+		 * expires.
+		 */
+		ALL
+	}
+
+	private final IOMode     ioMode;
+	private final int        eventLoopCount;
+	private final ThreadType threadType;
+	private final boolean    binaryWireFormat;
+	private final int        relayCacheSize;
+	private final Path       logDirectory;
+	private final int        logSegmentSize;
+	private final int        logIndexInterval;
+
+	private final int            consumerQueueCount;
+	private final int            consumerQueueSize;
+	private final OverflowPolicy consumerOverflowPolicy;
+
+	private final int       virtualNodeCount;
+	private final TopicHash ringHash;
+
+	private final int      replicationFactor;
+	private final AckLevel replicationAckLevel;
+	private final int      replicationAckTimeout;
+
+	private final boolean fanoutRelays;
+
+	private final int gossipInterval;
+	private final int gossipFailureTimeout;
+
+	private final SizeLimits packetSizeLimits;
+
+	/**
+	 * Returns a BrokerConfig where every option has its default value.
+	 *
+	 * @return the default BrokerConfig
+	 */
+	public static BrokerConfig defaults() {
+		return BrokerConfig.fromProperties(new Properties());
+	}
+
+	/**
+	 * Creates a BrokerConfig from some Properties. Options not present in the
+	 * Properties take their default values.
+	 *
+	 * @param properties the Properties from which to read the options
+	 *
+	 * @return the BrokerConfig
+	 *
+	 * @throws IllegalArgumentException if the value of an option is invalid
+	 */
+	public static BrokerConfig fromProperties(Properties properties) {
+		final String ioModeName = properties.getProperty(BrokerConfig.IO_MODE, "thread");
+		final IOMode ioMode     = IOMode.valueOf(ioModeName.toUpperCase(Locale.ROOT));
+
+		final int eventLoopCount = BrokerConfig.getInt(properties, BrokerConfig.EVENT_LOOP_COUNT,
+		        Runtime.getRuntime().availableProcessors(), 1);
+
+		final String     threadTypeName = properties.getProperty(BrokerConfig.THREAD_TYPE,
+		        "platform");
+		final ThreadType threadType     = ThreadType
+		        .valueOf(threadTypeName.trim().toUpperCase(Locale.ROOT));
+
+		final boolean binaryWireFormat = Boolean.parseBoolean(
+		        properties.getProperty(BrokerConfig.BINARY_WIRE_FORMAT, "true").trim());
+
+		final int relayCacheSize = BrokerConfig.getInt(properties, BrokerConfig.RELAY_CACHE_SIZE,
+		        64 * 1024 * 1024, 0);
+
+		final String logDirectoryName = properties.getProperty(BrokerConfig.LOG_DIRECTORY);
+		final Path   logDirectory     = logDirectoryName == null ? null
+		        : Paths.get(logDirectoryName.trim());
+
+		final int logSegmentSize = BrokerConfig.getInt(properties, BrokerConfig.LOG_SEGMENT_SIZE,
+		        16 * 1024 * 1024, 1024);
+
+		final int logIndexInterval = BrokerConfig.getInt(properties,
+		        BrokerConfig.LOG_INDEX_INTERVAL, 4 * 1024, 1);
+
+		final int consumerQueueCount = BrokerConfig.getInt(properties,
+		        BrokerConfig.CONSUMER_QUEUE_COUNT, 1024, 1);
+
+		final int consumerQueueSize = BrokerConfig.getInt(properties,
+		        BrokerConfig.CONSUMER_QUEUE_SIZE, 16 * 1024 * 1024, 1);
+
+		final String         policyName = properties
+		        .getProperty(BrokerConfig.CONSUMER_OVERFLOW_POLICY, "block");
+		final OverflowPolicy policy     = OverflowPolicy
+		        .valueOf(policyName.trim().toUpperCase(Locale.ROOT));
+
+		final int virtualNodeCount = BrokerConfig.getInt(properties,
+		        BrokerConfig.VIRTUAL_NODE_COUNT, 256, 1);
+
+		final String    ringHashName = properties.getProperty(BrokerConfig.RING_HASH, "murmur3");
+		final TopicHash ringHash     = StandardTopicHash
+		        .valueOf(ringHashName.trim().toUpperCase(Locale.ROOT));
+
+		final int replicationFactor = BrokerConfig.getInt(properties,
+		        BrokerConfig.REPLICATION_FACTOR, 1, 1);
+
+		final String   ackLevelName = properties.getProperty(BrokerConfig.REPLICATION_ACKS,
+		        "leader");
+		final AckLevel ackLevel     = AckLevel.valueOf(ackLevelName.trim().toUpperCase(Locale.ROOT));
+
+		final int ackTimeout = BrokerConfig.getInt(properties,
+		        BrokerConfig.REPLICATION_ACK_TIMEOUT, 5000, 1);
+
+		final boolean fanoutRelays = Boolean.parseBoolean(
+		        properties.getProperty(BrokerConfig.FANOUT_RELAYS, "false").trim());
+
+		final int gossipInterval = BrokerConfig.getInt(properties, BrokerConfig.GOSSIP_INTERVAL,
+		        1000, 1);
+
+		final int failureTimeout = BrokerConfig.getInt(properties,
+		        BrokerConfig.GOSSIP_FAILURE_TIMEOUT, 10000, 1);
+
+		final int packetMinSize = BrokerConfig.getInt(properties, BrokerConfig.PACKET_MIN_SIZE,
+		        SizeLimits.DEFAULT.getMinSize(), 1);
+
+		final int packetMaxSize = BrokerConfig.getInt(properties, BrokerConfig.PACKET_MAX_SIZE,
+		        Math.max(packetMinSize, SizeLimits.DEFAULT.getMaxSize()), packetMinSize);
+
+		return new BrokerConfig(ioMode, eventLoopCount, threadType, binaryWireFormat,
+		        relayCacheSize, logDirectory, logSegmentSize, logIndexInterval, consumerQueueCount,
+		        consumerQueueSize, policy, virtualNodeCount, ringHash, replicationFactor, ackLevel,
+		        ackTimeout, fanoutRelays, gossipInterval, failureTimeout,
+		        new SizeLimits(packetMinSize, packetMaxSize));
+	}
+
+	private BrokerConfig(IOMode ioMode, int eventLoopCount, ThreadType threadType,
+	        boolean binaryWireFormat, int relayCacheSize, Path logDirectory, int logSegmentSize,
+	        int logIndexInterval, int consumerQueueCount, int consumerQueueSize,
+	        OverflowPolicy consumerOverflowPolicy, int virtualNodeCount, TopicHash ringHash,
+	        int replicationFactor, AckLevel replicationAckLevel, int replicationAckTimeout,
+	        boolean fanoutRelays, int gossipInterval, int gossipFailureTimeout,
+	        SizeLimits packetSizeLimits) {
+		this.ioMode = ioMode;
+		this.eventLoopCount = eventLoopCount;
+		this.threadType = threadType;
+		this.binaryWireFormat = binaryWireFormat;
+		this.relayCacheSize = relayCacheSize;
+		this.logDirectory = logDirectory;
+		this.logSegmentSize = logSegmentSize;
+		this.logIndexInterval = logIndexInterval;
+		this.consumerQueueCount = consumerQueueCount;
+		this.consumerQueueSize = consumerQueueSize;
+		this.consumerOverflowPolicy = consumerOverflowPolicy;
+		this.virtualNodeCount = virtualNodeCount;
+		this.ringHash = ringHash;
+		this.replicationFactor = replicationFactor;
+		this.replicationAckLevel = replicationAckLevel;
+		this.replicationAckTimeout = replicationAckTimeout;
+		this.fanoutRelays = fanoutRelays;
+		this.gossipInterval = gossipInterval;
+		this.gossipFailureTimeout = gossipFailureTimeout;
+		this.packetSizeLimits = packetSizeLimits;
+	}
+
+	/**
+	 * Returns the way the Broker services the connections of its clients.
+	 *
+	 * @return the IOMode
+	 */
+	public IOMode getIOMode() {
+		return ioMode;
+	}
+
+	/**
+	 * Returns the number of event loops used when the IOMode is
+	 * {@link IOMode#SELECTOR}.
+	 *
+	 * @return the number of event loops
+	 */
+	public int getEventLoopCount() {
+		return eventLoopCount;
+	}
+
+	/**
+	 * Returns the kind of Threads on which the tasks that service blocking
+	 * connections run. These are all client connections when the IOMode is
+	 * {@link IOMode#THREAD}, and the connections of other Brokers in any case.
+	 *
+	 * @return the ThreadType
+	 */
+	public ThreadType getThreadType() {
+		return threadType;
+	}
+
+	/**
+	 * Returns whether clients may use the binary wire format. If not, clients
+	 * fall back to Java serialization.
+	 *
+	 * @return {@code true} if the binary wire format is allowed, {@code false}
+	 *         otherwise
+	 */
+	public boolean isBinaryWireFormatAllowed() {
+		return binaryWireFormat;
+	}
+
+	/**
+	 * Returns the maximum total size of the encoded Packets that are kept so that
+	 * they can be relayed to many binary Consumers without being encoded for each
+	 * one. A size of 0 means that Packets are encoded separately for every
+	 * Consumer.
+	 *
+	 * @return the size in bytes
+	 */
+	public int getRelayCacheSize() {
+		return relayCacheSize;
+	}
+
+	/**
+	 * Returns the directory where Topics are persisted.
+	 *
+	 * @return the directory, or {@code null} if Topics are kept only in memory
+	 */
+	public Path getLogDirectory() {
+		return logDirectory;
+	}
+
+	/**
+	 * Returns the size of the segments of the log of each Topic.
+	 *
+	 * @return the size in bytes
+	 */
+	public int getLogSegmentSize() {
+		return logSegmentSize;
+	}
+
+	/**
+	 * Returns the minimum number of bytes between two records of a log segment
+	 * that are indexed. Smaller intervals make reading faster but the indexes
+	 * larger.
+	 *
+	 * @return the interval in bytes
+	 */
+	public int getLogIndexInterval() {
+		return logIndexInterval;
+	}
+
+	/**
+	 * Returns the maximum number of PostInfo and Packet objects that may be queued
+	 * for a Consumer before its {@link OverflowPolicy} applies.
+	 *
+	 * @return the number of objects
+	 */
+	public int getConsumerQueueCount() {
+		return consumerQueueCount;
+	}
+
+	/**
+	 * Returns the maximum total size of the payloads that may be queued for a
+	 * Consumer before its {@link OverflowPolicy} applies.
+	 *
+	 * @return the size in bytes
+	 */
+	public int getConsumerQueueSize() {
+		return consumerQueueSize;
+	}
+
+	/**
+	 * Returns what happens when a Consumer falls so far behind that its queue is
+	 * full.
+	 *
+	 * @return the OverflowPolicy
+	 */
+	public OverflowPolicy getConsumerOverflowPolicy() {
+		return consumerOverflowPolicy;
+	}
+
+	/**
+	 * Returns the number of virtual nodes of every Broker on the
+	 * {@link HashRing} that assigns Topics to Brokers. More virtual nodes spread
+	 * the Topics more evenly across the Brokers.
+	 *
+	 * @return the number of virtual nodes
+	 */
+	public int getVirtualNodeCount() {
+		return virtualNodeCount;
+	}
+
+	/**
+	 * Returns the hash function of the {@link HashRing} that assigns Topics to
+	 * Brokers. All Brokers of a network must use the same function.
+	 *
+	 * @return the hash function
+	 */
+	public TopicHash getRingHash() {
+		return ringHash;
+	}
+
+	/**
+	 * Returns the number of Brokers that hold every Topic, the first ones assigned
+	 * to it by the {@link HashRing}. The Broker on which a Topic is created is its
+	 * leader, to which its Posts are published, and the rest are its followers,
+	 * to which the leader copies them and from which Consumers may also read. A
+	 * factor of 1 means that Topics are not replicated.
+	 *
+	 * @return the replication factor
+	 */
+	public int getReplicationFactor() {
+		return replicationFactor;
+	}
+
+	/**
+	 * Returns when the leader of a Topic considers the Posts of a Publisher
+	 * posted.
+	 *
+	 * @return the AckLevel
+	 */
+	public AckLevel getReplicationAckLevel() {
+		return replicationAckLevel;
+	}
+
+	/**
+	 * Returns the maximum time that the leader of a Topic waits for its followers
+	 * to acknowledge the Posts of a Publisher under the {@link AckLevel#ALL ALL}
+	 * ack level.
+	 *
+	 * @return the time in milliseconds
+	 */
+	public int getReplicationAckTimeout() {
+		return replicationAckTimeout;
+	}
+
+	/**
+	 * Returns whether a Broker that doesn't hold a Topic relays it to its own
+	 * Consumers. A relay receives the Posts of the Topic once, from one of the
+	 * Brokers that hold it, and sends them to each of its Consumers, so that the
+	 * Consumers of a Topic can be spread across every Broker of the network. Every
+	 * Consumer is then directed to the Broker with the fewest Consumers.
+	 *
+	 * @return {@code true} if Brokers relay Topics, {@code false} otherwise
+	 */
+	public boolean isFanoutRelayEnabled() {
+		return fanoutRelays;
+	}
+
+	/**
+	 * Returns the time between two rounds of gossip, in each of which a Broker
+	 * exchanges what it knows of the members of the network, including their
+	 * number of Consumers, with another Broker.
+	 *
+	 * @return the time in milliseconds
+	 */
+	public int getGossipInterval() {
+		return gossipInterval;
+	}
+
+	/**
+	 * Returns the time after which a member of the network whose heartbeat hasn't
+	 * increased is considered failed, so that its Topics are assigned to other
+	 * Brokers.
+	 *
+	 * @return the time in milliseconds
+	 */
+	public int getGossipFailureTimeout() {
+		return gossipFailureTimeout;
+	}
+
+	/**
+	 * Returns the limits of the size of the Packets that clients send, which the
+	 * Broker advertises to them. Clients choose the size of the Packets of each
+	 * Post within these limits.
+	 *
+	 * @return the limits
+	 */
+	public SizeLimits getPacketSizeLimits() {
+		return packetSizeLimits;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+		        "BrokerConfig [ioMode=%s, eventLoopCount=%d, threadType=%s, binaryWireFormat=%s, "
+		                + "relayCacheSize=%d, logDirectory=%s, logSegmentSize=%d, "
+		                + "logIndexInterval=%d, consumerQueueCount=%d, consumerQueueSize=%d, "
+		                + "consumerOverflowPolicy=%s, virtualNodeCount=%d, "
+		                + "ringHash=%s, replicationFactor=%d, replicationAckLevel=%s, "
+		                + "replicationAckTimeout=%d, fanoutRelays=%s, gossipInterval=%d, "
+		                + "gossipFailureTimeout=%d, packetSizeLimits=%s]",
+		        ioMode, eventLoopCount, threadType, binaryWireFormat, relayCacheSize, logDirectory,
+		        logSegmentSize, logIndexInterval, consumerQueueCount, consumerQueueSize,
+		        consumerOverflowPolicy, virtualNodeCount, ringHash, replicationFactor,
+		        replicationAckLevel, replicationAckTimeout, fanoutRelays, gossipInterval,
+		        gossipFailureTimeout, packetSizeLimits);
+	}
+
+	private static int getInt(Properties properties, String key, int defaultValue,
+	        int minValue) {
+		final String value = properties.getProperty(key);
+		if (value == null)
+			return defaultValue;
+
+		final int intValue;
+		try {
+			intValue = Integer.parseInt(value.trim());
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+		}
+
+		if (intValue < minValue)
+			throw new IllegalArgumentException(
+			        key + " must be at least " + minValue + ", found: " + value);
+
+		return intValue;
+	}
+}
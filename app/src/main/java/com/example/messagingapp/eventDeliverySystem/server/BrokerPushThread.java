@@ -1,192 +1,174 @@
 package com.example.messagingapp.eventDeliverySystem.server;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
 
-import com.example.messagingapp.eventDeliverySystem.datastructures.AbstractTopic;
 import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
 import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Topic.TopicToken;
 import com.example.messagingapp.eventDeliverySystem.util.LG;
 import com.example.messagingapp.eventDeliverySystem.util.Subscriber;
 
 /**
- * A thread that receives packets for a certain Topic and streams them to a
- * Consumer.
+ * A task that receives packets for a certain Topic and streams them to a
+ * Consumer. The task is subscribed to the Topic together with the catch-up of
+ * the Consumer, which must be written to the stream before the task is run.
+ * <p>
+ * The packets waiting to be streamed are kept in a bounded {@link SendQueue},
+ * so a slow Consumer either blocks the Publishers of the Topic, misses some
+ * Posts or is disconnected, according to the configuration of the Broker. The
+ * task ends, and unsubscribes from the Topic, when the Consumer is
+ * disconnected.
+ * <p>
+ * Notifying this task doesn't lock anything but the Subscriber itself, and
+ * this task writes to the stream without holding any lock. Whatever has been
+ * queued while a batch was being written is drained together with it and the
+ * stream is flushed once per batch.
  *
  * @author Alex Mandelias
  * @author Dimitris Tsirmpas
  */
-class BrokerPushThread extends Thread implements Subscriber {
+class BrokerPushThread implements Runnable, Subscriber {
 
-	private static final long NO_CURRENT_POST_ID = -1;
+	private static final int MAX_BATCH_SIZE = 64;
 
-	private long                          currentPostId;
-	private final Deque<PostInfo>         postInfos;
-	private final Map<Long, List<Packet>> buffers;
+	private final String        name;
+	private final BrokerTopic   topic;
+	private final PostSequencer sequencer;
 
-	private final Queue<Object>      queue;
+	private final SendQueue          queue;
 	private final ObjectOutputStream oos;
-
-	private final Object monitor = new Object();
+	private final Closeable          connection;
 
 	/**
-	 * Constructs the Thread that, when run, will write some Posts to a stream. This
-	 * Thread is subscribed to a Topic and is notified each time there is new data
-	 * in the Topic.
+	 * Constructs the task that, when run, will write some Posts to a stream. Once
+	 * this task is subscribed to its Topic, it is notified each time there is new
+	 * data in the Topic.
 	 *
-	 * @param topic  the Topic to subscribe to
-	 * @param stream the output stream to which to write the data
+	 * @param topic      the Topic to subscribe to
+	 * @param stream     the output stream to which to write the data
+	 * @param connection the connection of the stream, for example its socket,
+	 *                   which is closed to disconnect the Consumer
+	 * @param queue      the queue in which to keep the data until it is written
 	 */
-	public BrokerPushThread(AbstractTopic topic, ObjectOutputStream stream) {
-		super("BrokerPushThread-" + topic.getName());
-		topic.subscribe(this);
+	public BrokerPushThread(BrokerTopic topic, ObjectOutputStream stream, Closeable connection,
+	        SendQueue queue) {
+		name = "BrokerPushThread-" + topic.getName();
+		this.topic = topic;
+		this.queue = queue;
+		sequencer = new PostSequencer(this::enqueue);
+		oos = stream;
+		this.connection = connection;
+	}
 
-		currentPostId = BrokerPushThread.NO_CURRENT_POST_ID;
-		postInfos = new LinkedList<>();
-		buffers = new HashMap<>();
+	/**
+	 * Subscribes this task to its Topic and returns the objects that must be
+	 * written to the stream before this task is run.
+	 *
+	 * @param token the token of the Consumer's Topic
+	 *
+	 * @return the objects
+	 *
+	 * @see BrokerTopic#subscribeSince(TopicToken, Subscriber, PostSequencer)
+	 */
+	public Iterable<Object> subscribe(TopicToken token) {
+		return topic.subscribeSince(token, this, sequencer);
+	}
 
-		queue = new LinkedList<>();
-		oos = stream;
+	/**
+	 * Subscribes this task to its Topic and returns the objects that must be
+	 * written to the stream before this task is run.
+	 *
+	 * @param postId the ID of the most recent Post the Consumer has
+	 *
+	 * @return the objects
+	 *
+	 * @see BrokerTopic#subscribeSince(long, Subscriber, PostSequencer)
+	 */
+	public Iterable<Object> subscribe(long postId) {
+		return topic.subscribeSince(postId, this, sequencer);
 	}
 
 	@Override
 	public void run() {
-		boolean isEmpty;
-		while (true) {
-			synchronized (queue) {
-				isEmpty = queue.isEmpty();
-			}
-
-			while (isEmpty) {
-				LG.sout("--- queue is empty ---");
-				try {
-					synchronized (monitor) {
-						monitor.wait();
-					}
-				} catch (final InterruptedException e) {}
+		try {
+			Object postInfoOrPacket;
+			while ((postInfoOrPacket = queue.take()) != null) {
+				int batchSize = 0;
+				do {
+					oos.writeObject(postInfoOrPacket);
 
-				LG.sout("--- queue notified ---");
+					// don't keep the objects written in the stream's handle table
+					oos.reset();
+				} while ((++batchSize < BrokerPushThread.MAX_BATCH_SIZE)
+				        && ((postInfoOrPacket = queue.poll()) != null));
 
-				synchronized (queue) {
-					isEmpty = queue.isEmpty();
-				}
+				oos.flush();
 			}
+		} catch (final IOException | InterruptedException e) {
+			// do nothing, the consumer has disconnected
+		}
+
+		// the queue must be closed first, a Publisher may be waiting on it with the Topic locked
+		queue.close();
+		topic.unsubscribe(this);
 
-			LG.sout("--- queue is no longer empty ---");
-			do {
-				LG.sout("--- there is more stuff to send ---");
-				try {
-					synchronized (queue) {
-						oos.writeObject(queue.remove());
-					}
-				} catch (final IOException e) {
-					e.printStackTrace();
-				}
-
-				synchronized (queue) {
-					isEmpty = queue.isEmpty();
-				}
-			} while (!isEmpty);
+		try {
+			oos.close();
+		} catch (final IOException e) {
+			// do nothing
 		}
+
+		LG.sout("%s stopped", name);
 	}
 
 	@Override
 	public synchronized void notify(PostInfo postInfo, String topicName) {
 		LG.sout("BrokerPushThread#notify(%s)", postInfo);
-
-		// if no post is being streamed
-		if (currentPostId == BrokerPushThread.NO_CURRENT_POST_ID) {
-			// set post as current being streamed
-			currentPostId = postInfo.getId();
-			// start streaming post
-			queue.add(postInfo);
-
-		} else {
-			// add this post to buffer
-			postInfos.addLast(postInfo);
-			buffers.put(postInfo.getId(), new LinkedList<>());
-		}
-
-		synchronized (monitor) {
-			monitor.notifyAll();
-		}
+		sequencer.add(postInfo);
 	}
 
 	@Override
 	public synchronized void notify(Packet packet, String topicName) {
 		LG.sout("BrokerPushThread#notify(%s)", packet);
-
-		// if no post is being streamed
-		assert currentPostId != BrokerPushThread.NO_CURRENT_POST_ID;
-
-		// if packet belongs to post being streamed
-		if (packet.getPostId() == currentPostId) {
-			// stream packet
-			queue.add(packet);
-
-			// if current post is fully streamed
-			if (packet.isFinal()) {
-
-				// start streaming next post
-				boolean finalReached;
-				do {
-
-					// if no posts left in buffer, mark current as none
-					// wait next post info
-					if (postInfos.isEmpty()) {
-						currentPostId = BrokerPushThread.NO_CURRENT_POST_ID;
-						break;
-					}
-
-					// take next Post
-					final PostInfo curr = postInfos.removeFirst();
-
-					// start streaming post
-					queue.add(curr);
-
-					// set as current
-					currentPostId = curr.getId();
-
-					// stream all packets in buffer
-					finalReached = emptyBufferOfCurrentPost();
-
-					// keep streaming the next post in buffer if the previous has been fully streamed
-				} while (finalReached);
-			}
-		} else {
-			// add packet to buffer because it's not being streamed
-			buffers.get(packet.getPostId()).add(packet);
-		}
-
-		synchronized (monitor) {
-			monitor.notifyAll();
-		}
+		sequencer.add(packet);
 	}
 
-	private boolean emptyBufferOfCurrentPost() {
-		boolean finalReached = false;
+	@Override
+	public synchronized void notify(List<Object> postInfosAndPackets, String topicName) {
+		LG.sout("BrokerPushThread#notify(%d objects)", postInfosAndPackets.size());
+		for (final Object postInfoOrPacket : postInfosAndPackets)
+			if (postInfoOrPacket instanceof PostInfo)
+				sequencer.add((PostInfo) postInfoOrPacket);
+			else
+				sequencer.add((Packet) postInfoOrPacket);
+	}
 
-		final List<Packet> buffer = buffers.get(currentPostId);
-		for (final Packet packetInBuffer : buffer) {
+	@Override
+	public synchronized void notifyAbandoned(long postId, String topicName) {
+		LG.sout("BrokerPushThread#notifyAbandoned(%d)", postId);
 
-			assert !finalReached;
+		// the Consumer can't receive the rest of a Post it has received part of
+		if (sequencer.abandon(postId))
+			disconnect();
+	}
 
-			// stream packet
-			queue.add(packetInBuffer);
+	private void enqueue(Object postInfoOrPacket) {
+		// the queue is closed when the Consumer is too slow, which ends this task.
+		if (!queue.offer(postInfoOrPacket))
+			disconnect();
+	}
 
-			// mark if this post has been fully streamed
-			finalReached |= packetInBuffer.isFinal();
+	private void disconnect() {
+		// the connection is closed too since this task may be blocked writing to it,
+		// but not the stream which it may be using.
+		queue.close();
+		try {
+			connection.close();
+		} catch (final IOException e) {
+			// do nothing
 		}
-
-		if (finalReached)
-			buffers.remove(currentPostId);
-
-		return finalReached;
 	}
 }
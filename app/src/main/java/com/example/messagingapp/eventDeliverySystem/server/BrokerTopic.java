@@ -1,109 +1,525 @@
 package com.example.messagingapp.eventDeliverySystem.server;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntToLongFunction;
 
 import com.example.messagingapp.eventDeliverySystem.datastructures.AbstractTopic;
 import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
 import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Topic.TopicToken;
+import com.example.messagingapp.eventDeliverySystem.util.Subscriber;
 
 /**
  * An extension of the Abstract Topic that stores data as required by Brokers.
  * The Posts are stored disassembled as PostInfo and Packet objects.
+ * <p>
+ * Posts are stored in append-only {@link ChunkedArray ChunkedArrays}, in the
+ * order in which they are posted, so that they can be read without locking the
+ * Topic while new Posts are being posted. Every Post is assigned its index in
+ * that order as its offset, so that the Posts after a given one are found
+ * without any search. The Packets of a Post are found through a range of
+ * primitive offsets, which are kept aside while the Post is being posted and
+ * are stored next to each other once its final Packet has been posted.
+ * <p>
+ * A Subscriber that joins while some Posts are still being posted receives the
+ * rest of the earliest of them and every Post after it from its
+ * {@link PostSequencer}, which is seeded with the offsets of what has been
+ * posted of them so far, while the Posts before them and what has been posted
+ * of the earliest one are read later as its catch-up. Both are decided while
+ * the Topic is locked, so that every Post is delivered to the Subscriber
+ * exactly once and whole, but no Packet is read until it is streamed.
+ * <p>
+ * The Posts of a request are {@link #postBatch(List) posted as a batch}, which
+ * must consist of whole Posts and is appended to the log with a single write,
+ * so that either all or none of them are posted, even if the Broker stops.
+ * <p>
+ * A Post whose Publisher disconnects before posting its final Packet is
+ * {@link #abandon(long) abandoned}. It keeps its offset, so that the offsets of
+ * the Posts after it don't change, but it is never streamed to Consumers that
+ * haven't received part of it.
+ * <p>
+ * A BrokerTopic may be backed by a {@link CommitLog}, in which case its Packets
+ * are stored only in the log and just their offsets in the log are kept in
+ * memory. The contents of such a Topic survive a restart of the Broker.
+ * <p>
+ * A BrokerTopic is congested while the {@link SendQueue} of any of its
+ * Consumers is full and can't block its Publishers. Publishers that can't be
+ * blocked either should instead stop reading Posts until the Topic is no longer
+ * congested.
  *
  * @author Alex Mandelias
  * @author Dimitris Tsirmpas
  */
 class BrokerTopic extends AbstractTopic {
 
-	private static final PostInfo dummyPostInfo;
+	private static final long POSTING   = -1;
+	private static final long ABANDONED = -2;
 
-	static {
-		dummyPostInfo = new PostInfo(null, null, AbstractTopic.FETCH_ALL_POSTS);
-	}
+	private final ChunkedArray<PostInfo> postInfos;
+	private final Map<Long, Integer>     indexPerPostInfoId;
+
+	// the Packets in the order in which they were posted, unless they are stored in the log
+	private final ChunkedArray<Packet> packets;
+
+	// the offsets of the Packets of complete Posts, in 'packets' or in the log, and the range of
+	// them that belongs to the Post at each index, or POSTING or ABANDONED if it isn't complete
+	private final ChunkedLongArray packetOffsets;
+	private final ChunkedLongArray packetRangePerPost;
 
-	private final List<PostInfo>          postInfoList;
-	private final Map<Long, List<Packet>> packetsPerPostInfoMap;
-	private final Map<Long, Integer>      indexPerPostInfoId;
+	private final CommitLog log;
+
+	// guarded by 'this', the offsets of the Packets of the Posts that aren't complete, by index
+	private final Map<Integer, PacketOffsets> postingOffsets;
+
+	private final AtomicInteger   congestedQueues;
+	private final Queue<Runnable> decongestionTasks;
 
 	/**
-	 * Constructs an empty BrokerTopic.
+	 * Constructs an empty BrokerTopic which is kept only in memory.
 	 *
 	 * @param name the name of the new BrokerTopic
 	 */
 	public BrokerTopic(String name) {
+		this(name, null);
+	}
+
+	/**
+	 * Constructs a BrokerTopic which is backed by a log. The Topic initially
+	 * contains all of the PostInfo and Packet objects already in the log. The
+	 * Posts whose final Packet is not in the log, because their Publisher
+	 * disconnected or the Broker stopped while they were being posted, are
+	 * abandoned.
+	 *
+	 * @param name the name of the new BrokerTopic
+	 * @param log  the log
+	 *
+	 * @return the BrokerTopic
+	 *
+	 * @throws IOException if the records of the log could not be read
+	 */
+	public static BrokerTopic backedBy(String name, CommitLog log) throws IOException {
+		final BrokerTopic topic = new BrokerTopic(name, log);
+
+		log.forEach((offset, postInfoOrPacket) -> {
+			if (postInfoOrPacket instanceof PostInfo)
+				topic.addPostInfo((PostInfo) postInfoOrPacket);
+			else {
+				final Packet packet    = (Packet) postInfoOrPacket;
+				final int    postIndex = topic.indexOf(packet.getPostId());
+				if (postIndex != -1)
+					topic.addPacketOffset(postIndex, offset, packet.isFinal());
+			}
+		});
+
+		// the Posts whose final Packet never reached the log won't receive any more Packets
+		for (final int postIndex : new ArrayList<>(topic.postingOffsets.keySet()))
+			topic.abandonPost(postIndex);
+
+		return topic;
+	}
+
+	private BrokerTopic(String name, CommitLog log) {
 		super(name);
-		postInfoList = new LinkedList<>();
-		packetsPerPostInfoMap = new HashMap<>();
-		indexPerPostInfoId = new HashMap<>();
+		postInfos = new ChunkedArray<>();
+		indexPerPostInfoId = new ConcurrentHashMap<>();
+		packets = log == null ? new ChunkedArray<>() : null;
+		packetOffsets = new ChunkedLongArray();
+		packetRangePerPost = new ChunkedLongArray();
+		this.log = log;
+		postingOffsets = new LinkedHashMap<>();
+		congestedQueues = new AtomicInteger();
+		decongestionTasks = new ConcurrentLinkedQueue<>();
+	}
 
-		postInfoList.add(dummyPostInfo);
-		indexPerPostInfoId.put(AbstractTopic.FETCH_ALL_POSTS, 0);
+	@Override
+	protected PostInfo accept(PostInfo postInfo) {
+		return postInfo.withOffset(postInfos.size());
 	}
 
 	@Override
 	public void postHook(PostInfo postInfo) {
-		postInfoList.add(postInfo);
-
-		final long         postId     = postInfo.getId();
-		final List<Packet> packetList = new LinkedList<>();
+		if (log != null)
+			append(postInfo);
 
-		packetsPerPostInfoMap.put(postId, packetList);
-		indexPerPostInfoId.put(postId, postInfoList.size() - 1);
+		addPostInfo(postInfo);
 	}
 
 	@Override
 	public void postHook(Packet packet) {
-		final long postId = packet.getPostId();
+		// like a PostSequencer, ignore the Packets of Posts that aren't being posted, for example
+		// those of abandoned Posts, but reject them so that their Publisher learns of it
+		final Integer postIndex = indexPerPostInfoId.get(packet.getPostId());
+		if ((postIndex == null) || !postingOffsets.containsKey(postIndex))
+			throw new IllegalArgumentException(String.format(
+			        "Topic %s has no Post %d being posted", getName(), packet.getPostId()));
+
+		final long offset;
+		if (log == null) {
+			offset = packets.size();
+			packets.add(packet);
+		} else
+			offset = append(packet);
+
+		addPacketOffset(postIndex, offset, packet.isFinal());
+	}
+
+	@Override
+	protected List<Object> postBatchHook(List<Object> postInfosAndPackets) {
+		checkWholePosts(postInfosAndPackets);
+
+		final List<Object> accepted   = new ArrayList<>(postInfosAndPackets.size());
+		int                nextOffset = postInfos.size();
+		for (final Object postInfoOrPacket : postInfosAndPackets)
+			accepted.add(postInfoOrPacket instanceof PostInfo
+			        ? ((PostInfo) postInfoOrPacket).withOffset(nextOffset++)
+			        : postInfoOrPacket);
+
+		// nothing is stored in memory until the whole batch is in the log
+		long offset    = log == null ? 0 : appendAll(accepted);
+		int  postIndex = -1;
+		for (final Object postInfoOrPacket : accepted) {
+			if (postInfoOrPacket instanceof PostInfo) {
+				postIndex = postInfos.size();
+				addPostInfo((PostInfo) postInfoOrPacket);
+			} else {
+				final Packet packet = (Packet) postInfoOrPacket;
+				if (log == null) {
+					offset = packets.size();
+					packets.add(packet);
+				}
+
+				addPacketOffset(postIndex, offset, packet.isFinal());
+			}
+
+			offset++;
+		}
+
+		return accepted;
+	}
+
+	private void checkWholePosts(List<Object> postInfosAndPackets) {
+		PostInfo posting = null;
+		for (final Object postInfoOrPacket : postInfosAndPackets)
+			if (postInfoOrPacket instanceof PostInfo) {
+				if (posting != null)
+					throw new IllegalArgumentException(String.format(
+					        "Post %d of the batch for Topic %s is incomplete", posting.getId(),
+					        getName()));
+
+				posting = (PostInfo) postInfoOrPacket;
+			} else {
+				final Packet packet = (Packet) postInfoOrPacket;
+				if ((posting == null) || (packet.getPostId() != posting.getId()))
+					throw new IllegalArgumentException(String.format(
+					        "Topic %s has no Post %d being posted", getName(),
+					        packet.getPostId()));
+
+				if (packet.isFinal())
+					posting = null;
+			}
+
+		if (posting != null)
+			throw new IllegalArgumentException(String.format(
+			        "Post %d of the batch for Topic %s is incomplete", posting.getId(), getName()));
+	}
+
+	private void addPostInfo(PostInfo postInfo) {
+		final int index = postInfos.size();
+		postingOffsets.put(index, new PacketOffsets());
+
+		// the range of the Post's Packets must exist before its PostInfo can be read
+		packetRangePerPost.add(BrokerTopic.POSTING);
+		postInfos.add(postInfo);
+		indexPerPostInfoId.put(postInfo.getId(), index);
+	}
+
+	private void addPacketOffset(int postIndex, long offset, boolean isFinal) {
+		final PacketOffsets posting = postingOffsets.get(postIndex);
+		posting.add(offset);
+
+		if (isFinal) {
+			postingOffsets.remove(postIndex);
+			completePost(postIndex, posting);
+		}
+	}
+
+	private void completePost(int postIndex, PacketOffsets posting) {
+		final int first = packetOffsets.size();
+		for (int i = 0; i < posting.count; i++)
+			packetOffsets.add(posting.offsets[i]);
+
+		// seen by readers because they lock this Topic before reading the Post
+		packetRangePerPost.set(postIndex, ((long) first << 32) | posting.count);
+	}
+
+	@Override
+	protected boolean abandonHook(long postId) {
+		final Integer index = indexPerPostInfoId.get(postId);
+		if ((index == null) || !postingOffsets.containsKey(index))
+			return false;
+
+		abandonPost(index);
+		return true;
+	}
+
+	private void abandonPost(int postIndex) {
+		postingOffsets.remove(postIndex);
+
+		// a Publisher that posts the Post again posts it as a new one, which may already exist
+		indexPerPostInfoId.remove(postInfos.get(postIndex).getId(), postIndex);
+		packetRangePerPost.set(postIndex, BrokerTopic.ABANDONED);
+	}
+
+	// the Post must be complete
+	private int packetCountOf(int postIndex) {
+		return (int) packetRangePerPost.get(postIndex);
+	}
+
+	// the Post must be complete
+	private long packetOffsetOf(int postIndex, int packetIndex) {
+		return packetOffsets.get((int) (packetRangePerPost.get(postIndex) >>> 32) + packetIndex);
+	}
+
+	private Packet packetAt(long offset) {
+		if (log == null)
+			return packets.get((int) offset);
+
+		try {
+			return (Packet) log.read(offset);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Could not read from Topic " + getName(), e);
+		}
+	}
+
+	// this Topic must be locked, the Packets are read only when they are iterated
+	private Iterable<Packet> packetsOf(int postIndex) {
+		if (packetRangePerPost.get(postIndex) != BrokerTopic.POSTING) {
+			final int packetCount = packetCountOf(postIndex);
+			return () -> new PacketIterator(packetCount,
+			        packetIndex -> packetOffsetOf(postIndex, packetIndex));
+		}
+
+		final long[] offsets = postingOffsetsOf(postIndex);
+		return () -> new PacketIterator(offsets.length, packetIndex -> offsets[packetIndex]);
+	}
+
+	// this Topic must be locked
+	private long[] postingOffsetsOf(int postIndex) {
+		final PacketOffsets posting = postingOffsets.get(postIndex);
+		return Arrays.copyOf(posting.offsets, posting.count);
+	}
+
+	private long append(Object postInfoOrPacket) {
+		try {
+			return log.append(postInfoOrPacket);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Could not persist to Topic " + getName(), e);
+		}
+	}
+
+	private long appendAll(List<Object> postInfosAndPackets) {
+		try {
+			return log.appendAll(postInfosAndPackets);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Could not persist to Topic " + getName(), e);
+		}
+	}
+
+	/**
+	 * Subscribes a Subscriber to this Topic and returns the PostInfo and Packet
+	 * objects a Consumer must be sent before those the Subscriber is notified of,
+	 * so that the Consumer receives every Post after the most recent one it has.
+	 * That Post is found by its offset if the token has one, and by its ID
+	 * otherwise, for example when the Consumer got it from a Broker whose Topic
+	 * had no offsets. The offset is used only if the Post at that offset has the
+	 * ID in the token, since offsets of a Topic that isn't persisted start again
+	 * from 0 when the Broker restarts.
+	 *
+	 * @param token     the token of the Consumer's Topic
+	 * @param sub       the Subscriber
+	 * @param sequencer the sequencer of the Subscriber, which is seeded with the
+	 *                  Posts that are still being posted
+	 *
+	 * @return the PostInfo and Packet objects
+	 *
+	 * @see #subscribeSince(long, Subscriber, PostSequencer)
+	 */
+	public synchronized Iterable<Object> subscribeSince(TopicToken token, Subscriber sub,
+	        PostSequencer sequencer) {
+		final long offset = token.getLastOffset();
+		if ((offset >= 0) && (offset < postInfos.size())
+		        && (postInfos.get((int) offset).getId() == token.getLastId()))
+			return subscribeFrom((int) offset + 1, sub, sequencer);
+
+		return subscribeSince(token.getLastId(), sub, sequencer);
+	}
+
+	/**
+	 * Subscribes a Subscriber to this Topic and returns the PostInfo and Packet
+	 * objects a Consumer must be sent before those the Subscriber is notified of.
+	 * The PostInfo with the given ID and its Packets are not returned.
+	 * <p>
+	 * The objects are returned in the order in which they should be streamed: the
+	 * PostInfo of every Post, from earliest to latest, followed by its Packets.
+	 * No Packet is copied or read until the objects are iterated, which doesn't
+	 * lock this Topic. If some Posts are still being posted, the objects end with
+	 * what has been posted of the earliest of them, and the sequencer streams the
+	 * rest of it and the Posts after it as the Subscriber is notified of them.
+	 * Abandoned Posts are skipped.
+	 *
+	 * @param postId    the ID of the PostInfo, or
+	 *                  {@link AbstractTopic#FETCH_ALL_POSTS} to return all
+	 *                  objects
+	 * @param sub       the Subscriber
+	 * @param sequencer the sequencer of the Subscriber, which is seeded with the
+	 *                  Posts that are still being posted
+	 *
+	 * @return the PostInfo and Packet objects
+	 */
+	public synchronized Iterable<Object> subscribeSince(long postId, Subscriber sub,
+	        PostSequencer sequencer) {
+		final int start;
+		if (postId == AbstractTopic.FETCH_ALL_POSTS)
+			start = 0;
+		else {
+			final Integer index = indexPerPostInfoId.get(postId);
 
-		packetsPerPostInfoMap.get(postId).add(packet);
+			// broker may not be persistent, consumer may have posts from previous session, not an error
+			start = index == null ? postInfos.size() : index + 1;
+		}
+
+		return subscribeFrom(start, sub, sequencer);
+	}
+
+	// must be called while this Topic is locked
+	private Iterable<Object> subscribeFrom(int start, Subscriber sub, PostSequencer sequencer) {
+		subscribe(sub);
+
+		final int count = postInfos.size();
+		final int end   = firstPostingIndex(start, count);
+		if (end == count)
+			return () -> new PostIterator(start, end, null);
+
+		// what has been posted of that Post is part of the catch-up, the rest is sequenced
+		final long[] endOffsets = postingOffsetsOf(end);
+		sequencer.startWith(postInfos.get(end).getId());
+
+		for (int postIndex = end + 1; postIndex < count; postIndex++)
+			if (packetRangePerPost.get(postIndex) != BrokerTopic.ABANDONED)
+				sequencer.seed(postInfos.get(postIndex), packetsOf(postIndex));
+
+		return () -> new PostIterator(start, end, endOffsets);
+	}
+
+	// the index of the earliest Post from 'start' that is being posted, must be called while this
+	// Topic is locked
+	private int firstPostingIndex(int start, int count) {
+		for (final int postIndex : postingOffsets.keySet())
+			if (postIndex >= start)
+				return postIndex;
+
+		return count;
 	}
 
 	/**
-	 * Fills the List and the Map with all of the PostInfo and Packet objects in
-	 * this Topic.
-	 *
-	 * @param emptyPostInfoList          the empty list where the PostInfo objects
-	 *                                   will be added, sorted from earliest to
-	 *                                   latest
-	 * @param emptyPacketsPerPostInfoMap the empty map where the Packets of every
-	 *                                   PostInfo object will be added
+	 * Returns the number of Posts in this Topic, which is also the offset that the
+	 * next Post will have.
+	 *
+	 * @return the number of Posts
 	 */
-	public void getAllPosts(List<PostInfo> emptyPostInfoList,
-	        Map<Long, Packet[]> emptyPacketsPerPostInfoMap) {
-		getPostsSince(AbstractTopic.FETCH_ALL_POSTS, emptyPostInfoList, emptyPacketsPerPostInfoMap);
+	public int getPostCount() {
+		return postInfos.size();
 	}
 
 	/**
-	 * Fills the List and the Map with all of the PostInfo and Packet objects in
-	 * this Topic starting from a certain PostInfo object. The PostInfo with the
-	 * given ID and its Packets are not returned.
-	 *
-	 * @param postId                     the ID of the PostInfo
-	 * @param emptyPostInfoList          the empty list where the PostInfo objects
-	 *                                   will be added, sorted from earliest to
-	 *                                   latest
-	 * @param emptyPacketsPerPostInfoMap the empty map where the Packets of every
-	 *                                   PostInfo object will be added
+	 * Returns the ID of the latest Post in this Topic.
+	 *
+	 * @return the ID, or {@link AbstractTopic#FETCH_ALL_POSTS} if this Topic has
+	 *         no Posts
 	 */
-	synchronized public void getPostsSince(long postId, List<PostInfo> emptyPostInfoList,
-	        Map<Long, Packet[]> emptyPacketsPerPostInfoMap) {
+	public long getLastPostId() {
+		final int count = postInfos.size();
+		return count == 0 ? AbstractTopic.FETCH_ALL_POSTS : postInfos.get(count - 1).getId();
+	}
 
+	/**
+	 * Returns the index of a Post in this Topic, which is the offset it was
+	 * assigned when it was posted.
+	 *
+	 * @param postId the ID of the Post
+	 *
+	 * @return the index, or -1 if this Topic has no Post with that ID
+	 */
+	public int indexOf(long postId) {
 		final Integer index = indexPerPostInfoId.get(postId);
+		return index == null ? -1 : index;
+	}
 
-		// broker is not persistent, consumer may have posts from previous session, not an error
-		if (index == null)
-			return;
+	/**
+	 * Records that the SendQueue of a Consumer of this Topic has become full or
+	 * has drained. This method is thread-safe and may be used as the
+	 * {@link SendQueue.CongestionListener} of the queues.
+	 *
+	 * @param congested {@code true} if the queue has become full, {@code false}
+	 *                  if it has drained
+	 */
+	public void congestionChanged(boolean congested) {
+		if (congested)
+			congestedQueues.incrementAndGet();
+		else if (congestedQueues.decrementAndGet() == 0)
+			runDecongestionTasks();
+	}
 
-		emptyPostInfoList.addAll(postInfoList.subList(index + 1, postInfoList.size()));
+	/**
+	 * Returns whether the SendQueue of any Consumer of this Topic is full.
+	 *
+	 * @return {@code true} if this Topic is congested, {@code false} otherwise
+	 */
+	public boolean isCongested() {
+		return congestedQueues.get() > 0;
+	}
 
-		for (PostInfo pi : emptyPostInfoList) {
-			final long         id = pi.getId();
-			final List<Packet> ls = packetsPerPostInfoMap.get(id);
-			emptyPacketsPerPostInfoMap.put(id, ls.toArray(new Packet[ls.size()]));
-		}
+	/**
+	 * Runs a task as soon as this Topic is no longer congested, which may be
+	 * immediately, on the calling Thread. This method is thread-safe.
+	 *
+	 * @param task the task, which must not block
+	 */
+	public void whenDecongested(Runnable task) {
+		decongestionTasks.add(task);
+
+		// the queues may have drained before the task was added
+		if (!isCongested())
+			runDecongestionTasks();
+	}
+
+	private void runDecongestionTasks() {
+		Runnable task;
+		while ((task = decongestionTasks.poll()) != null)
+			task.run();
+	}
+
+	/**
+	 * Forces the contents of this Topic to be written to the storage device and
+	 * closes its log, if it has one.
+	 *
+	 * @throws IOException if an I/O error occurs while closing the log
+	 */
+	public void close() throws IOException {
+		if (log != null)
+			log.close();
 	}
 
 	@Override
@@ -119,4 +535,110 @@ class BrokerTopic extends AbstractTopic {
 			return false;
 		return (obj instanceof BrokerTopic);
 	}
+
+	/**
+	 * Iterates over the PostInfo and Packet objects of a range of complete Posts,
+	 * skipping those that have been abandoned, optionally followed by those of the
+	 * Post after them that have been posted so far.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private final class PostIterator implements Iterator<Object> {
+
+		private static final int POST_INFO_NEXT = -1;
+
+		private final int    end;
+		private final long[] endOffsets;
+		private int          postIndex;
+		private int          packetIndex;
+		private int          packetCount;
+
+		public PostIterator(int start, int end, long[] endOffsets) {
+			this.end = end;
+			this.endOffsets = endOffsets;
+			postIndex = start;
+			packetIndex = PostIterator.POST_INFO_NEXT;
+			packetCount = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if ((packetIndex != PostIterator.POST_INFO_NEXT) && (packetIndex == packetCount)) {
+				postIndex++;
+				packetIndex = PostIterator.POST_INFO_NEXT;
+			}
+
+			while ((postIndex < end)
+			        && (packetRangePerPost.get(postIndex) == BrokerTopic.ABANDONED))
+				postIndex++;
+
+			return (postIndex < end) || ((postIndex == end) && (endOffsets != null));
+		}
+
+		@Override
+		public Object next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			if (packetIndex == PostIterator.POST_INFO_NEXT) {
+				packetIndex = 0;
+				packetCount = postIndex == end ? endOffsets.length : packetCountOf(postIndex);
+				return postInfos.get(postIndex);
+			}
+
+			final long offset = postIndex == end ? endOffsets[packetIndex]
+			        : packetOffsetOf(postIndex, packetIndex);
+			packetIndex++;
+			return packetAt(offset);
+		}
+	}
+
+	/**
+	 * Iterates over the Packets of a Post, which are read as they are iterated.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private final class PacketIterator implements Iterator<Packet> {
+
+		private final int               packetCount;
+		private final IntToLongFunction offsetOf;
+		private int                     packetIndex;
+
+		public PacketIterator(int packetCount, IntToLongFunction offsetOf) {
+			this.packetCount = packetCount;
+			this.offsetOf = offsetOf;
+			packetIndex = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return packetIndex < packetCount;
+		}
+
+		@Override
+		public Packet next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			return packetAt(offsetOf.applyAsLong(packetIndex++));
+		}
+	}
+
+	/**
+	 * The offsets of the Packets of a Post that is being posted.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private static final class PacketOffsets {
+
+		private long[] offsets = new long[4];
+		private int    count   = 0;
+
+		void add(long offset) {
+			if (count == offsets.length)
+				offsets = Arrays.copyOf(offsets, 2 * count);
+
+			offsets[count++] = offset;
+		}
+	}
 }
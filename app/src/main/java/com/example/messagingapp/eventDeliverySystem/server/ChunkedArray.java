@@ -0,0 +1,83 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import java.util.Arrays;
+
+/**
+ * An append-only array, stored in fixed-size chunks so that it grows without
+ * copying its elements. Elements are only ever added at the end, by a single
+ * writer at a time, while any number of readers may access the elements
+ * already added without locking.
+ * <p>
+ * A reader that observes a size through {@link #size()} is guaranteed to see
+ * every element with a smaller index.
+ *
+ * @param <E> the type of the elements
+ *
+ * @author Alex Mandelias
+ */
+final class ChunkedArray<E> {
+
+	private static final int CHUNK_SHIFT = 8;
+	private static final int CHUNK_SIZE  = 1 << ChunkedArray.CHUNK_SHIFT;
+	private static final int CHUNK_MASK  = ChunkedArray.CHUNK_SIZE - 1;
+
+	// written before size so that readers who see a size also see its chunks
+	private volatile Object[][] chunks;
+	private volatile int        size;
+
+	/** Constructs an empty ChunkedArray. */
+	public ChunkedArray() {
+		chunks = new Object[1][];
+		size = 0;
+	}
+
+	/**
+	 * Adds an element to the end of this array. Calls to this method must not be
+	 * concurrent.
+	 *
+	 * @param element the element to add
+	 */
+	public void add(E element) {
+		final int index      = size;
+		final int chunkIndex = index >>> ChunkedArray.CHUNK_SHIFT;
+
+		Object[][] currentChunks = chunks;
+		if (chunkIndex == currentChunks.length) {
+			currentChunks = Arrays.copyOf(currentChunks, 2 * currentChunks.length);
+			chunks = currentChunks;
+		}
+
+		if (currentChunks[chunkIndex] == null)
+			currentChunks[chunkIndex] = new Object[ChunkedArray.CHUNK_SIZE];
+
+		currentChunks[chunkIndex][index & ChunkedArray.CHUNK_MASK] = element;
+		size = index + 1;
+	}
+
+	/**
+	 * Returns the element at an index.
+	 *
+	 * @param index the index of the element
+	 *
+	 * @return the element
+	 *
+	 * @throws IndexOutOfBoundsException if {@code index} is not smaller than the
+	 *                                   size of this array
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		if ((index < 0) || (index >= size))
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		return (E) chunks[index >>> ChunkedArray.CHUNK_SHIFT][index & ChunkedArray.CHUNK_MASK];
+	}
+
+	/**
+	 * Returns the number of elements in this array.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,99 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ChunkedArray} of primitive {@code long} elements, which stores them
+ * without boxing. Elements are added at the end by a single writer at a time,
+ * while any number of readers may access the elements already added without
+ * locking.
+ * <p>
+ * A reader that observes a size through {@link #size()} is guaranteed to see
+ * every element with a smaller index as it was added. Elements that are
+ * {@link #set(int, long) set} afterwards are only guaranteed to be seen by
+ * readers that synchronize with the writer.
+ *
+ * @author Alex Mandelias
+ */
+final class ChunkedLongArray {
+
+	private static final int CHUNK_SHIFT = 8;
+	private static final int CHUNK_SIZE  = 1 << ChunkedLongArray.CHUNK_SHIFT;
+	private static final int CHUNK_MASK  = ChunkedLongArray.CHUNK_SIZE - 1;
+
+	// written before size so that readers who see a size also see its chunks
+	private volatile long[][] chunks;
+	private volatile int      size;
+
+	/** Constructs an empty ChunkedLongArray. */
+	public ChunkedLongArray() {
+		chunks = new long[1][];
+		size = 0;
+	}
+
+	/**
+	 * Adds an element to the end of this array. Calls to this method must not be
+	 * concurrent.
+	 *
+	 * @param element the element to add
+	 */
+	public void add(long element) {
+		final int index      = size;
+		final int chunkIndex = index >>> ChunkedLongArray.CHUNK_SHIFT;
+
+		long[][] currentChunks = chunks;
+		if (chunkIndex == currentChunks.length) {
+			currentChunks = Arrays.copyOf(currentChunks, 2 * currentChunks.length);
+			chunks = currentChunks;
+		}
+
+		if (currentChunks[chunkIndex] == null)
+			currentChunks[chunkIndex] = new long[ChunkedLongArray.CHUNK_SIZE];
+
+		currentChunks[chunkIndex][index & ChunkedLongArray.CHUNK_MASK] = element;
+		size = index + 1;
+	}
+
+	/**
+	 * Replaces the element at an index. Calls to this method must not be
+	 * concurrent with each other or with {@link #add(long)}.
+	 *
+	 * @param index   the index of the element
+	 * @param element the new element
+	 *
+	 * @throws IndexOutOfBoundsException if {@code index} is not smaller than the
+	 *                                   size of this array
+	 */
+	public void set(int index, long element) {
+		if ((index < 0) || (index >= size))
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		chunks[index >>> ChunkedLongArray.CHUNK_SHIFT][index & ChunkedLongArray.CHUNK_MASK] = element;
+	}
+
+	/**
+	 * Returns the element at an index.
+	 *
+	 * @param index the index of the element
+	 *
+	 * @return the element
+	 *
+	 * @throws IndexOutOfBoundsException if {@code index} is not smaller than the
+	 *                                   size of this array
+	 */
+	public long get(int index) {
+		if ((index < 0) || (index >= size))
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		return chunks[index >>> ChunkedLongArray.CHUNK_SHIFT][index & ChunkedLongArray.CHUNK_MASK];
+	}
+
+	/**
+	 * Returns the number of elements in this array.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,391 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import com.example.messagingapp.eventDeliverySystem.wire.BinaryCodec;
+
+/**
+ * An append-only log that durably stores the PostInfo and Packet objects of a
+ * Topic. Every record is assigned an offset, the number of records appended
+ * before it, with which it can later be read.
+ * <p>
+ * The log is split into segments: files of a fixed size that are memory-mapped
+ * and filled one after the other. Each segment is named after the offset of its
+ * first record and keeps a sparse index which maps some of its offsets to their
+ * position in the file, so that a record is found by scanning only the few
+ * records that follow the closest indexed one. Records are encoded as frames
+ * of the {@link BinaryCodec}, and a frame length of 0 marks the end of the data
+ * of a segment.
+ * <p>
+ * The length of a record is written after the rest of the record, so a record
+ * whose write was interrupted is discarded when the log is opened again. The
+ * records of a batch are all written to the same segment and the length of its
+ * first record is written last, so that either all or none of them are kept.
+ * Since
+ * the segments are memory-mapped, appended records survive the Broker process
+ * crashing; they are forced to the storage device only by {@link #flush()} and
+ * {@link #close()}. This class is thread-safe.
+ *
+ * @author Alex Mandelias
+ */
+class CommitLog implements AutoCloseable {
+
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private final Path                        directory;
+	private final int                         segmentSize;
+	private final int                         indexInterval;
+	private final NavigableMap<Long, Segment> segments;
+
+	private Segment activeSegment;
+	private long    nextOffset;
+
+	/**
+	 * Opens the log in a directory, creating the directory if it doesn't exist.
+	 * Any existing segments are scanned so that records can be appended after the
+	 * last complete one.
+	 *
+	 * @param directory     the directory where the segments are stored
+	 * @param segmentSize   the size of new segments, in bytes. Larger segments are
+	 *                      created for records that don't fit.
+	 * @param indexInterval the minimum number of bytes between two records that
+	 *                      are indexed
+	 *
+	 * @throws IOException if an I/O error occurs while opening the segments
+	 */
+	public CommitLog(Path directory, int segmentSize, int indexInterval) throws IOException {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.indexInterval = indexInterval;
+		segments = new TreeMap<>();
+		nextOffset = 0;
+
+		Files.createDirectories(directory);
+
+		for (final long baseOffset : findSegments(directory)) {
+			if (baseOffset != nextOffset)
+				throw new StreamCorruptedException(String.format(
+				        "Records %d to %d are missing from %s", nextOffset, baseOffset - 1,
+				        directory));
+
+			final Segment segment = Segment.open(segmentPath(baseOffset), baseOffset,
+			        indexInterval);
+			segments.put(baseOffset, segment);
+			nextOffset = segment.nextOffset;
+		}
+
+		activeSegment = segments.isEmpty() ? newSegment(segmentSize)
+		        : segments.lastEntry().getValue();
+	}
+
+	/**
+	 * Appends a record to the end of this log.
+	 *
+	 * @param postInfoOrPacket the PostInfo or Packet to append
+	 *
+	 * @return the offset of the record
+	 *
+	 * @throws IOException if an I/O error occurs while creating a new segment
+	 */
+	public long append(Object postInfoOrPacket) throws IOException {
+		return appendAll(Collections.singletonList(postInfoOrPacket));
+	}
+
+	/**
+	 * Appends a batch of records to the end of this log, so that either all or
+	 * none of them are recovered if the Broker stops while they are being written.
+	 * The records are assigned consecutive offsets.
+	 *
+	 * @param postInfosAndPackets the PostInfos and Packets to append, in order
+	 *
+	 * @return the offset of the first record
+	 *
+	 * @throws IOException if an I/O error occurs while creating a new segment
+	 */
+	public synchronized long appendAll(List<?> postInfosAndPackets) throws IOException {
+		final List<ByteBuffer> frames    = new ArrayList<>(postInfosAndPackets.size());
+		int                    batchSize = 0;
+		for (final Object postInfoOrPacket : postInfosAndPackets) {
+			final ByteBuffer frame = BinaryCodec.encode(postInfoOrPacket);
+			frames.add(frame);
+			batchSize += frame.remaining();
+		}
+
+		if (!activeSegment.hasRoomFor(batchSize)) {
+			activeSegment.map.force();
+			activeSegment = newSegment(Math.max(segmentSize, batchSize));
+		}
+
+		final long firstOffset = nextOffset;
+		activeSegment.appendAll(frames);
+		nextOffset += frames.size();
+		return firstOffset;
+	}
+
+	/**
+	 * Reads a record from this log.
+	 *
+	 * @param offset the offset of the record
+	 *
+	 * @return the PostInfo or Packet in the record
+	 *
+	 * @throws NoSuchElementException   if no record with that offset exists
+	 * @throws StreamCorruptedException if the record is malformed
+	 */
+	public synchronized Object read(long offset) throws StreamCorruptedException {
+		if ((offset < 0) || (offset >= nextOffset))
+			throw new NoSuchElementException("No record with offset " + offset);
+
+		return segments.floorEntry(offset).getValue().read(offset);
+	}
+
+	/**
+	 * Passes every record of this log, from the first to the last, to a Visitor.
+	 *
+	 * @param visitor the Visitor
+	 *
+	 * @throws StreamCorruptedException if a record is malformed
+	 */
+	public synchronized void forEach(Visitor visitor) throws StreamCorruptedException {
+		for (final Segment segment : segments.values())
+			segment.forEach(visitor);
+	}
+
+	/**
+	 * Returns the offset that the next record appended will have.
+	 *
+	 * @return the offset
+	 */
+	public synchronized long getNextOffset() {
+		return nextOffset;
+	}
+
+	/** Forces the records of this log to be written to the storage device. */
+	public synchronized void flush() {
+		activeSegment.map.force();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		flush();
+		for (final Segment segment : segments.values())
+			segment.channel.close();
+	}
+
+	private Segment newSegment(int size) throws IOException {
+		final Segment segment = Segment.create(segmentPath(nextOffset), nextOffset, size,
+		        indexInterval);
+		segments.put(nextOffset, segment);
+		return segment;
+	}
+
+	private Path segmentPath(long baseOffset) {
+		return directory.resolve(String.format("%020d%s", baseOffset, CommitLog.SEGMENT_SUFFIX));
+	}
+
+	private static List<Long> findSegments(Path directory) throws IOException {
+		final List<Long> baseOffsets = new ArrayList<>();
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+		        "*" + CommitLog.SEGMENT_SUFFIX)) {
+			for (final Path file : stream) {
+				final String fileName = file.getFileName().toString();
+				final String baseOffset = fileName.substring(0,
+				        fileName.length() - CommitLog.SEGMENT_SUFFIX.length());
+				try {
+					baseOffsets.add(Long.parseLong(baseOffset));
+				} catch (final NumberFormatException e) {
+					throw new StreamCorruptedException("Unexpected segment file: " + file);
+				}
+			}
+		}
+
+		Collections.sort(baseOffsets);
+		return baseOffsets;
+	}
+
+	/**
+	 * Receives the records of a CommitLog in order.
+	 *
+	 * @author Alex Mandelias
+	 */
+	@FunctionalInterface
+	interface Visitor {
+
+		/**
+		 * Receives the next record.
+		 *
+		 * @param offset           the offset of the record
+		 * @param postInfoOrPacket the PostInfo or Packet in the record
+		 */
+		void visit(long offset, Object postInfoOrPacket);
+	}
+
+	/**
+	 * A memory-mapped file that contains consecutive records of a CommitLog.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private static final class Segment {
+
+		private final long             baseOffset;
+		private final FileChannel      channel;
+		private final MappedByteBuffer map;
+		private final int              indexInterval;
+
+		private int  position;
+		private long nextOffset;
+
+		// sparse index, offsets are sorted
+		private long[] indexOffsets;
+		private int[]  indexPositions;
+		private int    indexSize;
+
+		static Segment create(Path file, long baseOffset, int size, int indexInterval)
+		        throws IOException {
+			final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+			        StandardOpenOption.READ, StandardOpenOption.WRITE);
+			return new Segment(channel, channel.map(MapMode.READ_WRITE, 0, size), baseOffset,
+			        indexInterval);
+		}
+
+		static Segment open(Path file, long baseOffset, int indexInterval) throws IOException {
+			final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+			        StandardOpenOption.WRITE);
+			final Segment     segment = new Segment(channel,
+			        channel.map(MapMode.READ_WRITE, 0, channel.size()), baseOffset, indexInterval);
+			segment.recover();
+			return segment;
+		}
+
+		private Segment(FileChannel channel, MappedByteBuffer map, long baseOffset,
+		        int indexInterval) {
+			this.channel = channel;
+			this.map = map;
+			this.baseOffset = baseOffset;
+			this.indexInterval = indexInterval;
+
+			position = 0;
+			nextOffset = baseOffset;
+			indexOffsets = new long[16];
+			indexPositions = new int[16];
+			indexSize = 0;
+		}
+
+		boolean hasRoomFor(int frameSize) {
+			return frameSize <= (map.capacity() - position);
+		}
+
+		void appendAll(List<ByteBuffer> frames) {
+			if (frames.isEmpty())
+				return;
+
+			final int firstPosition = position;
+			final int firstLength   = frames.get(0).getInt(frames.get(0).position());
+
+			for (final ByteBuffer frame : frames) {
+				final int length = frame.getInt(frame.position());
+
+				final ByteBuffer body = frame.duplicate();
+				body.position(frame.position() + BinaryCodec.LENGTH_SIZE);
+
+				index(nextOffset, position);
+
+				map.position(position + BinaryCodec.LENGTH_SIZE);
+				map.put(body);
+				if (position != firstPosition)
+					map.putInt(position, length);
+
+				position += BinaryCodec.LENGTH_SIZE + length;
+				nextOffset++;
+			}
+
+			// written last so that only complete batches have a length
+			map.putInt(firstPosition, firstLength);
+		}
+
+		Object read(long offset) throws StreamCorruptedException {
+			int i = Arrays.binarySearch(indexOffsets, 0, indexSize, offset);
+			if (i < 0)
+				i = -i - 2; // the closest indexed offset before the offset
+
+			long currentOffset   = indexOffsets[i];
+			int  currentPosition = indexPositions[i];
+			while (currentOffset < offset) {
+				currentPosition += BinaryCodec.LENGTH_SIZE + map.getInt(currentPosition);
+				currentOffset++;
+			}
+
+			return decode(currentPosition);
+		}
+
+		void forEach(Visitor visitor) throws StreamCorruptedException {
+			long offset          = baseOffset;
+			int  currentPosition = 0;
+			while (currentPosition < position) {
+				visitor.visit(offset, decode(currentPosition));
+				currentPosition += BinaryCodec.LENGTH_SIZE + map.getInt(currentPosition);
+				offset++;
+			}
+		}
+
+		private void recover() {
+			while ((map.capacity() - position) >= BinaryCodec.LENGTH_SIZE) {
+				final int length = map.getInt(position);
+				final int space  = map.capacity() - position - BinaryCodec.LENGTH_SIZE;
+				if ((length <= 0) || (length > space))
+					break;
+
+				index(nextOffset, position);
+				position += BinaryCodec.LENGTH_SIZE + length;
+				nextOffset++;
+			}
+
+			// discard a batch that was being written when the Broker stopped, all of it,
+			// so that none of its records are mistaken for complete ones later. Only the
+			// bytes that aren't 0 are written, so that the rest of the file stays clean.
+			for (int i = position; i < map.capacity(); i++)
+				if (map.get(i) != 0)
+					map.put(i, (byte) 0);
+		}
+
+		private void index(long offset, int recordPosition) {
+			if ((indexSize > 0)
+			        && ((recordPosition - indexPositions[indexSize - 1]) < indexInterval))
+				return;
+
+			if (indexSize == indexOffsets.length) {
+				indexOffsets = Arrays.copyOf(indexOffsets, 2 * indexSize);
+				indexPositions = Arrays.copyOf(indexPositions, 2 * indexSize);
+			}
+
+			indexOffsets[indexSize] = offset;
+			indexPositions[indexSize] = recordPosition;
+			indexSize++;
+		}
+
+		private Object decode(int recordPosition) throws StreamCorruptedException {
+			final int        length = map.getInt(recordPosition);
+			final ByteBuffer body   = map.duplicate();
+			body.limit(recordPosition + BinaryCodec.LENGTH_SIZE + length);
+			body.position(recordPosition + BinaryCodec.LENGTH_SIZE);
+			return BinaryCodec.decode(body);
+		}
+	}
+}
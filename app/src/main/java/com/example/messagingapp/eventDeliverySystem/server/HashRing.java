@@ -0,0 +1,231 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.AbstractTopic;
+import com.example.messagingapp.eventDeliverySystem.datastructures.TopicHash;
+
+/**
+ * A consistent-hash ring that assigns Topics to nodes, for example Brokers.
+ * <p>
+ * Every node is placed on the ring at a number of points, its virtual nodes,
+ * whose positions are the hashes of the node's name and the index of the
+ * virtual node. A Topic is assigned to the node whose virtual node is the first
+ * one at or after the hash of the Topic's name, wrapping around the ring.
+ * Positions are computed with the {@link TopicHash} of the ring, which by
+ * default is {@link AbstractTopic#hashForTopic(String)}.
+ * <p>
+ * Adding or removing one of {@code N} nodes only moves the Topics that the node
+ * gains or loses, about {@code 1/N} of all Topics, while the rest of the Topics
+ * stay on the same nodes. The more virtual nodes, the more evenly the Topics
+ * are spread across the nodes.
+ * <p>
+ * Nodes are added and removed by replacing the whole ring, so Topics can be
+ * looked up by any number of threads without locking.
+ *
+ * @param <N> the type of the nodes
+ *
+ * @author Alex Mandelias
+ */
+public final class HashRing<N> {
+
+	private final int       virtualNodeCount;
+	private final TopicHash hash;
+
+	private volatile NavigableMap<Integer, N> nodesByPosition;
+	private volatile Map<String, N>           nodesByName;
+
+	/**
+	 * Constructs an empty HashRing that uses the hash of Topics.
+	 *
+	 * @param virtualNodeCount the number of points at which every node is placed
+	 *                         on the ring
+	 *
+	 * @throws IllegalArgumentException if {@code virtualNodeCount < 1}
+	 */
+	public HashRing(int virtualNodeCount) {
+		this(virtualNodeCount, AbstractTopic::hashForTopic);
+	}
+
+	/**
+	 * Constructs an empty HashRing.
+	 *
+	 * @param virtualNodeCount the number of points at which every node is placed
+	 *                         on the ring
+	 * @param hash             the function that positions nodes and Topics on the
+	 *                         ring
+	 *
+	 * @throws IllegalArgumentException if {@code virtualNodeCount < 1}
+	 */
+	public HashRing(int virtualNodeCount, TopicHash hash) {
+		if (virtualNodeCount < 1)
+			throw new IllegalArgumentException(
+			        "virtualNodeCount must be at least 1, found: " + virtualNodeCount);
+
+		this.virtualNodeCount = virtualNodeCount;
+		this.hash = hash;
+		nodesByPosition = Collections.emptyNavigableMap();
+		nodesByName = Collections.emptyMap();
+	}
+
+	/**
+	 * Adds a node to this ring, replacing the node with the same name, if there
+	 * is one. This method is thread-safe.
+	 *
+	 * @param name the name of the node, which determines its positions on the
+	 *             ring and must therefore be the same wherever the node is added
+	 * @param node the node
+	 */
+	public synchronized void add(String name, N node) {
+		final NavigableMap<Integer, N> newNodesByPosition = new TreeMap<>(nodesByPosition);
+		final Map<String, N>           newNodesByName     = new HashMap<>(nodesByName);
+
+		final N previous = newNodesByName.put(name, node);
+		for (int i = 0; i < virtualNodeCount; i++) {
+			final int position = positionOf(name, i);
+
+			// in the rare case of a collision the virtual node that was there first is kept
+			final N other = newNodesByPosition.get(position);
+			if ((other == null) || (other == previous))
+				newNodesByPosition.put(position, node);
+		}
+
+		nodesByPosition = Collections.unmodifiableNavigableMap(newNodesByPosition);
+		nodesByName = Collections.unmodifiableMap(newNodesByName);
+	}
+
+	/**
+	 * Removes a node from this ring. This method is thread-safe.
+	 *
+	 * @param name the name of the node
+	 *
+	 * @return {@code true} if the node was in this ring, {@code false} otherwise
+	 */
+	public synchronized boolean remove(String name) {
+		final N node = nodesByName.get(name);
+		if (node == null)
+			return false;
+
+		final NavigableMap<Integer, N> newNodesByPosition = new TreeMap<>(nodesByPosition);
+		final Map<String, N>           newNodesByName     = new HashMap<>(nodesByName);
+
+		newNodesByName.remove(name);
+		for (int i = 0; i < virtualNodeCount; i++)
+			newNodesByPosition.remove(positionOf(name, i), node);
+
+		nodesByPosition = Collections.unmodifiableNavigableMap(newNodesByPosition);
+		nodesByName = Collections.unmodifiableMap(newNodesByName);
+		return true;
+	}
+
+	/**
+	 * Returns the node to which a Topic is assigned. This method is thread-safe.
+	 *
+	 * @param topicName the name of the Topic
+	 *
+	 * @return the node
+	 *
+	 * @throws NoSuchElementException if this ring has no nodes
+	 */
+	public N get(String topicName) {
+		final NavigableMap<Integer, N> ring = nodesByPosition;
+		if (ring.isEmpty())
+			throw new NoSuchElementException("There are no nodes in the ring");
+
+		Entry<Integer, N> entry = ring.ceilingEntry(hash.hash(topicName));
+		if (entry == null)
+			entry = ring.firstEntry();
+
+		return entry.getValue();
+	}
+
+	/**
+	 * Returns the distinct nodes that are found first when moving around the ring
+	 * from the position of a Topic. The first of them is the node to which the
+	 * Topic is assigned and the rest are the nodes that would take it over, in
+	 * order, if the nodes before them were removed. This method is thread-safe.
+	 *
+	 * @param topicName the name of the Topic
+	 * @param count     the maximum number of nodes to return
+	 *
+	 * @return the nodes, which are fewer than {@code count} if this ring doesn't
+	 *         have that many
+	 *
+	 * @throws NoSuchElementException if this ring has no nodes
+	 */
+	public List<N> get(String topicName, int count) {
+		final NavigableMap<Integer, N> ring = nodesByPosition;
+		if (ring.isEmpty())
+			throw new NoSuchElementException("There are no nodes in the ring");
+
+		final int     position = hash.hash(topicName);
+		final List<N> nodes    = new ArrayList<>(count);
+
+		// the virtual nodes at or after the position of the Topic, then the rest
+		HashRing.addDistinct(nodes, ring.tailMap(position, true).values(), count);
+		HashRing.addDistinct(nodes, ring.headMap(position, false).values(), count);
+		return nodes;
+	}
+
+	/**
+	 * Returns the nodes in this ring.
+	 *
+	 * @return an unmodifiable Map with the nodes by their names
+	 */
+	public Map<String, N> getNodes() {
+		return nodesByName;
+	}
+
+	/**
+	 * Returns the fraction of the ring that each node owns, which is the fraction
+	 * of all possible Topic hashes that are assigned to it. The fractions of all
+	 * nodes add up to 1.
+	 *
+	 * @return the fraction owned by each node, by the names of the nodes
+	 */
+	public Map<String, Double> getOwnership() {
+		final NavigableMap<Integer, N> ring  = nodesByPosition;
+		final Map<String, N>           nodes = nodesByName;
+
+		final Map<N, Double> fractionPerNode = new HashMap<>();
+		if (!ring.isEmpty()) {
+			// every virtual node owns the arc from the previous virtual node up to itself
+			long previous = ring.lastKey() - (1L << Integer.SIZE);
+			for (final Entry<Integer, N> entry : ring.entrySet()) {
+				final double fraction = (entry.getKey() - previous) / (double) (1L << Integer.SIZE);
+				fractionPerNode.merge(entry.getValue(), fraction, Double::sum);
+				previous = entry.getKey();
+			}
+		}
+
+		final Map<String, Double> fractionPerName = new HashMap<>();
+		for (final Entry<String, N> entry : nodes.entrySet())
+			fractionPerName.put(entry.getKey(),
+			        fractionPerNode.getOrDefault(entry.getValue(), 0.0));
+
+		return fractionPerName;
+	}
+
+	private static <N> void addDistinct(List<N> nodes, Collection<N> candidates, int count) {
+		for (final N node : candidates) {
+			if (nodes.size() == count)
+				return;
+
+			if (!nodes.contains(node))
+				nodes.add(node);
+		}
+	}
+
+	private int positionOf(String name, int virtualNodeIndex) {
+		return hash.hash(name + "#" + virtualNodeIndex);
+	}
+}
@@ -0,0 +1,89 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.ConnectionInfo;
+
+/**
+ * An immutable description of a Broker that is a member of the server network,
+ * as it is placed on the {@link HashRing} that assigns Topics to Brokers.
+ * Members are sent from Broker to Broker so that every Broker knows the
+ * network.
+ *
+ * @author Alex Mandelias
+ */
+final class Member implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String            name;
+	private final ConnectionInfo    clientInfo;
+	private final InetSocketAddress brokerAddress;
+
+	/**
+	 * Constructs a Member.
+	 *
+	 * @param name          the name of the Broker, which determines its positions
+	 *                      on the ring
+	 * @param clientInfo    the ConnectionInfo that clients use to connect to the
+	 *                      Broker
+	 * @param brokerAddress the address at which other Brokers connect to the
+	 *                      Broker
+	 */
+	public Member(String name, ConnectionInfo clientInfo, InetSocketAddress brokerAddress) {
+		this.name = name;
+		this.clientInfo = clientInfo;
+		this.brokerAddress = brokerAddress;
+	}
+
+	/**
+	 * Returns the name of the Broker.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the ConnectionInfo that clients use to connect to the Broker.
+	 *
+	 * @return the ConnectionInfo
+	 */
+	public ConnectionInfo getClientInfo() {
+		return clientInfo;
+	}
+
+	/**
+	 * Returns the address at which other Brokers connect to the Broker.
+	 *
+	 * @return the address
+	 */
+	public InetSocketAddress getBrokerAddress() {
+		return brokerAddress;
+	}
+
+	/**
+	 * Returns a Member for the same Broker whose address for other Brokers is
+	 * resolved, if it is a wildcard address, to the address at which the Broker
+	 * is known to be reachable.
+	 *
+	 * @param address the address at which the Broker is reachable
+	 *
+	 * @return the Member
+	 */
+	public Member reachableAt(InetAddress address) {
+		if (!brokerAddress.getAddress().isAnyLocalAddress())
+			return this;
+
+		return new Member(name, clientInfo, new InetSocketAddress(address, brokerAddress.getPort()));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Member [name=%s, clientInfo=%s, brokerAddress=%s]", name, clientInfo,
+		        brokerAddress);
+	}
+}
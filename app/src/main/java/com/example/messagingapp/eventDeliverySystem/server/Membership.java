@@ -0,0 +1,401 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import static com.example.messagingapp.eventDeliverySystem.datastructures.Message.MessageType.GOSSIP;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Message;
+import com.example.messagingapp.eventDeliverySystem.util.LG;
+
+/**
+ * The table of the members of the server network that every Broker holds, so
+ * that every Broker can assign Topics to Brokers, and therefore answer the
+ * discovery requests of clients, on its own.
+ * <p>
+ * The Brokers keep their tables up to date by gossiping: every
+ * {@link BrokerConfig#getGossipInterval() gossip interval} each Broker
+ * increases its own heartbeat and exchanges its table with a Broker chosen at
+ * random, and both keep the most recent state of every member, the one with
+ * the highest heartbeat. A change therefore reaches every Broker after a number
+ * of rounds that grows with the logarithm of the number of Brokers. A member
+ * whose heartbeat hasn't increased for the
+ * {@link BrokerConfig#getGossipFailureTimeout() failure timeout} is considered
+ * failed and is removed from the ring, until a higher heartbeat of it arrives.
+ * <p>
+ * A new Broker joins through any member of the network, which names it, adds
+ * it to its table and sends it the table, from which point on the new Broker
+ * gossips like every other member.
+ *
+ * @author Alex Mandelias
+ */
+final class Membership implements Runnable, AutoCloseable {
+
+	private final Broker          broker;
+	private final BrokerConfig    config;
+	private final ExecutorService executor;
+
+	// guarded by this
+	private Member                         self;
+	private final Map<String, MemberState> states;
+	private final Map<String, Long>        lastHeartbeatTimes;
+
+	private volatile boolean closed;
+
+	/**
+	 * Constructs the Membership of a Broker, which knows of no member, not even
+	 * the Broker, until it {@link #join(Member, List, InetAddress) joins}.
+	 *
+	 * @param broker   the Broker
+	 * @param config   the configuration of the Broker
+	 * @param executor the executor on which to exchange tables with other
+	 *                 Brokers
+	 */
+	public Membership(Broker broker, BrokerConfig config, ExecutorService executor) {
+		this.broker = broker;
+		this.config = config;
+		this.executor = executor;
+		self = null;
+		states = new HashMap<>();
+		lastHeartbeatTimes = new HashMap<>();
+		closed = false;
+	}
+
+	/**
+	 * Makes the Broker a member of the network, replacing the member it was
+	 * before, if any. This method is called before the Broker starts gossiping.
+	 *
+	 * @param newSelf     the Broker as a member of the network
+	 * @param knownStates the states of the members that the Broker knows of, as
+	 *                    sent by the member through which it joins, or an empty
+	 *                    List if the Broker starts a new network
+	 * @param seedAddress the address of the member through which the Broker
+	 *                    joins, or {@code null} if it starts a new network
+	 */
+	public synchronized void join(Member newSelf, List<MemberState> knownStates,
+	        InetAddress seedAddress) {
+		if (self != null)
+			states.remove(self.getName());
+
+		// a Broker that restarts with the same name starts from a higher heartbeat than
+		// it had before, since its heartbeat increases at most once every millisecond
+		self = newSelf;
+		states.put(self.getName(),
+		        new MemberState(self, System.currentTimeMillis(), 0, true));
+
+		mergeStates(knownStates, seedAddress);
+		membersChanged();
+	}
+
+	/**
+	 * Adds a Broker that joins the network through this Broker. Its state is the
+	 * least recent possible, so that its own state replaces it as soon as it
+	 * gossips.
+	 *
+	 * @param member the Broker as a member of the network
+	 */
+	public synchronized void add(Member member) {
+		states.put(member.getName(), new MemberState(member, 0, 0, true));
+		lastHeartbeatTimes.put(member.getName(), System.currentTimeMillis());
+		membersChanged();
+	}
+
+	/**
+	 * Returns the states of the members of the network as this Broker knows them,
+	 * starting with the state of this Broker.
+	 *
+	 * @return the states, which may be sent to another Broker
+	 */
+	public synchronized ArrayList<MemberState> getStates() {
+		final ArrayList<MemberState> snapshot = new ArrayList<>(states.size());
+		snapshot.add(states.get(self.getName()));
+		for (final MemberState state : states.values())
+			if (!state.getName().equals(self.getName()))
+				snapshot.add(state);
+
+		return snapshot;
+	}
+
+	/**
+	 * Keeps the most recent state of every member from the states sent by another
+	 * Broker and from those this Broker already knows.
+	 *
+	 * @param receivedStates the states sent by the other Broker, starting with its
+	 *                       own state
+	 * @param senderAddress  the address from which the other Broker sent them
+	 */
+	public synchronized void merge(List<MemberState> receivedStates, InetAddress senderAddress) {
+		if (mergeStates(receivedStates, senderAddress))
+			membersChanged();
+	}
+
+	// guarded by this, returns whether a member was added, has failed, has recovered or moved
+	private boolean mergeStates(List<MemberState> receivedStates, InetAddress senderAddress) {
+		boolean changed = false;
+		final long now = System.currentTimeMillis();
+
+		for (int i = 0; i < receivedStates.size(); i++) {
+			MemberState received = receivedStates.get(i);
+
+			// only this Broker knows its own state
+			if (received.getName().equals(self.getName()))
+				continue;
+
+			final MemberState known = states.get(received.getName());
+
+			// the sender doesn't know at which address other Brokers reach it
+			if (i == 0)
+				received = received.reachableAt(senderAddress);
+			else if (known != null)
+				received = received.reachableAt(known.getMember().getBrokerAddress().getAddress());
+
+			if ((known == null) || received.isMoreRecentThan(known)) {
+				states.put(received.getName(), received);
+				if ((known == null) || (received.getHeartbeat() > known.getHeartbeat()))
+					lastHeartbeatTimes.put(received.getName(), now);
+
+				changed |= (known == null) || (known.isAlive() != received.isAlive())
+				        || !known.getMember().getBrokerAddress()
+				                .equals(received.getMember().getBrokerAddress());
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Returns the member with the fewest Consumers and counts one more Consumer
+	 * for it, until its next heartbeat reports its actual number of Consumers, so
+	 * that Consumers that arrive together are spread out.
+	 *
+	 * @return the member
+	 */
+	public synchronized Member assignConsumer() {
+		final List<MemberState> alive = new ArrayList<>();
+		for (final MemberState state : states.values())
+			if (state.isAlive())
+				alive.add(state);
+
+		Collections.shuffle(alive); // ties are broken at random
+
+		MemberState leastLoaded      = null;
+		int         leastLoadedCount = Integer.MAX_VALUE;
+		for (final MemberState state : alive) {
+			final int count = state.getName().equals(self.getName()) ? broker.getConsumerCount()
+			        : state.getConsumerCount();
+			if (count < leastLoadedCount) {
+				leastLoaded = state;
+				leastLoadedCount = count;
+			}
+		}
+
+		if (!leastLoaded.getName().equals(self.getName()))
+			states.put(leastLoaded.getName(), leastLoaded.withConsumerCount(leastLoadedCount + 1));
+
+		return leastLoaded.getMember();
+	}
+
+	/**
+	 * Gossips with a Broker chosen at random every gossip interval, until closed.
+	 * Tables are exchanged on the executor so that an unresponsive Broker doesn't
+	 * delay the heartbeat of this one.
+	 */
+	@Override
+	public void run() {
+		LG.sout("Start: Membership");
+		while (!closed) {
+			try {
+				Thread.sleep(config.getGossipInterval());
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			final Member                 peer;
+			final ArrayList<MemberState> snapshot;
+			synchronized (this) {
+				heartbeat();
+				detectFailures();
+				peer = choosePeer();
+				snapshot = getStates();
+			}
+
+			if (peer != null)
+				try {
+					executor.execute(() -> gossipWith(peer, snapshot));
+				} catch (final RejectedExecutionException e) {
+					return; // the Broker is closing
+				}
+		}
+	}
+
+	/** Stops gossiping. */
+	@Override
+	public void close() {
+		closed = true;
+	}
+
+	private void gossipWith(Member peer, ArrayList<MemberState> snapshot) {
+		final InetSocketAddress address = peer.getBrokerAddress();
+		try (Socket socket = new Socket()) {
+			socket.connect(address, config.getGossipFailureTimeout());
+			socket.setSoTimeout(config.getGossipFailureTimeout());
+
+			final ObjectOutputStream oos = new ObjectOutputStream(
+			        new BufferedOutputStream(socket.getOutputStream()));
+			oos.writeObject(new Message(GOSSIP, snapshot));
+			oos.flush();
+
+			final ObjectInputStream ois = new ObjectInputStream(
+			        new BufferedInputStream(socket.getInputStream()));
+
+			@SuppressWarnings("unchecked")
+			final List<MemberState> receivedStates = (List<MemberState>) ois.readObject();
+			merge(receivedStates, socket.getInetAddress());
+
+		} catch (final IOException | ClassNotFoundException e) {
+			// a failed member is detected by its heartbeat, not by a failed exchange
+			LG.sout("Couldn't gossip with %s: %s", peer.getName(), e);
+		}
+	}
+
+	// guarded by this
+	private void heartbeat() {
+		final MemberState state = states.get(self.getName());
+		states.put(self.getName(), state.next(broker.getConsumerCount()));
+	}
+
+	// guarded by this
+	private void detectFailures() {
+		boolean changed = false;
+		final long now = System.currentTimeMillis();
+
+		for (final MemberState state : new ArrayList<>(states.values())) {
+			if (!state.isAlive() || state.getName().equals(self.getName()))
+				continue;
+
+			final Long lastHeartbeatTime = lastHeartbeatTimes.get(state.getName());
+			if ((lastHeartbeatTime != null)
+			        && ((now - lastHeartbeatTime) > config.getGossipFailureTimeout())) {
+				LG.sout("Member %s has failed", state.getName());
+				states.put(state.getName(), state.failed());
+				changed = true;
+			}
+		}
+
+		if (changed)
+			membersChanged();
+	}
+
+	// guarded by this
+	private Member choosePeer() {
+		final List<Member> peers = new ArrayList<>();
+		for (final MemberState state : states.values())
+			if (state.isAlive() && !state.getName().equals(self.getName()))
+				peers.add(state.getMember());
+
+		if (peers.isEmpty())
+			return null;
+
+		return peers.get(ThreadLocalRandom.current().nextInt(peers.size()));
+	}
+
+	// guarded by this
+	private void membersChanged() {
+		final List<Member> members = new ArrayList<>();
+		for (final MemberState state : states.values())
+			if (state.isAlive())
+				members.add(state.getMember());
+
+		broker.setMembers(members);
+	}
+
+	/**
+	 * An immutable state of a member of the network, as it is gossiped between
+	 * Brokers. Of two states of the same member, the one with the higher
+	 * heartbeat is the most recent, and of two with the same heartbeat, the one
+	 * where the member has failed.
+	 *
+	 * @author Alex Mandelias
+	 */
+	static final class MemberState implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Member  member;
+		private final long    heartbeat;
+		private final int     consumerCount;
+		private final boolean alive;
+
+		private MemberState(Member member, long heartbeat, int consumerCount, boolean alive) {
+			this.member = member;
+			this.heartbeat = heartbeat;
+			this.consumerCount = consumerCount;
+			this.alive = alive;
+		}
+
+		public Member getMember() {
+			return member;
+		}
+
+		public String getName() {
+			return member.getName();
+		}
+
+		public long getHeartbeat() {
+			return heartbeat;
+		}
+
+		public int getConsumerCount() {
+			return consumerCount;
+		}
+
+		public boolean isAlive() {
+			return alive;
+		}
+
+		private boolean isMoreRecentThan(MemberState other) {
+			return (heartbeat > other.heartbeat) || ((heartbeat == other.heartbeat) && !alive
+			        && other.alive);
+		}
+
+		private MemberState next(int newConsumerCount) {
+			return new MemberState(member, heartbeat + 1, newConsumerCount, true);
+		}
+
+		private MemberState failed() {
+			return new MemberState(member, heartbeat, consumerCount, false);
+		}
+
+		private MemberState withConsumerCount(int newConsumerCount) {
+			return new MemberState(member, heartbeat, newConsumerCount, alive);
+		}
+
+		private MemberState reachableAt(InetAddress address) {
+			final Member reachableMember = member.reachableAt(address);
+			return reachableMember == member ? this
+			        : new MemberState(reachableMember, heartbeat, consumerCount, alive);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("MemberState [member=%s, heartbeat=%d, consumerCount=%d, alive=%s]",
+			        member, heartbeat, consumerCount, alive);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.wire.BinaryCodec;
+
+/**
+ * Holds the encoded binary frames of the most recently relayed Packets, so that
+ * a Packet streamed to many Consumers is encoded only once. Frames are kept in
+ * direct buffers which are written to every subscribed channel as they are,
+ * without being encoded or copied again per Consumer.
+ * <p>
+ * The total size of the frames is bounded; the least recently used frames are
+ * evicted first and are encoded again if they are needed later. This class is
+ * thread-safe.
+ *
+ * @author Alex Mandelias
+ */
+class PacketFrames {
+
+	private final long                    capacity;
+	private final Map<Packet, ByteBuffer> frames;
+	private long                          size;
+
+	/**
+	 * Constructs an empty cache of Packet frames.
+	 *
+	 * @param capacity the maximum total size of the frames, in bytes
+	 */
+	public PacketFrames(long capacity) {
+		this.capacity = capacity;
+		frames = new LinkedHashMap<>(16, 0.75f, true); // access order, for LRU eviction
+		size = 0;
+	}
+
+	/**
+	 * Stores the frame of a Packet as it was received from a Publisher, so that
+	 * it doesn't need to be encoded again.
+	 *
+	 * @param packet the Packet
+	 * @param frame  the whole encoded frame of the Packet, from its position up to
+	 *               its limit. Its contents are copied.
+	 */
+	public void put(Packet packet, ByteBuffer frame) {
+		final ByteBuffer copy = ByteBuffer.allocateDirect(frame.remaining());
+		copy.put(frame.duplicate());
+		copy.flip();
+
+		synchronized (this) {
+			cache(packet, copy.asReadOnlyBuffer());
+		}
+	}
+
+	/**
+	 * Returns the frame of a Packet, encoding it if it isn't cached. Every call
+	 * returns a new buffer which shares its contents with all others returned for
+	 * the same Packet, so that it can be written independently.
+	 *
+	 * @param packet the Packet
+	 *
+	 * @return a read-only buffer, ready to be written, containing the whole frame
+	 */
+	public ByteBuffer get(Packet packet) {
+		synchronized (this) {
+			final ByteBuffer frame = frames.get(packet);
+			if (frame != null)
+				return frame.duplicate();
+		}
+
+		final ByteBuffer frame = BinaryCodec.encodeDirect(packet).asReadOnlyBuffer();
+
+		synchronized (this) {
+			cache(packet, frame);
+		}
+
+		return frame.duplicate();
+	}
+
+	private void cache(Packet packet, ByteBuffer frame) {
+		if (frame.capacity() > capacity)
+			return;
+
+		final ByteBuffer previous = frames.put(packet, frame);
+		if (previous != null)
+			size -= previous.capacity();
+		size += frame.capacity();
+
+		final Iterator<ByteBuffer> iter = frames.values().iterator();
+		while (size > capacity) {
+			size -= iter.next().capacity();
+			iter.remove();
+		}
+	}
+}
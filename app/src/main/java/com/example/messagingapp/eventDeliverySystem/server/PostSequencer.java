@@ -0,0 +1,231 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+
+/**
+ * Reorders the PostInfo and Packet objects of a Topic so that they can be
+ * streamed to a Consumer one Post at a time. When many Posts are being
+ * published concurrently, their Packets arrive interleaved; this class buffers
+ * the Packets of all Posts but the one being streamed and forwards them to a
+ * {@link Sink} only when it is their Post's turn.
+ * <p>
+ * A PostSequencer may start in the middle of a Topic, while some of its Posts
+ * are still being posted, if it {@link #startWith(long) starts with} the
+ * earliest of them and is {@link #seed(PostInfo, Iterable) seeded} with the
+ * rest. Packets of Posts that it has never been given are ignored. A Post that
+ * is {@link #abandon(long) abandoned} is never streamed, unless part of it has
+ * already been streamed.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Alex Mandelias
+ * @author Dimitris Tsirmpas
+ */
+class PostSequencer {
+
+	private static final long NO_CURRENT_POST_ID = -1;
+
+	private long                          currentPostId;
+	private final Deque<PostInfo>         postInfos;
+	private final Map<Long, List<Packet>> buffers;
+
+	// the Packets that were posted before the seeded Posts were given, which are read only when
+	// their Post is streamed
+	private final Map<Long, Iterable<Packet>> seededPackets;
+
+	private final Sink sink;
+
+	/**
+	 * Constructs a PostSequencer that forwards PostInfo and Packet objects, in
+	 * the order in which they should be streamed, to a Sink.
+	 *
+	 * @param sink the Sink
+	 */
+	public PostSequencer(Sink sink) {
+		currentPostId = PostSequencer.NO_CURRENT_POST_ID;
+		postInfos = new LinkedList<>();
+		buffers = new HashMap<>();
+		seededPackets = new HashMap<>();
+		this.sink = sink;
+	}
+
+	/**
+	 * Makes a Post that is being posted the one being streamed, as if its PostInfo
+	 * and every Packet posted of it so far had been forwarded. These objects must
+	 * be streamed some other way before any object that this sequencer forwards,
+	 * which starts with the rest of the Packets of the Post. This method must be
+	 * called before any object is accepted.
+	 *
+	 * @param postId the ID of the Post
+	 */
+	public void startWith(long postId) {
+		currentPostId = postId;
+	}
+
+	/**
+	 * Accepts a Post that was posted after the one this sequencer
+	 * {@link #startWith(long) started with}, along with the Packets posted of it
+	 * so far, which are read only when it is the Post's turn to be streamed. The
+	 * Posts must be seeded in the order in which they were posted, and before any
+	 * other object is accepted.
+	 *
+	 * @param postInfo the PostInfo of the Post
+	 * @param packets  the Packets posted of the Post so far
+	 */
+	public void seed(PostInfo postInfo, Iterable<Packet> packets) {
+		add(postInfo);
+		seededPackets.put(postInfo.getId(), packets);
+	}
+
+	/**
+	 * Accepts a PostInfo and either forwards it or buffers it.
+	 *
+	 * @param postInfo the PostInfo
+	 */
+	public void add(PostInfo postInfo) {
+		// if no post is being streamed
+		if (currentPostId == PostSequencer.NO_CURRENT_POST_ID) {
+			// set post as current being streamed
+			currentPostId = postInfo.getId();
+			// start streaming post
+			forward(postInfo);
+
+		} else {
+			// add this post to buffer
+			postInfos.addLast(postInfo);
+			buffers.put(postInfo.getId(), new LinkedList<>());
+		}
+	}
+
+	/**
+	 * Accepts a Packet and either forwards it or buffers it.
+	 *
+	 * @param packet the Packet
+	 */
+	public void add(Packet packet) {
+		// if packet belongs to post being streamed
+		if ((currentPostId != PostSequencer.NO_CURRENT_POST_ID)
+		        && (packet.getPostId() == currentPostId)) {
+			// stream packet
+			forward(packet);
+
+			// if current post is fully streamed
+			if (packet.isFinal())
+				streamNextPosts();
+		} else {
+			// add packet to buffer because it's not being streamed
+			final List<Packet> buffer = buffers.get(packet.getPostId());
+
+			// the post started before this sequencer did, it is never streamed
+			if (buffer != null)
+				buffer.add(packet);
+		}
+	}
+
+	/**
+	 * Abandons a Post whose final Packet will never be accepted. If the Post is
+	 * buffered it is discarded, and if it is being streamed the Posts after it
+	 * are streamed instead.
+	 *
+	 * @param postId the ID of the Post
+	 *
+	 * @return {@code true} if part of the Post has already been forwarded, in
+	 *         which case the Consumer can't receive it whole, {@code false}
+	 *         otherwise
+	 */
+	public boolean abandon(long postId) {
+		if ((currentPostId != PostSequencer.NO_CURRENT_POST_ID) && (postId == currentPostId)) {
+			streamNextPosts();
+			return true;
+		}
+
+		if (buffers.remove(postId) != null) {
+			seededPackets.remove(postId);
+			postInfos.removeIf(postInfo -> postInfo.getId() == postId);
+		}
+
+		return false;
+	}
+
+	private void streamNextPosts() {
+		// start streaming next post
+		boolean finalReached;
+		do {
+
+			// if no posts left in buffer, mark current as none
+			// wait next post info
+			if (postInfos.isEmpty()) {
+				currentPostId = PostSequencer.NO_CURRENT_POST_ID;
+				break;
+			}
+
+			// take next Post
+			final PostInfo curr = postInfos.removeFirst();
+
+			// start streaming post
+			forward(curr);
+
+			// set as current
+			currentPostId = curr.getId();
+
+			// stream all packets in buffer
+			finalReached = emptyBufferOfCurrentPost();
+
+			// keep streaming the next post in buffer if the previous has been fully streamed
+		} while (finalReached);
+	}
+
+	private boolean emptyBufferOfCurrentPost() {
+		boolean finalReached = false;
+
+		// the Packets posted before this sequencer started come first
+		final Iterable<Packet> seeded = seededPackets.remove(currentPostId);
+		if (seeded != null)
+			for (final Packet seededPacket : seeded) {
+				forward(seededPacket);
+				finalReached |= seededPacket.isFinal();
+			}
+
+		final List<Packet> buffer = buffers.remove(currentPostId);
+		for (final Packet packetInBuffer : buffer) {
+
+			assert !finalReached;
+
+			// stream packet
+			forward(packetInBuffer);
+
+			// mark if this post has been fully streamed
+			finalReached |= packetInBuffer.isFinal();
+		}
+
+		return finalReached;
+	}
+
+	private void forward(Object postInfoOrPacket) {
+		sink.accept(postInfoOrPacket);
+	}
+
+	/**
+	 * The destination of the PostInfo and Packet objects that a PostSequencer
+	 * orders.
+	 *
+	 * @author Alex Mandelias
+	 */
+	@FunctionalInterface
+	interface Sink {
+
+		/**
+		 * Accepts the next object to be streamed.
+		 *
+		 * @param postInfoOrPacket the next PostInfo or Packet to be streamed
+		 */
+		void accept(Object postInfoOrPacket);
+	}
+}
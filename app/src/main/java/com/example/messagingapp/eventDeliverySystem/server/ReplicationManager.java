@@ -0,0 +1,719 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import static com.example.messagingapp.eventDeliverySystem.datastructures.Message.MessageType.RELAY;
+import static com.example.messagingapp.eventDeliverySystem.datastructures.Message.MessageType.REPLICATE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.AbstractTopic;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Message;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.server.BrokerConfig.AckLevel;
+import com.example.messagingapp.eventDeliverySystem.util.LG;
+
+/**
+ * Copies the Posts of the Topics that a Broker leads to their followers, and
+ * receives the Posts of the Topics that it follows from their leaders.
+ * <p>
+ * The Brokers of a Topic are the first {@link BrokerConfig#getReplicationFactor()
+ * replication factor} Brokers that the {@link HashRing} assigns to it. Its leader
+ * is the first of them, to which discovery directs its Publishers, and the rest
+ * of them are its followers. Leadership therefore moves with the ring: when a
+ * Broker joins ahead of the leader, or when the leader fails and is removed
+ * from the ring, another Broker leads the Topic from then on. For every
+ * follower, the leader keeps a connection to the Broker port of the follower
+ * over which it streams the Posts of the Topic, exactly as it streams them to a
+ * Consumer: first those that the follower doesn't have and then every new one.
+ * The follower posts each Post to its own copy of the Topic once all of its
+ * Packets have arrived, so that a Post cut off by a lost connection is sent
+ * again whole, and acknowledges it by sending back its ID. A follower whose connection is
+ * lost is connected to again until it stops being a follower.
+ * <p>
+ * A Broker that holds Posts of a Topic it doesn't lead hands them off to the
+ * leader: it streams them to the leader the same way, once, whenever the leader
+ * of the Topic changes and whenever a Publisher that hasn't learnt of the
+ * change yet posts to it, and the leader copies them to its followers. This
+ * way a new leader receives the Posts of the previous one, if it is still
+ * running, and whatever Posts only some of the followers have. A Broker that
+ * holds a Topic that it no longer follows, for example its previous leader,
+ * relays it.
+ * <p>
+ * The queues of the followers never drop Posts, so a follower that doesn't keep
+ * up blocks the Publishers of the Topic, the same way a Consumer does under the
+ * {@link BrokerConfig.OverflowPolicy#BLOCK BLOCK} policy.
+ * <p>
+ * When {@link BrokerConfig#isFanoutRelayEnabled() relays} are enabled, a Broker
+ * that doesn't hold a Topic that its Consumers read relays it: it connects to
+ * the Broker port of one of the Brokers that hold the Topic and receives its
+ * Posts the same way a follower does, but the Brokers that hold the Topic never
+ * wait for it to acknowledge them.
+ *
+ * @author Alex Mandelias
+ */
+final class ReplicationManager implements AutoCloseable {
+
+	private static final long RETRY_DELAY_MILLIS = 1000;
+
+	private final Broker          broker;
+	private final BrokerConfig    config;
+	private final ExecutorService executor;
+
+	// the Replicators of the Topics this Broker leads, by Topic and by follower name
+	private final Map<String, Map<String, Replicator>> replicatorsPerTopic;
+
+	// the Replicators that hand off the Topics this Broker doesn't lead to their leaders, by Topic
+	private final Map<String, Replicator> handOffsPerTopic;
+
+	// the name of the leader of each Topic, when the Topic was last reconciled
+	private final Map<String, String> leaderPerTopic;
+
+	// the Relays of the Topics this Broker relays, by Topic
+	private final Map<String, Relay> relaysPerTopic;
+
+	private volatile boolean closed;
+
+	/**
+	 * Constructs a ReplicationManager for a Broker.
+	 *
+	 * @param broker   the Broker
+	 * @param config   the configuration of the Broker
+	 * @param executor the executor on which to run the tasks that copy Posts
+	 */
+	public ReplicationManager(Broker broker, BrokerConfig config, ExecutorService executor) {
+		this.broker = broker;
+		this.config = config;
+		this.executor = executor;
+		replicatorsPerTopic = new HashMap<>();
+		handOffsPerTopic = new HashMap<>();
+		leaderPerTopic = new HashMap<>();
+		relaysPerTopic = new HashMap<>();
+		closed = false;
+	}
+
+	/**
+	 * Starts copying the Posts of a Topic that was just added to the Broker, for
+	 * example because it was created on it or because its leader started copying
+	 * it to it, according to which Broker leads it.
+	 *
+	 * @param topic the Topic
+	 *
+	 * @see #reconcile(BrokerTopic)
+	 */
+	public void add(BrokerTopic topic) {
+		reconcile(topic);
+	}
+
+	/**
+	 * Starts receiving the Posts of a Topic that was just added to the Broker
+	 * from one of the Brokers that hold it, so that the Broker can relay them to
+	 * its own Consumers. The Topic is relayed until the Broker closes.
+	 *
+	 * @param topic the Topic
+	 */
+	public void relay(BrokerTopic topic) {
+		final Member leader = leaderOf(topic.getName());
+
+		synchronized (replicatorsPerTopic) {
+			// a relayed copy has nothing to hand off to the leader
+			leaderPerTopic.put(topic.getName(), leader.getName());
+			if (closed || relaysPerTopic.containsKey(topic.getName()))
+				return;
+
+			LG.sout("Relaying Topic '%s'", topic.getName());
+			final Relay relay = new Relay(topic);
+			relaysPerTopic.put(topic.getName(), relay);
+			executor.execute(relay);
+		}
+	}
+
+	/**
+	 * Starts copying the Posts of a Topic to its followers if the Broker leads the
+	 * Topic, and stops copying them to Brokers that are no longer its followers.
+	 * If the leader of the Topic has changed and it is another Broker, the Posts
+	 * of the Topic are handed off to it. Copies of the Topic that the Broker
+	 * doesn't hold as a replica are relayed instead. This method should be called,
+	 * for every Topic, whenever the members of the network change.
+	 *
+	 * @param topic the Topic
+	 */
+	public void reconcile(BrokerTopic topic) {
+		final String       topicName = topic.getName();
+		final List<Member> replicas  = broker.getReplicasOf(topicName);
+		final Member       leader    = leaderOf(topicName);
+
+		synchronized (replicatorsPerTopic) {
+			if (closed)
+				return;
+
+			final boolean leads = broker.isSelf(leader);
+
+			// the new leader may not have every Post that this Broker has
+			if (!leader.getName().equals(leaderPerTopic.put(topicName, leader.getName())))
+				handOff(topic, leader);
+
+			// a copy that this Broker no longer holds, for example because it led the
+			// Topic before another Broker joined, is no longer fed by the leader, so its
+			// Posts must be relayed instead
+			if (!relaysPerTopic.containsKey(topicName) && !isReplicaOf(topicName)) {
+				LG.sout("Relaying Topic '%s'", topicName);
+				final Relay relay = new Relay(topic);
+				relaysPerTopic.put(topicName, relay);
+				executor.execute(relay);
+			}
+
+			final Map<String, Member> followers = new HashMap<>();
+			if (leads)
+				for (final Member follower : replicas)
+					if (!broker.isSelf(follower))
+						followers.put(follower.getName(), follower);
+
+			Map<String, Replicator> replicators = replicatorsPerTopic.get(topicName);
+			if (replicators == null) {
+				if (followers.isEmpty())
+					return;
+
+				replicators = new HashMap<>();
+				replicatorsPerTopic.put(topicName, replicators);
+			}
+
+			final Iterator<Entry<String, Replicator>> iter = replicators.entrySet().iterator();
+			while (iter.hasNext()) {
+				final Entry<String, Replicator> entry = iter.next();
+				if (followers.remove(entry.getKey()) == null) {
+					LG.sout("Stopped replicating Topic '%s' to %s", topicName, entry.getKey());
+					entry.getValue().stop();
+					iter.remove();
+				}
+			}
+
+			for (final Member follower : followers.values()) {
+				LG.sout("Replicating Topic '%s' to %s", topicName, follower.getName());
+				final Replicator replicator = new Replicator(topic, follower, false);
+				replicators.put(follower.getName(), replicator);
+				executor.execute(replicator);
+			}
+		}
+	}
+
+	/**
+	 * Hands off the Posts that a Publisher has just posted to a Topic to the
+	 * leader of the Topic, if the Broker doesn't lead it. Publishers send Posts to
+	 * the leader, but one that found the leader before the members of the network
+	 * changed may send them to another Broker.
+	 *
+	 * @param topic the Topic
+	 */
+	public void posted(BrokerTopic topic) {
+		final Member leader = leaderOf(topic.getName());
+
+		synchronized (replicatorsPerTopic) {
+			// a running hand-off streams the new Posts as well
+			if (!handOffsPerTopic.containsKey(topic.getName()))
+				handOff(topic, leader);
+		}
+	}
+
+	// guarded by 'replicatorsPerTopic', replaces the hand-off of the Topic, if any
+	private void handOff(BrokerTopic topic, Member leader) {
+		final Replicator previous = handOffsPerTopic.remove(topic.getName());
+		if (previous != null)
+			previous.stop();
+
+		if (closed || broker.isSelf(leader))
+			return;
+
+		LG.sout("Handing off Topic '%s' to %s", topic.getName(), leader.getName());
+		final Replicator handOff = new Replicator(topic, leader, true);
+		handOffsPerTopic.put(topic.getName(), handOff);
+		executor.execute(handOff);
+	}
+
+	/**
+	 * Returns the Broker that leads a Topic, to which its Publishers must send
+	 * Posts: the first of the Brokers that hold it.
+	 *
+	 * @param topicName the name of the Topic
+	 *
+	 * @return the leader of the Topic
+	 */
+	public Member leaderOf(String topicName) {
+		return broker.getReplicasOf(topicName).get(0);
+	}
+
+	/**
+	 * Returns whether the Broker is one of the Brokers that hold a Topic.
+	 *
+	 * @param topicName the name of the Topic
+	 *
+	 * @return {@code true} if the Broker holds the Topic, {@code false} otherwise
+	 */
+	public boolean isReplicaOf(String topicName) {
+		for (final Member replica : broker.getReplicasOf(topicName))
+			if (broker.isSelf(replica))
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Waits, under the {@link AckLevel#ALL ALL} ack level, until every follower of
+	 * a Topic that is connected, or the leader of the Topic if its Posts are being
+	 * handed off to it, has acknowledged all of the Posts that the Topic has now,
+	 * or until the acknowledgement timeout expires. Under the
+	 * {@link AckLevel#LEADER LEADER} ack level this method returns immediately.
+	 *
+	 * @param topic the Topic
+	 *
+	 * @throws InterruptedException if the calling Thread is interrupted while
+	 *                              waiting
+	 */
+	public void awaitFollowers(BrokerTopic topic) throws InterruptedException {
+		if (config.getReplicationAckLevel() != AckLevel.ALL)
+			return;
+
+		final List<Replicator> replicators = new ArrayList<>();
+		synchronized (replicatorsPerTopic) {
+			final Map<String, Replicator> replicatorsOfTopic = replicatorsPerTopic
+			        .get(topic.getName());
+			if (replicatorsOfTopic != null)
+				replicators.addAll(replicatorsOfTopic.values());
+
+			final Replicator handOff = handOffsPerTopic.get(topic.getName());
+			if (handOff != null)
+				replicators.add(handOff);
+		}
+
+		final int  postCount = topic.getPostCount();
+		final long deadline  = System.currentTimeMillis() + config.getReplicationAckTimeout();
+		for (final Replicator replicator : replicators)
+			if (!replicator.awaitAcknowledgement(postCount, deadline))
+				LG.sout("Broker %s of Topic '%s' didn't acknowledge %d Posts in time",
+				        replicator.receiver.getName(), topic.getName(), postCount);
+	}
+
+	/**
+	 * Runs a task once the followers of a Topic have acknowledged all of the Posts
+	 * that the Topic has now, as defined by {@link #awaitFollowers(BrokerTopic)}.
+	 * The task is run directly under the {@link AckLevel#LEADER LEADER} ack level
+	 * and on the executor of the Broker otherwise, so that the calling Thread,
+	 * which may be an event loop, doesn't wait.
+	 *
+	 * @param topic the Topic
+	 * @param task  the task
+	 */
+	public void whenFollowersAcknowledge(BrokerTopic topic, Runnable task) {
+		if (config.getReplicationAckLevel() != AckLevel.ALL) {
+			task.run();
+			return;
+		}
+
+		executor.execute(() -> {
+			try {
+				awaitFollowers(topic);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			task.run();
+		});
+	}
+
+	/**
+	 * Receives the Posts of a Topic that the Broker follows from the leader of the
+	 * Topic, or that the Broker leads from a Broker that hands them off to it,
+	 * until the connection closes. The Topic is added to the Broker if it doesn't
+	 * exist.
+	 *
+	 * @param topicName the name of the Topic
+	 * @param ois       the stream from the leader
+	 * @param oos       the stream to the leader
+	 *
+	 * @throws IOException            if an I/O error occurs, for example when the
+	 *                                connection closes
+	 * @throws ClassNotFoundException if an object of an unknown class arrives
+	 */
+	public void follow(String topicName, ObjectInputStream ois, ObjectOutputStream oos)
+	        throws IOException, ClassNotFoundException {
+		LG.sout("Following Topic '%s'", topicName);
+		receive(broker.getReplica(topicName), ois, oos);
+	}
+
+	/**
+	 * Sends the Posts of a Topic that the Broker holds to a Broker that relays it,
+	 * until the connection to the relay closes.
+	 *
+	 * @param topicName the name of the Topic
+	 * @param socket    the connection to the relay
+	 * @param ois       the stream from the relay
+	 * @param oos       the stream to the relay
+	 *
+	 * @throws IOException if an I/O error occurs, for example when the connection
+	 *                     closes
+	 */
+	public void serveRelay(String topicName, Socket socket, ObjectInputStream ois,
+	        ObjectOutputStream oos) throws IOException {
+		LG.sout("Serving relay of Topic '%s'", topicName);
+
+		// relays are never waited for, their acknowledgements are ignored
+		stream(broker.getTopicToRead(topicName), socket, ois, oos, postId -> {}, () -> {});
+	}
+
+	// receives Posts as a follower or a relay, a stream that doesn't consist of whole Posts is closed
+	private void receive(BrokerTopic topic, ObjectInputStream ois, ObjectOutputStream oos)
+	        throws IOException, ClassNotFoundException {
+		oos.writeLong(topic.getLastPostId());
+		oos.flush();
+
+		ois.readInt(); // the leader streams Posts with Protocol.KEEP_ALIVE
+
+		final List<Object> post = new ArrayList<>();
+		while (true) {
+			final PostInfo postInfo = ReplicationManager.readObject(ois, PostInfo.class);
+
+			post.clear();
+			post.add(postInfo);
+			Packet packet;
+			do {
+				packet = ReplicationManager.readObject(ois, Packet.class);
+				if (packet.getPostId() != postInfo.getId())
+					throw new StreamCorruptedException(String.format(
+					        "Expected a Packet of Post %d but received one of Post %d",
+					        postInfo.getId(), packet.getPostId()));
+
+				post.add(packet);
+			} while (!packet.isFinal());
+
+			// the leader sends Posts the follower already has when it reconnects
+			if (topic.indexOf(postInfo.getId()) == -1)
+				topic.postBatch(post);
+
+			oos.writeLong(postInfo.getId());
+			oos.flush();
+		}
+	}
+
+	// streams Posts to a follower or a relay, once the receiver has sent the id of its last Post
+	private void stream(BrokerTopic topic, Socket socket, ObjectInputStream ois,
+	        ObjectOutputStream oos, LongConsumer onAcknowledgement, Runnable onCaughtUp)
+	        throws IOException {
+		final long lastPostId = ois.readLong();
+
+		// the receiver has every Post up to the last one it has
+		onAcknowledgement.accept(lastPostId);
+
+		// the push thread subscribes together with the catch-up, so that every Post is
+		// streamed whole and exactly once, and the receiver skips those it already has
+		final SendQueue        queue      = broker.newReplicaSendQueue(topic);
+		final BrokerPushThread pushThread = new BrokerPushThread(topic, oos, socket, queue);
+
+		executor.execute(() -> {
+			try {
+				while (true)
+					onAcknowledgement.accept(ois.readLong());
+			} catch (final IOException e) {
+				// do nothing, the receiver has disconnected
+			}
+
+			// the push thread may be waiting for a Post to send, it must stop now
+			queue.close();
+		});
+
+		try {
+			// a follower may have Posts that this Broker doesn't, if it was the leader before
+			final long since = topic.indexOf(lastPostId) == -1
+			        ? AbstractTopic.FETCH_ALL_POSTS
+			        : lastPostId;
+
+			oos.writeInt(Integer.MAX_VALUE);
+			for (final Object postInfoOrPacket : pushThread.subscribe(since)) {
+				oos.writeObject(postInfoOrPacket);
+				oos.reset();
+			}
+			oos.flush();
+
+		} catch (final IOException | UncheckedIOException e) {
+			// the push thread stops, and unsubscribes, as soon as it runs
+			queue.close();
+		}
+
+		onCaughtUp.run();
+		pushThread.run();
+	}
+
+	/** Stops copying the Posts of every Topic to its followers, leaders and relays. */
+	@Override
+	public void close() {
+		synchronized (replicatorsPerTopic) {
+			closed = true;
+			for (final Map<String, Replicator> replicators : replicatorsPerTopic.values())
+				for (final Replicator replicator : replicators.values())
+					replicator.stop();
+
+			for (final Replicator handOff : handOffsPerTopic.values())
+				handOff.stop();
+
+			for (final Relay relay : relaysPerTopic.values())
+				relay.stop();
+
+			replicatorsPerTopic.clear();
+			handOffsPerTopic.clear();
+			relaysPerTopic.clear();
+		}
+	}
+
+	private static <T> T readObject(ObjectInputStream ois, Class<T> type)
+	        throws IOException, ClassNotFoundException {
+		final Object object = ois.readObject();
+		if (!type.isInstance(object))
+			throw new StreamCorruptedException(String.format("Expected a %s but received %s",
+			        type.getSimpleName(), object));
+
+		return type.cast(object);
+	}
+
+	private static void closeQuietly(Socket socket) {
+		if (socket != null)
+			try {
+				socket.close();
+			} catch (final IOException e) {
+				// do nothing
+			}
+	}
+
+	/**
+	 * A task that copies the Posts of a Topic to one of its followers for as long
+	 * as it is not stopped, connecting to the follower again whenever the
+	 * connection is lost. A Replicator that hands off the Topic to its leader
+	 * instead stops on its own once the leader has acknowledged every Post of the
+	 * Topic.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private final class Replicator implements Runnable {
+
+		private final BrokerTopic topic;
+		private final Member      receiver;
+		private final boolean     handOff;
+
+		private volatile boolean stopped;
+		private volatile Socket  socket;
+
+		// guarded by this
+		private boolean connected;
+		private int     acknowledgedPostCount;
+
+		public Replicator(BrokerTopic topic, Member receiver, boolean handOff) {
+			this.topic = topic;
+			this.receiver = receiver;
+			this.handOff = handOff;
+			stopped = false;
+			socket = null;
+			connected = false;
+			acknowledgedPostCount = 0;
+		}
+
+		@Override
+		public void run() {
+			while (!stopped) {
+				final InetSocketAddress address = receiver.getBrokerAddress();
+				try (Socket newSocket = new Socket(address.getAddress(), address.getPort())) {
+					socket = newSocket;
+					if (!stopped)
+						replicateOver(newSocket);
+
+				} catch (final IOException e) {
+					LG.sout("Lost Broker %s of Topic '%s': %s", receiver.getName(),
+					        topic.getName(), e);
+				}
+
+				disconnected();
+
+				try {
+					if (!stopped)
+						Thread.sleep(ReplicationManager.RETRY_DELAY_MILLIS);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+
+		private void replicateOver(Socket newSocket) throws IOException {
+			final ObjectOutputStream oos = new ObjectOutputStream(
+			        new BufferedOutputStream(newSocket.getOutputStream()));
+			oos.writeObject(new Message(REPLICATE, topic.getName()));
+			oos.flush();
+
+			final ObjectInputStream ois = new ObjectInputStream(
+			        new BufferedInputStream(newSocket.getInputStream()));
+
+			stream(topic, newSocket, ois, oos, this::acknowledged, this::connected);
+		}
+
+		private void connected() {
+			synchronized (this) {
+				connected = true;
+			}
+
+			if (handOff)
+				handedOff();
+		}
+
+		private synchronized void disconnected() {
+			connected = false;
+			notifyAll();
+		}
+
+		private void acknowledged(long postId) {
+			synchronized (this) {
+				final int index = topic.indexOf(postId);
+				if (index >= acknowledgedPostCount) {
+					acknowledgedPostCount = index + 1;
+					notifyAll();
+				}
+			}
+
+			if (handOff)
+				handedOff();
+		}
+
+		// stops the hand-off if the leader has every Post, unless it has been replaced
+		private void handedOff() {
+			synchronized (replicatorsPerTopic) {
+				if ((handOffsPerTopic.get(topic.getName()) != this) || !isAcknowledged())
+					return;
+
+				handOffsPerTopic.remove(topic.getName());
+			}
+
+			LG.sout("Handed off Topic '%s' to %s", topic.getName(), receiver.getName());
+			stop();
+		}
+
+		private synchronized boolean isAcknowledged() {
+			return connected && (acknowledgedPostCount >= topic.getPostCount());
+		}
+
+		/**
+		 * Waits until the follower has acknowledged a number of Posts, or until it is
+		 * disconnected or the deadline passes.
+		 *
+		 * @return {@code true} if the follower has acknowledged the Posts or is not
+		 *         connected, {@code false} if the deadline passed
+		 */
+		private synchronized boolean awaitAcknowledgement(int postCount, long deadline)
+		        throws InterruptedException {
+			long remaining;
+			while (connected && (acknowledgedPostCount < postCount)) {
+				remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0)
+					return false;
+
+				wait(remaining);
+			}
+
+			return true;
+		}
+
+		public void stop() {
+			stopped = true;
+			ReplicationManager.closeQuietly(socket);
+			disconnected();
+		}
+	}
+
+	/**
+	 * A task that receives the Posts of a Topic that the Broker relays from one of
+	 * the Brokers that hold it, for as long as it is not stopped, connecting to
+	 * one of them again whenever the connection is lost.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private final class Relay implements Runnable {
+
+		private final BrokerTopic topic;
+
+		private volatile boolean stopped;
+		private volatile Socket  socket;
+
+		public Relay(BrokerTopic topic) {
+			this.topic = topic;
+			stopped = false;
+			socket = null;
+		}
+
+		@Override
+		public void run() {
+			while (!stopped) {
+				final Member source = chooseSource();
+				if (source != null) {
+					final InetSocketAddress address = source.getBrokerAddress();
+					try (Socket newSocket = new Socket(address.getAddress(), address.getPort())) {
+						socket = newSocket;
+						if (!stopped)
+							relayFrom(newSocket);
+
+					} catch (final IOException | ClassNotFoundException e) {
+						LG.sout("Lost source %s of relayed Topic '%s': %s", source.getName(),
+						        topic.getName(), e);
+					}
+				}
+
+				try {
+					if (!stopped)
+						Thread.sleep(ReplicationManager.RETRY_DELAY_MILLIS);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+
+		// any of the Brokers that hold the Topic, so that relays are spread across them
+		private Member chooseSource() {
+			final List<Member> sources = new ArrayList<>();
+			for (final Member replica : broker.getReplicasOf(topic.getName()))
+				if (!broker.isSelf(replica))
+					sources.add(replica);
+
+			if (sources.isEmpty())
+				return null;
+
+			return sources.get(ThreadLocalRandom.current().nextInt(sources.size()));
+		}
+
+		private void relayFrom(Socket newSocket) throws IOException, ClassNotFoundException {
+			final ObjectOutputStream oos = new ObjectOutputStream(
+			        new BufferedOutputStream(newSocket.getOutputStream()));
+			oos.writeObject(new Message(RELAY, topic.getName()));
+			oos.flush();
+
+			final ObjectInputStream ois = new ObjectInputStream(
+			        new BufferedInputStream(newSocket.getInputStream()));
+
+			receive(topic, ois, oos);
+		}
+
+		public void stop() {
+			stopped = true;
+			ReplicationManager.closeQuietly(socket);
+		}
+	}
+}
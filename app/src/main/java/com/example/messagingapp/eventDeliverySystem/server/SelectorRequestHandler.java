@@ -0,0 +1,941 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Message;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Message.MessageType;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet.SizeLimits;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Topic.TopicToken;
+import com.example.messagingapp.eventDeliverySystem.util.LG;
+import com.example.messagingapp.eventDeliverySystem.util.Subscriber;
+import com.example.messagingapp.eventDeliverySystem.wire.BinaryCodec;
+import com.example.messagingapp.eventDeliverySystem.wire.Handshake;
+import com.example.messagingapp.eventDeliverySystem.wire.WireFormat;
+
+/**
+ * Services the client connections of a Broker using non-blocking channels that
+ * are multiplexed over a fixed number of event loops, so that the number of
+ * connections a Broker can hold does not depend on the number of Threads it
+ * can create. This is the {@link BrokerConfig.IOMode#SELECTOR SELECTOR}
+ * counterpart of the Broker's {@code ClientRequestHandler}, and it speaks the
+ * exact same protocol.
+ * <p>
+ * Connections that use the {@link WireFormat#BINARY BINARY} format are framed,
+ * so incoming objects are decoded as soon as each frame has arrived.
+ * Connections that use Java serialization are not framed, so incoming data is
+ * accumulated and is decoded only once enough of it has arrived. To keep the
+ * total cost of decoding linear, the body of a
+ * {@link MessageType#DATA_PACKET_SEND DATA_PACKET_SEND} request is then decoded
+ * again only when the amount of data received has doubled since the previous
+ * attempt, or when the Publisher closes its side of the connection. Either way,
+ * the Posts of the request are posted together, once all of them have arrived,
+ * so a Publisher that disconnects in the middle of a request posts none of them.
+ * <p>
+ * Packets are relayed to Consumers that use the binary format without being
+ * encoded for each one: the frame of every Packet is kept in a direct buffer,
+ * which is written as it is to the channels of all subscribed Consumers.
+ * <p>
+ * Objects are encoded for a Consumer only when its channel is writable: the
+ * Posts it doesn't have are read from the Topic as they are sent, and new
+ * Posts wait in a bounded {@link SendQueue}. Since an event loop must never
+ * block, when the queue of a Consumer is full under the
+ * {@link BrokerConfig.OverflowPolicy#BLOCK BLOCK} policy the connections of the
+ * Publishers of its Topic stop being read until the queue drains.
+ * <p>
+ * Requests to {@link MessageType#MULTIPLEX MULTIPLEX} a connection are
+ * declined, so every request is made over a connection of its own.
+ *
+ * @author Alex Mandelias
+ */
+class SelectorRequestHandler implements AutoCloseable {
+
+	private static final int READ_BUFFER_SIZE     = 64 * 1024;
+	private static final int INITIAL_INBOUND_SIZE = 1024;
+	private static final int MAX_GATHER_SIZE      = 16;
+
+	private static final long NOT_POSTING = -1;
+
+	private final Broker              broker;
+	private final ServerSocketChannel serverChannel;
+	private final EventLoop[]         eventLoops;
+	private final boolean             binaryAllowed;
+	private final SizeLimits          packetSizeLimits;
+	private final PacketFrames        packetFrames;
+
+	// only accessed by the event loop that accepts connections
+	private int nextEventLoop;
+
+	/**
+	 * Constructs a SelectorRequestHandler that, when started, will accept and
+	 * service the connections made to a server channel.
+	 *
+	 * @param broker        the Broker whose Topics are accessed by the clients
+	 * @param serverChannel the channel that accepts client connections
+	 * @param config        the configuration of the Broker
+	 *
+	 * @throws IOException if a Selector could not be opened
+	 */
+	public SelectorRequestHandler(Broker broker, ServerSocketChannel serverChannel,
+	        BrokerConfig config) throws IOException {
+		this.broker = broker;
+		this.serverChannel = serverChannel;
+		binaryAllowed = config.isBinaryWireFormatAllowed();
+		packetSizeLimits = config.getPacketSizeLimits();
+		packetFrames = config.getRelayCacheSize() == 0 ? null
+		        : new PacketFrames(config.getRelayCacheSize());
+
+		final int eventLoopCount = config.getEventLoopCount();
+		eventLoops = new EventLoop[eventLoopCount];
+		for (int i = 0; i < eventLoopCount; i++)
+			eventLoops[i] = new EventLoop(i);
+
+		nextEventLoop = 0;
+	}
+
+	/**
+	 * Starts the event loops. The first event loop also accepts new connections
+	 * and distributes them among all the event loops.
+	 *
+	 * @throws IOException if the server channel could not be made non-blocking
+	 */
+	public void start() throws IOException {
+		serverChannel.configureBlocking(false);
+
+		final EventLoop acceptingLoop = eventLoops[0];
+		acceptingLoop.execute(() -> {
+			try {
+				serverChannel.register(acceptingLoop.selector, SelectionKey.OP_ACCEPT);
+			} catch (final IOException e) {
+				e.printStackTrace();
+				System.exit(-1); // serious error when waiting, close broker
+			}
+		});
+
+		for (final EventLoop eventLoop : eventLoops)
+			eventLoop.start();
+	}
+
+	/**
+	 * Stops the event loops and waits until they have closed all of their
+	 * connections.
+	 */
+	@Override
+	public void close() {
+		for (final EventLoop eventLoop : eventLoops)
+			eventLoop.close();
+
+		try {
+			for (final EventLoop eventLoop : eventLoops)
+				eventLoop.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+
+			final EventLoop     eventLoop        = eventLoops[nextEventLoop];
+			final SocketChannel connectedChannel = channel;
+			eventLoop.execute(() -> eventLoop.register(connectedChannel));
+
+			nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+		}
+	}
+
+	/**
+	 * A Thread which waits for events on the channels registered to its Selector
+	 * and services them without ever blocking.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private final class EventLoop extends Thread {
+
+		private final Selector        selector;
+		private final Queue<Runnable> tasks;
+		private final ByteBuffer      readBuffer;
+
+		private volatile boolean closed;
+
+		public EventLoop(int index) throws IOException {
+			super("EventLoop-" + index);
+			selector = Selector.open();
+			tasks = new ConcurrentLinkedQueue<>();
+			readBuffer = ByteBuffer.allocateDirect(SelectorRequestHandler.READ_BUFFER_SIZE);
+			closed = false;
+		}
+
+		/**
+		 * Schedules a task to be run by this event loop. This method is thread-safe.
+		 *
+		 * @param task the task
+		 */
+		public void execute(Runnable task) {
+			tasks.add(task);
+			selector.wakeup();
+		}
+
+		/** Stops this event loop and closes all of its connections */
+		public void close() {
+			closed = true;
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			LG.sout("Start: %s", getName());
+
+			while (!closed) {
+				try {
+					selector.select();
+				} catch (final IOException e) {
+					e.printStackTrace();
+					break;
+				}
+
+				Runnable task;
+				while ((task = tasks.poll()) != null)
+					task.run();
+
+				final Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+				while (iter.hasNext()) {
+					final SelectionKey key = iter.next();
+					iter.remove();
+
+					if (key.isValid() && key.isAcceptable()) {
+						try {
+							accept();
+						} catch (final IOException e) {
+							e.printStackTrace();
+						}
+						continue;
+					}
+
+					final Connection connection = (Connection) key.attachment();
+					try {
+						if (key.isReadable())
+							connection.onReadable(readBuffer);
+						if (key.isValid() && key.isWritable())
+							connection.onWritable();
+
+					} catch (final CancelledKeyException e) {
+						// connection was closed while its events were being serviced
+					} catch (final IOException e) {
+						// do nothing, ignore this client
+						connection.close();
+					}
+				}
+			}
+
+			for (final SelectionKey key : selector.keys())
+				if (key.attachment() instanceof Connection)
+					((Connection) key.attachment()).close();
+
+			try {
+				selector.close();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+
+			LG.sout("End: %s", getName());
+		}
+
+		private void register(SocketChannel channel) {
+			LG.sout("%s#register(%s)", getName(), channel);
+			try {
+				final Connection connection = new Connection(channel, this);
+				connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			} catch (final IOException e) {
+				// do nothing, ignore this client
+				try {
+					channel.close();
+				} catch (final IOException e1) {
+					e1.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The state of a single client connection. All methods, unless otherwise
+	 * noted, are called only by the event loop of the connection.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private final class Connection {
+
+		private final SocketChannel channel;
+		private final EventLoop     eventLoop;
+		private SelectionKey        key;
+
+		private WireFormat         format;
+		private ObjectOutputStream oos;
+
+		// guarded by 'outbound'
+		private final Deque<ByteBuffer> outbound;
+		private boolean                 writeScheduled;
+		private boolean                 closeWhenFlushed;
+		private boolean                 closed;
+
+		private byte[]  inbound;
+		private int     inboundLength;
+		private boolean endOfStream;
+
+		private Message      message;
+		private int          lastDecodeLength;
+		private List<Object> batch; // the objects of a binary request, posted at its end
+		private int          postsRemaining;
+		private long         postingId;
+		private BrokerTopic  topic;
+		private Subscriber   subscriber;
+
+		// only set for Consumers, the objects not yet encoded
+		private Iterator<Object> catchUp;
+		private SendQueue        sendQueue;
+
+		public Connection(SocketChannel channel, EventLoop eventLoop) {
+			this.channel = channel;
+			this.eventLoop = eventLoop;
+
+			outbound = new ArrayDeque<>();
+			writeScheduled = false;
+			closeWhenFlushed = false;
+			closed = false;
+
+			inbound = new byte[SelectorRequestHandler.INITIAL_INBOUND_SIZE];
+			inboundLength = 0;
+			endOfStream = false;
+
+			format = null;
+			oos = null;
+
+			message = null;
+			lastDecodeLength = 0;
+			batch = new ArrayList<>();
+			postsRemaining = -1;
+			postingId = SelectorRequestHandler.NOT_POSTING;
+		}
+
+		private void onReadable(ByteBuffer readBuffer) throws IOException {
+			int read;
+			do {
+				readBuffer.clear();
+				read = channel.read(readBuffer);
+				if (read > 0) {
+					readBuffer.flip();
+					append(readBuffer);
+				}
+			} while (read > 0);
+
+			if (read == -1)
+				endOfStream = true;
+
+			try {
+				process();
+			} catch (IOException | ClassNotFoundException | RuntimeException e) {
+				// do nothing, ignore this client
+				e.printStackTrace();
+				close();
+				return;
+			}
+
+			if (endOfStream && !closed)
+				closeWhenFlushed();
+		}
+
+		private void append(ByteBuffer data) {
+			// after the request has been read, only the Publishers send more data
+			if (inbound == null)
+				return;
+
+			final int required = inboundLength + data.remaining();
+			if (required > inbound.length)
+				inbound = Arrays.copyOf(inbound, Math.max(required, inbound.length * 2));
+
+			final int length = data.remaining();
+			data.get(inbound, inboundLength, length);
+			inboundLength += length;
+		}
+
+		private void process() throws IOException, ClassNotFoundException {
+			// nothing more is expected from this client
+			if (inbound == null)
+				return;
+
+			if ((format == null) && !negotiate())
+				return;
+
+			if (format == WireFormat.BINARY)
+				processFrames();
+			else
+				processSerialized();
+
+			// stop reading Posts until the Consumers of the topic catch up
+			if ((inbound != null) && (topic != null) && topic.isCongested())
+				pauseReading();
+		}
+
+		private void pauseReading() {
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+			topic.whenDecongested(() -> eventLoop.execute(this::resumeReading));
+		}
+
+		private void resumeReading() {
+			if (key.isValid())
+				key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+		}
+
+		private boolean negotiate() throws IOException {
+			if (inboundLength < Integer.BYTES)
+				return false;
+
+			if (ByteBuffer.wrap(inbound, 0, Integer.BYTES).getInt() != BinaryCodec.MAGIC)
+				format = WireFormat.SERIALIZATION;
+			else {
+				if (inboundLength < (Integer.BYTES + 1))
+					return false;
+
+				final byte version = Handshake.respond(inbound[Integer.BYTES], binaryAllowed);
+				enqueue(ByteBuffer.wrap(new byte[] { version }));
+
+				if (version == BinaryCodec.NO_VERSION) {
+					inbound = null;
+					closeWhenFlushed();
+					return false;
+				}
+
+				format = WireFormat.BINARY;
+				consume(Integer.BYTES + 1);
+			}
+
+			// clients using serialization expect the stream header before they send a request
+			oos = format.newOutputStream(new ChannelOutputStream(this));
+			oos.flush();
+			return true;
+		}
+
+		private void processFrames() throws IOException, ClassNotFoundException {
+			int position = 0;
+
+			// dispatching a request may mean that no more data is expected
+			while (inbound != null) {
+				final int available = inboundLength - position;
+				if (available < BinaryCodec.LENGTH_SIZE)
+					break;
+
+				final int length = ByteBuffer.wrap(inbound, position, BinaryCodec.LENGTH_SIZE)
+				        .getInt();
+				if (length <= 0)
+					throw new StreamCorruptedException("Invalid frame length: " + length);
+
+				if ((available - BinaryCodec.LENGTH_SIZE) < length)
+					break; // the whole frame has not arrived yet
+
+				final Object obj = BinaryCodec.decode(
+				        ByteBuffer.wrap(inbound, position + BinaryCodec.LENGTH_SIZE, length));
+
+				// keep the frame as it was received so that it can be relayed to Consumers
+				if ((obj instanceof Packet) && (packetFrames != null))
+					packetFrames.put((Packet) obj,
+					        ByteBuffer.wrap(inbound, position, BinaryCodec.LENGTH_SIZE + length));
+
+				position += BinaryCodec.LENGTH_SIZE + length;
+
+				if (message == null) {
+					message = (Message) obj;
+					dispatch();
+				} else
+					post(obj);
+			}
+
+			if (inbound != null)
+				consume(position);
+		}
+
+		private void post(Object obj) throws StreamCorruptedException {
+			if (postsRemaining == -1)
+				postsRemaining = (Integer) obj;
+
+			else if (obj instanceof PostInfo) {
+				final PostInfo postInfo = (PostInfo) obj;
+				if (postingId != SelectorRequestHandler.NOT_POSTING)
+					throw new StreamCorruptedException(String.format(
+					        "Expected a Packet of Post %d but received %s", postingId, postInfo));
+
+				batch.add(postInfo);
+				postingId = postInfo.getId();
+
+			} else {
+				final Packet packet = (Packet) obj;
+				SelectorRequestHandler.checkPostOf(packet, postingId);
+				batch.add(packet);
+				if (packet.isFinal()) {
+					postsRemaining--;
+					postingId = SelectorRequestHandler.NOT_POSTING;
+				}
+			}
+
+			if (postsRemaining == 0) {
+				topic.postBatch(batch);
+				LG.sout("DATA_PACKET_SEND '%s' done, %d objects posted", topic.getName(),
+				        batch.size());
+
+				batch = null;
+				inbound = null;
+				broker.whenReplicated(topic, this::closeWhenFlushed);
+			}
+		}
+
+		private void consume(int byteCount) {
+			inboundLength -= byteCount;
+			System.arraycopy(inbound, byteCount, inbound, 0, inboundLength);
+		}
+
+		private void processSerialized() throws IOException, ClassNotFoundException {
+			if (message == null) {
+				message = decodeMessage();
+				if (message == null)
+					return;
+
+				dispatch();
+			}
+
+			if ((message.getType() == MessageType.DATA_PACKET_SEND) && (inbound != null))
+				pullPosts();
+		}
+
+		private Message decodeMessage() throws IOException, ClassNotFoundException {
+			try (ObjectInputStream ois = new ObjectInputStream(
+			        new ByteArrayInputStream(inbound, 0, inboundLength))) {
+				return (Message) ois.readObject();
+			} catch (final EOFException e) {
+				return null; // the whole message has not arrived yet
+			}
+		}
+
+		private void dispatch() throws IOException, ClassNotFoundException {
+			LG.sout("%s: message type: %s", eventLoop.getName(), message.getType());
+			LG.in();
+
+			switch (message.getType()) {
+			case DATA_PACKET_SEND: {
+				final String topicName = (String) message.getValue();
+				LG.sout("DATA_PACKET_SEND '%s'", topicName);
+
+				topic = broker.getTopic(topicName);
+				break;
+			}
+
+			case INITIALISE_CONSUMER: {
+				final TopicToken topicToken = (TopicToken) message.getValue();
+				final String     topicName  = topicToken.getName();
+				LG.sout("INITIALISE_CONSUMER '%s'", topicName);
+				inbound = null;
+
+				topic = broker.getTopicToRead(topicName);
+				broker.registerConsumer(topicName, oos);
+
+				// send existing topics that the consumer does not have
+				LG.sout("idOfLast=%d, offsetOfLast=%d", topicToken.getLastId(),
+				        topicToken.getLastOffset());
+
+				// same as a PushThread with Protocol.KEEP_ALIVE, the Posts are encoded as they are sent
+				oos.writeInt(Integer.MAX_VALUE);
+				oos.flush();
+
+				sendQueue = broker.newSendQueue(topic, false);
+				final ChannelPushSubscriber pushSubscriber = new ChannelPushSubscriber(this::push,
+				        () -> eventLoop.execute(this::close));
+				subscriber = pushSubscriber;
+				catchUp = pushSubscriber.subscribe(topic, topicToken).iterator();
+				break;
+			}
+
+			case BROKER_DISCOVERY: {
+				final String topicName = (String) message.getValue();
+				LG.sout("BROKER_DISCOVERY '%s'", topicName);
+				inbound = null;
+
+				oos.writeObject(broker.getAssignedBroker(topicName));
+				oos.flush();
+				closeWhenFlushed();
+				break;
+			}
+
+			case REPLICA_DISCOVERY: {
+				final String topicName = (String) message.getValue();
+				LG.sout("REPLICA_DISCOVERY '%s'", topicName);
+				inbound = null;
+
+				oos.writeObject(broker.getBrokerToRead(topicName));
+				oos.flush();
+				closeWhenFlushed();
+				break;
+			}
+
+			case CREATE_TOPIC: {
+				final String topicName = (String) message.getValue();
+				LG.sout("CREATE_TOPIC '%s'", topicName);
+				inbound = null;
+
+				final boolean topicExists = broker.topicExists(topicName);
+
+				LG.sout("topicExists=%s", topicExists);
+				if (!topicExists)
+					broker.addTopic(topicName);
+
+				oos.writeBoolean(!topicExists);
+				oos.flush();
+				closeWhenFlushed();
+				break;
+			}
+
+			case PACKET_SIZE_LIMITS: {
+				LG.sout("PACKET_SIZE_LIMITS");
+				inbound = null;
+
+				oos.writeInt(packetSizeLimits.getMinSize());
+				oos.writeInt(packetSizeLimits.getMaxSize());
+				oos.flush();
+				closeWhenFlushed();
+				break;
+			}
+
+			case MULTIPLEX: {
+				LG.sout("MULTIPLEX");
+				inbound = null;
+
+				// connections are already multiplexed over the event loops, so clients should
+				// keep making each request over a connection of its own
+				oos.writeBoolean(false);
+				oos.flush();
+				closeWhenFlushed();
+				break;
+			}
+
+			case REPLICATE:
+			case RELAY:
+				throw new IllegalArgumentException("Posts are only replicated between Brokers");
+
+			default:
+				throw new IllegalArgumentException(
+				        "You forgot to put a case for the new Message enum");
+			}
+
+			LG.out();
+		}
+
+		/**
+		 * Queues a new object to be sent to the Consumer. This method is thread-safe.
+		 *
+		 * @param postInfoOrPacket the PostInfo or Packet
+		 */
+		private void push(Object postInfoOrPacket) {
+			if (sendQueue.offer(postInfoOrPacket))
+				scheduleWrite();
+			else
+				eventLoop.execute(this::close); // the consumer is too slow or has disconnected
+		}
+
+		private boolean fillOutbound() throws IOException {
+			// a Consumer's objects are encoded only when they can be sent, a few at a time
+			boolean more = sendQueue != null;
+			while (more && (outbound.size() < SelectorRequestHandler.MAX_GATHER_SIZE))
+				more = encodeNext();
+
+			return !outbound.isEmpty();
+		}
+
+		private boolean encodeNext() throws IOException {
+			final Object postInfoOrPacket = catchUp.hasNext() ? catchUp.next() : sendQueue.poll();
+			if (postInfoOrPacket == null)
+				return false;
+
+			if ((postInfoOrPacket instanceof Packet) && (format == WireFormat.BINARY)
+			        && (packetFrames != null))
+				enqueue(packetFrames.get((Packet) postInfoOrPacket));
+			else {
+				oos.writeObject(postInfoOrPacket);
+
+				// don't keep the objects written in the stream's handle table
+				oos.reset();
+				oos.flush();
+			}
+
+			return true;
+		}
+
+		private void pullPosts() throws IOException, ClassNotFoundException {
+			if (!endOfStream && (inboundLength < (2 * lastDecodeLength)))
+				return;
+
+			lastDecodeLength = inboundLength;
+
+			// the whole stream is decoded again because object streams can't be resumed
+			final List<Object> decoded = new ArrayList<>();
+			try (ObjectInputStream ois = new ObjectInputStream(
+			        new ByteArrayInputStream(inbound, 0, inboundLength))) {
+
+				ois.readObject(); // the request Message
+
+				final int postCount = ois.readInt();
+				for (int i = 0; i < postCount; i++) {
+
+					final PostInfo postInfo = (PostInfo) ois.readObject();
+					decoded.add(postInfo);
+
+					Packet packet;
+					do {
+						packet = (Packet) ois.readObject();
+						SelectorRequestHandler.checkPostOf(packet, postInfo.getId());
+						decoded.add(packet);
+					} while (!packet.isFinal());
+				}
+
+			} catch (final EOFException e) {
+				return; // the whole request has not arrived yet
+			}
+
+			topic.postBatch(decoded);
+			LG.sout("DATA_PACKET_SEND '%s' done, %d objects posted", topic.getName(),
+			        decoded.size());
+
+			batch = null;
+			inbound = null;
+			broker.whenReplicated(topic, this::closeWhenFlushed);
+		}
+
+		/**
+		 * Adds data to be sent to the client. This method is thread-safe.
+		 *
+		 * @param data the data
+		 */
+		private void enqueue(ByteBuffer data) {
+			synchronized (outbound) {
+				if (closed || closeWhenFlushed)
+					return;
+
+				outbound.addLast(data);
+			}
+
+			scheduleWrite();
+		}
+
+		/**
+		 * Makes sure that the event loop writes to the client once its channel is
+		 * writable. This method is thread-safe.
+		 */
+		private void scheduleWrite() {
+			synchronized (outbound) {
+				if (closed || closeWhenFlushed || writeScheduled)
+					return;
+
+				writeScheduled = true;
+			}
+
+			eventLoop.execute(this::enableWrites);
+		}
+
+		private void enableWrites() {
+			if (key.isValid())
+				key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+		}
+
+		private void onWritable() throws IOException {
+			final boolean close;
+			synchronized (outbound) {
+				// objects queued after the last one is polled schedule another write
+				while (fillOutbound()) {
+					final ByteBuffer[] batch = new ByteBuffer[Math.min(outbound.size(),
+					        SelectorRequestHandler.MAX_GATHER_SIZE)];
+					final Iterator<ByteBuffer> iter = outbound.iterator();
+					for (int i = 0; i < batch.length; i++)
+						batch[i] = iter.next();
+
+					channel.write(batch);
+
+					while (!outbound.isEmpty() && !outbound.peekFirst().hasRemaining())
+						outbound.removeFirst();
+
+					if (batch[batch.length - 1].hasRemaining())
+						return; // socket buffer is full, wait until it's writable again
+				}
+
+				writeScheduled = false;
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+				close = closeWhenFlushed;
+			}
+
+			if (close)
+				close();
+		}
+
+		/**
+		 * Closes this connection after all pending data has been sent. This method is
+		 * thread-safe.
+		 */
+		private void closeWhenFlushed() {
+			synchronized (outbound) {
+				if (closed || closeWhenFlushed)
+					return;
+
+				closeWhenFlushed = true;
+				writeScheduled = true;
+			}
+
+			eventLoop.execute(this::enableWrites);
+		}
+
+		private void close() {
+			synchronized (outbound) {
+				if (closed)
+					return;
+
+				closed = true;
+				outbound.clear();
+			}
+
+			if (sendQueue != null)
+				sendQueue.close();
+
+			if (subscriber != null) {
+				topic.unsubscribe(subscriber);
+				broker.unregisterConsumer(topic.getName(), oos);
+			}
+
+			key.cancel();
+			try {
+				channel.close();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private static void checkPostOf(Packet packet, long postId) throws StreamCorruptedException {
+		if (packet.getPostId() != postId)
+			throw new StreamCorruptedException(String.format(
+			        "Expected a Packet of Post %d but received one of Post %d", postId,
+			        packet.getPostId()));
+	}
+
+	/**
+	 * An OutputStream that queues all data written to it so that it is later sent
+	 * to a client by the event loop of its connection. Writing never blocks.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private static final class ChannelOutputStream extends OutputStream {
+
+		private final Connection connection;
+
+		public ChannelOutputStream(Connection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public void write(int b) {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if (len == 0)
+				return;
+
+			connection.enqueue(ByteBuffer.wrap(Arrays.copyOfRange(b, off, off + len)));
+		}
+
+		@Override
+		public void close() {
+			connection.closeWhenFlushed();
+		}
+	}
+
+	/**
+	 * A Subscriber that streams the Posts of a Topic to a Consumer whose connection
+	 * is serviced by an event loop. Unlike the {@link BrokerPushThread}, it
+	 * doesn't need a Thread of its own since writing to the connection never
+	 * blocks.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private static final class ChannelPushSubscriber implements Subscriber {
+
+		private final transient PostSequencer sequencer;
+		private final transient Runnable      disconnect;
+
+		public ChannelPushSubscriber(PostSequencer.Sink sink, Runnable disconnect) {
+			sequencer = new PostSequencer(sink);
+			this.disconnect = disconnect;
+		}
+
+		/**
+		 * Subscribes this Subscriber to a Topic and returns the objects that must be
+		 * sent before any that it forwards to its sink.
+		 *
+		 * @param topic the Topic
+		 * @param token the token of the Consumer's Topic
+		 *
+		 * @return the objects
+		 */
+		public Iterable<Object> subscribe(BrokerTopic topic, TopicToken token) {
+			return topic.subscribeSince(token, this, sequencer);
+		}
+
+		@Override
+		public synchronized void notify(PostInfo postInfo, String topicName) {
+			LG.sout("ChannelPushSubscriber#notify(%s)", postInfo);
+			sequencer.add(postInfo);
+		}
+
+		@Override
+		public synchronized void notify(Packet packet, String topicName) {
+			LG.sout("ChannelPushSubscriber#notify(%s)", packet);
+			sequencer.add(packet);
+		}
+
+		@Override
+		public synchronized void notify(List<Object> postInfosAndPackets, String topicName) {
+			LG.sout("ChannelPushSubscriber#notify(%d objects)", postInfosAndPackets.size());
+			for (final Object postInfoOrPacket : postInfosAndPackets)
+				if (postInfoOrPacket instanceof PostInfo)
+					sequencer.add((PostInfo) postInfoOrPacket);
+				else
+					sequencer.add((Packet) postInfoOrPacket);
+		}
+
+		@Override
+		public synchronized void notifyAbandoned(long postId, String topicName) {
+			LG.sout("ChannelPushSubscriber#notifyAbandoned(%d)", postId);
+
+			// the Consumer can't receive the rest of a Post it has received part of
+			if (sequencer.abandon(postId))
+				disconnect.run();
+		}
+	}
+}
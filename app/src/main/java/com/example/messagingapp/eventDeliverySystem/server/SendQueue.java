@@ -0,0 +1,433 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.server.BrokerConfig.OverflowPolicy;
+
+/**
+ * A bounded queue of the PostInfo and Packet objects waiting to be sent to a
+ * Consumer. The queue is bounded both by the number of objects and by the size
+ * of their payloads; what happens when a Consumer is too slow to keep the queue
+ * within its bounds is determined by its {@link OverflowPolicy}. A queue that
+ * can't block the threads offering objects to it, because they are event loops,
+ * instead lets a {@link CongestionListener} know when it is full under the
+ * {@link OverflowPolicy#BLOCK BLOCK} policy, so that the Publishers are paused.
+ * <p>
+ * Objects must be offered in the order a {@link PostSequencer} produces them,
+ * that is the PostInfo of a Post followed by all its Packets. Posts are only
+ * ever dropped whole, so that the Consumer never receives part of a Post.
+ * <p>
+ * Any number of threads may offer objects but only a single thread may remove
+ * them. Neither offering nor removing takes a lock unless the queue is full:
+ * the objects are kept in a linked list to which producers append by swapping
+ * its tail, and every object is claimed exactly once, either by the consumer
+ * that removes it or by a producer that drops it, by changing the state of its
+ * node. A consumer waiting for objects is parked and is unparked by the next
+ * producer.
+ *
+ * @author Alex Mandelias
+ */
+final class SendQueue {
+
+	// approximate size of a PostInfo, which has no payload
+	private static final int POST_INFO_SIZE = 64;
+
+	private static final long NO_POST_ID = Long.MIN_VALUE;
+
+	/**
+	 * Receives notifications whenever a SendQueue that can't block becomes full
+	 * and whenever it has drained enough to accept more objects.
+	 *
+	 * @author Alex Mandelias
+	 */
+	@FunctionalInterface
+	interface CongestionListener {
+
+		/**
+		 * Called when the congestion state of the queue changes.
+		 *
+		 * @param congested {@code true} if the queue has become full,
+		 *                  {@code false} if it has drained
+		 */
+		void congestionChanged(boolean congested);
+	}
+
+	private final int                maxCount;
+	private final long               maxBytes;
+	private final OverflowPolicy     policy;
+	private final boolean            canBlock;
+	private final CongestionListener listener;
+	private final SendQueueMetrics   metrics;
+
+	private final AtomicReference<Node> tail;
+	private final AtomicInteger         count;
+	private final AtomicLong            bytes;
+	private final AtomicBoolean         congested;
+	private final Set<Long>             droppedPostIds;
+
+	// only written by the consumer
+	private volatile Node   head;
+	private volatile Thread waitingConsumer;
+	private long            skippedPostId;
+
+	private volatile int     waitingProducers;
+	private volatile boolean closed;
+
+	/**
+	 * Constructs an empty SendQueue whose bounds and policy are those of a
+	 * Broker's configuration.
+	 *
+	 * @param config   the configuration of the Broker
+	 * @param canBlock whether the threads offering objects may be blocked under
+	 *                 the {@link OverflowPolicy#BLOCK BLOCK} policy
+	 * @param listener the listener of the congestion of the queue, which is
+	 *                 only used under the {@code BLOCK} policy when the queue
+	 *                 can't block
+	 * @param metrics  the metrics to which this queue contributes
+	 */
+	public SendQueue(BrokerConfig config, boolean canBlock, CongestionListener listener,
+	        SendQueueMetrics metrics) {
+		this(config, config.getConsumerOverflowPolicy(), canBlock, listener, metrics);
+	}
+
+	/**
+	 * Constructs an empty SendQueue whose bounds are those of a Broker's
+	 * configuration but whose policy is a different one, for example for the
+	 * followers of a Topic, which must never miss a Post.
+	 *
+	 * @param config   the configuration of the Broker
+	 * @param policy   the overflow policy of the queue
+	 * @param canBlock whether the threads offering objects may be blocked under
+	 *                 the {@link OverflowPolicy#BLOCK BLOCK} policy
+	 * @param listener the listener of the congestion of the queue, which is
+	 *                 only used under the {@code BLOCK} policy when the queue
+	 *                 can't block
+	 * @param metrics  the metrics to which this queue contributes
+	 */
+	public SendQueue(BrokerConfig config, OverflowPolicy policy, boolean canBlock,
+	        CongestionListener listener, SendQueueMetrics metrics) {
+		maxCount = config.getConsumerQueueCount();
+		maxBytes = config.getConsumerQueueSize();
+		this.policy = policy;
+		this.canBlock = canBlock;
+		this.listener = listener;
+		this.metrics = metrics;
+
+		final Node stub = new Node(null, 0);
+		stub.state = Node.TAKEN;
+		head = stub;
+		tail = new AtomicReference<>(stub);
+		count = new AtomicInteger();
+		bytes = new AtomicLong();
+		congested = new AtomicBoolean();
+		droppedPostIds = ConcurrentHashMap.newKeySet();
+
+		waitingConsumer = null;
+		skippedPostId = SendQueue.NO_POST_ID;
+		waitingProducers = 0;
+		closed = false;
+	}
+
+	/**
+	 * Adds a PostInfo or Packet to the end of this queue, applying the overflow
+	 * policy if the queue is full. This method may be called by any thread.
+	 *
+	 * @param postInfoOrPacket the PostInfo or Packet to add
+	 *
+	 * @return {@code false} if the queue is closed or if it has been closed
+	 *         because the Consumer must be disconnected, {@code true} otherwise
+	 */
+	public boolean offer(Object postInfoOrPacket) {
+		if (closed)
+			return false;
+
+		if (isOfDroppedPost(postInfoOrPacket))
+			return true;
+
+		if (isFull())
+			switch (policy) {
+			case BLOCK:
+				if (canBlock)
+					waitForRoom();
+				break;
+
+			case DROP_OLDEST:
+				dropOldestPosts();
+
+				// the Post of this Packet may have just been dropped
+				if (isOfDroppedPost(postInfoOrPacket))
+					return true;
+				break;
+
+			case DISCONNECT:
+				metrics.disconnected();
+				close();
+				return false;
+			}
+
+		final Node node = new Node(postInfoOrPacket, SendQueue.sizeOf(postInfoOrPacket));
+		count.incrementAndGet();
+		bytes.addAndGet(node.size);
+		metrics.queued(node.size);
+
+		tail.getAndSet(node).next = node;
+
+		// the queue may have been closed, and emptied, before the node was linked
+		if (closed) {
+			if (node.claim(Node.DROPPED))
+				release(node);
+			return false;
+		}
+
+		final Thread consumer = waitingConsumer;
+		if (consumer != null)
+			LockSupport.unpark(consumer);
+
+		if ((policy == OverflowPolicy.BLOCK) && !canBlock && isFull()
+		        && congested.compareAndSet(false, true)) {
+			metrics.blocked();
+			listener.congestionChanged(true);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Removes the object at the head of this queue, without waiting. This method
+	 * may only be called by the consumer of the queue.
+	 *
+	 * @return the PostInfo or Packet, or {@code null} if the queue is empty
+	 */
+	public Object poll() {
+		Node next;
+		while ((next = head.next) != null) {
+			head = next;
+
+			final Object item = next.item;
+
+			// the rest of a Post whose PostInfo has been dropped
+			if ((item instanceof Packet) && (((Packet) item).getPostId() == skippedPostId)) {
+				if (next.claim(Node.DROPPED))
+					release(next);
+				if (((Packet) item).isFinal())
+					skippedPostId = SendQueue.NO_POST_ID;
+				continue;
+			}
+
+			if (!next.claim(Node.TAKEN)) {
+				// dropped by a producer, which drops a Post by claiming its PostInfo first
+				if (item instanceof PostInfo)
+					skippedPostId = ((PostInfo) item).getId();
+				continue;
+			}
+
+			next.item = null;
+			release(next);
+
+			if (item instanceof PostInfo)
+				skippedPostId = SendQueue.NO_POST_ID;
+
+			return item;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Removes the object at the head of this queue, waiting for an object to be
+	 * added if the queue is empty. This method may only be called by the consumer
+	 * of the queue.
+	 *
+	 * @return the PostInfo or Packet, or {@code null} if the queue has been closed
+	 *
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public Object take() throws InterruptedException {
+		Object item;
+		while (((item = poll()) == null) && !closed) {
+			waitingConsumer = Thread.currentThread();
+
+			// a producer that linked its node before the consumer was set unparks no one
+			if ((head.next == null) && !closed)
+				LockSupport.park(this);
+
+			waitingConsumer = null;
+
+			if (Thread.interrupted())
+				throw new InterruptedException();
+		}
+
+		return closed ? null : item;
+	}
+
+	/**
+	 * Closes this queue and discards its contents. Objects offered to a closed
+	 * queue are rejected and threads waiting on it return. This method may be
+	 * called by any thread.
+	 */
+	public void close() {
+		if (closed)
+			return;
+
+		closed = true;
+
+		for (Node node = head.next; node != null; node = node.next)
+			if (node.claim(Node.DROPPED))
+				release(node);
+
+		final Thread consumer = waitingConsumer;
+		if (consumer != null)
+			LockSupport.unpark(consumer);
+
+		wakeProducers();
+
+		if (congested.compareAndSet(true, false))
+			listener.congestionChanged(false);
+	}
+
+	private boolean isFull() {
+		return (count.get() >= maxCount) || (bytes.get() >= maxBytes);
+	}
+
+	private void release(Node node) {
+		count.decrementAndGet();
+		bytes.addAndGet(-node.size);
+		metrics.dequeued(node.size);
+
+		if (waitingProducers > 0)
+			wakeProducers();
+
+		// wait until the queue is half empty before letting Publishers continue
+		if (congested.get() && (count.get() <= (maxCount / 2)) && (bytes.get() <= (maxBytes / 2))
+		        && congested.compareAndSet(true, false))
+			listener.congestionChanged(false);
+	}
+
+	private boolean isOfDroppedPost(Object postInfoOrPacket) {
+		if (!(postInfoOrPacket instanceof Packet))
+			return false;
+
+		final Packet packet = (Packet) postInfoOrPacket;
+		if (!droppedPostIds.contains(packet.getPostId()))
+			return false;
+
+		if (packet.isFinal())
+			droppedPostIds.remove(packet.getPostId());
+
+		return true;
+	}
+
+	// ==================== FULL QUEUE ====================
+
+	private synchronized void waitForRoom() {
+		metrics.blocked();
+		waitingProducers++;
+		boolean interrupted = false;
+		try {
+			while (isFull() && !closed)
+				try {
+					wait();
+				} catch (final InterruptedException e) {
+					interrupted = true;
+				}
+		} finally {
+			waitingProducers--;
+		}
+
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	private synchronized void wakeProducers() {
+		notifyAll();
+	}
+
+	private synchronized void dropOldestPosts() {
+		while (isFull()) {
+			// find the oldest Post that hasn't started being sent
+			Node postInfoNode = head.next;
+			while ((postInfoNode != null) && ((postInfoNode.state != Node.QUEUED)
+			        || !(postInfoNode.item instanceof PostInfo)))
+				postInfoNode = postInfoNode.next;
+
+			// only the Post being sent is left, which can't be dropped
+			if (postInfoNode == null)
+				return;
+
+			// the consumer may have just started sending it
+			if (!postInfoNode.claim(Node.DROPPED))
+				continue;
+
+			release(postInfoNode);
+			metrics.dropped();
+
+			final long droppedPostId = ((PostInfo) postInfoNode.item).getId();
+			boolean    finalFound    = false;
+			for (Node node = postInfoNode.next; (node != null) && !finalFound; node = node.next) {
+				final Object item = node.item;
+				if ((item instanceof Packet) && (((Packet) item).getPostId() == droppedPostId)) {
+					if (node.claim(Node.DROPPED))
+						release(node);
+					finalFound = ((Packet) item).isFinal();
+				}
+			}
+
+			if (!finalFound)
+				droppedPostIds.add(droppedPostId);
+		}
+	}
+
+	private static long sizeOf(Object postInfoOrPacket) {
+		return postInfoOrPacket instanceof Packet ? ((Packet) postInfoOrPacket).getPayload().length
+		        : SendQueue.POST_INFO_SIZE;
+	}
+
+	/**
+	 * A node of the linked list of a SendQueue, which holds a single object.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private static final class Node {
+
+		static final int QUEUED  = 0;
+		static final int TAKEN   = 1;
+		static final int DROPPED = 2;
+
+		private static final AtomicIntegerFieldUpdater<Node> STATE = AtomicIntegerFieldUpdater
+		        .newUpdater(Node.class, "state");
+
+		final long size;
+
+		volatile Object item;
+		volatile Node   next;
+		volatile int    state;
+
+		Node(Object item, long size) {
+			this.item = item;
+			this.size = size;
+			next = null;
+			state = Node.QUEUED;
+		}
+
+		/**
+		 * Claims the object of this node, if no one else has.
+		 *
+		 * @param newState either {@link #TAKEN} or {@link #DROPPED}
+		 *
+		 * @return {@code true} if the object was claimed, {@code false} if it had
+		 *         already been claimed
+		 */
+		boolean claim(int newState) {
+			return Node.STATE.compareAndSet(this, Node.QUEUED, newState);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters that describe the queues of the objects waiting to be sent to the
+ * Consumers of a Broker: how much is queued across all Consumers and how often
+ * a Consumer's queue overflowed. The counters are updated concurrently by the
+ * queues and may be read at any time.
+ *
+ * @author Alex Mandelias
+ */
+public final class SendQueueMetrics {
+
+	private final AtomicLong queuedObjects;
+	private final AtomicLong queuedBytes;
+	private final AtomicLong droppedPosts;
+	private final AtomicLong disconnects;
+	private final AtomicLong blockedPublishes;
+
+	/** Constructs a SendQueueMetrics where every counter is 0. */
+	SendQueueMetrics() {
+		queuedObjects = new AtomicLong();
+		queuedBytes = new AtomicLong();
+		droppedPosts = new AtomicLong();
+		disconnects = new AtomicLong();
+		blockedPublishes = new AtomicLong();
+	}
+
+	/**
+	 * Returns the number of PostInfo and Packet objects currently queued for all
+	 * Consumers.
+	 *
+	 * @return the number of objects
+	 */
+	public long getQueuedObjects() {
+		return queuedObjects.get();
+	}
+
+	/**
+	 * Returns the total size of the payloads currently queued for all Consumers.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getQueuedBytes() {
+		return queuedBytes.get();
+	}
+
+	/**
+	 * Returns the number of Posts that weren't sent to a Consumer because they
+	 * were dropped from its full queue.
+	 *
+	 * @return the number of Posts
+	 */
+	public long getDroppedPosts() {
+		return droppedPosts.get();
+	}
+
+	/**
+	 * Returns the number of Consumers that were disconnected because their queue
+	 * was full.
+	 *
+	 * @return the number of Consumers
+	 */
+	public long getDisconnects() {
+		return disconnects.get();
+	}
+
+	/**
+	 * Returns the number of times a Publisher had to wait, or the Publishers of a
+	 * Topic were paused, because the queue of a Consumer was full.
+	 *
+	 * @return the number of times
+	 */
+	public long getBlockedPublishes() {
+		return blockedPublishes.get();
+	}
+
+	void queued(long size) {
+		queuedObjects.incrementAndGet();
+		queuedBytes.addAndGet(size);
+	}
+
+	void dequeued(long size) {
+		dequeued(1, size);
+	}
+
+	void dequeued(int count, long size) {
+		queuedObjects.addAndGet(-count);
+		queuedBytes.addAndGet(-size);
+	}
+
+	void dropped() {
+		droppedPosts.incrementAndGet();
+	}
+
+	void disconnected() {
+		disconnects.incrementAndGet();
+	}
+
+	void blocked() {
+		blockedPublishes.incrementAndGet();
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+		        "SendQueueMetrics [queuedObjects=%d, queuedBytes=%d, droppedPosts=%d, "
+		                + "disconnects=%d, blockedPublishes=%d]",
+		        getQueuedObjects(), getQueuedBytes(), getDroppedPosts(), getDisconnects(),
+		        getBlockedPublishes());
+	}
+}
@@ -2,6 +2,9 @@ package com.example.messagingapp.eventDeliverySystem.thread;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.example.messagingapp.eventDeliverySystem.datastructures.AbstractTopic;
 import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
@@ -9,62 +12,86 @@ import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
 import com.example.messagingapp.eventDeliverySystem.util.LG;
 
 /**
- * A Thread that reads some Posts from a stream and then posts them to a Topic.
+ * A task that reads some Posts from a stream and then posts them to a Topic.
+ * <p>
+ * When the stream holds a known number of Posts, they are posted together once
+ * all of them have been read, so that either all or none of them are posted.
+ * When it holds an unbounded number of Posts, as it does for a Consumer that
+ * stays connected, each Post is posted once all of its Packets have been read.
+ * Either way, a Post that was cut off is never posted.
  *
  * @author Alex Mandelias
  */
-public class PullThread extends Thread {
+public class PullThread implements Runnable {
 
+	private final String            name;
 	private final ObjectInputStream ois;
 	private final AbstractTopic     topic;
 
 	/**
-	 * Constructs the Thread that, when run, will read some Posts from a stream and
+	 * Constructs the task that, when run, will read some Posts from a stream and
 	 * post them to a Topic.
 	 *
 	 * @param stream the input stream from which to read the Posts
 	 * @param topic  the Topic in which the new Posts will be added
 	 */
 	public PullThread(ObjectInputStream stream, AbstractTopic topic) {
-		super("PullThread-" + topic.getName());
+		name = "PullThread-" + topic.getName();
 		ois = stream;
 		this.topic = topic;
 	}
 
 	@Override
 	public void run() {
-		LG.sout("%s#run()", getName());
+		LG.sout("%s#run()", name);
 		LG.in();
 
+		// the PostInfos and Packets that have been read but not yet posted
+		final List<Object> batch = new ArrayList<>();
+
 		try {
 			final int postCount = ois.readInt();
 			LG.sout("postCount=%d", postCount);
 
+			final boolean keepAlive = postCount == Integer.MAX_VALUE;
+
 			for (int i = 0; i < postCount; i++) {
 
 				final PostInfo postInfo = (PostInfo) ois.readObject();
 
 				LG.in();
 				LG.sout("postInfo=%s", postInfo);
-				topic.post(postInfo);
+				batch.add(postInfo);
 
 				Packet packet;
 				do {
 					packet = (Packet) ois.readObject();
 
 					LG.sout("packet=%s", packet);
+					if (packet.getPostId() != postInfo.getId())
+						throw new StreamCorruptedException(String.format(
+						        "Expected a Packet of Post %d but received one of Post %d",
+						        postInfo.getId(), packet.getPostId()));
 
-					topic.post(packet);
+					batch.add(packet);
 				} while (!packet.isFinal());
 
+				if (keepAlive) {
+					topic.postBatch(batch);
+					batch.clear();
+				}
+
 				LG.out();
 			}
 
-		} catch (final ClassNotFoundException | IOException e) {
+			topic.postBatch(batch);
+
+		} catch (final ClassNotFoundException | IOException | RuntimeException e) {
+			// do nothing, ignore the rest of the stream and what hasn't been posted
 			e.printStackTrace();
 		}
 
 		LG.out();
-		LG.sout("/%s#run()", getName());
+		LG.sout("/%s#run()", name);
 	}
 }
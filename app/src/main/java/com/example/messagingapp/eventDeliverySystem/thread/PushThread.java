@@ -2,20 +2,28 @@ package com.example.messagingapp.eventDeliverySystem.thread;
 
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet.SizeLimits;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PacketReader;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Post;
 import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
 import com.example.messagingapp.eventDeliverySystem.util.LG;
 
 /**
- * A Thread that writes some Posts to a stream.
+ * A task that writes some Posts to a stream.
+ * <p>
+ * Posts may be given either already broken into Packets or whole, in which case
+ * each Packet is written as soon as it is read from the data of the Post, so
+ * that only a couple of Packets are in memory at any time.
  *
  * @author Alex Mandelias
  */
-public class PushThread extends Thread {
+public class PushThread implements Runnable {
 
 	/**
 	 * Defines the different Protocols used to push data.
@@ -40,15 +48,18 @@ public class PushThread extends Thread {
 		WITHOUT_COUNT
 	}
 
+	private final String              name;
 	private final ObjectOutputStream  oos;
 	private final Optional<String>    topicName;
 	private final List<PostInfo>      postInfos;
 	private final Map<Long, Packet[]> packets;
+	private final List<Post>          posts;
+	private final SizeLimits          packetSizeLimits;
 	private final Protocol            protocol;
 	private final Optional<Callback>  callback;
 
 	/**
-	 * Constructs the Thread that, when run, will write some Posts to a stream.
+	 * Constructs the task that, when run, will write some Posts to a stream.
 	 *
 	 * @param stream    the output stream to which to write the Posts
 	 * @param postInfos the PostInfo objects to write to the stream
@@ -64,7 +75,7 @@ public class PushThread extends Thread {
 	}
 
 	/**
-	 * Constructs the Thread that, when run, will write some Posts to a stream.
+	 * Constructs the task that, when run, will write some Posts to a stream.
 	 *
 	 * @param stream    the output stream to which to write the Posts
 	 * @param topicName the name of the Topic that corresponds to the stream
@@ -72,25 +83,83 @@ public class PushThread extends Thread {
 	 * @param packets   the array of Packets to write for each PostInfo object
 	 * @param protocol  the protocol to use when pushing, which alters the behaviour
 	 *                  of the Pull Thread
-	 * @param callback  the callback to call when this thread finishes execution
+	 * @param callback  the callback to call when this task finishes execution
 	 *
 	 * @see Protocol
 	 * @see Callback
 	 */
 	public PushThread(ObjectOutputStream stream, String topicName, List<PostInfo> postInfos,
 	        Map<Long, Packet[]> packets, Protocol protocol, Callback callback) {
-		super("PushThread-" + postInfos.size() + "-" + protocol);
+		this(stream, topicName, postInfos, packets, null, null, protocol, callback);
+	}
+
+	/**
+	 * Constructs the task that, when run, will write some Posts to a stream,
+	 * breaking each one into Packets while it is being written.
+	 *
+	 * @param stream    the output stream to which to write the Posts
+	 * @param topicName the name of the Topic that corresponds to the stream
+	 * @param posts     the Posts to write to the stream
+	 * @param protocol  the protocol to use when pushing, which alters the behaviour
+	 *                  of the Pull Thread
+	 * @param callback  the callback to call when this task finishes execution
+	 *
+	 * @see Protocol
+	 * @see Callback
+	 */
+	public PushThread(ObjectOutputStream stream, String topicName, List<Post> posts,
+	        Protocol protocol, Callback callback) {
+		this(stream, topicName, posts, SizeLimits.DEFAULT, protocol, callback);
+	}
+
+	/**
+	 * Constructs the task that, when run, will write some Posts to a stream,
+	 * breaking each one into Packets, whose size is chosen for the Post within
+	 * some limits, while it is being written.
+	 *
+	 * @param stream           the output stream to which to write the Posts
+	 * @param topicName        the name of the Topic that corresponds to the stream
+	 * @param posts            the Posts to write to the stream
+	 * @param packetSizeLimits the limits of the size of the Packets
+	 * @param protocol         the protocol to use when pushing, which alters the
+	 *                         behaviour of the Pull Thread
+	 * @param callback         the callback to call when this task finishes
+	 *                         execution
+	 *
+	 * @see Protocol
+	 * @see Callback
+	 * @see SizeLimits#sizeFor(long)
+	 */
+	public PushThread(ObjectOutputStream stream, String topicName, List<Post> posts,
+	        SizeLimits packetSizeLimits, Protocol protocol, Callback callback) {
+		this(stream, topicName, PushThread.postInfosOf(posts), null, posts, packetSizeLimits,
+		        protocol, callback);
+	}
+
+	private PushThread(ObjectOutputStream stream, String topicName, List<PostInfo> postInfos,
+	        Map<Long, Packet[]> packets, List<Post> posts, SizeLimits packetSizeLimits,
+	        Protocol protocol, Callback callback) {
+		name = "PushThread-" + postInfos.size() + "-" + protocol;
 		oos = stream;
 		this.topicName = Optional.ofNullable(topicName);
 		this.postInfos = postInfos;
 		this.packets = packets;
+		this.posts = posts;
+		this.packetSizeLimits = packetSizeLimits;
 		this.protocol = protocol;
 		this.callback = Optional.ofNullable(callback);
 	}
 
+	private static List<PostInfo> postInfosOf(List<Post> posts) {
+		final List<PostInfo> postInfos = new ArrayList<>(posts.size());
+		for (final Post post : posts)
+			postInfos.add(post.getPostInfo());
+		return postInfos;
+	}
+
 	@Override
 	public void run() {
-		LG.sout("%s#run()", getName());
+		LG.sout("%s#run()", name);
 		LG.in();
 
 		boolean success;
@@ -109,15 +178,25 @@ public class PushThread extends Thread {
 				oos.writeInt(postCount);
 			}
 
-			for (final PostInfo postInfo : postInfos) {
+			for (int i = 0; i < postInfos.size(); i++) {
+				final PostInfo postInfo = postInfos.get(i);
 				LG.sout("postInfo=%s", postInfo);
-				oos.writeObject(postInfo);
-
-				final Packet[] packetArray = packets.get(postInfo.getId());
-				for (final Packet packet : packetArray)
-					oos.writeObject(packet);
+				write(postInfo);
+
+				if (posts == null) {
+					for (final Packet packet : packets.get(postInfo.getId()))
+						write(packet);
+				} else {
+					try (PacketReader reader = Packet.readerFor(posts.get(i),
+					        packetSizeLimits)) {
+						Packet packet;
+						while ((packet = reader.next()) != null)
+							write(packet);
+					}
+				}
 			}
 
+			oos.flush();
 			success = true;
 			LG.out();
 
@@ -130,7 +209,14 @@ public class PushThread extends Thread {
 		callback.orElse(Callback.EMPTY).onCompletion(success, topicName.orElse(null));
 
 		LG.out();
-		LG.sout("/%s#run()", getName());
+		LG.sout("/%s#run()", name);
+	}
+
+	private void write(Object postInfoOrPacket) throws IOException {
+		oos.writeObject(postInfoOrPacket);
+
+		// don't keep the objects written in the stream's handle table
+		oos.reset();
 	}
 
 	/**
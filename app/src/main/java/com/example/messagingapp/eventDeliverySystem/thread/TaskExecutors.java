@@ -0,0 +1,144 @@
+package com.example.messagingapp.eventDeliverySystem.thread;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors on which the tasks that send and receive data are run.
+ * These tasks spend most of their time blocked on sockets, so most executors
+ * run each task on its own thread as soon as it is submitted and only differ in
+ * the kind of threads they use. Bounded executors instead limit the number of
+ * threads and of the tasks waiting for one, for short tasks such as requests.
+ * <p>
+ * Virtual threads are only available on Java 21 or later and are looked up
+ * reflectively, so that this class can still be used on older platforms such as
+ * Android.
+ *
+ * @author Alex Mandelias
+ */
+public final class TaskExecutors {
+
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_FACTORY;
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		Method ofVirtual                = null;
+		Method builderName              = null;
+		Method builderFactory           = null;
+		Method newThreadPerTaskExecutor = null;
+		try {
+			final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			builderName = builder.getMethod("name", String.class, long.class);
+			builderFactory = builder.getMethod("factory");
+			newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor",
+			        ThreadFactory.class);
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			// virtual threads are not supported
+		}
+
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_FACTORY = builderFactory;
+		NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+	}
+
+	private TaskExecutors() {}
+
+	/**
+	 * Returns whether this platform supports virtual threads.
+	 *
+	 * @return {@code true} if virtual threads are supported, {@code false}
+	 *         otherwise
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return TaskExecutors.NEW_THREAD_PER_TASK_EXECUTOR != null;
+	}
+
+	/**
+	 * Creates an executor that runs each task on a platform thread. Threads are
+	 * reused by later tasks if they are idle and are discarded after a minute
+	 * without tasks. The threads are daemon threads.
+	 *
+	 * @param name the prefix of the names of the threads
+	 *
+	 * @return the executor
+	 */
+	public static ExecutorService newPlatformThreadExecutor(String name) {
+		return Executors.newCachedThreadPool(TaskExecutors.daemonThreadFactory(name));
+	}
+
+	/**
+	 * Creates an executor that runs tasks on a limited number of platform
+	 * threads. Tasks submitted while every thread is busy wait in a queue of
+	 * limited size, and tasks submitted while the queue is full are rejected with
+	 * a {@link java.util.concurrent.RejectedExecutionException
+	 * RejectedExecutionException}. Threads are created only when needed and are
+	 * discarded after a minute without tasks. The threads are daemon threads.
+	 *
+	 * @param name        the prefix of the names of the threads
+	 * @param threadCount the maximum number of threads
+	 * @param queueSize   the maximum number of tasks waiting for a thread
+	 *
+	 * @return the executor
+	 *
+	 * @throws IllegalArgumentException if {@code threadCount < 1} or
+	 *                                  {@code queueSize < 1}
+	 */
+	public static ExecutorService newBoundedPlatformThreadExecutor(String name, int threadCount,
+	        int queueSize) {
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 1L,
+		        TimeUnit.MINUTES, new ArrayBlockingQueue<>(queueSize),
+		        TaskExecutors.daemonThreadFactory(name));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Creates an executor that runs each task on a new virtual thread. Virtual
+	 * threads are cheap enough that tasks which block on sockets may be run for
+	 * tens of thousands of connections.
+	 *
+	 * @param name the prefix of the names of the threads
+	 *
+	 * @return the executor
+	 *
+	 * @throws UnsupportedOperationException if this platform doesn't support
+	 *                                       virtual threads
+	 *
+	 * @see #isVirtualThreadSupported()
+	 */
+	public static ExecutorService newVirtualThreadExecutor(String name) {
+		if (!TaskExecutors.isVirtualThreadSupported())
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+
+		try {
+			final Object builder = TaskExecutors.BUILDER_NAME
+			        .invoke(TaskExecutors.OF_VIRTUAL.invoke(null), name + "-", 0L);
+			final ThreadFactory factory = (ThreadFactory) TaskExecutors.BUILDER_FACTORY
+			        .invoke(builder);
+			return (ExecutorService) TaskExecutors.NEW_THREAD_PER_TASK_EXECUTOR.invoke(null,
+			        factory);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new UnsupportedOperationException("Could not create virtual threads", e);
+		}
+	}
+
+	private static ThreadFactory daemonThreadFactory(String name) {
+		final AtomicInteger threadCount = new AtomicInteger();
+		return task -> {
+			final Thread thread = new Thread(task, name + "-" + threadCount.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
@@ -1,5 +1,6 @@
 /**
- * Defines general-purpose Thread subclasses, used to send and receive data.
+ * Defines general-purpose tasks, used to send and receive data, and the
+ * executors on which such tasks are run.
  *
  * @author Alex Mandelias
  */
@@ -5,6 +5,7 @@ import com.example.messagingapp.eventDeliverySystem.datastructures.Post;
 import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * An interface denoting any class that needs to be notified about the arrival
@@ -31,4 +32,30 @@ public interface Subscriber extends Serializable {
 	 * @param topicName the name of the Topic
 	 */
 	void notify(Packet packet, String topicName);
+
+	/**
+	 * Notifies the object that a batch of posts and parts of posts has arrived,
+	 * concerning a certain Topic. By default, the object is notified of each of
+	 * them in order.
+	 *
+	 * @param postInfosAndPackets the information and the parts of the posts
+	 * @param topicName           the name of the Topic
+	 */
+	default void notify(List<Object> postInfosAndPackets, String topicName) {
+		for (final Object postInfoOrPacket : postInfosAndPackets)
+			if (postInfoOrPacket instanceof PostInfo)
+				notify((PostInfo) postInfoOrPacket, topicName);
+			else
+				notify((Packet) postInfoOrPacket, topicName);
+	}
+
+	/**
+	 * Notifies the object that a post, of which some parts have arrived, has been
+	 * abandoned and that the rest of it will never arrive, concerning a certain
+	 * Topic.
+	 *
+	 * @param postId    the ID of the abandoned post
+	 * @param topicName the name of the Topic
+	 */
+	void notifyAbandoned(long postId, String topicName);
 }
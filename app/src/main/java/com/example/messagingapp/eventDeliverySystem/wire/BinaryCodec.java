@@ -0,0 +1,329 @@
+package com.example.messagingapp.eventDeliverySystem.wire;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.ConnectionInfo;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Message;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Message.MessageType;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Topic.TopicToken;
+
+/**
+ * Encodes and decodes the objects exchanged between Brokers and clients in a
+ * compact binary format, without the class descriptors and reflection of Java
+ * serialization.
+ * <p>
+ * Every object is sent as a frame: the length of the rest of the frame as an
+ * {@code int}, a one-byte tag denoting the type of the object and the fields of
+ * the object. A Packet, for example, is framed as:
+ *
+ * <pre>
+ * | length (4) | tag (1) | post id (8) | flags (1) | payload length (4) | payload |
+ * </pre>
+ *
+ * Only {@link Message}, {@link PostInfo}, {@link Packet},
+ * {@link ConnectionInfo}, {@code int} and {@code boolean} values can be
+ * encoded.
+ *
+ * @author Alex Mandelias
+ */
+public final class BinaryCodec {
+
+	/** The first bytes a client sends to request the binary format */
+	public static final int MAGIC = 0x59414D4D; // "YAMM"
+
+	/** The latest version of the binary format */
+	public static final byte VERSION = 1;
+
+	/** The version a Broker responds with when it declines the binary format */
+	public static final byte NO_VERSION = 0;
+
+	/** The number of bytes of the length prefix of every frame */
+	public static final int LENGTH_SIZE = Integer.BYTES;
+
+	private static final byte MESSAGE         = 1;
+	private static final byte POST_INFO       = 2;
+	private static final byte PACKET          = 3;
+	private static final byte CONNECTION_INFO = 4;
+	private static final byte INT             = 5;
+	private static final byte BOOLEAN         = 6;
+
+	private static final byte FINAL_FLAG = 0x01;
+
+	private static final int PACKET_HEADER_SIZE = 1 + Long.BYTES + 1 + Integer.BYTES;
+
+	private BinaryCodec() {}
+
+	/**
+	 * Encodes an object as a frame.
+	 *
+	 * @param obj the object to encode
+	 *
+	 * @return a buffer, ready to be read, which contains the whole frame
+	 *
+	 * @throws NotSerializableException if objects of that type can't be encoded
+	 */
+	public static ByteBuffer encode(Object obj) throws NotSerializableException {
+		if (obj instanceof Packet) {
+			final Packet packet  = (Packet) obj;
+			final byte[] payload = packet.getPayload();
+
+			final ByteBuffer frame = ByteBuffer.allocate(
+			        BinaryCodec.LENGTH_SIZE + BinaryCodec.PACKET_HEADER_SIZE + payload.length);
+			BinaryCodec.putPacketHeader(frame, packet);
+			frame.put(payload);
+			frame.flip();
+			return frame;
+		}
+
+		final byte[] body = BinaryCodec.encodeBody(obj);
+
+		final ByteBuffer frame = ByteBuffer.allocate(BinaryCodec.LENGTH_SIZE + body.length);
+		frame.putInt(body.length);
+		frame.put(body);
+		frame.flip();
+		return frame;
+	}
+
+	/**
+	 * Encodes a Packet as a frame in a direct buffer, which can be written to a
+	 * channel any number of times without being copied.
+	 *
+	 * @param packet the Packet to encode
+	 *
+	 * @return a direct buffer, ready to be read, which contains the whole frame
+	 */
+	public static ByteBuffer encodeDirect(Packet packet) {
+		final ByteBuffer frame = ByteBuffer.allocateDirect(BinaryCodec.LENGTH_SIZE
+		        + BinaryCodec.PACKET_HEADER_SIZE + packet.getPayload().length);
+		BinaryCodec.putPacketHeader(frame, packet);
+		frame.put(packet.getPayload());
+		frame.flip();
+		return frame;
+	}
+
+	/**
+	 * Encodes an object as a frame and writes it to a stream. The payload of a
+	 * Packet is written directly to the stream without being copied.
+	 *
+	 * @param obj the object to encode
+	 * @param out the stream to write the frame to
+	 *
+	 * @throws NotSerializableException if objects of that type can't be encoded
+	 * @throws IOException              if an I/O error occurs while writing
+	 */
+	public static void write(Object obj, OutputStream out) throws IOException {
+		if (obj instanceof Packet) {
+			final Packet     packet = (Packet) obj;
+			final ByteBuffer header = ByteBuffer
+			        .allocate(BinaryCodec.LENGTH_SIZE + BinaryCodec.PACKET_HEADER_SIZE);
+			BinaryCodec.putPacketHeader(header, packet);
+
+			out.write(header.array());
+			out.write(packet.getPayload());
+			return;
+		}
+
+		final ByteBuffer frame = BinaryCodec.encode(obj);
+		out.write(frame.array(), 0, frame.limit());
+	}
+
+	/**
+	 * Reads a frame from a stream and decodes the object it contains.
+	 *
+	 * @param in the stream to read from
+	 *
+	 * @return the decoded object
+	 *
+	 * @throws StreamCorruptedException if the frame is malformed
+	 * @throws IOException              if an I/O error occurs while reading
+	 */
+	public static Object read(DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length <= 0)
+			throw new StreamCorruptedException("Invalid frame length: " + length);
+
+		final byte[] body = new byte[length];
+		in.readFully(body);
+		return BinaryCodec.decode(ByteBuffer.wrap(body));
+	}
+
+	/**
+	 * Decodes the object in a frame whose length prefix has already been read.
+	 *
+	 * @param body the rest of the frame, from its tag up to its limit
+	 *
+	 * @return the decoded object
+	 *
+	 * @throws StreamCorruptedException if the frame is malformed
+	 */
+	public static Object decode(ByteBuffer body) throws StreamCorruptedException {
+		try {
+			final byte tag = body.get();
+			switch (tag) {
+			case MESSAGE:
+				return BinaryCodec.decodeMessage(body);
+
+			case POST_INFO: {
+				final long   id            = body.getLong();
+				final long   offset        = body.getLong();
+				final String posterName    = BinaryCodec.getString(body);
+				final String fileExtension = BinaryCodec.getString(body);
+				return new PostInfo(posterName, fileExtension, id, offset);
+			}
+
+			case PACKET: {
+				final long    postId  = body.getLong();
+				final boolean isFinal = (body.get() & BinaryCodec.FINAL_FLAG) != 0;
+				final byte[]  payload = BinaryCodec.getBytes(body, body.getInt());
+				return new Packet(isFinal, payload, postId);
+			}
+
+			case CONNECTION_INFO: {
+				final byte[] address = BinaryCodec.getBytes(body, body.get());
+				final int port = body.getInt();
+				return new ConnectionInfo(InetAddress.getByAddress(address), port);
+			}
+
+			case INT:
+				return body.getInt();
+
+			case BOOLEAN:
+				return body.get() != 0;
+
+			default:
+				throw new StreamCorruptedException("Unknown frame tag: " + tag);
+			}
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException
+		        | IOException e) {
+			final StreamCorruptedException sce = new StreamCorruptedException(
+			        "Malformed frame");
+			sce.initCause(e);
+			throw sce;
+		}
+	}
+
+	// ==================== ENCODE ====================
+
+	private static void putPacketHeader(ByteBuffer buffer, Packet packet) {
+		final int payloadLength = packet.getPayload().length;
+
+		buffer.putInt(BinaryCodec.PACKET_HEADER_SIZE + payloadLength);
+		buffer.put(BinaryCodec.PACKET);
+		buffer.putLong(packet.getPostId());
+		buffer.put(packet.isFinal() ? BinaryCodec.FINAL_FLAG : 0);
+		buffer.putInt(payloadLength);
+	}
+
+	private static byte[] encodeBody(Object obj) throws NotSerializableException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (DataOutputStream dos = new DataOutputStream(baos)) {
+
+			if (obj instanceof Message) {
+				final Message message = (Message) obj;
+				dos.writeByte(BinaryCodec.MESSAGE);
+				dos.writeByte(message.getType().ordinal());
+
+				if (message.getType() == MessageType.INITIALISE_CONSUMER) {
+					final TopicToken token = (TopicToken) message.getValue();
+					BinaryCodec.putString(dos, token.getName());
+					dos.writeLong(token.getLastId());
+					dos.writeLong(token.getLastOffset());
+				} else
+					BinaryCodec.putString(dos, (String) message.getValue());
+
+			} else if (obj instanceof PostInfo) {
+				final PostInfo postInfo = (PostInfo) obj;
+				dos.writeByte(BinaryCodec.POST_INFO);
+				dos.writeLong(postInfo.getId());
+				dos.writeLong(postInfo.getOffset());
+				BinaryCodec.putString(dos, postInfo.getPosterName());
+				BinaryCodec.putString(dos, postInfo.getFileExtension());
+
+			} else if (obj instanceof ConnectionInfo) {
+				final ConnectionInfo ci      = (ConnectionInfo) obj;
+				final byte[]         address = ci.getAddress().getAddress();
+				dos.writeByte(BinaryCodec.CONNECTION_INFO);
+				dos.writeByte(address.length);
+				dos.write(address);
+				dos.writeInt(ci.getPort());
+
+			} else if (obj instanceof Integer) {
+				dos.writeByte(BinaryCodec.INT);
+				dos.writeInt((Integer) obj);
+
+			} else if (obj instanceof Boolean) {
+				dos.writeByte(BinaryCodec.BOOLEAN);
+				dos.writeByte(((Boolean) obj) ? 1 : 0);
+
+			} else
+				throw new NotSerializableException(
+				        obj == null ? "null" : obj.getClass().getName());
+
+		} catch (final NotSerializableException e) {
+			throw e;
+		} catch (final IOException e) {
+			throw new AssertionError("ByteArrayOutputStream doesn't throw IOException", e);
+		}
+
+		return baos.toByteArray();
+	}
+
+	private static void putString(DataOutputStream dos, String string) throws IOException {
+		if (string == null) {
+			dos.writeInt(-1);
+			return;
+		}
+
+		final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		dos.writeInt(bytes.length);
+		dos.write(bytes);
+	}
+
+	// ==================== DECODE ====================
+
+	private static Message decodeMessage(ByteBuffer body) throws InvalidObjectException {
+		final int           ordinal = body.get();
+		final MessageType[] types   = MessageType.values();
+		if ((ordinal < 0) || (ordinal >= types.length))
+			throw new InvalidObjectException("Unknown message type: " + ordinal);
+
+		final MessageType type = types[ordinal];
+		final String      name = BinaryCodec.getString(body);
+
+		if (type == MessageType.INITIALISE_CONSUMER)
+			return new Message(type, new TopicToken(name, body.getLong(), body.getLong()));
+
+		return new Message(type, name);
+	}
+
+	private static String getString(ByteBuffer body) {
+		final int length = body.getInt();
+		if (length == -1)
+			return null;
+
+		return new String(BinaryCodec.getBytes(body, length), StandardCharsets.UTF_8);
+	}
+
+	// checks the length before allocating, since it may be corrupted
+	private static byte[] getBytes(ByteBuffer body, int length) {
+		if (length > body.remaining())
+			throw new BufferUnderflowException();
+
+		final byte[] bytes = new byte[length];
+		body.get(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,63 @@
+package com.example.messagingapp.eventDeliverySystem.wire;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * An ObjectInputStream that reads objects written by a
+ * {@link BinaryObjectOutputStream}. It can be used anywhere an
+ * ObjectInputStream is expected, as long as only the methods
+ * {@link #readObject()}, {@link #readInt()} and {@link #readBoolean()} are
+ * used to read data.
+ *
+ * @author Alex Mandelias
+ */
+public class BinaryObjectInputStream extends ObjectInputStream {
+
+	private final DataInputStream in;
+
+	/**
+	 * Constructs a BinaryObjectInputStream that reads from an InputStream. Unlike
+	 * an ObjectInputStream, no stream header is read.
+	 *
+	 * @param in the InputStream to read from
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public BinaryObjectInputStream(InputStream in) throws IOException {
+		super();
+		this.in = new DataInputStream(in);
+	}
+
+	@Override
+	protected Object readObjectOverride() throws IOException {
+		return BinaryCodec.read(in);
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		return read(Integer.class);
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return read(Boolean.class);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private <T> T read(Class<T> type) throws IOException {
+		final Object obj = BinaryCodec.read(in);
+		if (!type.isInstance(obj))
+			throw new StreamCorruptedException(
+			        "Expected " + type.getSimpleName() + " but found " + obj);
+
+		return type.cast(obj);
+	}
+}
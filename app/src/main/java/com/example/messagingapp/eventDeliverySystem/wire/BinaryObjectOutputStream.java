@@ -0,0 +1,61 @@
+package com.example.messagingapp.eventDeliverySystem.wire;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * An ObjectOutputStream that writes objects using the {@link BinaryCodec}
+ * instead of Java serialization. It can be used anywhere an
+ * ObjectOutputStream is expected, as long as only the methods
+ * {@link #writeObject(Object)}, {@link #writeInt(int)} and
+ * {@link #writeBoolean(boolean)} are used to write data. Since objects are
+ * never written as references to previous ones, {@link #reset()} does nothing.
+ *
+ * @author Alex Mandelias
+ */
+public class BinaryObjectOutputStream extends ObjectOutputStream {
+
+	private final OutputStream out;
+
+	/**
+	 * Constructs a BinaryObjectOutputStream that writes to an OutputStream. Unlike
+	 * an ObjectOutputStream, no stream header is written.
+	 *
+	 * @param out the OutputStream to write to
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public BinaryObjectOutputStream(OutputStream out) throws IOException {
+		super();
+		this.out = out;
+	}
+
+	@Override
+	protected void writeObjectOverride(Object obj) throws IOException {
+		BinaryCodec.write(obj, out);
+	}
+
+	@Override
+	public void writeInt(int val) throws IOException {
+		BinaryCodec.write(val, out);
+	}
+
+	@Override
+	public void writeBoolean(boolean val) throws IOException {
+		BinaryCodec.write(val, out);
+	}
+
+	@Override
+	public void reset() {}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,107 @@
+package com.example.messagingapp.eventDeliverySystem.wire;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Negotiates the {@link WireFormat} of a connection between a client and a
+ * Broker.
+ * <p>
+ * A client that supports the binary format starts the connection by sending
+ * {@link BinaryCodec#MAGIC} followed by the latest version it supports, and the
+ * Broker responds with the version that will be used or with
+ * {@link BinaryCodec#NO_VERSION} if it declines. A client that only supports
+ * Java serialization starts the connection with the serialization stream
+ * header, which the Broker recognises by its different first bytes. Brokers
+ * that predate the binary format send their serialization stream header
+ * immediately, which the client recognises as a refusal.
+ *
+ * @author Alex Mandelias
+ */
+public final class Handshake {
+
+	private Handshake() {}
+
+	/**
+	 * Offers the binary format to a Broker. If the Broker declines, the connection
+	 * can't be used any further and a new one, using {@code SERIALIZATION}, must
+	 * be established.
+	 *
+	 * @param in  the stream from the Broker
+	 * @param out the stream to the Broker
+	 *
+	 * @return {@code true} if the Broker accepted the binary format,
+	 *         {@code false} otherwise
+	 *
+	 * @throws IOException if an I/O error occurs while writing the offer
+	 */
+	public static boolean offer(InputStream in, OutputStream out) throws IOException {
+		final DataOutputStream dos = new DataOutputStream(out);
+		dos.writeInt(BinaryCodec.MAGIC);
+		dos.writeByte(BinaryCodec.VERSION);
+		dos.flush();
+
+		final int response;
+		try {
+			response = in.read();
+		} catch (final IOException e) {
+			return false; // the Broker closed the connection
+		}
+
+		return (response > BinaryCodec.NO_VERSION) && (response <= BinaryCodec.VERSION);
+	}
+
+	/**
+	 * Reads the start of a connection from a client and determines its format. If
+	 * the client requested the binary format, the response is written.
+	 *
+	 * @param in            the stream from the client, which must support
+	 *                      {@link InputStream#mark(int) mark}
+	 * @param out           the stream to the client
+	 * @param binaryAllowed whether the binary format may be accepted
+	 *
+	 * @return the format of the connection, or {@code null} if the client
+	 *         requested a format that was declined, in which case the connection
+	 *         should be closed
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static WireFormat accept(InputStream in, OutputStream out, boolean binaryAllowed)
+	        throws IOException {
+		in.mark(Integer.BYTES);
+
+		final DataInputStream dis   = new DataInputStream(in);
+		final int             magic = dis.readInt();
+
+		if (magic != BinaryCodec.MAGIC) {
+			in.reset();
+			return WireFormat.SERIALIZATION;
+		}
+
+		final byte version = Handshake.respond(dis.readByte(), binaryAllowed);
+		out.write(version);
+		out.flush();
+
+		return version == BinaryCodec.NO_VERSION ? null : WireFormat.BINARY;
+	}
+
+	/**
+	 * Returns the version a Broker responds with to a client that requested the
+	 * binary format.
+	 *
+	 * @param requestedVersion the latest version the client supports
+	 * @param binaryAllowed    whether the binary format may be accepted
+	 *
+	 * @return the version to use, or {@link BinaryCodec#NO_VERSION} if the binary
+	 *         format is declined
+	 */
+	public static byte respond(byte requestedVersion, boolean binaryAllowed) {
+		if (!binaryAllowed || (requestedVersion <= BinaryCodec.NO_VERSION))
+			return BinaryCodec.NO_VERSION;
+
+		return (byte) Math.min(requestedVersion, BinaryCodec.VERSION);
+	}
+}
@@ -0,0 +1,640 @@
+package com.example.messagingapp.eventDeliverySystem.wire;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A connection between a client and a Broker over which any number of
+ * independent streams of objects are exchanged at the same time, so that a
+ * client needs a single connection to each Broker no matter how many requests
+ * it makes.
+ * <p>
+ * Every object is sent as a frame: the id of its stream as an {@code int}
+ * followed by the object itself, both written to the streams of the
+ * underlying connection, so frames can be sent in any {@link WireFormat}. The
+ * client opens a stream by sending its first object, the request, with an id
+ * greater than that of any stream it has opened before, so that the id of a
+ * stream also identifies its request. Ids are assigned as the first object of
+ * each stream is sent, so that the Broker can tell a new stream from one it
+ * has already closed. Either side closes a stream by sending its negated id
+ * without an object, after which the other side may no longer write to it.
+ * <p>
+ * Each stream is used through an ObjectOutputStream and an ObjectInputStream
+ * of its own, so that a request is serviced the same way over a stream as
+ * over a connection of its own. The frames that arrive are read by a single
+ * task, which {@link #run() runs} this connection, and are kept in a small
+ * queue per stream until they are read from it.
+ * <p>
+ * So that a stream whose objects aren't read never stalls the others, each
+ * side may send at most {@value #WINDOW_SIZE} objects on a stream that the
+ * other side hasn't read yet; writing more waits until the other side has read
+ * some of them. As objects are read, their number is sent back in a window
+ * update: a frame with the id 0 followed by the id of the stream and the number
+ * of objects, both as {@code int}s. The task that runs the connection therefore
+ * never waits for room in a queue, and a stream on which the other side sends
+ * more than it may is closed. Frames are written one at a time, in the order
+ * in which the streams ask to write them, so that a stream that writes many
+ * large objects doesn't keep the others waiting for long.
+ *
+ * @author Alex Mandelias
+ */
+public final class MultiplexedConnection implements Runnable, Closeable {
+
+	private static final int WINDOW_SIZE   = 16;
+	private static final int WINDOW_UPDATE = 0;
+
+	private static final Object END_OF_STREAM = new Object();
+
+	private final Closeable          connection;
+	private final ObjectInputStream  ois;
+	private final ObjectOutputStream oos;
+	private final Consumer<Stream>   acceptor;
+
+	private final Map<Integer, Stream> streams;
+
+	// fair, so that the writers of all streams take turns
+	private final ReentrantLock writeLock;
+
+	private int              nextStreamId;         // guarded by writeLock
+	private int              lastAcceptedStreamId;
+	private volatile boolean closed;
+
+	/**
+	 * Creates the client side of a MultiplexedConnection, on which the client
+	 * opens streams with {@link #openStream()}.
+	 *
+	 * @param connection the underlying connection, for example its socket, which
+	 *                   is closed when this connection is closed
+	 * @param ois        the stream from the Broker
+	 * @param oos        the stream to the Broker
+	 *
+	 * @return the connection, which must be run to receive objects
+	 */
+	public static MultiplexedConnection forClient(Closeable connection, ObjectInputStream ois,
+	        ObjectOutputStream oos) {
+		return new MultiplexedConnection(connection, ois, oos, null);
+	}
+
+	/**
+	 * Creates the Broker side of a MultiplexedConnection, on which streams are
+	 * opened by the client.
+	 *
+	 * @param connection the underlying connection, for example its socket, which
+	 *                   is closed when this connection is closed
+	 * @param ois        the stream from the client
+	 * @param oos        the stream to the client
+	 * @param acceptor   the action to perform for each new stream, from the task
+	 *                   that runs this connection, once its first object has
+	 *                   arrived
+	 *
+	 * @return the connection, which must be run to receive objects
+	 */
+	public static MultiplexedConnection forServer(Closeable connection, ObjectInputStream ois,
+	        ObjectOutputStream oos, Consumer<Stream> acceptor) {
+		return new MultiplexedConnection(connection, ois, oos, acceptor);
+	}
+
+	private MultiplexedConnection(Closeable connection, ObjectInputStream ois,
+	        ObjectOutputStream oos, Consumer<Stream> acceptor) {
+		this.connection = connection;
+		this.ois = ois;
+		this.oos = oos;
+		this.acceptor = acceptor;
+		streams = new ConcurrentHashMap<>();
+		writeLock = new ReentrantLock(true);
+		nextStreamId = 1;
+		lastAcceptedStreamId = 0;
+		closed = false;
+	}
+
+	/**
+	 * Opens a new stream on this connection. The request for which the stream is
+	 * opened must be the first object written to it.
+	 *
+	 * @return the stream
+	 *
+	 * @throws IOException if this connection has been closed
+	 */
+	public Stream openStream() throws IOException {
+		if (closed)
+			throw new IOException("Connection closed");
+
+		return new Stream(0);
+	}
+
+	/**
+	 * Returns whether this connection has been closed, either explicitly or
+	 * because the underlying connection has failed.
+	 *
+	 * @return {@code true} if this connection has been closed, {@code false}
+	 *         otherwise
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Reads frames from the underlying connection and passes each object to its
+	 * stream, until the underlying connection closes. This connection is then
+	 * closed.
+	 */
+	@Override
+	public void run() {
+		try {
+			while (!closed) {
+				final int streamId = ois.readInt();
+				if (streamId == MultiplexedConnection.WINDOW_UPDATE) {
+					final Stream stream = streams.get(ois.readInt());
+					final int    count  = ois.readInt();
+					if (stream != null)
+						stream.windowUpdated(count);
+
+					continue;
+				}
+
+				if (streamId < 0) {
+					final Stream stream = streams.get(-streamId);
+					if (stream != null)
+						stream.endOfInput();
+
+					continue;
+				}
+
+				final Object obj    = ois.readObject();
+				Stream       stream = streams.get(streamId);
+
+				if ((stream == null) && (acceptor != null) && (streamId > lastAcceptedStreamId)) {
+					lastAcceptedStreamId = streamId;
+					stream = new Stream(streamId);
+					streams.put(streamId, stream);
+					stream.receive(obj);
+					acceptor.accept(stream);
+					continue;
+				}
+
+				// objects for streams that have been closed on this side are discarded
+				if (stream != null)
+					stream.receive(obj);
+			}
+		} catch (final IOException | ClassNotFoundException e) {
+			// do nothing, the connection has been closed
+		}
+
+		close();
+	}
+
+	/**
+	 * Closes this connection and the underlying connection. Every stream reaches
+	 * its end once the objects that have already arrived are read, and can no
+	 * longer be written to.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+
+		for (final Stream stream : streams.values())
+			stream.endOfConnection();
+		streams.clear();
+
+		try {
+			connection.close();
+		} catch (final IOException e) {
+			// do nothing
+		}
+	}
+
+	private void writeFrame(Stream stream, Object obj) throws IOException {
+		writeLock.lock();
+		try {
+			if (stream.id == 0) {
+				stream.id = nextStreamId++;
+				streams.put(stream.id, stream);
+
+				if (closed) {
+					streams.remove(stream.id);
+					throw new IOException("Connection closed");
+				}
+			}
+
+			oos.writeInt(stream.id);
+			oos.writeObject(obj);
+
+			// don't keep the objects written in the stream's handle table
+			oos.reset();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private void writeEndOfStream(Stream stream) throws IOException {
+		writeLock.lock();
+		try {
+			if (stream.id == 0)
+				return; // the other side doesn't know of the stream
+
+			oos.writeInt(-stream.id);
+			oos.flush();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private void writeWindowUpdate(Stream stream, int count) throws IOException {
+		writeLock.lock();
+		try {
+			oos.writeInt(MultiplexedConnection.WINDOW_UPDATE);
+			oos.writeInt(stream.id);
+			oos.writeInt(count);
+			oos.flush();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private void flush() throws IOException {
+		writeLock.lock();
+		try {
+			oos.flush();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private void removeStream(Stream stream) {
+		writeLock.lock();
+		try {
+			streams.remove(stream.id);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * One of the streams of a MultiplexedConnection.
+	 *
+	 * @author Alex Mandelias
+	 */
+	public final class Stream implements Closeable {
+
+		private final BlockingQueue<Object> inbound;
+		private final ObjectOutputStream    out;
+		private final ObjectInputStream     in;
+
+		// 0 until the first object of a stream opened by the client is sent
+		private int id;
+
+		private volatile boolean inputEnded;
+		private volatile boolean outputEnded;
+
+		// like the timeout of a socket, 0 means that reads wait forever
+		private volatile int readTimeout;
+
+		// guarded by 'this', the objects that may be sent before the other side reads some
+		private int sendWindow;
+
+		// only accessed by the reader, the objects read but not yet reported to the other side
+		private int unreportedReads;
+
+		private Stream(int id) {
+			this.id = id;
+
+			// the end of the stream may arrive after a full window of objects
+			inbound = new LinkedBlockingQueue<>(MultiplexedConnection.WINDOW_SIZE + 1);
+			sendWindow = MultiplexedConnection.WINDOW_SIZE;
+			unreportedReads = 0;
+			try {
+				out = new StreamOutputStream(this);
+				in = new StreamInputStream(this);
+			} catch (final IOException e) {
+				throw new AssertionError("Object streams without an underlying stream don't throw", e);
+			}
+			inputEnded = false;
+			outputEnded = false;
+			readTimeout = 0;
+		}
+
+		/**
+		 * Returns the stream to the other side. Only the methods
+		 * {@link ObjectOutputStream#writeObject(Object) writeObject},
+		 * {@link ObjectOutputStream#writeInt(int) writeInt} and
+		 * {@link ObjectOutputStream#writeBoolean(boolean) writeBoolean} may be used
+		 * to write data, each of which sends a frame.
+		 *
+		 * @return the stream to the other side
+		 */
+		public ObjectOutputStream getOutputStream() {
+			return out;
+		}
+
+		/**
+		 * Returns the stream from the other side. Only the methods
+		 * {@link ObjectInputStream#readObject() readObject},
+		 * {@link ObjectInputStream#readInt() readInt} and
+		 * {@link ObjectInputStream#readBoolean() readBoolean} may be used to read
+		 * data.
+		 *
+		 * @return the stream from the other side
+		 */
+		public ObjectInputStream getInputStream() {
+			return in;
+		}
+
+		/**
+		 * Sets the maximum time that a read from this stream waits for an object to
+		 * arrive, after which a {@link SocketTimeoutException} is thrown, the same
+		 * way {@link java.net.Socket#setSoTimeout(int)} does for a socket. The stream
+		 * remains usable. A timeout of 0, the default, means that reads wait
+		 * forever.
+		 *
+		 * @param timeout the timeout, in milliseconds
+		 *
+		 * @throws IllegalArgumentException if the timeout is negative
+		 */
+		public void setReadTimeout(int timeout) {
+			if (timeout < 0)
+				throw new IllegalArgumentException("Negative timeout: " + timeout);
+
+			readTimeout = timeout;
+		}
+
+		/**
+		 * Tells the other side that nothing more will be written to this stream,
+		 * while objects may still be read from it.
+		 *
+		 * @throws IOException if an I/O error occurs while writing to the
+		 *                     underlying connection
+		 */
+		public void shutdownOutput() throws IOException {
+			if (outputEnded)
+				return;
+
+			outputEnded = true;
+			if (!closed)
+				writeEndOfStream(this);
+		}
+
+		/**
+		 * Discards the objects that arrive on this stream until the other side
+		 * closes it.
+		 *
+		 * @param timeout the maximum time to wait
+		 * @param unit    the unit of the timeout
+		 *
+		 * @return {@code true} if the other side closed the stream, {@code false}
+		 *         if the time elapsed first
+		 *
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		public boolean awaitEndOfInput(long timeout, TimeUnit unit) throws InterruptedException {
+			final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+			Object obj;
+			while ((obj = inbound.poll(deadline - System.nanoTime(),
+			        TimeUnit.NANOSECONDS)) != MultiplexedConnection.END_OF_STREAM) {
+				if (obj == null)
+					return false;
+
+				try {
+					objectRead();
+				} catch (final IOException e) {
+					// the connection has failed, its end is about to be reached
+				}
+			}
+
+			inbound.offer(obj); // so that any further read also reaches the end
+			return true;
+		}
+
+		/**
+		 * Closes this stream. The other side is told that nothing more will be
+		 * written to it, if it hasn't been told already, and the objects that
+		 * arrive afterwards are discarded.
+		 *
+		 * @throws IOException if an I/O error occurs while writing to the
+		 *                     underlying connection
+		 */
+		@Override
+		public void close() throws IOException {
+			removeStream(this);
+
+			inbound.clear();
+			inputEnded = true;
+			inbound.offer(MultiplexedConnection.END_OF_STREAM);
+			wakeWriters();
+
+			shutdownOutput();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Stream [id=%d, inputEnded=%s, outputEnded=%s]", id, inputEnded,
+			        outputEnded);
+		}
+
+		private void write(Object obj) throws IOException {
+			takeFromSendWindow();
+			writeFrame(this, obj);
+		}
+
+		private void takeFromSendWindow() throws IOException {
+			synchronized (this) {
+				if ((sendWindow > 0) && !outputEnded && !inputEnded && !closed) {
+					sendWindow--;
+					return;
+				}
+			}
+
+			// the other side can only make room once the objects written so far arrive
+			if (!closed)
+				MultiplexedConnection.this.flush();
+
+			waitForSendWindow();
+		}
+
+		private synchronized void waitForSendWindow() throws IOException {
+			try {
+				while ((sendWindow == 0) && !outputEnded && !inputEnded && !closed)
+					wait();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing to " + this);
+			}
+
+			if (outputEnded || inputEnded || closed)
+				throw new IOException("Stream closed");
+
+			sendWindow--;
+		}
+
+		private synchronized void windowUpdated(int count) {
+			sendWindow += count;
+			notifyAll();
+		}
+
+		private synchronized void wakeWriters() {
+			notifyAll();
+		}
+
+		private Object read() throws IOException {
+			final int    timeout = readTimeout;
+			final Object obj;
+			try {
+				obj = timeout == 0 ? inbound.take()
+				        : inbound.poll(timeout, TimeUnit.MILLISECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while reading from " + this);
+			}
+
+			if (obj == null)
+				throw new SocketTimeoutException("Read timed out on " + this);
+
+			if (obj == MultiplexedConnection.END_OF_STREAM) {
+				inbound.offer(obj); // so that any further read also reaches the end
+				throw new EOFException();
+			}
+
+			objectRead();
+			return obj;
+		}
+
+		private void objectRead() throws IOException {
+			// the other side is told in batches, but before it runs out of room
+			if (++unreportedReads < (MultiplexedConnection.WINDOW_SIZE / 2))
+				return;
+
+			final int count = unreportedReads;
+			unreportedReads = 0;
+			if (!inputEnded && !closed)
+				writeWindowUpdate(this, count);
+		}
+
+		private void receive(Object obj) {
+			if (inputEnded)
+				return;
+
+			// the other side has ignored the window, the stream is closed instead of waiting
+			if ((inbound.size() >= MultiplexedConnection.WINDOW_SIZE) || !inbound.offer(obj)) {
+				removeStream(this);
+				inbound.clear();
+				endOfInput();
+				try {
+					shutdownOutput();
+				} catch (final IOException e) {
+					// the connection has failed, its end is about to be reached
+				}
+			}
+		}
+
+		private void endOfInput() {
+			inputEnded = true;
+			inbound.offer(MultiplexedConnection.END_OF_STREAM);
+			wakeWriters();
+		}
+
+		private void endOfConnection() {
+			inputEnded = true;
+			outputEnded = true;
+
+			// the objects that have arrived are kept, unless no one is reading them
+			if (!inbound.offer(MultiplexedConnection.END_OF_STREAM)) {
+				inbound.clear();
+				inbound.offer(MultiplexedConnection.END_OF_STREAM);
+			}
+
+			wakeWriters();
+		}
+	}
+
+	private final class StreamOutputStream extends ObjectOutputStream {
+
+		private final Stream stream;
+
+		StreamOutputStream(Stream stream) throws IOException {
+			super();
+			this.stream = stream;
+		}
+
+		@Override
+		protected void writeObjectOverride(Object obj) throws IOException {
+			stream.write(obj);
+		}
+
+		@Override
+		public void writeInt(int val) throws IOException {
+			stream.write(val);
+		}
+
+		@Override
+		public void writeBoolean(boolean val) throws IOException {
+			stream.write(val);
+		}
+
+		// objects are never written as references to previous ones
+		@Override
+		public void reset() {}
+
+		@Override
+		public void flush() throws IOException {
+			if (!closed)
+				MultiplexedConnection.this.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			stream.close();
+		}
+	}
+
+	private static final class StreamInputStream extends ObjectInputStream {
+
+		private final Stream stream;
+
+		StreamInputStream(Stream stream) throws IOException {
+			super();
+			this.stream = stream;
+		}
+
+		@Override
+		protected Object readObjectOverride() throws IOException {
+			return stream.read();
+		}
+
+		@Override
+		public int readInt() throws IOException {
+			return read(Integer.class);
+		}
+
+		@Override
+		public boolean readBoolean() throws IOException {
+			return read(Boolean.class);
+		}
+
+		@Override
+		public void close() throws IOException {
+			stream.close();
+		}
+
+		private <T> T read(Class<T> type) throws IOException {
+			final Object obj = stream.read();
+			if (!type.isInstance(obj))
+				throw new StreamCorruptedException(
+				        "Expected " + type.getSimpleName() + " but found " + obj);
+
+			return type.cast(obj);
+		}
+	}
+}
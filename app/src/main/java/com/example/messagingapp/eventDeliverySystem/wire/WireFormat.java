@@ -0,0 +1,67 @@
+package com.example.messagingapp.eventDeliverySystem.wire;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Defines the formats in which objects can be transmitted over a connection.
+ * The format of a connection is chosen by the {@link Handshake} when the
+ * connection is established.
+ *
+ * @author Alex Mandelias
+ */
+public enum WireFormat {
+
+	/** Objects are transmitted using Java serialization */
+	SERIALIZATION {
+		@Override
+		public ObjectOutputStream newOutputStream(OutputStream out) throws IOException {
+			return new ObjectOutputStream(out);
+		}
+
+		@Override
+		public ObjectInputStream newInputStream(InputStream in) throws IOException {
+			return new ObjectInputStream(in);
+		}
+	},
+
+	/** Objects are transmitted using the {@link BinaryCodec} */
+	BINARY {
+		@Override
+		public ObjectOutputStream newOutputStream(OutputStream out) throws IOException {
+			return new BinaryObjectOutputStream(out);
+		}
+
+		@Override
+		public ObjectInputStream newInputStream(InputStream in) throws IOException {
+			return new BinaryObjectInputStream(in);
+		}
+	};
+
+	/**
+	 * Creates an ObjectOutputStream that writes objects in this format.
+	 *
+	 * @param out the underlying OutputStream
+	 *
+	 * @return the ObjectOutputStream
+	 *
+	 * @throws IOException if an I/O error occurs while writing the stream header
+	 */
+	public abstract ObjectOutputStream newOutputStream(OutputStream out) throws IOException;
+
+	/**
+	 * Creates an ObjectInputStream that reads objects in this format. For the
+	 * {@code SERIALIZATION} format, this method blocks until the stream header
+	 * has been read.
+	 *
+	 * @param in the underlying InputStream
+	 *
+	 * @return the ObjectInputStream
+	 *
+	 * @throws IOException if an I/O error occurs while reading the stream header
+	 */
+	public abstract ObjectInputStream newInputStream(InputStream in) throws IOException;
+}
@@ -0,0 +1,8 @@
+/**
+ * Defines the formats in which data is transmitted between the remote
+ * components of the system, the handshake with which they are chosen and the
+ * connections over which many requests are made at the same time.
+ *
+ * @author Alex Mandelias
+ */
+package com.example.messagingapp.eventDeliverySystem.wire;
@@ -0,0 +1,178 @@
+package com.example.messagingapp.server;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PacketReader;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Post;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the throughput and the latency of sending Posts of different size
+ * classes, text, images and videos, when they are broken into Packets of a
+ * fixed size and when the size of the Packets is chosen for each Post. Every
+ * Post is broken into Packets, which are serialized as they are sent, and then
+ * deserialized and restored to a Post as they are received.
+ * <p>
+ * This is a simple timing loop rather than a proper harness; run it with a
+ * warmed-up JVM and compare the numbers relative to each other, not absolutely.
+ *
+ * @author Alex Mandelias
+ */
+public class PacketSizeBenchmark {
+
+    private static final String USAGE = "Usage:\n"
+            + "\tjava app.PacketSizeBenchmark [<scale>]\n"
+            + "\n"
+            + "\t<scale>\tmultiplies the number of posts sent per measurement (default: 1)\n";
+
+    private static final int KiB = 1024;
+    private static final int MiB = 1024 * 1024;
+
+    private static final String[] CLASS_NAMES = { "text", "image", "video" };
+    private static final int[] CLASS_SIZES = { 200, 256 * KiB, 16 * MiB };
+    private static final int[] CLASS_ROUNDS = { 20000, 400, 8 };
+
+    private static final int[] FIXED_PACKET_SIZES = { 4 * KiB, 64 * KiB, 512 * KiB };
+
+    private PacketSizeBenchmark() { }
+
+    /**
+     * Prints the throughput and the latency of every size class and packet size.
+     *
+     * @param args the scale of the number of posts, optional
+     *
+     * @throws IOException if a Post could not be broken into Packets
+     * @throws ClassNotFoundException never
+     */
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        final int scale;
+        try {
+            scale = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        } catch (final NumberFormatException e) {
+            System.out.println(PacketSizeBenchmark.USAGE);
+            return;
+        }
+
+        final Random random = new Random(42);
+        final Post[] posts = new Post[CLASS_SIZES.length];
+        for (int i = 0; i < posts.length; i++) {
+            final byte[] data = new byte[CLASS_SIZES[i]];
+            random.nextBytes(data);
+            posts[i] = new Post(data, new PostInfo("benchmark", "bin", i));
+        }
+
+        // the first measurements warm up the JVM and are discarded
+        for (int warmup = 0; warmup < 2; warmup++)
+            for (int i = 0; i < posts.length; i++)
+                for (int size = -1; size < FIXED_PACKET_SIZES.length; size++) {
+                    final int packetSize = size == -1 ? 0 : FIXED_PACKET_SIZES[size];
+                    PacketSizeBenchmark.measure(posts[i], packetSize, CLASS_ROUNDS[i] / 10 + 1);
+                }
+
+        System.out.printf("%-6s %-10s %8s %12s %14s %14s%n", "class", "packets", "count",
+                "MiB/s", "mean us/post", "p99 us/post");
+
+        for (int i = 0; i < posts.length; i++) {
+            final int rounds = CLASS_ROUNDS[i] * scale;
+            for (final int packetSize : FIXED_PACKET_SIZES)
+                PacketSizeBenchmark.print(CLASS_NAMES[i], (packetSize / KiB) + " KiB",
+                        PacketSizeBenchmark.measure(posts[i], packetSize, rounds));
+
+            PacketSizeBenchmark.print(CLASS_NAMES[i], "adaptive",
+                    PacketSizeBenchmark.measure(posts[i], 0, rounds));
+        }
+    }
+
+    private static void print(String className, String packets, Result result) {
+        final long[] latencies = result.latencies;
+        Arrays.sort(latencies);
+
+        long total = 0;
+        for (final long latency : latencies)
+            total += latency;
+
+        final double seconds = total / 1e9;
+        final double mibPerSecond = ((double) result.bytes * latencies.length) / MiB / seconds;
+        final long p99 = latencies[Math.min(latencies.length - 1, (int) (latencies.length * 0.99))];
+
+        System.out.printf("%-6s %-10s %8d %12.1f %14.1f %14.1f%n", className, packets,
+                result.packetCount, mibPerSecond, (total / 1e3) / latencies.length, p99 / 1e3);
+    }
+
+    // a packetSize of 0 means that the size is chosen for the Post
+    private static Result measure(Post post, int packetSize, int rounds)
+            throws IOException, ClassNotFoundException {
+        final long[] latencies = new long[rounds];
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        int packetCount = 0;
+
+        for (int round = 0; round < rounds; round++) {
+            sent.reset();
+
+            final long start = System.nanoTime();
+            packetCount = PacketSizeBenchmark.send(post, packetSize, sent);
+            final Post received = PacketSizeBenchmark.receive(sent, post.getPostInfo());
+            latencies[round] = System.nanoTime() - start;
+
+            if (received.getLength() != post.getLength())
+                throw new IllegalStateException("The Post was not restored");
+        }
+
+        return new Result(post.getLength(), packetCount, latencies);
+    }
+
+    private static int send(Post post, int packetSize, ByteArrayOutputStream sent)
+            throws IOException {
+        int packetCount = 0;
+        try (ObjectOutputStream oos = new ObjectOutputStream(sent);
+                PacketReader reader = packetSize == 0 ? Packet.readerFor(post)
+                        : new PacketReader(post.openChannel(), post.getPostInfo().getId(),
+                                packetSize)) {
+            Packet packet;
+            while ((packet = reader.next()) != null) {
+                oos.writeObject(packet);
+                oos.reset();
+                packetCount++;
+            }
+        }
+
+        return packetCount;
+    }
+
+    private static Post receive(ByteArrayOutputStream sent, PostInfo postInfo)
+            throws IOException, ClassNotFoundException {
+        final List<Packet> packets = new ArrayList<>();
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new ByteArrayInputStream(sent.toByteArray()))) {
+            Packet packet;
+            do {
+                packet = (Packet) ois.readObject();
+                packets.add(packet);
+            } while (!packet.isFinal());
+        }
+
+        return Post.fromPackets(packets.toArray(new Packet[packets.size()]), postInfo);
+    }
+
+    private static final class Result {
+
+        private final long bytes;
+        private final int packetCount;
+        private final long[] latencies;
+
+        Result(long bytes, int packetCount, long[] latencies) {
+            this.bytes = bytes;
+            this.packetCount = packetCount;
+            this.latencies = latencies;
+        }
+    }
+}
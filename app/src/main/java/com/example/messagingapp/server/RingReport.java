@@ -0,0 +1,139 @@
+package com.example.messagingapp.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.AbstractTopic;
+import com.example.messagingapp.eventDeliverySystem.server.BrokerConfig;
+import com.example.messagingapp.eventDeliverySystem.server.HashRing;
+
+/**
+ * Reports how evenly the ring that assigns Topics to Brokers spreads a number of
+ * Topics across a number of Brokers, and how many Topics move to another Broker
+ * when a Broker joins or leaves, for different numbers of virtual nodes.
+ *
+ * @author Alex Mandelias
+ */
+public class RingReport {
+
+    private static final String USAGE = "Usage:\n"
+            + "\tjava app.RingReport <brokers> <topics> [<virtual nodes>...]\n"
+            + "\n"
+            + "\t<brokers>\t\tthe number of brokers\n"
+            + "\t<topics>\t\tthe number of topics\n"
+            + "\t<virtual nodes>\tthe numbers of virtual nodes per broker to compare (default: 1 16 128 512)\n"
+            + "\n"
+            + "The servers use " + BrokerConfig.VIRTUAL_NODE_COUNT + " virtual nodes per broker.\n";
+
+    private RingReport() { }
+
+    /**
+     * Prints the report.
+     *
+     * @param args the number of Brokers, the number of Topics and, optionally,
+     *             the numbers of virtual nodes to compare
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println(RingReport.USAGE);
+            return;
+        }
+
+        final int brokerCount;
+        final int topicCount;
+        final int[] virtualNodeCounts;
+        try {
+            brokerCount = Integer.parseInt(args[0]);
+            topicCount = Integer.parseInt(args[1]);
+
+            if (args.length == 2)
+                virtualNodeCounts = new int[] { 1, 16, 128, 512 };
+            else {
+                virtualNodeCounts = new int[args.length - 2];
+                for (int i = 0; i < virtualNodeCounts.length; i++)
+                    virtualNodeCounts[i] = Integer.parseInt(args[i + 2]);
+            }
+        } catch (final NumberFormatException e) {
+            System.out.println(RingReport.USAGE);
+            return;
+        }
+
+        if ((brokerCount < 2) || (topicCount < 1)) {
+            System.err.println("There must be at least 2 brokers and 1 topic");
+            return;
+        }
+
+        final String[] topicNames = new String[topicCount];
+        for (int i = 0; i < topicCount; i++)
+            topicNames[i] = "topic-" + i;
+
+        System.out.printf("%d brokers, %d topics, %.1f topics per broker%n%n", brokerCount,
+                topicCount, topicCount / (double) brokerCount);
+        System.out.printf("%13s %10s %10s %10s %10s %12s %12s%n", "virtual nodes", "min",
+                "max", "stddev", "max/mean", "moved (+1)", "moved (-1)");
+
+        for (final int virtualNodeCount : virtualNodeCounts) {
+            final HashRing<String> ring = new HashRing<>(virtualNodeCount);
+            for (int i = 0; i < brokerCount; i++)
+                ring.add("broker-" + i, "broker-" + i);
+
+            final String[] assigned = RingReport.assign(ring, topicNames);
+            final Map<String, Integer> topicsPerBroker = new HashMap<>();
+            for (final String broker : ring.getNodes().keySet())
+                topicsPerBroker.put(broker, 0);
+            for (final String broker : assigned)
+                topicsPerBroker.merge(broker, 1, Integer::sum);
+
+            int min = Integer.MAX_VALUE;
+            int max = 0;
+            double sumOfSquares = 0;
+            final double mean = topicCount / (double) brokerCount;
+            for (final int count : topicsPerBroker.values()) {
+                min = Math.min(min, count);
+                max = Math.max(max, count);
+                sumOfSquares += (count - mean) * (count - mean);
+            }
+            final double stddev = Math.sqrt(sumOfSquares / brokerCount);
+
+            ring.add("broker-" + brokerCount, "broker-" + brokerCount);
+            final double movedOnJoin = RingReport.movedFraction(assigned,
+                    RingReport.assign(ring, topicNames));
+
+            ring.remove("broker-" + brokerCount);
+            ring.remove("broker-0");
+            final double movedOnLeave = RingReport.movedFraction(assigned,
+                    RingReport.assign(ring, topicNames));
+
+            System.out.printf("%13d %10d %10d %10.1f %10.2f %11.1f%% %11.1f%%%n", virtualNodeCount,
+                    min, max, stddev, max / mean, 100 * movedOnJoin, 100 * movedOnLeave);
+        }
+
+        // the assignment Brokers used before the ring, for comparison
+        int movedByModulo = 0;
+        for (final String topicName : topicNames) {
+            final int hash = AbstractTopic.hashForTopic(topicName);
+            if (Math.abs(hash % brokerCount) != Math.abs(hash % (brokerCount + 1)))
+                movedByModulo++;
+        }
+
+        System.out.printf("%nideal moved (+1): %.1f%%, moved (-1): %.1f%%%n",
+                100.0 / (brokerCount + 1), 100.0 / brokerCount);
+        System.out.printf("hash %% brokers moved (+1): %.1f%%%n",
+                (100.0 * movedByModulo) / topicCount);
+    }
+
+    private static String[] assign(HashRing<String> ring, String[] topicNames) {
+        final String[] assigned = new String[topicNames.length];
+        for (int i = 0; i < topicNames.length; i++)
+            assigned[i] = ring.get(topicNames[i]);
+        return assigned;
+    }
+
+    private static double movedFraction(String[] before, String[] after) {
+        int moved = 0;
+        for (int i = 0; i < before.length; i++)
+            if (!before[i].equals(after[i]))
+                moved++;
+        return moved / (double) before.length;
+    }
+}
@@ -3,6 +3,7 @@ package com.example.messagingapp.server;
 import java.util.concurrent.ThreadLocalRandom;
 
 import com.example.messagingapp.eventDeliverySystem.server.Broker;
+import com.example.messagingapp.eventDeliverySystem.server.BrokerConfig;
 import com.example.messagingapp.eventDeliverySystem.util.LG;
 
 /**
@@ -18,7 +19,22 @@ public class Server {
             + "\n"
             + "Arguments for servers after the first one:\n"
             + "\t<ip>\t\tthe ip of the first server (run 'ipconfig' on the first server)\n"
-            + "\t<port>\t\tthe port the first server listens to (See 'Broker Port' in the first server's console)\n";
+            + "\t<port>\t\tthe port the first server listens to (See 'Broker Port' in the first server's console)\n"
+            + "\n"
+            + "Options, given as system properties (java -D<option>=<value> app.Server):\n"
+            + "\t" + BrokerConfig.IO_MODE + "\t\t'thread' (default) or 'selector'\n"
+            + "\t" + BrokerConfig.EVENT_LOOP_COUNT + "\tthe number of event loops in 'selector' mode\n"
+            + "\t" + BrokerConfig.THREAD_TYPE + "\t'platform' (default) or 'virtual' threads (Java 21+) for blocking connections\n"
+            + "\t" + BrokerConfig.BINARY_WIRE_FORMAT + "\t'true' (default) or 'false' to make clients use Java serialization\n"
+            + "\t" + BrokerConfig.RELAY_CACHE_SIZE + "\tbytes of encoded packets kept for relaying, 0 to disable\n"
+            + "\t" + BrokerConfig.LOG_DIRECTORY + "\t\tthe directory where topics are persisted\n"
+            + "\t" + BrokerConfig.LOG_SEGMENT_SIZE + "\tthe size of each log segment in bytes\n"
+            + "\t" + BrokerConfig.LOG_INDEX_INTERVAL + "\tthe bytes between indexed log records\n"
+            + "\t" + BrokerConfig.CONSUMER_QUEUE_COUNT + "\tthe packets queued for each consumer\n"
+            + "\t" + BrokerConfig.CONSUMER_QUEUE_SIZE + "\tthe bytes of packets queued for each consumer\n"
+            + "\t" + BrokerConfig.CONSUMER_OVERFLOW_POLICY + "\t'block' (default), 'drop_oldest' or 'disconnect' for consumers that fall behind\n"
+            + "\t" + BrokerConfig.VIRTUAL_NODE_COUNT + "\tthe virtual nodes of each server on the ring that assigns topics\n"
+            + "\t" + BrokerConfig.RING_HASH + "\t\t'murmur3' (default) or 'md5', the same on all servers\n";
 
     private Server() { }
 
@@ -61,8 +77,14 @@ public class Server {
             return;
         }
 
-        try (Broker broker = leader ? new Broker() : new Broker(ip, port)) {
+        final BrokerConfig config = BrokerConfig.fromProperties(System.getProperties());
+
+        try (Broker broker = leader ? new Broker(config) : new Broker(ip, port, config)) {
             final Thread thread = new Thread(broker, "Broker-" + brokerId);
+
+            // the broker runs until the process is stopped
+            Runtime.getRuntime().addShutdownHook(new Thread(broker::close, "BrokerShutdown"));
+
             thread.start();
             thread.join();
         } catch (InterruptedException e) {
@@ -0,0 +1,92 @@
+package com.example.messagingapp.server;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.StandardTopicHash;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Topic;
+
+/**
+ * Measures how long the hash functions of Topics take to hash the name of a
+ * Topic, and how long the memoized hash of a Topic takes to be returned.
+ * <p>
+ * This is a simple timing loop rather than a proper harness; run it with a
+ * warmed-up JVM and compare the numbers relative to each other, not absolutely.
+ *
+ * @author Alex Mandelias
+ */
+public class TopicHashBenchmark {
+
+    private static final String USAGE = "Usage:\n"
+            + "\tjava app.TopicHashBenchmark [<topics> [<rounds>]]\n"
+            + "\n"
+            + "\t<topics>\tthe number of distinct topic names to hash (default: 10000)\n"
+            + "\t<rounds>\tthe number of times every name is hashed per measurement (default: 100)\n";
+
+    private TopicHashBenchmark() { }
+
+    /**
+     * Prints the average time per hash of every hash function.
+     *
+     * @param args the number of Topics and the number of rounds, both optional
+     */
+    public static void main(String[] args) {
+        final int topicCount;
+        final int rounds;
+        try {
+            topicCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+            rounds = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        } catch (final NumberFormatException e) {
+            System.out.println(TopicHashBenchmark.USAGE);
+            return;
+        }
+
+        final String[] topicNames = new String[topicCount];
+        final Topic[] topics = new Topic[topicCount];
+        for (int i = 0; i < topicCount; i++) {
+            topicNames[i] = "conversation-" + i + "-with-a-reasonably-long-name";
+            topics[i] = new Topic(topicNames[i]);
+        }
+
+        // the first measurements warm up the JVM and are discarded
+        for (int warmup = 0; warmup < 3; warmup++) {
+            for (final StandardTopicHash hash : StandardTopicHash.values())
+                TopicHashBenchmark.measure(hash, topicNames, rounds);
+            TopicHashBenchmark.measure(topics, rounds);
+        }
+
+        for (final StandardTopicHash hash : StandardTopicHash.values())
+            System.out.printf("%-18s %8.1f ns/hash%n", hash,
+                    TopicHashBenchmark.measure(hash, topicNames, rounds));
+
+        System.out.printf("%-18s %8.1f ns/hash%n", "Topic#hashCode",
+                TopicHashBenchmark.measure(topics, rounds));
+    }
+
+    private static double measure(StandardTopicHash hash, String[] topicNames, int rounds) {
+        int sink = 0;
+        final long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++)
+            for (final String topicName : topicNames)
+                sink += hash.hash(topicName);
+        final long elapsed = System.nanoTime() - start;
+
+        TopicHashBenchmark.consume(sink);
+        return elapsed / ((double) rounds * topicNames.length);
+    }
+
+    private static double measure(Topic[] topics, int rounds) {
+        int sink = 0;
+        final long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++)
+            for (final Topic topic : topics)
+                sink += topic.hashCode();
+        final long elapsed = System.nanoTime() - start;
+
+        TopicHashBenchmark.consume(sink);
+        return elapsed / ((double) rounds * topics.length);
+    }
+
+    // keeps the JIT from removing the hashing as dead code
+    private static void consume(int value) {
+        if (value == 42)
+            System.out.print("");
+    }
+}
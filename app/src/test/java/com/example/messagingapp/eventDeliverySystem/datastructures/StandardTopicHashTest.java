@@ -0,0 +1,41 @@
+package com.example.messagingapp.eventDeliverySystem.datastructures;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link StandardTopicHash#MURMUR3} computes the reference
+ * MurmurHash3, since every Broker and client must place Topics on the ring at
+ * the same positions, whichever implementation they use.
+ *
+ * @author Alex Mandelias
+ */
+public class StandardTopicHashTest {
+
+	@Test
+	public void murmur3MatchesTheReferenceVectors() {
+		StandardTopicHashTest.assertMurmur3(0x00000000, "");
+		StandardTopicHashTest.assertMurmur3(0x248bfa47, "hello");
+		StandardTopicHashTest.assertMurmur3(0x2e4ff723,
+		        "The quick brown fox jumps over the lazy dog");
+	}
+
+	@Test
+	public void murmur3HashesEveryLengthOfTail() {
+		StandardTopicHashTest.assertMurmur3(0x3c2569b2, "a");
+		StandardTopicHashTest.assertMurmur3(0x9bbfd75f, "ab");
+		StandardTopicHashTest.assertMurmur3(0xb3dd93fa, "abc");
+		StandardTopicHashTest.assertMurmur3(0x43ed676a, "abcd");
+	}
+
+	@Test
+	public void murmur3HashesTheUtf8OfTheName() {
+		StandardTopicHashTest.assertMurmur3(0xe1edbb2d, "\u03c4\u03cc\u03c0\u03bf\u03c2");
+	}
+
+	private static void assertMurmur3(int expected, String topicName) {
+		assertEquals("MURMUR3 of \"" + topicName + "\"", expected,
+		        StandardTopicHash.MURMUR3.hash(topicName));
+	}
+}
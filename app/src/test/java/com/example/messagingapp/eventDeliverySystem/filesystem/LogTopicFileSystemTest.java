@@ -0,0 +1,403 @@
+package com.example.messagingapp.eventDeliverySystem.filesystem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Post;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+
+/**
+ * Tests that the Posts of a {@link LogTopicFileSystem} survive it being
+ * reopened, whether its last write was completed or not, that the Posts of a
+ * batch are committed together or not at all, that its segments are sealed
+ * once they are full and that Topics in the
+ * {@link TopicFileSystem.Format#DIRECTORY DIRECTORY} format are migrated to it,
+ * even if a previous migration was interrupted.
+ *
+ * @author Alex Mandelias
+ */
+public class LogTopicFileSystemTest {
+
+	private static final String TOPIC = "topic";
+
+	private static final int  SEGMENT_SIZE = 4 * 1024 * 1024;
+	private static final long FOOTER_MAGIC = 0x4D41_4C4F_4746_5452L;
+
+	@Test
+	public void postsAreReadInOrderAfterReopening() throws IOException {
+		final Path root = Files.createTempDirectory("log-topic-file-system-test");
+		try {
+			final LogTopicFileSystem fileSystem = new LogTopicFileSystem(root);
+			fileSystem.createTopic(LogTopicFileSystemTest.TOPIC);
+			fileSystem.writePost(LogTopicFileSystemTest.post(1, 10), LogTopicFileSystemTest.TOPIC);
+			fileSystem.writePosts(Arrays.asList(LogTopicFileSystemTest.post(2, 0),
+			        LogTopicFileSystemTest.post(3, 1000)), LogTopicFileSystemTest.TOPIC);
+
+			LogTopicFileSystemTest.assertPosts(root, 1, 2, 3);
+		} finally {
+			LogTopicFileSystemTest.delete(root);
+		}
+	}
+
+	@Test
+	public void zeroLengthEndsTheRecords() throws IOException {
+		final Path root = Files.createTempDirectory("log-topic-file-system-test");
+		try {
+			final LogTopicFileSystem fileSystem = new LogTopicFileSystem(root);
+			fileSystem.createTopic(LogTopicFileSystemTest.TOPIC);
+			fileSystem.writePost(LogTopicFileSystemTest.post(1, 10), LogTopicFileSystemTest.TOPIC);
+
+			final Path segment  = LogTopicFileSystemTest.segments(root).get(0);
+			final long position = Files.size(segment);
+			fileSystem.writePost(LogTopicFileSystemTest.post(2, 10), LogTopicFileSystemTest.TOPIC);
+			fileSystem.writePost(LogTopicFileSystemTest.post(3, 10), LogTopicFileSystemTest.TOPIC);
+
+			// the records after one whose length was never written are not found
+			LogTopicFileSystemTest.writeLength(segment, position, 0);
+			LogTopicFileSystemTest.assertPosts(root, 1);
+
+			// and are overwritten by the next Post
+			final LogTopicFileSystem reopened = new LogTopicFileSystem(root);
+			reopened.writePost(LogTopicFileSystemTest.post(4, 10), LogTopicFileSystemTest.TOPIC);
+			assertEquals(position + LogTopicFileSystemTest.recordSize(4, 10), Files.size(segment));
+			LogTopicFileSystemTest.assertPosts(root, 1, 4);
+		} finally {
+			LogTopicFileSystemTest.delete(root);
+		}
+	}
+
+	@Test
+	public void tornRecordIsTruncatedOnReopen() throws IOException {
+		// longer than the record that is written after them, unless they are truncated
+		final byte[][] tornRecords = {
+		        Arrays.copyOf(new byte[] { 0, 0, 0, 0, 1, 2, 3 }, 100), // its length not written
+		        Arrays.copyOf(new byte[] { 0, 0, 1, 0, 1, 2, 3 }, 100), // a length past the end
+		        { 0, 0 },                                             // part of a length
+		};
+
+		for (final byte[] tornRecord : tornRecords) {
+			final Path root = Files.createTempDirectory("log-topic-file-system-test");
+			try {
+				final LogTopicFileSystem fileSystem = new LogTopicFileSystem(root);
+				fileSystem.createTopic(LogTopicFileSystemTest.TOPIC);
+				fileSystem.writePost(LogTopicFileSystemTest.post(1, 10),
+				        LogTopicFileSystemTest.TOPIC);
+
+				final Path segment = LogTopicFileSystemTest.segments(root).get(0);
+				final long end     = Files.size(segment);
+				Files.write(segment, tornRecord, StandardOpenOption.APPEND);
+
+				LogTopicFileSystemTest.assertPosts(root, 1);
+
+				final LogTopicFileSystem reopened = new LogTopicFileSystem(root);
+				reopened.writePost(LogTopicFileSystemTest.post(2, 10),
+				        LogTopicFileSystemTest.TOPIC);
+				assertEquals(end + LogTopicFileSystemTest.recordSize(2, 10), Files.size(segment));
+				LogTopicFileSystemTest.assertPosts(root, 1, 2);
+			} finally {
+				LogTopicFileSystemTest.delete(root);
+			}
+		}
+	}
+
+	@Test
+	public void fullSegmentIsSealed() throws IOException {
+		final int  dataLength = (LogTopicFileSystemTest.SEGMENT_SIZE * 3) / 8;
+		final Path root       = Files.createTempDirectory("log-topic-file-system-test");
+		try {
+			final LogTopicFileSystem fileSystem = new LogTopicFileSystem(root);
+			fileSystem.createTopic(LogTopicFileSystemTest.TOPIC);
+			for (int id = 1; id <= 3; id++)
+				fileSystem.writePost(LogTopicFileSystemTest.post(id, dataLength),
+				        LogTopicFileSystemTest.TOPIC);
+
+			// the third Post doesn't fit in the first segment
+			final List<Path> segments = LogTopicFileSystemTest.segments(root);
+			assertEquals(Arrays.asList("00000000000000000000.seg", "00000000000000000002.seg"),
+			        LogTopicFileSystemTest.fileNames(segments));
+			assertEquals(2, LogTopicFileSystemTest.footerPostCount(segments.get(0)));
+			assertEquals(-1, LogTopicFileSystemTest.footerPostCount(segments.get(1)));
+
+			LogTopicFileSystemTest.assertPosts(root, 1, 2, 3);
+
+			// the Posts after the reopening are appended to the segment that isn't sealed
+			final LogTopicFileSystem reopened = new LogTopicFileSystem(root);
+			reopened.writePost(LogTopicFileSystemTest.post(4, 10), LogTopicFileSystemTest.TOPIC);
+			assertEquals(segments, LogTopicFileSystemTest.segments(root));
+			LogTopicFileSystemTest.assertPosts(root, 1, 2, 3, 4);
+		} finally {
+			LogTopicFileSystemTest.delete(root);
+		}
+	}
+
+	@Test
+	public void directoryTopicIsMigrated() throws IOException {
+		final Path root = Files.createTempDirectory("log-topic-file-system-test");
+		try {
+			final DirectoryTopicFileSystem directory = new DirectoryTopicFileSystem(root);
+			directory.createTopic(LogTopicFileSystemTest.TOPIC);
+			directory.createTopic("empty");
+			for (int id = 1; id <= 3; id++)
+				directory.writePost(LogTopicFileSystemTest.post(id, 10 * id),
+				        LogTopicFileSystemTest.TOPIC);
+
+			LogTopicFileSystemTest.assertPosts(root, 1, 2, 3);
+			assertEquals(Collections.singletonList("00000000000000000000.seg"),
+			        LogTopicFileSystemTest.fileNames(LogTopicFileSystemTest.files(root)));
+
+			assertFalse(directory.holds("empty"));
+			assertEquals(0, new LogTopicFileSystem(root).openTopic("empty").getPostCount());
+		} finally {
+			LogTopicFileSystemTest.delete(root);
+		}
+	}
+
+	@Test
+	public void interruptedMigrationStartsOver() throws IOException {
+		final Path root  = Files.createTempDirectory("log-topic-file-system-test");
+		final Path other = Files.createTempDirectory("log-topic-file-system-test");
+		try {
+			final DirectoryTopicFileSystem directory = new DirectoryTopicFileSystem(root);
+			directory.createTopic(LogTopicFileSystemTest.TOPIC);
+			for (int id = 1; id <= 3; id++)
+				directory.writePost(LogTopicFileSystemTest.post(id, 10 * id),
+				        LogTopicFileSystemTest.TOPIC);
+
+			// the migration wrote the first Post and part of the second one
+			final LogTopicFileSystem partial = new LogTopicFileSystem(other);
+			partial.createTopic(LogTopicFileSystemTest.TOPIC);
+			partial.writePost(LogTopicFileSystemTest.post(1, 10), LogTopicFileSystemTest.TOPIC);
+
+			final Path segment = LogTopicFileSystemTest.segments(other).get(0);
+			Files.write(segment, new byte[] { 0, 0, 0, 0, 1, 2, 3 }, StandardOpenOption.APPEND);
+			Files.copy(segment, root.resolve(LogTopicFileSystemTest.TOPIC)
+			        .resolve(segment.getFileName()));
+
+			// every Post is migrated once, and only once
+			LogTopicFileSystemTest.assertPosts(root, 1, 2, 3);
+			assertFalse(directory.holds(LogTopicFileSystemTest.TOPIC));
+			LogTopicFileSystemTest.assertPosts(root, 1, 2, 3);
+		} finally {
+			LogTopicFileSystemTest.delete(root);
+			LogTopicFileSystemTest.delete(other);
+		}
+	}
+
+	@Test
+	public void interruptedBatchIsDroppedWhole() throws IOException {
+		final Path root = Files.createTempDirectory("log-topic-file-system-test");
+		try {
+			final LogTopicFileSystem fileSystem = new LogTopicFileSystem(root);
+			fileSystem.createTopic(LogTopicFileSystemTest.TOPIC);
+			fileSystem.writePosts(Arrays.asList(LogTopicFileSystemTest.post(1, 10),
+			        LogTopicFileSystemTest.post(2, 10)), LogTopicFileSystemTest.TOPIC);
+
+			final Path segment = LogTopicFileSystemTest.segments(root).get(0);
+			final long start   = Files.size(segment);
+			fileSystem.writePosts(Arrays.asList(LogTopicFileSystemTest.post(3, 10),
+			        LogTopicFileSystemTest.post(4, 100), LogTopicFileSystemTest.post(5, 10)),
+			        LogTopicFileSystemTest.TOPIC);
+
+			// the batch before the length of its first record, the commit point, was written
+			final byte[] uncommitted = Files.readAllBytes(segment);
+			ByteBuffer.wrap(uncommitted).putInt((int) start, 0);
+
+			// the Broker may have stopped at any point while the batch was being written
+			for (final long end : new long[] { start + 2, start + 50, uncommitted.length - 1,
+			        uncommitted.length }) {
+				Files.write(segment, Arrays.copyOf(uncommitted, (int) end));
+				LogTopicFileSystemTest.assertPosts(root, 1, 2);
+			}
+
+			final LogTopicFileSystem reopened = new LogTopicFileSystem(root);
+			reopened.writePosts(Arrays.asList(LogTopicFileSystemTest.post(6, 10),
+			        LogTopicFileSystemTest.post(7, 10)), LogTopicFileSystemTest.TOPIC);
+			LogTopicFileSystemTest.assertPosts(root, 1, 2, 6, 7);
+		} finally {
+			LogTopicFileSystemTest.delete(root);
+		}
+	}
+
+	@Test
+	public void failedBatchIsNotAppended() throws IOException {
+		final Path root = Files.createTempDirectory("log-topic-file-system-test");
+		try {
+			final LogTopicFileSystem fileSystem = new LogTopicFileSystem(root);
+			fileSystem.createTopic(LogTopicFileSystemTest.TOPIC);
+			fileSystem.writePost(LogTopicFileSystemTest.post(1, 10), LogTopicFileSystemTest.TOPIC);
+
+			final Post unreadable = new Post(new byte[10], new PostInfo("poster", "txt", 4)) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public ReadableByteChannel openChannel() throws IOException {
+					throw new IOException("The data of the Post can't be read");
+				}
+			};
+
+			try {
+				fileSystem.writePosts(Arrays.asList(LogTopicFileSystemTest.post(2, 10),
+				        LogTopicFileSystemTest.post(3, 10), unreadable),
+				        LogTopicFileSystemTest.TOPIC);
+				fail("A batch with a Post that can't be read was written");
+			} catch (final FileSystemException e) {
+				// expected
+			}
+
+			// the records of the failed batch are not found after the next one, even
+			// though the segment is not reopened
+			fileSystem.writePost(LogTopicFileSystemTest.post(5, 10), LogTopicFileSystemTest.TOPIC);
+			assertEquals(LogTopicFileSystemTest.recordSize(1, 10)
+			        + LogTopicFileSystemTest.recordSize(5, 10),
+			        Files.size(LogTopicFileSystemTest.segments(root).get(0)));
+			LogTopicFileSystemTest.assertPosts(root, 1, 5);
+			assertEquals(2, fileSystem.openTopic(LogTopicFileSystemTest.TOPIC).getPostCount());
+		} finally {
+			LogTopicFileSystemTest.delete(root);
+		}
+	}
+
+	@Test
+	public void batchIsWrittenToOneSegment() throws IOException {
+		final int  dataLength = LogTopicFileSystemTest.SEGMENT_SIZE / 4;
+		final Path root       = Files.createTempDirectory("log-topic-file-system-test");
+		try {
+			final LogTopicFileSystem fileSystem = new LogTopicFileSystem(root);
+			fileSystem.createTopic(LogTopicFileSystemTest.TOPIC);
+			fileSystem.writePosts(Arrays.asList(LogTopicFileSystemTest.post(1, dataLength),
+			        LogTopicFileSystemTest.post(2, dataLength)), LogTopicFileSystemTest.TOPIC);
+
+			// the batch would fit in the first segment if it were split
+			fileSystem.writePosts(Arrays.asList(LogTopicFileSystemTest.post(3, dataLength),
+			        LogTopicFileSystemTest.post(4, dataLength),
+			        LogTopicFileSystemTest.post(5, dataLength)), LogTopicFileSystemTest.TOPIC);
+
+			final List<Path> segments = LogTopicFileSystemTest.segments(root);
+			assertEquals(Arrays.asList("00000000000000000000.seg", "00000000000000000002.seg"),
+			        LogTopicFileSystemTest.fileNames(segments));
+			assertEquals(2, LogTopicFileSystemTest.footerPostCount(segments.get(0)));
+
+			LogTopicFileSystemTest.assertPosts(root, 1, 2, 3, 4, 5);
+		} finally {
+			LogTopicFileSystemTest.delete(root);
+		}
+	}
+
+	// ==================== HELPERS ====================
+
+	private static Post post(long id, int dataLength) {
+		final byte[] data = new byte[dataLength];
+		for (int i = 0; i < dataLength; i++)
+			data[i] = (byte) (id + i);
+
+		return new Post(data, new PostInfo("poster", "txt", id));
+	}
+
+	// the length of the record of a Post written by post(id, dataLength), including its length
+	private static long recordSize(long id, int dataLength) {
+		final int postInfoSize = Long.BYTES + Long.BYTES + (Short.BYTES + "poster".length())
+		        + (Short.BYTES + "txt".length());
+		return Integer.BYTES + postInfoSize + Integer.BYTES + dataLength;
+	}
+
+	// checks the Posts of the Topic when it is both read and opened by a new file system
+	private static void assertPosts(Path root, long... ids) throws IOException {
+		final LogTopicFileSystem fileSystem = new LogTopicFileSystem(root);
+
+		LogTopicFileSystemTest.assertPosts(
+		        fileSystem.readTopic(LogTopicFileSystemTest.TOPIC).getAllPosts(), ids);
+		LogTopicFileSystemTest.assertPosts(
+		        fileSystem.openTopic(LogTopicFileSystemTest.TOPIC).getAllPosts(), ids);
+	}
+
+	private static void assertPosts(List<Post> posts, long... ids) {
+		final List<Long> actualIds = new ArrayList<>();
+		for (final Post post : posts)
+			actualIds.add(post.getPostInfo().getId());
+
+		final List<Long> expectedIds = new ArrayList<>();
+		for (final long id : ids)
+			expectedIds.add(id);
+
+		assertEquals(expectedIds, actualIds);
+
+		for (final Post post : posts) {
+			final PostInfo postInfo = post.getPostInfo();
+			final Post     expected = LogTopicFileSystemTest.post(postInfo.getId(),
+			        (int) post.getLength());
+
+			assertEquals("poster", postInfo.getPosterName());
+			assertEquals("txt", postInfo.getFileExtension());
+			assertArrayEquals(expected.getData(), post.getData());
+		}
+	}
+
+	private static List<Path> segments(Path root) throws IOException {
+		final List<Path> segments = new ArrayList<>();
+		for (final Path file : LogTopicFileSystemTest.files(root))
+			if (file.getFileName().toString().endsWith(".seg"))
+				segments.add(file);
+
+		return segments;
+	}
+
+	private static List<Path> files(Path root) throws IOException {
+		try (Stream<Path> files = Files.list(root.resolve(LogTopicFileSystemTest.TOPIC))) {
+			return files.sorted().collect(Collectors.toList());
+		}
+	}
+
+	private static List<String> fileNames(List<Path> files) {
+		final List<String> fileNames = new ArrayList<>();
+		for (final Path file : files)
+			fileNames.add(file.getFileName().toString());
+
+		return fileNames;
+	}
+
+	private static void writeLength(Path segment, long position, int length) throws IOException {
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			final ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES);
+			bytes.putInt(length).flip();
+			while (bytes.hasRemaining())
+				channel.write(bytes, position + bytes.position());
+		}
+	}
+
+	// returns -1 if the segment has no footer
+	private static int footerPostCount(Path segment) throws IOException {
+		final byte[]     bytes   = Files.readAllBytes(segment);
+		final ByteBuffer trailer = ByteBuffer.wrap(bytes, bytes.length - 12, 12);
+
+		final int postCount = trailer.getInt();
+		return trailer.getLong() == LogTopicFileSystemTest.FOOTER_MAGIC ? postCount : -1;
+	}
+
+	private static void delete(Path root) throws IOException {
+		try (Stream<Path> files = Files.walk(root)) {
+			for (final Path file : files.sorted(Comparator.reverseOrder())
+			        .collect(Collectors.toList()))
+				Files.delete(file);
+		}
+	}
+}
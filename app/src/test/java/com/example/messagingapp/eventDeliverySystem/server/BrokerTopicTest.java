@@ -0,0 +1,310 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.AbstractTopic;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.thread.PullThread;
+import com.example.messagingapp.eventDeliverySystem.util.Subscriber;
+
+/**
+ * Tests which Posts of a {@link BrokerTopic} a Subscriber receives, in which
+ * order, when it joins while some of them are being posted, when some of them
+ * are abandoned and when the Topic is recovered from its log.
+ *
+ * @author Alex Mandelias
+ */
+public class BrokerTopicTest {
+
+	@Test
+	public void catchUpEndsWithWhatHasBeenPostedOfThePostBeingPosted() {
+		final BrokerTopic topic = new BrokerTopic("topic");
+		topic.post(BrokerTopicTest.postInfo(1));
+		topic.post(BrokerTopicTest.packet(1, false));
+		topic.post(BrokerTopicTest.postInfo(2));
+		topic.post(BrokerTopicTest.packet(2, true));
+
+		final RecordingSubscriber sub = new RecordingSubscriber();
+		assertEquals(Arrays.asList("PostInfo 1", "Packet 1"), sub.subscribe(topic));
+		assertEquals(Collections.emptyList(), sub.streamed);
+
+		// Post 2 waits for Post 1
+		topic.post(BrokerTopicTest.packet(1, true));
+		assertEquals(Arrays.asList("final Packet 1", "PostInfo 2", "final Packet 2"),
+		        sub.streamed);
+	}
+
+	@Test
+	public void abandonedPostIsSkipped() {
+		final BrokerTopic topic = new BrokerTopic("topic");
+		topic.post(BrokerTopicTest.postInfo(1));
+		topic.post(BrokerTopicTest.packet(1, false));
+		topic.post(BrokerTopicTest.postInfo(2));
+		topic.post(BrokerTopicTest.packet(2, true));
+		topic.abandon(1);
+
+		final RecordingSubscriber sub = new RecordingSubscriber();
+		assertEquals(Arrays.asList("PostInfo 2", "final Packet 2"), sub.subscribe(topic));
+
+		// the abandoned Post holds back neither the catch-up nor the new Posts
+		topic.post(BrokerTopicTest.postInfo(3));
+		topic.post(BrokerTopicTest.packet(3, true));
+		assertEquals(Arrays.asList("PostInfo 3", "final Packet 3"), sub.streamed);
+		assertEquals(3, topic.getPostCount());
+		assertEquals(-1, topic.indexOf(1));
+	}
+
+	@Test
+	public void abandonedPostIsNotStreamedToSubscribersThatHaveNoPartOfIt() {
+		final BrokerTopic         topic = new BrokerTopic("topic");
+		final RecordingSubscriber sub   = new RecordingSubscriber();
+		sub.subscribe(topic);
+
+		topic.post(BrokerTopicTest.postInfo(1));
+		topic.post(BrokerTopicTest.packet(1, false));
+		topic.post(BrokerTopicTest.postInfo(2));
+		topic.post(BrokerTopicTest.packet(2, false));
+		topic.abandon(2);
+		topic.post(BrokerTopicTest.packet(1, true));
+		topic.post(BrokerTopicTest.postInfo(3));
+		topic.post(BrokerTopicTest.packet(3, true));
+
+		assertFalse(sub.disconnected);
+		assertEquals(Arrays.asList("PostInfo 1", "Packet 1", "final Packet 1", "PostInfo 3",
+		        "final Packet 3"), sub.streamed);
+	}
+
+	@Test
+	public void abandonedPostDisconnectsSubscribersThatHavePartOfIt() {
+		final BrokerTopic         topic = new BrokerTopic("topic");
+		final RecordingSubscriber sub   = new RecordingSubscriber();
+		sub.subscribe(topic);
+
+		topic.post(BrokerTopicTest.postInfo(1));
+		topic.post(BrokerTopicTest.packet(1, false));
+		assertFalse(sub.disconnected);
+
+		topic.abandon(1);
+		assertTrue(sub.disconnected);
+	}
+
+	@Test
+	public void requestCutOffByItsPublisherIsNotPosted() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeInt(2);
+			oos.writeObject(BrokerTopicTest.postInfo(1));
+			oos.writeObject(BrokerTopicTest.packet(1, true));
+			oos.writeObject(BrokerTopicTest.postInfo(2));
+			oos.writeObject(BrokerTopicTest.packet(2, false));
+		}
+
+		final BrokerTopic         topic = new BrokerTopic("topic");
+		final RecordingSubscriber sub   = new RecordingSubscriber();
+		sub.subscribe(topic);
+
+		try (ObjectInputStream ois = new ObjectInputStream(
+		        new ByteArrayInputStream(bytes.toByteArray()))) {
+			new PullThread(ois, topic).run();
+		}
+
+		// not even the complete Post of the request
+		assertEquals(Collections.emptyList(), sub.streamed);
+		assertEquals(0, topic.getPostCount());
+
+		topic.post(BrokerTopicTest.postInfo(3));
+		assertEquals(Collections.singletonList("PostInfo 3"), sub.streamed);
+	}
+
+	@Test
+	public void batchIsPostedWholeOrNotAtAll() {
+		final BrokerTopic         topic = new BrokerTopic("topic");
+		final RecordingSubscriber sub   = new RecordingSubscriber();
+		sub.subscribe(topic);
+
+		try {
+			topic.postBatch(Arrays.asList(BrokerTopicTest.postInfo(1),
+			        BrokerTopicTest.packet(1, true), BrokerTopicTest.postInfo(2),
+			        BrokerTopicTest.packet(2, false)));
+			fail("A batch with an incomplete Post was accepted");
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+
+		assertEquals(Collections.emptyList(), sub.streamed);
+		assertEquals(0, topic.getPostCount());
+
+		topic.postBatch(Arrays.asList(BrokerTopicTest.postInfo(1),
+		        BrokerTopicTest.packet(1, false), BrokerTopicTest.packet(1, true),
+		        BrokerTopicTest.postInfo(2), BrokerTopicTest.packet(2, true)));
+
+		assertEquals(Arrays.asList("PostInfo 1", "Packet 1", "final Packet 1", "PostInfo 2",
+		        "final Packet 2"), sub.streamed);
+		assertEquals(1, topic.indexOf(2));
+	}
+
+	@Test
+	public void batchIsRecoveredWhole() throws IOException {
+		final Path directory = Files.createTempDirectory("broker-topic-test");
+		try {
+			try (CommitLog log = new CommitLog(directory, 1024, 100)) {
+				BrokerTopic.backedBy("topic", log).postBatch(Arrays.asList(
+				        BrokerTopicTest.postInfo(1), BrokerTopicTest.packet(1, true),
+				        BrokerTopicTest.postInfo(2), BrokerTopicTest.packet(2, true)));
+			}
+
+			try (CommitLog log = new CommitLog(directory, 1024, 100)) {
+				final BrokerTopic topic = BrokerTopic.backedBy("topic", log);
+				assertEquals(Arrays.asList("PostInfo 1", "final Packet 1", "PostInfo 2",
+				        "final Packet 2"), new RecordingSubscriber().subscribe(topic));
+			}
+		} finally {
+			BrokerTopicTest.delete(directory);
+		}
+	}
+
+	@Test
+	public void packetOfPostNotBeingPostedIsRejected() {
+		final BrokerTopic topic = new BrokerTopic("topic");
+		topic.post(BrokerTopicTest.postInfo(1));
+		topic.post(BrokerTopicTest.packet(1, false));
+		topic.abandon(1);
+
+		final RecordingSubscriber sub = new RecordingSubscriber();
+		sub.subscribe(topic);
+
+		for (final long postId : new long[] { 1, 2 })
+			try {
+				topic.post(BrokerTopicTest.packet(postId, true));
+				fail("A Packet of Post " + postId + " was accepted");
+			} catch (final IllegalArgumentException e) {
+				// expected
+			}
+
+		assertEquals(Collections.emptyList(), sub.streamed);
+		assertEquals(Collections.emptyList(), new RecordingSubscriber().subscribe(topic));
+	}
+
+	@Test
+	public void recoveredPostWithoutFinalPacketIsAbandoned() throws IOException {
+		final Path directory = Files.createTempDirectory("broker-topic-test");
+		try {
+			try (CommitLog log = new CommitLog(directory, 1024, 100)) {
+				final BrokerTopic topic = BrokerTopic.backedBy("topic", log);
+				topic.post(BrokerTopicTest.postInfo(1));
+				topic.post(BrokerTopicTest.packet(1, true));
+				topic.post(BrokerTopicTest.postInfo(2));
+				topic.post(BrokerTopicTest.packet(2, false));
+				topic.post(BrokerTopicTest.postInfo(3));
+				topic.post(BrokerTopicTest.packet(3, true));
+
+				// the Broker stops before the final Packet of Post 2 arrives
+			}
+
+			try (CommitLog log = new CommitLog(directory, 1024, 100)) {
+				final BrokerTopic topic = BrokerTopic.backedBy("topic", log);
+				assertEquals(3, topic.getPostCount());
+				assertEquals(-1, topic.indexOf(2));
+
+				final RecordingSubscriber sub = new RecordingSubscriber();
+				assertEquals(Arrays.asList("PostInfo 1", "final Packet 1", "PostInfo 3",
+				        "final Packet 3"), sub.subscribe(topic));
+
+				topic.post(BrokerTopicTest.postInfo(4));
+				assertEquals(Collections.singletonList("PostInfo 4"), sub.streamed);
+			}
+		} finally {
+			BrokerTopicTest.delete(directory);
+		}
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (final Path file : stream)
+				Files.delete(file);
+		}
+
+		Files.delete(directory);
+	}
+
+	private static PostInfo postInfo(long postId) {
+		return new PostInfo("poster", "txt", postId);
+	}
+
+	private static Packet packet(long postId, boolean isFinal) {
+		return new Packet(isFinal, new byte[] { (byte) postId }, postId);
+	}
+
+	private static String describe(Object postInfoOrPacket) {
+		if (postInfoOrPacket instanceof PostInfo)
+			return "PostInfo " + ((PostInfo) postInfoOrPacket).getId();
+
+		final Packet packet = (Packet) postInfoOrPacket;
+		return (packet.isFinal() ? "final Packet " : "Packet ") + packet.getPostId();
+	}
+
+	/**
+	 * A Subscriber that records the objects that its sequencer forwards, the same
+	 * way a Consumer would receive them, and whether it would disconnect its
+	 * Consumer.
+	 *
+	 * @author Alex Mandelias
+	 */
+	private static final class RecordingSubscriber implements Subscriber {
+
+		private final transient PostSequencer sequencer;
+		private final List<String>            streamed;
+		private boolean                       disconnected;
+
+		RecordingSubscriber() {
+			streamed = new ArrayList<>();
+			sequencer = new PostSequencer(
+			        postInfoOrPacket -> streamed.add(BrokerTopicTest.describe(postInfoOrPacket)));
+			disconnected = false;
+		}
+
+		// returns the catch-up
+		List<String> subscribe(BrokerTopic topic) {
+			final List<String> catchUp = new ArrayList<>();
+			for (final Object postInfoOrPacket : topic
+			        .subscribeSince(AbstractTopic.FETCH_ALL_POSTS, this, sequencer))
+				catchUp.add(BrokerTopicTest.describe(postInfoOrPacket));
+
+			return catchUp;
+		}
+
+		@Override
+		public void notify(PostInfo postInfo, String topicName) {
+			sequencer.add(postInfo);
+		}
+
+		@Override
+		public void notify(Packet packet, String topicName) {
+			sequencer.add(packet);
+		}
+
+		@Override
+		public void notifyAbandoned(long postId, String topicName) {
+			disconnected |= sequencer.abandon(postId);
+		}
+	}
+}
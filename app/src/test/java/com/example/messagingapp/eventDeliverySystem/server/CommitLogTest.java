@@ -0,0 +1,209 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.wire.BinaryCodec;
+
+/**
+ * Tests how a {@link CommitLog} recovers its records when it is opened again,
+ * both after it was closed and after a record or a batch was only partly
+ * written.
+ *
+ * @author Alex Mandelias
+ */
+public class CommitLogTest {
+
+	private static final int SEGMENT_SIZE   = 1024;
+	private static final int INDEX_INTERVAL = 100;
+
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("commit-log-test");
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (final Path file : stream)
+				Files.delete(file);
+		}
+
+		Files.delete(directory);
+	}
+
+	@Test
+	public void reopeningRebuildsTheIndex() throws IOException {
+		final int recordCount = 100;
+
+		try (CommitLog log = open()) {
+			assertEquals(0, log.append(new PostInfo("poster", "txt", 7)));
+			for (int i = 1; i < recordCount; i++)
+				assertEquals(i, log.append(CommitLogTest.packet(i)));
+		}
+
+		assertTrue("The records should span several segments", segments().size() > 1);
+
+		try (CommitLog log = open()) {
+			assertEquals(recordCount, log.getNextOffset());
+			assertEquals(7, ((PostInfo) log.read(0)).getId());
+
+			// from the last to the first, so that every lookup starts from the index
+			for (int i = recordCount - 1; i > 0; i--)
+				CommitLogTest.assertPacket(i, log.read(i));
+
+			final List<Long> offsets = new ArrayList<>();
+			log.forEach((offset, postInfoOrPacket) -> offsets.add(offset));
+			assertEquals(recordCount, offsets.size());
+			for (int i = 0; i < recordCount; i++)
+				assertEquals(i, (long) offsets.get(i));
+
+			assertEquals(recordCount, log.append(CommitLogTest.packet(recordCount)));
+			CommitLogTest.assertPacket(recordCount, log.read(recordCount));
+		}
+	}
+
+	@Test
+	public void recordWithoutLengthIsDiscarded() throws IOException {
+		// the Broker stopped after writing the record but before writing its length
+		writeTornRecord(0);
+
+		try (CommitLog log = open()) {
+			assertEquals(3, log.getNextOffset());
+			for (int i = 0; i < 3; i++)
+				CommitLogTest.assertPacket(i, log.read(i));
+
+			assertEquals(3, log.append(CommitLogTest.packet(30)));
+			CommitLogTest.assertPacket(30, log.read(3));
+		}
+
+		try (CommitLog log = open()) {
+			assertEquals(4, log.getNextOffset());
+			CommitLogTest.assertPacket(30, log.read(3));
+		}
+	}
+
+	@Test
+	public void recordLongerThanItsSegmentIsDiscarded() throws IOException {
+		// the length of the record is garbage, for example a partly written one
+		writeTornRecord(Integer.MAX_VALUE);
+
+		try (CommitLog log = open()) {
+			assertEquals(3, log.getNextOffset());
+			assertEquals(3, log.append(CommitLogTest.packet(30)));
+			CommitLogTest.assertPacket(30, log.read(3));
+		}
+	}
+
+	@Test
+	public void interruptedBatchIsDiscardedWhole() throws IOException {
+		try (CommitLog log = open()) {
+			for (int i = 0; i < 3; i++)
+				log.append(CommitLogTest.packet(i));
+
+			final List<Object> batch = new ArrayList<>();
+			for (int i = 3; i < 6; i++)
+				batch.add(CommitLogTest.packet(i));
+
+			assertEquals(3, log.appendAll(batch));
+			assertEquals(6, log.getNextOffset());
+		}
+
+		// the Broker stopped after writing every record of the batch but its first length
+		replaceLength(3, 0);
+
+		try (CommitLog log = open()) {
+			assertEquals(3, log.getNextOffset());
+			assertEquals(3, log.append(CommitLogTest.packet(30)));
+		}
+
+		// the rest of the batch is not mistaken for records after the new one
+		try (CommitLog log = open()) {
+			assertEquals(4, log.getNextOffset());
+			for (int i = 0; i < 3; i++)
+				CommitLogTest.assertPacket(i, log.read(i));
+			CommitLogTest.assertPacket(30, log.read(3));
+		}
+	}
+
+	// writes 3 records followed by one whose length is replaced
+	private void writeTornRecord(int length) throws IOException {
+		try (CommitLog log = open()) {
+			for (int i = 0; i < 4; i++)
+				log.append(CommitLogTest.packet(i));
+		}
+
+		replaceLength(3, length);
+	}
+
+	private void replaceLength(int record, int length) throws IOException {
+		final List<Path> segments = segments();
+		assertEquals(1, segments.size());
+
+		try (FileChannel channel = FileChannel.open(segments.get(0), StandardOpenOption.READ,
+		        StandardOpenOption.WRITE)) {
+			final ByteBuffer lengthBuffer = ByteBuffer.allocate(BinaryCodec.LENGTH_SIZE);
+
+			long position = 0;
+			for (int i = 0; i < record; i++) {
+				lengthBuffer.clear();
+				channel.read(lengthBuffer, position);
+				position += BinaryCodec.LENGTH_SIZE + lengthBuffer.getInt(0);
+			}
+
+			lengthBuffer.clear();
+			lengthBuffer.putInt(0, length);
+			channel.write(lengthBuffer, position);
+		}
+	}
+
+	private CommitLog open() throws IOException {
+		return new CommitLog(directory, CommitLogTest.SEGMENT_SIZE, CommitLogTest.INDEX_INTERVAL);
+	}
+
+	private List<Path> segments() throws IOException {
+		final List<Path> segments = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.log")) {
+			for (final Path file : stream)
+				segments.add(file);
+		}
+
+		return segments;
+	}
+
+	private static Packet packet(int i) {
+		final byte[] payload = new byte[40 + (i % 20)];
+		for (int j = 0; j < payload.length; j++)
+			payload[j] = (byte) (i + j);
+
+		return new Packet((i % 5) == 0, payload, i / 5);
+	}
+
+	private static void assertPacket(int i, Object record) {
+		final Packet expected = CommitLogTest.packet(i);
+		final Packet actual   = (Packet) record;
+
+		assertEquals(expected.getPostId(), actual.getPostId());
+		assertEquals(expected.isFinal(), actual.isFinal());
+		assertArrayEquals(expected.getPayload(), actual.getPayload());
+	}
+}
@@ -0,0 +1,143 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.StandardTopicHash;
+
+/**
+ * Tests that a {@link HashRing} spreads Topics evenly across its nodes and
+ * that adding or removing a node moves only the Topics that the node gains or
+ * loses.
+ *
+ * @author Alex Mandelias
+ */
+public class HashRingTest {
+
+	private static final int VIRTUAL_NODE_COUNT = 256;
+	private static final int NODE_COUNT         = 5;
+	private static final int TOPIC_COUNT        = 20_000;
+
+	// the fraction of its fair share by which a node may deviate
+	private static final double TOLERANCE = 0.25;
+
+	@Test
+	public void topicsAreSpreadEvenly() {
+		final HashRing<String> ring = HashRingTest.ring(HashRingTest.NODE_COUNT);
+
+		final Map<String, Integer> topicsPerNode = new HashMap<>();
+		for (final String node : HashRingTest.assign(ring).values())
+			topicsPerNode.merge(node, 1, Integer::sum);
+
+		final double fairShare = 1.0 / HashRingTest.NODE_COUNT;
+		assertEquals(HashRingTest.NODE_COUNT, topicsPerNode.size());
+		for (final Entry<String, Integer> entry : topicsPerNode.entrySet())
+			HashRingTest.assertFair("Topics of " + entry.getKey(), fairShare,
+			        entry.getValue() / (double) HashRingTest.TOPIC_COUNT);
+
+		double total = 0;
+		for (final Entry<String, Double> entry : ring.getOwnership().entrySet()) {
+			HashRingTest.assertFair("ownership of " + entry.getKey(), fairShare,
+			        entry.getValue());
+			total += entry.getValue();
+		}
+		assertEquals(1.0, total, 1e-9);
+	}
+
+	@Test
+	public void addingANodeMovesOnlyTheTopicsItGains() {
+		final HashRing<String>    ring   = HashRingTest.ring(HashRingTest.NODE_COUNT);
+		final Map<String, String> before = HashRingTest.assign(ring);
+
+		ring.add("broker-new", "broker-new");
+		final Map<String, String> after = HashRingTest.assign(ring);
+
+		int moved = 0;
+		for (final Entry<String, String> entry : before.entrySet()) {
+			final String node = after.get(entry.getKey());
+			if (!node.equals(entry.getValue())) {
+				assertEquals("Topic moved between old nodes", "broker-new", node);
+				moved++;
+			}
+		}
+
+		HashRingTest.assertFair("moved Topics", 1.0 / (HashRingTest.NODE_COUNT + 1),
+		        moved / (double) HashRingTest.TOPIC_COUNT);
+	}
+
+	@Test
+	public void removingANodeMovesOnlyTheTopicsItLoses() {
+		final HashRing<String>    ring   = HashRingTest.ring(HashRingTest.NODE_COUNT);
+		final Map<String, String> before = HashRingTest.assign(ring);
+
+		assertTrue(ring.remove("broker-0"));
+		assertFalse(ring.remove("broker-0"));
+		final Map<String, String> after = HashRingTest.assign(ring);
+
+		int moved = 0;
+		for (final Entry<String, String> entry : before.entrySet()) {
+			final String node = after.get(entry.getKey());
+			if (entry.getValue().equals("broker-0")) {
+				assertFalse(node.equals("broker-0"));
+				moved++;
+			} else
+				assertEquals("Topic moved between remaining nodes", entry.getValue(), node);
+		}
+
+		HashRingTest.assertFair("moved Topics", 1.0 / HashRingTest.NODE_COUNT,
+		        moved / (double) HashRingTest.TOPIC_COUNT);
+	}
+
+	@Test
+	public void replicasAreTheDistinctSuccessorsOfTheTopic() {
+		final HashRing<String> ring = HashRingTest.ring(HashRingTest.NODE_COUNT);
+
+		for (int i = 0; i < 1000; i++) {
+			final String       topicName = "topic-" + i;
+			final List<String> replicas  = ring.get(topicName, 3);
+
+			assertEquals(3, replicas.size());
+			assertEquals(3, new HashSet<>(replicas).size());
+			assertEquals(ring.get(topicName), replicas.get(0));
+
+			// the second replica takes over the Topic once the first is removed
+			final HashRing<String> smaller = HashRingTest.ring(HashRingTest.NODE_COUNT);
+			smaller.remove(replicas.get(0));
+			assertEquals(replicas.subList(1, 3), smaller.get(topicName, 2));
+		}
+
+		assertEquals(HashRingTest.NODE_COUNT, ring.get("topic", 10).size());
+	}
+
+	private static HashRing<String> ring(int nodeCount) {
+		final HashRing<String> ring = new HashRing<>(HashRingTest.VIRTUAL_NODE_COUNT,
+		        StandardTopicHash.MURMUR3);
+		for (int i = 0; i < nodeCount; i++)
+			ring.add("broker-" + i, "broker-" + i);
+
+		return ring;
+	}
+
+	// returns the node of every Topic, by the Topic's name
+	private static Map<String, String> assign(HashRing<String> ring) {
+		final Map<String, String> nodePerTopic = new HashMap<>();
+		for (int i = 0; i < HashRingTest.TOPIC_COUNT; i++)
+			nodePerTopic.put("topic-" + i, ring.get("topic-" + i));
+
+		return nodePerTopic;
+	}
+
+	private static void assertFair(String what, double fairShare, double share) {
+		assertTrue(String.format("%s: %.3f, expected %.3f", what, share, fairShare),
+		        Math.abs(share - fairShare) <= (fairShare * HashRingTest.TOLERANCE));
+	}
+}
@@ -0,0 +1,132 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+
+/**
+ * Tests that the leadership of a Topic moves with the ring when the members of
+ * the network change, and that the new leader ends up with every Post of the
+ * Topic, whichever Broker they were posted to.
+ *
+ * @author Alex Mandelias
+ */
+public class ReplicationManagerTest {
+
+	private static final int  TOPIC_COUNT    = 8;
+	private static final long TIMEOUT_MILLIS = 20_000;
+
+	@Test
+	public void leadershipMovesWithTheRing() throws InterruptedException {
+		final BrokerConfig config = ReplicationManagerTest.config();
+		final Broker       first  = ReplicationManagerTest.start(new Broker(config));
+		try {
+			for (int i = 0; i < ReplicationManagerTest.TOPIC_COUNT; i++) {
+				first.addTopic("t" + i);
+				ReplicationManagerTest.post(first, "t" + i, 1);
+			}
+
+			final InetSocketAddress address = first.getReplicasOf("t0").get(0)
+			        .getBrokerAddress();
+			final Broker second = ReplicationManagerTest.start(
+			        new Broker(address.getAddress().getHostAddress(), address.getPort(), config));
+			try {
+				// both Brokers hold every Topic, but the second one leads some of them
+				ReplicationManagerTest.await("the second Broker never led a Topic", () -> {
+					boolean secondLeads = false;
+					for (int i = 0; i < ReplicationManagerTest.TOPIC_COUNT; i++) {
+						if (first.getReplicasOf("t" + i).size() != 2)
+							return false;
+
+						secondLeads |= second.isSelf(second.getReplicasOf("t" + i).get(0));
+					}
+					return secondLeads;
+				});
+
+				for (int i = 0; i < ReplicationManagerTest.TOPIC_COUNT; i++) {
+					final String topicName = "t" + i;
+					final Broker leader    = first.isSelf(first.getReplicasOf(topicName).get(0))
+					        ? first
+					        : second;
+
+					// the Posts of the previous leader are handed off to the new one
+					ReplicationManagerTest.awaitPostCount(leader, topicName, 1);
+
+					// a Publisher that hasn't learnt of the change posts to the previous leader
+					ReplicationManagerTest.post(first, topicName, 2);
+					ReplicationManagerTest.awaitPostCount(leader, topicName, 2);
+
+					// and the leader copies what is posted to it to its follower
+					ReplicationManagerTest.post(leader, topicName, 3);
+					ReplicationManagerTest.awaitPostCount(first, topicName, 3);
+					ReplicationManagerTest.awaitPostCount(second, topicName, 3);
+				}
+			} finally {
+				second.close();
+			}
+
+			// the follower takes over once the leader fails
+			ReplicationManagerTest.await("the first Broker never took over", () -> {
+				for (int i = 0; i < ReplicationManagerTest.TOPIC_COUNT; i++)
+					if (first.getReplicasOf("t" + i).size() != 1)
+						return false;
+				return true;
+			});
+
+			for (int i = 0; i < ReplicationManagerTest.TOPIC_COUNT; i++) {
+				assertTrue(first.isSelf(first.getReplicasOf("t" + i).get(0)));
+				ReplicationManagerTest.post(first, "t" + i, 4);
+				assertEquals(4, first.getTopic("t" + i).getPostCount());
+			}
+		} finally {
+			first.close();
+		}
+	}
+
+	private static BrokerConfig config() {
+		final Properties properties = new Properties();
+		properties.setProperty(BrokerConfig.REPLICATION_FACTOR, "2");
+		properties.setProperty(BrokerConfig.GOSSIP_INTERVAL, "100");
+		properties.setProperty(BrokerConfig.GOSSIP_FAILURE_TIMEOUT, "1000");
+		return BrokerConfig.fromProperties(properties);
+	}
+
+	private static Broker start(Broker broker) {
+		new Thread(broker, "Broker").start();
+		return broker;
+	}
+
+	// posts a Post the way a Publisher's request does
+	private static void post(Broker broker, String topicName, long postId) {
+		final BrokerTopic topic = broker.getTopic(topicName);
+		topic.postBatch(Arrays.asList(new PostInfo("poster", "txt", postId),
+		        new Packet(true, new byte[] { (byte) postId }, postId)));
+		broker.whenReplicated(topic, () -> {});
+	}
+
+	private static void awaitPostCount(Broker broker, String topicName, int postCount)
+	        throws InterruptedException {
+		ReplicationManagerTest.await(
+		        String.format("Topic %s never had %d Posts", topicName, postCount),
+		        () -> broker.topicExists(topicName)
+		                && (broker.getTopic(topicName).getPostCount() == postCount));
+	}
+
+	private static void await(String message, BooleanSupplier condition)
+	        throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + ReplicationManagerTest.TIMEOUT_MILLIS;
+		while (!condition.getAsBoolean()) {
+			assertTrue(message, System.currentTimeMillis() < deadline);
+			Thread.sleep(50);
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package com.example.messagingapp.eventDeliverySystem.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.server.BrokerConfig.OverflowPolicy;
+
+/**
+ * Tests the ordering of the objects of a {@link SendQueue} and each of its
+ * {@link OverflowPolicy OverflowPolicies}.
+ *
+ * @author Alex Mandelias
+ */
+public class SendQueueTest {
+
+	private static final int TIMEOUT_SECONDS = 10;
+
+	@Test
+	public void objectsOfEachProducerArriveInOrder() throws InterruptedException {
+		final int producerCount = 4;
+		final int postCount     = 500;
+
+		// small enough that the producers have to wait for the consumer
+		final SendQueue queue = SendQueueTest.queue(8, OverflowPolicy.BLOCK, true, null);
+
+		final List<Thread> producers = new ArrayList<>();
+		for (int p = 0; p < producerCount; p++) {
+			final long firstPostId = p * (long) postCount;
+			producers.add(new Thread(() -> {
+				for (long postId = firstPostId; postId < (firstPostId + postCount); postId++) {
+					queue.offer(SendQueueTest.postInfo(postId));
+					queue.offer(SendQueueTest.packet(postId, false));
+					queue.offer(SendQueueTest.packet(postId, true));
+				}
+			}));
+		}
+
+		for (final Thread producer : producers)
+			producer.start();
+
+		final long[]   lastPostIds = new long[producerCount];
+		final Object[] lastObjects = new Object[producerCount];
+		for (int p = 0; p < producerCount; p++)
+			lastPostIds[p] = (p * (long) postCount) - 1;
+
+		for (int i = 0; i < (producerCount * postCount * 3); i++) {
+			final Object obj      = queue.take();
+			final long   postId   = SendQueueTest.postIdOf(obj);
+			final int    producer = (int) (postId / postCount);
+			final Object last     = lastObjects[producer];
+
+			if (obj instanceof PostInfo) {
+				assertTrue("PostInfo before the end of the previous Post",
+				        (last == null) || ((Packet) last).isFinal());
+				assertEquals(lastPostIds[producer] + 1, postId);
+			} else {
+				assertEquals(lastPostIds[producer], postId);
+				assertEquals(last instanceof PostInfo, !((Packet) obj).isFinal());
+			}
+
+			lastPostIds[producer] = postId;
+			lastObjects[producer] = obj;
+		}
+
+		for (final Thread producer : producers)
+			producer.join(TimeUnit.SECONDS.toMillis(SendQueueTest.TIMEOUT_SECONDS));
+
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void blockWaitsForRoom() throws InterruptedException {
+		final SendQueue queue = SendQueueTest.queue(2, OverflowPolicy.BLOCK, true, null);
+		queue.offer(SendQueueTest.postInfo(1));
+		queue.offer(SendQueueTest.packet(1, true));
+
+		final CountDownLatch offered  = new CountDownLatch(1);
+		final Thread         producer = new Thread(() -> {
+			queue.offer(SendQueueTest.postInfo(2));
+			offered.countDown();
+		});
+		producer.start();
+
+		assertFalse(offered.await(200, TimeUnit.MILLISECONDS));
+
+		assertEquals(1, SendQueueTest.postIdOf(queue.poll()));
+		assertTrue(offered.await(SendQueueTest.TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+		assertEquals(1, SendQueueTest.postIdOf(queue.poll()));
+		assertEquals(2, SendQueueTest.postIdOf(queue.poll()));
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void blockReportsCongestionWhenItCantBlock() {
+		final List<Boolean> changes = Collections.synchronizedList(new ArrayList<>());
+		final SendQueue     queue   = SendQueueTest.queue(4, OverflowPolicy.BLOCK, false,
+		        changes::add);
+
+		for (long postId = 1; postId <= 3; postId++) {
+			queue.offer(SendQueueTest.postInfo(postId));
+			queue.offer(SendQueueTest.packet(postId, true));
+		}
+
+		// nothing is dropped, the Publishers are paused instead
+		assertEquals(Collections.singletonList(true), changes);
+
+		for (int i = 0; i < 3; i++)
+			queue.poll();
+
+		// only once the queue is half empty
+		assertEquals(Collections.singletonList(true), changes);
+
+		queue.poll();
+		assertEquals(Arrays.asList(true, false), changes);
+		assertEquals(3, SendQueueTest.postIdOf(queue.poll()));
+		assertEquals(3, SendQueueTest.postIdOf(queue.poll()));
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void dropOldestDropsWholePosts() {
+		final SendQueue queue = SendQueueTest.queue(3, OverflowPolicy.DROP_OLDEST, false, null);
+
+		queue.offer(SendQueueTest.postInfo(1));
+		queue.offer(SendQueueTest.packet(1, false));
+		queue.offer(SendQueueTest.postInfo(2));
+
+		// the queue is full, so Post 1 is dropped even though it isn't complete
+		assertTrue(queue.offer(SendQueueTest.packet(2, true)));
+
+		// the rest of Post 1 is discarded as it arrives
+		assertTrue(queue.offer(SendQueueTest.packet(1, true)));
+
+		final Object postInfo = queue.poll();
+		assertTrue(postInfo instanceof PostInfo);
+		assertEquals(2, SendQueueTest.postIdOf(postInfo));
+		assertEquals(2, SendQueueTest.postIdOf(queue.poll()));
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void dropOldestKeepsThePostBeingSent() {
+		final SendQueue queue = SendQueueTest.queue(3, OverflowPolicy.DROP_OLDEST, false, null);
+
+		queue.offer(SendQueueTest.postInfo(1));
+		queue.offer(SendQueueTest.packet(1, false));
+		assertEquals(1, SendQueueTest.postIdOf(queue.poll()));
+
+		queue.offer(SendQueueTest.postInfo(2));
+		queue.offer(SendQueueTest.packet(2, true));
+		queue.offer(SendQueueTest.packet(1, true));
+
+		final Packet first = (Packet) queue.poll();
+		assertEquals(1, first.getPostId());
+		assertFalse(first.isFinal());
+
+		final Packet last = (Packet) queue.poll();
+		assertEquals(1, last.getPostId());
+		assertTrue(last.isFinal());
+
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void disconnectClosesTheQueue() throws InterruptedException {
+		final SendQueue queue = SendQueueTest.queue(2, OverflowPolicy.DISCONNECT, true, null);
+
+		assertTrue(queue.offer(SendQueueTest.postInfo(1)));
+		assertTrue(queue.offer(SendQueueTest.packet(1, true)));
+		assertFalse(queue.offer(SendQueueTest.postInfo(2)));
+
+		// the queued objects are discarded along with the Consumer
+		assertNull(queue.take());
+		assertFalse(queue.offer(SendQueueTest.postInfo(3)));
+	}
+
+	@Test
+	public void closeWakesTheConsumer() throws InterruptedException {
+		final SendQueue queue = SendQueueTest.queue(2, OverflowPolicy.BLOCK, true, null);
+
+		final Object[]       taken    = { new Object() };
+		final CountDownLatch returned = new CountDownLatch(1);
+		final Thread         consumer = new Thread(() -> {
+			try {
+				taken[0] = queue.take();
+			} catch (final InterruptedException e) {
+				// the assertion below fails
+			}
+			returned.countDown();
+		});
+		consumer.start();
+
+		assertFalse(returned.await(200, TimeUnit.MILLISECONDS));
+		queue.close();
+		assertTrue(returned.await(SendQueueTest.TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertNull(taken[0]);
+	}
+
+	private static SendQueue queue(int maxCount, OverflowPolicy policy, boolean canBlock,
+	        SendQueue.CongestionListener listener) {
+		final Properties properties = new Properties();
+		properties.setProperty(BrokerConfig.CONSUMER_QUEUE_COUNT, String.valueOf(maxCount));
+
+		return new SendQueue(BrokerConfig.fromProperties(properties), policy, canBlock, listener,
+		        new SendQueueMetrics());
+	}
+
+	private static PostInfo postInfo(long postId) {
+		return new PostInfo("poster", "txt", postId);
+	}
+
+	private static Packet packet(long postId, boolean isFinal) {
+		return new Packet(isFinal, new byte[] { (byte) postId }, postId);
+	}
+
+	private static long postIdOf(Object postInfoOrPacket) {
+		return postInfoOrPacket instanceof PostInfo ? ((PostInfo) postInfoOrPacket).getId()
+		        : ((Packet) postInfoOrPacket).getPostId();
+	}
+}
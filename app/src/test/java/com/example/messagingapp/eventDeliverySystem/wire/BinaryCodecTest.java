@@ -0,0 +1,302 @@
+package com.example.messagingapp.eventDeliverySystem.wire;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.example.messagingapp.eventDeliverySystem.datastructures.ConnectionInfo;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Message;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Message.MessageType;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Packet;
+import com.example.messagingapp.eventDeliverySystem.datastructures.PostInfo;
+import com.example.messagingapp.eventDeliverySystem.datastructures.Topic.TopicToken;
+
+/**
+ * Tests that every object the {@link BinaryCodec} supports is decoded as it was
+ * encoded, whether it is written to a stream or encoded in a buffer, and that
+ * frames which are truncated or otherwise malformed are rejected.
+ *
+ * @author Alex Mandelias
+ */
+public class BinaryCodecTest {
+
+	@Test
+	public void messageRoundTrips() throws IOException {
+		for (final MessageType type : MessageType.values()) {
+			if (type == MessageType.INITIALISE_CONSUMER)
+				continue;
+
+			for (final String name : new String[] { "topic", "", "\u03c4\u03cc\u03c0\u03bf\u03c2",
+			        null }) {
+				final Message message = (Message) BinaryCodecTest
+				        .roundTrip(new Message(type, name));
+				assertEquals(type, message.getType());
+				assertEquals(name, message.getValue());
+			}
+		}
+	}
+
+	@Test
+	public void topicTokenOfInitialiseConsumerRoundTrips() throws IOException {
+		final Message message = (Message) BinaryCodecTest.roundTrip(
+		        new Message(MessageType.INITIALISE_CONSUMER, new TopicToken("topic", 7, 1234)));
+		assertEquals(MessageType.INITIALISE_CONSUMER, message.getType());
+
+		final TopicToken token = (TopicToken) message.getValue();
+		assertEquals("topic", token.getName());
+		assertEquals(7, token.getLastId());
+		assertEquals(1234, token.getLastOffset());
+	}
+
+	@Test
+	public void postInfoRoundTrips() throws IOException {
+		final PostInfo postInfo = (PostInfo) BinaryCodecTest
+		        .roundTrip(new PostInfo("poster", "txt", 42, 4096));
+		assertEquals("poster", postInfo.getPosterName());
+		assertEquals("txt", postInfo.getFileExtension());
+		assertEquals(42, postInfo.getId());
+		assertEquals(4096, postInfo.getOffset());
+
+		final PostInfo anonymous = (PostInfo) BinaryCodecTest
+		        .roundTrip(new PostInfo(null, null, -1));
+		assertNull(anonymous.getPosterName());
+		assertNull(anonymous.getFileExtension());
+		assertEquals(-1, anonymous.getId());
+	}
+
+	@Test
+	public void packetRoundTrips() throws IOException {
+		for (final boolean isFinal : new boolean[] { true, false }) {
+			for (final byte[] payload : new byte[][] { {}, { 1, 2, 3 }, new byte[70_000] }) {
+				final Packet packet = (Packet) BinaryCodecTest
+				        .roundTrip(new Packet(isFinal, payload, 42));
+				assertEquals(isFinal, packet.isFinal());
+				assertEquals(42, packet.getPostId());
+				assertArrayEquals(payload, packet.getPayload());
+			}
+		}
+	}
+
+	@Test
+	public void directPacketFrameIsTheSameAsTheHeapOne() throws IOException {
+		final Packet packet = new Packet(true, new byte[] { 1, 2, 3 }, 42);
+
+		final ByteBuffer direct = BinaryCodec.encodeDirect(packet);
+		final byte[]     bytes  = new byte[direct.remaining()];
+		direct.get(bytes);
+
+		assertArrayEquals(BinaryCodecTest.bytes(BinaryCodec.encode(packet)), bytes);
+	}
+
+	@Test
+	public void connectionInfoRoundTrips() throws IOException {
+		for (final String address : new String[] { "127.0.0.1", "::1" }) {
+			final ConnectionInfo ci = (ConnectionInfo) BinaryCodecTest
+			        .roundTrip(new ConnectionInfo(InetAddress.getByName(address), 29470));
+			assertEquals(InetAddress.getByName(address), ci.getAddress());
+			assertEquals(29470, ci.getPort());
+		}
+	}
+
+	@Test
+	public void intAndBooleanRoundTrip() throws IOException {
+		for (final int i : new int[] { 0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE })
+			assertEquals(i, BinaryCodecTest.roundTrip(i));
+
+		assertEquals(true, BinaryCodecTest.roundTrip(true));
+		assertEquals(false, BinaryCodecTest.roundTrip(false));
+	}
+
+	@Test
+	public void unsupportedObjectIsNotEncoded() throws IOException {
+		for (final Object obj : new Object[] { null, "string", 1L })
+			try {
+				BinaryCodec.encode(obj);
+				fail("Encoded " + obj);
+			} catch (final NotSerializableException e) {
+				// expected
+			}
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			BinaryCodec.write("string", out);
+			fail("Wrote a String");
+		} catch (final NotSerializableException e) {
+			// expected
+		}
+		assertEquals(0, out.size());
+	}
+
+	@Test
+	public void truncatedFrameIsRejected() throws IOException {
+		final Object[] objects = { new Message(MessageType.CREATE_TOPIC, "topic"),
+		        new Message(MessageType.INITIALISE_CONSUMER, new TopicToken("topic", 7, 1234)),
+		        new PostInfo("poster", "txt", 42, 4096), new Packet(true, new byte[] { 1, 2 }, 42),
+		        new ConnectionInfo(InetAddress.getLoopbackAddress(), 29470), 1, true };
+
+		for (final Object obj : objects) {
+			final byte[] body = BinaryCodecTest.body(BinaryCodec.encode(obj));
+
+			for (int length = 1; length < body.length; length++)
+				BinaryCodecTest.assertCorrupted(Arrays.copyOf(body, length));
+		}
+	}
+
+	@Test
+	public void truncatedStreamIsNotDecoded() throws IOException {
+		final byte[] frame = BinaryCodecTest
+		        .bytes(BinaryCodec.encode(new PostInfo("poster", "txt", 42, 4096)));
+
+		for (int length = 0; length < frame.length; length++)
+			try {
+				BinaryCodec.read(BinaryCodecTest.in(Arrays.copyOf(frame, length)));
+				fail("Read a frame cut off after " + length + " bytes");
+			} catch (final IOException e) {
+				// expected, either EOF or a corrupted frame
+			}
+	}
+
+	@Test
+	public void invalidFrameLengthIsRejected() throws IOException {
+		for (final int length : new int[] { 0, -1, Integer.MIN_VALUE }) {
+			final ByteBuffer frame = ByteBuffer.allocate(BinaryCodec.LENGTH_SIZE + 1);
+			frame.putInt(length).put((byte) 5);
+
+			try {
+				BinaryCodec.read(BinaryCodecTest.in(frame.array()));
+				fail("Read a frame of length " + length);
+			} catch (final StreamCorruptedException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void invalidStringLengthIsRejected() throws IOException {
+		final byte[] body = BinaryCodecTest
+		        .body(BinaryCodec.encode(new Message(MessageType.CREATE_TOPIC, "topic")));
+
+		// the length of the name follows the tag and the type
+		for (final int length : new int[] { -2, Integer.MIN_VALUE, 6, Integer.MAX_VALUE }) {
+			final byte[] corrupted = body.clone();
+			ByteBuffer.wrap(corrupted, 2, Integer.BYTES).putInt(length);
+			BinaryCodecTest.assertCorrupted(corrupted);
+		}
+	}
+
+	@Test
+	public void invalidPayloadLengthIsRejected() throws IOException {
+		final byte[] body = BinaryCodecTest
+		        .body(BinaryCodec.encode(new Packet(true, new byte[] { 1, 2 }, 42)));
+
+		// the length of the payload follows the tag, the Post's id and the flags
+		for (final int length : new int[] { -1, 3, Integer.MAX_VALUE }) {
+			final byte[] corrupted = body.clone();
+			ByteBuffer.wrap(corrupted, 1 + Long.BYTES + 1, Integer.BYTES).putInt(length);
+			BinaryCodecTest.assertCorrupted(corrupted);
+		}
+	}
+
+	@Test
+	public void unknownTagIsRejected() throws IOException {
+		for (final byte tag : new byte[] { 0, 7, -1, Byte.MAX_VALUE })
+			BinaryCodecTest.assertCorrupted(new byte[] { tag, 0, 0, 0, 0 });
+	}
+
+	@Test
+	public void unknownMessageTypeIsRejected() throws IOException {
+		final byte[] body = BinaryCodecTest
+		        .body(BinaryCodec.encode(new Message(MessageType.CREATE_TOPIC, "topic")));
+
+		for (final int ordinal : new int[] { MessageType.values().length, -1 }) {
+			final byte[] corrupted = body.clone();
+			corrupted[1] = (byte) ordinal;
+			BinaryCodecTest.assertCorrupted(corrupted);
+		}
+	}
+
+	@Test
+	public void consecutiveFramesAreReadInOrder() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryCodec.write(new PostInfo("poster", "txt", 1), out);
+		BinaryCodec.write(new Packet(false, new byte[] { 1 }, 1), out);
+		BinaryCodec.write(new Packet(true, new byte[] { 2 }, 1), out);
+
+		final DataInputStream in = BinaryCodecTest.in(out.toByteArray());
+		assertEquals(1, ((PostInfo) BinaryCodec.read(in)).getId());
+		assertFalse(((Packet) BinaryCodec.read(in)).isFinal());
+		assertTrue(((Packet) BinaryCodec.read(in)).isFinal());
+		assertEquals(-1, in.read());
+	}
+
+	// decodes an object both ways it may arrive and checks that they agree
+	private static Object roundTrip(Object obj) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryCodec.write(obj, out);
+
+		final byte[] frame = BinaryCodecTest.bytes(BinaryCodec.encode(obj));
+		assertArrayEquals(frame, out.toByteArray());
+		assertEquals(frame.length - BinaryCodec.LENGTH_SIZE, ByteBuffer.wrap(frame).getInt());
+
+		final ByteBuffer body = ByteBuffer.wrap(frame);
+		body.position(BinaryCodec.LENGTH_SIZE);
+		final Object decoded = BinaryCodec.decode(body);
+		assertEquals(0, body.remaining());
+		assertEquals(decoded.getClass(), obj.getClass());
+
+		final DataInputStream in = BinaryCodecTest.in(frame);
+		final Object          read = BinaryCodec.read(in);
+		assertEquals(-1, in.read());
+		assertEquals(read.getClass(), obj.getClass());
+
+		return read;
+	}
+
+	private static void assertCorrupted(byte[] body) throws IOException {
+		try {
+			BinaryCodec.decode(ByteBuffer.wrap(body));
+			fail("Decoded the malformed frame " + Arrays.toString(body));
+		} catch (final StreamCorruptedException e) {
+			// expected
+		}
+
+		final ByteBuffer frame = ByteBuffer.allocate(BinaryCodec.LENGTH_SIZE + body.length);
+		frame.putInt(body.length).put(body);
+		try {
+			BinaryCodec.read(BinaryCodecTest.in(frame.array()));
+			fail("Read the malformed frame " + Arrays.toString(body));
+		} catch (final StreamCorruptedException e) {
+			// expected
+		}
+	}
+
+	private static byte[] bytes(ByteBuffer frame) {
+		final byte[] bytes = new byte[frame.remaining()];
+		frame.get(bytes);
+		return bytes;
+	}
+
+	private static byte[] body(ByteBuffer frame) {
+		frame.position(frame.position() + BinaryCodec.LENGTH_SIZE);
+		return BinaryCodecTest.bytes(frame);
+	}
+
+	private static DataInputStream in(byte[] bytes) {
+		return new DataInputStream(new ByteArrayInputStream(bytes));
+	}
+}
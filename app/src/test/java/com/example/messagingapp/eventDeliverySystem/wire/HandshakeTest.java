@@ -0,0 +1,138 @@
+package com.example.messagingapp.eventDeliverySystem.wire;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests the negotiation of the {@link WireFormat} of a connection, between
+ * clients and Brokers that support different versions of the binary format or
+ * none at all.
+ *
+ * @author Alex Mandelias
+ */
+public class HandshakeTest {
+
+	@Test
+	public void brokerRespondsWithTheLatestVersionBothSupport() {
+		assertEquals(BinaryCodec.VERSION, Handshake.respond(BinaryCodec.VERSION, true));
+		assertEquals(BinaryCodec.VERSION,
+		        Handshake.respond((byte) (BinaryCodec.VERSION + 1), true));
+		assertEquals(BinaryCodec.VERSION, Handshake.respond(Byte.MAX_VALUE, true));
+	}
+
+	@Test
+	public void brokerDeclinesInvalidVersions() {
+		for (final byte version : new byte[] { BinaryCodec.NO_VERSION, -1, Byte.MIN_VALUE })
+			assertEquals(BinaryCodec.NO_VERSION, Handshake.respond(version, true));
+	}
+
+	@Test
+	public void brokerDeclinesWhenBinaryIsNotAllowed() {
+		for (final byte version : new byte[] { BinaryCodec.VERSION, Byte.MAX_VALUE })
+			assertEquals(BinaryCodec.NO_VERSION, Handshake.respond(version, false));
+	}
+
+	@Test
+	public void acceptedOfferIsAnsweredWithTheVersion() throws IOException {
+		final ByteArrayOutputStream out    = new ByteArrayOutputStream();
+		final WireFormat            format = Handshake
+		        .accept(HandshakeTest.offer(Byte.MAX_VALUE), out, true);
+
+		assertEquals(WireFormat.BINARY, format);
+		assertArrayEquals(new byte[] { BinaryCodec.VERSION }, out.toByteArray());
+	}
+
+	@Test
+	public void declinedOfferIsAnsweredWithNoVersion() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertNull(Handshake.accept(HandshakeTest.offer(BinaryCodec.VERSION), out, false));
+		assertArrayEquals(new byte[] { BinaryCodec.NO_VERSION }, out.toByteArray());
+	}
+
+	@Test
+	public void serializationClientIsRecognisedWithoutConsumingItsStream()
+	        throws IOException, ClassNotFoundException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeObject("request");
+		}
+
+		final InputStream           in  = new BufferedInputStream(
+		        new ByteArrayInputStream(bytes.toByteArray()));
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertEquals(WireFormat.SERIALIZATION, Handshake.accept(in, out, true));
+		assertEquals(0, out.size());
+
+		// the stream header is read again by the Broker's ObjectInputStream
+		try (ObjectInputStream ois = new ObjectInputStream(in)) {
+			assertEquals("request", ois.readObject());
+		}
+	}
+
+	@Test
+	public void clientAcceptsOnlyVersionsItSupports() throws IOException {
+		assertTrue(HandshakeTest.offerTo(BinaryCodec.VERSION));
+		assertFalse(HandshakeTest.offerTo(BinaryCodec.NO_VERSION));
+		assertFalse(HandshakeTest.offerTo((byte) (BinaryCodec.VERSION + 1)));
+	}
+
+	@Test
+	public void clientTreatsSerializationHeaderAsRefusal() throws IOException {
+		final ByteArrayOutputStream header = new ByteArrayOutputStream();
+		new ObjectOutputStream(header).flush();
+
+		assertFalse(Handshake.offer(new ByteArrayInputStream(header.toByteArray()),
+		        new ByteArrayOutputStream()));
+	}
+
+	@Test
+	public void clientTreatsClosedConnectionAsRefusal() throws IOException {
+		assertFalse(Handshake.offer(new ByteArrayInputStream(new byte[0]),
+		        new ByteArrayOutputStream()));
+	}
+
+	@Test
+	public void clientOffersMagicAndItsVersion() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Handshake.offer(new ByteArrayInputStream(new byte[] { BinaryCodec.VERSION }), out);
+
+		final ByteBuffer offer = ByteBuffer.wrap(out.toByteArray());
+		assertEquals(Integer.BYTES + 1, offer.remaining());
+		assertEquals(BinaryCodec.MAGIC, offer.getInt());
+		assertEquals(BinaryCodec.VERSION, offer.get());
+	}
+
+	// the start of a connection from a client that supports up to a version
+	private static InputStream offer(byte version) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream dos = new DataOutputStream(bytes)) {
+			dos.writeInt(BinaryCodec.MAGIC);
+			dos.writeByte(version);
+		}
+
+		return new BufferedInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+	}
+
+	// whether a client accepts a Broker's response
+	private static boolean offerTo(byte response) throws IOException {
+		return Handshake.offer(new ByteArrayInputStream(new byte[] { response }),
+		        new ByteArrayOutputStream());
+	}
+}